@@ -0,0 +1,29 @@
+package com.devision.jm.profile.api.external.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Dead Letter Replay Response DTO (External)
+ *
+ * Result of replaying a dead-letter topic.
+ *
+ * Fields:
+ * - topic:           Topic the records were replayed to
+ * - deadLetterTopic: Dead-letter topic they were read from
+ * - replayed:        Records published back to the topic
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterReplayResponse {
+
+    private String topic;
+
+    private String deadLetterTopic;
+
+    private int replayed;
+}
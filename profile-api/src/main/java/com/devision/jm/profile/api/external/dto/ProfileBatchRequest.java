@@ -0,0 +1,27 @@
+package com.devision.jm.profile.api.external.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Profile Batch Request DTO (External)
+ *
+ * Resolve many profiles in one call (POST /api/profiles/batch),
+ * e.g. all companies shown on one page of job posts.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProfileBatchRequest {
+
+    @NotEmpty(message = "At least one user ID is required")
+    @Size(max = 500, message = "At most 500 user IDs can be resolved per request")
+    private List<String> userIds;
+}
@@ -0,0 +1,29 @@
+package com.devision.jm.profile.api.external.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Profile Batch Response DTO (External)
+ *
+ * Result of a batch profile lookup.
+ *
+ * Fields:
+ * - profiles: Found profiles keyed by userId
+ * - missing:  Requested userIds that have no profile
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProfileBatchResponse {
+
+    private Map<String, ProfileResponse> profiles;
+
+    private List<String> missing;
+}
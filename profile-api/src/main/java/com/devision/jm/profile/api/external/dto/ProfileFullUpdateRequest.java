@@ -59,4 +59,12 @@ public class ProfileFullUpdateRequest {
      */
     @Size(max = 5000, message = "Who We Are Looking For must be less than 5000 characters")
     private String whoWeAreLookingFor;
+
+    // ==================== Optimistic Concurrency ====================
+
+    /**
+     * Version of the profile the client edited (ProfileResponse.version).
+     * Optional - if set, the update is rejected when the profile changed since.
+     */
+    private Long version;
 }
@@ -83,4 +83,9 @@ public class ProfileResponse {
     private String authProvider;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+
+    /**
+     * Document version (BaseEntity.version), incremented on every write
+     */
+    private Long version;
 }
@@ -0,0 +1,37 @@
+package com.devision.jm.profile.api.external.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Profile Search Page DTO (External)
+ *
+ * One page of a keyset-paginated profile search/listing.
+ *
+ * Fields:
+ * - items:      Profiles of this page, ordered by company name then id
+ * - nextCursor: Opaque token to pass as "cursor" for the next page;
+ *               null when this is the last page
+ * - partial:    True when some shards did not answer in time; their profiles
+ *               are missing from this page, and nextCursor may skip some of them.
+ *               Repeat the request with the same cursor for a complete page
+ * - shards:     How each shard answered
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProfileSearchPage {
+
+    private List<ProfileResponse> items;
+
+    private String nextCursor;
+
+    private boolean partial;
+
+    private List<ShardSearchStatus> shards;
+}
@@ -78,4 +78,12 @@ public class ProfileUpdateRequest {
      */
     @Valid
     private ApplicantSearchProfileDto applicantSearchProfile;
+
+    // ==================== Optimistic Concurrency ====================
+
+    /**
+     * Version of the profile the client edited (ProfileResponse.version).
+     * Optional - if set, the update is rejected when the profile changed since.
+     */
+    private Long version;
 }
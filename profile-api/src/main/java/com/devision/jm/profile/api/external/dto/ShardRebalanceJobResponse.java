@@ -0,0 +1,64 @@
+package com.devision.jm.profile.api.external.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Shard Rebalance Job Response DTO (External)
+ *
+ * Progress of a bulk move of a country's profiles to its shard.
+ *
+ * Fields:
+ * - jobId:         Job identifier
+ * - country:       Country as requested
+ * - targetShard:   Shard the profiles are moved to
+ * - status:        RUNNING, PAUSED, COMPLETED or FAILED
+ * - currentShard:  Source shard being drained
+ * - total:         Profiles to move, counted when the job started
+ * - moved:         Profiles moved so far
+ * - conflicts:     Profiles skipped because they were written during their move
+ * - remaining:     Estimated profiles left
+ * - docsPerSecond: Current (throttled) copy rate
+ * - etaSeconds:    Estimated seconds to completion (null when unknown)
+ * - error:         Last error, for FAILED jobs
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardRebalanceJobResponse {
+
+    private String jobId;
+
+    private String country;
+
+    private String targetShard;
+
+    private String status;
+
+    private String currentShard;
+
+    private long total;
+
+    private long moved;
+
+    private long conflicts;
+
+    private long remaining;
+
+    private double docsPerSecond;
+
+    private Long etaSeconds;
+
+    private String error;
+
+    private Instant createdAt;
+
+    private Instant updatedAt;
+
+    private Instant completedAt;
+}
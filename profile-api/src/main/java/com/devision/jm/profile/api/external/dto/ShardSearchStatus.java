@@ -0,0 +1,32 @@
+package com.devision.jm.profile.api.external.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Shard Search Status DTO (External)
+ *
+ * How one region shard answered a cross-shard search.
+ *
+ * Fields:
+ * - shard:  Shard id (e.g. SHARD_APAC)
+ * - status: OK, TIMEOUT or FAILED; the profiles of TIMEOUT/FAILED shards are missing
+ * - tookMs: Time the shard took (the timeout for TIMEOUT)
+ * - error:  Reason for TIMEOUT/FAILED
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardSearchStatus {
+
+    private String shard;
+
+    private String status;
+
+    private Long tookMs;
+
+    private String error;
+}
@@ -0,0 +1,22 @@
+package com.devision.jm.profile.api.external.interfaces;
+
+import com.devision.jm.profile.api.external.dto.DeadLetterReplayResponse;
+
+/**
+ * Dead Letter API Interface (External)
+ *
+ * Operations on the dead-letter topics of the Kafka consumers
+ * (records that failed every retry tier).
+ */
+public interface DeadLetterApi {
+
+    /**
+     * Publish dead-lettered records back to their original topic, oldest first.
+     * Replayed records are committed in the dead-letter topic and not replayed again.
+     *
+     * @param topic      Consumed topic (e.g. payment-completed), not the .dlt topic
+     * @param maxRecords Maximum number of records to replay
+     * @return Number of replayed records
+     */
+    DeadLetterReplayResponse replay(String topic, int maxRecords);
+}
@@ -6,6 +6,7 @@ import com.devision.jm.profile.api.external.dto.EventUpdateRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Event API Interface (External)
@@ -53,6 +54,24 @@ public interface EventApi {
      */
     List<EventResponse> getActiveEventsByCompanyId(String companyId);
 
+    /**
+     * Stream all events by company ID (all statuses)
+     * Results come straight from a database cursor; the caller must close the stream.
+     *
+     * @param companyId Company ID
+     * @return Stream of all events for the company
+     */
+    Stream<EventResponse> streamEventsByCompanyId(String companyId);
+
+    /**
+     * Stream only ACTIVE events by company ID
+     * Results come straight from a database cursor; the caller must close the stream.
+     *
+     * @param companyId Company ID
+     * @return Stream of active events for the company
+     */
+    Stream<EventResponse> streamActiveEventsByCompanyId(String companyId);
+
     /**
      * Get event by event ID
      *
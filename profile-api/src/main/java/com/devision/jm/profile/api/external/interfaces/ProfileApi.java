@@ -1,12 +1,16 @@
 package com.devision.jm.profile.api.external.interfaces;
 
+import com.devision.jm.profile.api.external.dto.ProfileBatchResponse;
 import com.devision.jm.profile.api.external.dto.ProfileCreateRequest;
 import com.devision.jm.profile.api.external.dto.ProfileFullUpdateRequest;
 import com.devision.jm.profile.api.external.dto.ProfileResponse;
+import com.devision.jm.profile.api.external.dto.ProfileSearchPage;
 import com.devision.jm.profile.api.external.dto.ProfileUpdateRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Profile API Interface (External)
@@ -45,6 +49,15 @@ public interface ProfileApi {
      */
     ProfileResponse getProfileByEmail(String email);
 
+    /**
+     * Get many profiles by userId in one call
+     * Used by other services that resolve a whole page of companies at once.
+     *
+     * @param userIds User IDs from Auth Service (duplicates are ignored)
+     * @return Found profiles keyed by userId, plus the userIds that were not found
+     */
+    ProfileBatchResponse getProfilesByUserIds(Collection<String> userIds);
+
     /**
      * Update profile
      *
@@ -57,11 +70,40 @@ public interface ProfileApi {
     /**
      * Search profiles (for admin)
      *
+     * Fails (503) when not every shard answers, rather than returning an
+     * incomplete list.
+     *
      * @param searchTerm Search term (email or company name)
      * @return List of matching profiles
      */
     List<ProfileResponse> searchProfiles(String searchTerm);
 
+    /**
+     * Stream profiles matching the search term (for admin)
+     * Results come straight from a database cursor in company name order;
+     * the caller must close the stream. A blank search term streams all profiles.
+     * Fails (503) when a shard can't be read; a shard failing mid-stream makes
+     * reading the stream throw instead of ending it early.
+     *
+     * @param searchTerm Search term (email or company name), may be blank
+     * @return Stream of matching profiles
+     */
+    Stream<ProfileResponse> streamProfiles(String searchTerm);
+
+    /**
+     * Search profiles page by page (for admin)
+     * Keyset pagination ordered by company name, so memory per request is
+     * bounded by the page size. A blank search term lists all profiles.
+     * All region shards are searched concurrently; shards that don't answer in
+     * time are left out and the page is marked partial.
+     *
+     * @param searchTerm Search term (email or company name), may be blank
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @param limit Page size (capped by the service)
+     * @return Page of matching profiles, the cursor of the next page and the status of each shard
+     */
+    ProfileSearchPage searchProfiles(String searchTerm, String cursor, Integer limit);
+
     /**
      * Create profile for existing user
      * Used for users who registered before Kafka was enabled
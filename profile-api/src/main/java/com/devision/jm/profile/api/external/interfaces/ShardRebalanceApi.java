@@ -0,0 +1,41 @@
+package com.devision.jm.profile.api.external.interfaces;
+
+import com.devision.jm.profile.api.external.dto.ShardRebalanceJobResponse;
+
+import java.util.List;
+
+/**
+ * Shard Rebalance API Interface (External)
+ *
+ * Bulk moves of existing profiles after a country was mapped to another shard.
+ */
+public interface ShardRebalanceApi {
+
+    /**
+     * Start moving every profile of a country to the shard it is mapped to now.
+     *
+     * @param country Country (code, name or alias)
+     * @return The new job
+     */
+    ShardRebalanceJobResponse start(String country);
+
+    /**
+     * Get a job's progress
+     */
+    ShardRebalanceJobResponse getJob(String jobId);
+
+    /**
+     * All jobs, newest first
+     */
+    List<ShardRebalanceJobResponse> listJobs();
+
+    /**
+     * Pause a running job after its current batch
+     */
+    ShardRebalanceJobResponse pause(String jobId);
+
+    /**
+     * Resume a paused or failed job from its checkpoint
+     */
+    ShardRebalanceJobResponse resume(String jobId);
+}
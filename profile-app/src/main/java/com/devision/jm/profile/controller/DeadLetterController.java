@@ -0,0 +1,43 @@
+package com.devision.jm.profile.controller;
+
+import com.devision.jm.profile.api.external.dto.DeadLetterReplayResponse;
+import com.devision.jm.profile.api.external.interfaces.DeadLetterApi;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Dead Letter Controller
+ *
+ * Operator endpoints for the dead-letter topics of the Kafka consumers.
+ * Only available when kafka.enabled=true.
+ *
+ * Endpoints:
+ * - POST /api/admin/dead-letters/{topic}/replay?maxRecords= - Replay a topic's DLT
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/dead-letters")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "kafka.enabled", havingValue = "true")
+public class DeadLetterController {
+
+    private final DeadLetterApi deadLetterService;
+
+    /**
+     * Publish dead-lettered records back to their original topic
+     * POST /api/admin/dead-letters/{topic}/replay
+     *
+     * @param topic      Consumed topic, e.g. payment-completed
+     * @param maxRecords Maximum number of records to replay (default 100)
+     */
+    @PostMapping("/{topic}/replay")
+    public ResponseEntity<DeadLetterReplayResponse> replay(
+            @PathVariable("topic") String topic,
+            @RequestParam(value = "maxRecords", defaultValue = "100") int maxRecords) {
+        log.info("Dead-letter replay request for topic: {}, maxRecords: {}", topic, maxRecords);
+        return ResponseEntity.ok(deadLetterService.replay(topic, maxRecords));
+    }
+}
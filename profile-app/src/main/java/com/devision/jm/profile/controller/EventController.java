@@ -4,6 +4,7 @@ import com.devision.jm.profile.api.external.dto.EventCreateRequest;
 import com.devision.jm.profile.api.external.dto.EventResponse;
 import com.devision.jm.profile.api.external.dto.EventUpdateRequest;
 import com.devision.jm.profile.api.external.interfaces.EventApi;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,6 +12,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.util.List;
 
 /**
@@ -27,6 +29,8 @@ import java.util.List;
  * - POST /api/events - Create event with files (multipart)
  * - GET /api/events/me - Get my company events
  * - GET /api/events/{companyId} - Get events by company ID
+ * - GET /api/events/me, /api/events/company/{companyId} with
+ *   Accept: application/x-ndjson - Stream events, one per line
  * - PUT /api/events/{eventId} - Update event
  * - DELETE /api/events/{eventId} - Delete event
  */
@@ -37,6 +41,7 @@ import java.util.List;
 public class EventController {
 
     private final EventApi eventService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Create a new event with file uploads
@@ -91,6 +96,21 @@ public class EventController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Stream events created by current company as NDJSON
+     * GET /api/events/me  with Accept: application/x-ndjson
+     */
+    @GetMapping(value = "/me", produces = NdjsonStreaming.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMyEvents(
+            @RequestHeader("X-User-Id") String companyId,
+            @RequestParam(value = "includeAll", defaultValue = "false") boolean includeAll) {
+
+        log.info("Stream events request for companyId: {}, includeAll: {}", companyId, includeAll);
+        return NdjsonStreaming.ok(objectMapper, () -> includeAll
+                ? eventService.streamEventsByCompanyId(companyId)
+                : eventService.streamActiveEventsByCompanyId(companyId));
+    }
+
     /**
      * Get a single event by event ID
      * GET /api/events/event/{eventId}
@@ -122,6 +142,18 @@ public class EventController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Stream ACTIVE events by company ID as NDJSON
+     * GET /api/events/company/{companyId}  with Accept: application/x-ndjson
+     */
+    @GetMapping(value = "/company/{companyId}", produces = NdjsonStreaming.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamEventsByCompanyId(
+            @PathVariable String companyId) {
+
+        log.info("Stream events by companyId: {}", companyId);
+        return NdjsonStreaming.ok(objectMapper, () -> eventService.streamActiveEventsByCompanyId(companyId));
+    }
+
     /**
      * Update an existing event
      * PUT /api/events/{eventId}
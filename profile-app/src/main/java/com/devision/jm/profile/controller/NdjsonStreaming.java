@@ -0,0 +1,65 @@
+package com.devision.jm.profile.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * NDJSON Streaming
+ *
+ * Writes a stream of DTOs as newline-delimited JSON (application/x-ndjson),
+ * one document per line, directly to the response output stream.
+ *
+ * - The stream is opened inside the response body, on the async request thread,
+ *   and always closed there (releasing the MongoDB cursor)
+ * - Output is flushed every FLUSH_EVERY documents, so the first bytes reach
+ *   the client without waiting for the whole result set
+ * - An exception before the first flush is answered with its error status; a
+ *   later one propagates out of the body, and the container aborts the
+ *   committed response, so the client sees a broken transfer instead of a
+ *   short stream that looks complete
+ */
+final class NdjsonStreaming {
+
+    static final String APPLICATION_NDJSON_VALUE = MediaType.APPLICATION_NDJSON_VALUE;
+
+    private static final int FLUSH_EVERY = 50;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private NdjsonStreaming() {
+    }
+
+    static ResponseEntity<StreamingResponseBody> ok(ObjectMapper objectMapper, Supplier<? extends Stream<?>> source) {
+        // Don't let Jackson close the response stream after each document
+        ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        StreamingResponseBody body = responseStream -> {
+            OutputStream out = new BufferedOutputStream(responseStream, BUFFER_SIZE);
+            try (Stream<?> items = source.get()) {
+                Iterator<?> iterator = items.iterator();
+                int written = 0;
+                while (iterator.hasNext()) {
+                    writer.writeValue(out, iterator.next());
+                    out.write('\n');
+                    if (++written % FLUSH_EVERY == 0) {
+                        out.flush();
+                    }
+                }
+            }
+            out.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
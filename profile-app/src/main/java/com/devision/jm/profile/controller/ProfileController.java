@@ -1,8 +1,12 @@
 package com.devision.jm.profile.controller;
 
+import com.devision.jm.profile.api.external.dto.ProfileBatchRequest;
+import com.devision.jm.profile.api.external.dto.ProfileBatchResponse;
 import com.devision.jm.profile.api.external.dto.ProfileFullUpdateRequest;
 import com.devision.jm.profile.api.external.dto.ProfileResponse;
+import com.devision.jm.profile.api.external.dto.ProfileSearchPage;
 import com.devision.jm.profile.api.external.interfaces.ProfileApi;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +14,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -29,7 +34,10 @@ import java.util.List;
  * Endpoints:
  * - GET  /api/profiles/me          - Get current user's profile
  * - GET  /api/profiles/{userId}    - Get profile by user ID (for job posts)
+ * - POST /api/profiles/batch       - Get many profiles by user ID in one call
  * - GET  /api/profiles?search=     - Search profiles by email or company name
+ * - GET  /api/profiles?limit=&cursor=&search= - Paginated search/listing
+ * - GET  /api/profiles?search=     - Accept: application/x-ndjson streams all matches
  * - PUT  /api/profiles/me          - Update current user's profile
  */
 @Slf4j
@@ -39,6 +47,7 @@ import java.util.List;
 public class ProfileController {
 
     private final ProfileApi profileService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Get current user's profile
@@ -65,6 +74,19 @@ public class ProfileController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Get many profiles by user ID
+     * POST /api/profiles/batch
+     * Used by other services to resolve all companies of a page in one call
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<ProfileBatchResponse> getProfilesByUserIds(
+            @Valid @RequestBody ProfileBatchRequest request) {
+        log.info("Batch get profiles request for {} userIds", request.getUserIds().size());
+        ProfileBatchResponse response = profileService.getProfilesByUserIds(request.getUserIds());
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Search profiles by email or company name
      * GET /api/profiles?search={searchTerm}
@@ -77,6 +99,40 @@ public class ProfileController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Stream matching profiles as NDJSON (one profile per line)
+     * GET /api/profiles?search={searchTerm}  with Accept: application/x-ndjson
+     *
+     * Profiles are written as they are read from the database cursor, so
+     * time-to-first-byte and heap usage don't grow with the result size.
+     *
+     * Selected only by an explicit Accept: application/x-ndjson - without an Accept
+     * header, with a wildcard or a browser Accept, searchProfiles (JSON list) ranks higher.
+     */
+    @GetMapping(produces = NdjsonStreaming.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamProfiles(
+            @RequestParam(value = "search", required = false) String searchTerm) {
+        log.info("Stream profiles request with term: {}", searchTerm);
+        return NdjsonStreaming.ok(objectMapper, () -> profileService.streamProfiles(searchTerm));
+    }
+
+    /**
+     * Search/list profiles page by page (keyset pagination)
+     * GET /api/profiles?limit={limit}&cursor={cursor}&search={searchTerm}
+     *
+     * Pass the returned nextCursor as "cursor" to get the next page.
+     * A cursor that can't be decoded gives 400 Bad Request.
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<ProfileSearchPage> searchProfilesPage(
+            @RequestParam(value = "search", required = false) String searchTerm,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam("limit") Integer limit) {
+        log.info("Paginated search profiles request with term: {}, limit: {}", searchTerm, limit);
+        ProfileSearchPage response = profileService.searchProfiles(searchTerm, cursor, limit);
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Update current user's profile
      * PUT /api/profiles/me
@@ -0,0 +1,81 @@
+package com.devision.jm.profile.controller;
+
+import com.devision.jm.profile.api.external.dto.ShardRebalanceJobResponse;
+import com.devision.jm.profile.api.external.interfaces.ShardRebalanceApi;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Shard Rebalance Controller
+ *
+ * Operator endpoints for moving existing profiles after a country was mapped
+ * to another shard (app.sharding.regions / resolver file).
+ *
+ * Endpoints:
+ * - POST /api/admin/shards/rebalance?country=       - Start a job for a country
+ * - GET  /api/admin/shards/rebalance                - List jobs
+ * - GET  /api/admin/shards/rebalance/{jobId}        - Job progress and ETA
+ * - POST /api/admin/shards/rebalance/{jobId}/pause  - Pause after the current batch
+ * - POST /api/admin/shards/rebalance/{jobId}/resume - Resume from the checkpoint
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/shards/rebalance")
+@RequiredArgsConstructor
+public class ShardRebalanceController {
+
+    private final ShardRebalanceApi shardRebalanceService;
+
+    /**
+     * Start moving a country's profiles to the shard it is mapped to
+     * POST /api/admin/shards/rebalance?country=
+     */
+    @PostMapping
+    public ResponseEntity<ShardRebalanceJobResponse> start(@RequestParam("country") String country) {
+        log.info("Shard rebalance request for country: {}", country);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(shardRebalanceService.start(country));
+    }
+
+    /**
+     * List rebalance jobs, newest first
+     * GET /api/admin/shards/rebalance
+     */
+    @GetMapping
+    public ResponseEntity<List<ShardRebalanceJobResponse>> listJobs() {
+        return ResponseEntity.ok(shardRebalanceService.listJobs());
+    }
+
+    /**
+     * Get a job's progress
+     * GET /api/admin/shards/rebalance/{jobId}
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ShardRebalanceJobResponse> getJob(@PathVariable("jobId") String jobId) {
+        return ResponseEntity.ok(shardRebalanceService.getJob(jobId));
+    }
+
+    /**
+     * Pause a running job
+     * POST /api/admin/shards/rebalance/{jobId}/pause
+     */
+    @PostMapping("/{jobId}/pause")
+    public ResponseEntity<ShardRebalanceJobResponse> pause(@PathVariable("jobId") String jobId) {
+        log.info("Shard rebalance pause request for job: {}", jobId);
+        return ResponseEntity.ok(shardRebalanceService.pause(jobId));
+    }
+
+    /**
+     * Resume a paused or failed job
+     * POST /api/admin/shards/rebalance/{jobId}/resume
+     */
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<ShardRebalanceJobResponse> resume(@PathVariable("jobId") String jobId) {
+        log.info("Shard rebalance resume request for job: {}", jobId);
+        return ResponseEntity.ok(shardRebalanceService.resume(jobId));
+    }
+}
@@ -0,0 +1,144 @@
+package com.devision.jm.profile.controller;
+
+import com.devision.jm.profile.api.external.dto.EventResponse;
+import com.devision.jm.profile.api.external.interfaces.EventApi;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Content negotiation of GET /api/events/me and /api/events/company/{companyId}:
+ * the JSON list unless the client explicitly asks for NDJSON, which is written
+ * one event per line and closes the service's stream.
+ */
+class EventControllerTest {
+
+    private static final String BROWSER_ACCEPT =
+            "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger closedStreams = new AtomicInteger();
+
+    private EventApi eventService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        eventService = mock(EventApi.class);
+        List<EventResponse> events = List.of(event("e1"), event("e2"));
+        when(eventService.getEventsByCompanyId(anyString())).thenReturn(events);
+        when(eventService.getActiveEventsByCompanyId(anyString())).thenReturn(events);
+        when(eventService.streamEventsByCompanyId(anyString()))
+                .thenAnswer(invocation -> events.stream().onClose(closedStreams::incrementAndGet));
+        when(eventService.streamActiveEventsByCompanyId(anyString()))
+                .thenAnswer(invocation -> events.stream().onClose(closedStreams::incrementAndGet));
+        mockMvc = MockMvcBuilders.standaloneSetup(new EventController(eventService, objectMapper))
+                .build();
+    }
+
+    @Test
+    void myEventsWithoutAcceptReturnJsonList() throws Exception {
+        mockMvc.perform(get("/api/events/me").header("X-User-Id", "c1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[1].eventId").value("e2"));
+        verify(eventService).getActiveEventsByCompanyId("c1");
+        verify(eventService, never()).streamActiveEventsByCompanyId(anyString());
+    }
+
+    @Test
+    void companyEventsWithBrowserAcceptReturnJsonList() throws Exception {
+        mockMvc.perform(get("/api/events/company/c1").header(HttpHeaders.ACCEPT, BROWSER_ACCEPT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].eventId").value("e1"));
+        verify(eventService, never()).streamActiveEventsByCompanyId(anyString());
+    }
+
+    @Test
+    void myEventsWithNdjsonAcceptStreamOneEventPerLine() throws Exception {
+        String body = stream(get("/api/events/me").header("X-User-Id", "c1").param("includeAll", "true"));
+
+        assertEquals(List.of("e1", "e2"), eventIds(body));
+        assertEquals(1, closedStreams.get());
+        verify(eventService).streamEventsByCompanyId("c1");
+        verify(eventService, never()).getEventsByCompanyId(anyString());
+    }
+
+    @Test
+    void companyEventsWithNdjsonAcceptStreamOneEventPerLine() throws Exception {
+        String body = stream(get("/api/events/company/c1"));
+
+        assertEquals(List.of("e1", "e2"), eventIds(body));
+        assertEquals(1, closedStreams.get());
+        verify(eventService).streamActiveEventsByCompanyId("c1");
+        verify(eventService, never()).getActiveEventsByCompanyId(anyString());
+    }
+
+    @Test
+    void emptyNdjsonStreamIsStillClosed() throws Exception {
+        when(eventService.streamActiveEventsByCompanyId("c2"))
+                .thenAnswer(invocation -> Stream.<EventResponse>empty().onClose(closedStreams::incrementAndGet));
+
+        String body = stream(get("/api/events/company/c2"));
+
+        assertEquals("", body);
+        assertEquals(1, closedStreams.get());
+    }
+
+    private String stream(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder.accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+
+    /**
+     * Every line of the body must be a complete JSON object on its own.
+     */
+    private List<String> eventIds(String body) throws Exception {
+        assertEquals('\n', body.charAt(body.length() - 1));
+        List<String> ids = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            JsonNode event = objectMapper.readTree(line);
+            assertTrue(event.isObject());
+            ids.add(event.get("eventId").asText());
+        }
+        return ids;
+    }
+
+    private static EventResponse event(String eventId) {
+        return EventResponse.builder().eventId(eventId).companyId("c1").title("Event " + eventId).status("ACTIVE").build();
+    }
+}
@@ -0,0 +1,104 @@
+package com.devision.jm.profile.controller;
+
+import com.devision.jm.profile.api.external.dto.ProfileResponse;
+import com.devision.jm.profile.api.external.interfaces.ProfileApi;
+import jakarta.servlet.ServletException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Content negotiation of GET /api/profiles?search=: the JSON list unless the
+ * client explicitly asks for NDJSON. An IllegalArgumentException from the
+ * service is not turned into a 400 (malformed cursors are, see SearchCursorTest).
+ */
+class ProfileControllerTest {
+
+    private static final String BROWSER_ACCEPT =
+            "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8";
+
+    private ProfileApi profileService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        profileService = mock(ProfileApi.class);
+        ProfileResponse profile = ProfileResponse.builder().userId("u1").companyName("Acme").build();
+        when(profileService.searchProfiles(anyString())).thenReturn(List.of(profile));
+        when(profileService.streamProfiles(anyString())).thenAnswer(invocation -> Stream.of(profile));
+        mockMvc = MockMvcBuilders.standaloneSetup(new ProfileController(profileService, new ObjectMapper()))
+                .build();
+    }
+
+    @Test
+    void searchWithoutAcceptReturnsJsonList() throws Exception {
+        mockMvc.perform(get("/api/profiles").param("search", "acme"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].userId").value("u1"));
+        verify(profileService, never()).streamProfiles(anyString());
+    }
+
+    @Test
+    void searchWithWildcardAcceptReturnsJsonList() throws Exception {
+        mockMvc.perform(get("/api/profiles").param("search", "acme").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].userId").value("u1"));
+        verify(profileService, never()).streamProfiles(anyString());
+    }
+
+    @Test
+    void searchWithBrowserAcceptReturnsJsonList() throws Exception {
+        mockMvc.perform(get("/api/profiles").param("search", "acme").header(HttpHeaders.ACCEPT, BROWSER_ACCEPT))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].userId").value("u1"));
+        verify(profileService, never()).streamProfiles(anyString());
+    }
+
+    @Test
+    void searchWithNdjsonAcceptStreams() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/profiles").param("search", "acme")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON));
+        verify(profileService).streamProfiles("acme");
+        verify(profileService, never()).searchProfiles(anyString());
+    }
+
+    @Test
+    void otherIllegalArgumentsAreNotReportedAsBadRequests() {
+        when(profileService.searchProfiles("acme", null, 20))
+                .thenThrow(new IllegalArgumentException("Unsupported sort"));
+
+        ServletException e = assertThrows(ServletException.class,
+                () -> mockMvc.perform(get("/api/profiles").param("search", "acme").param("limit", "20")));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+    }
+}
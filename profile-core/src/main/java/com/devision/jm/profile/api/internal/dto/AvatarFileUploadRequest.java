@@ -1,5 +1,6 @@
 package com.devision.jm.profile.api.internal.dto;
 
+import com.devision.jm.profile.media.InlineMedia;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -12,6 +13,9 @@ import lombok.NoArgsConstructor;
  * to request avatar upload for a user profile.
  *
  * Topic: avatar-file-upload
+ *
+ * The avatar is carried either inline (avatarBase64) or, with
+ * app.media.transport=claim-check, as a MediaReference (avatarRef).
  */
 @Data
 @Builder
@@ -25,9 +29,9 @@ public class AvatarFileUploadRequest {
     private String userId;
 
     /**
-     * Avatar image as base64 encoded string
+     * Avatar image as base64 encoded string (streamed from the upload on serialization)
      */
-    private String avatarBase64;
+    private InlineMedia avatarBase64;
 
     /**
      * Avatar image original filename
@@ -38,4 +42,9 @@ public class AvatarFileUploadRequest {
      * Avatar image content type (e.g., image/jpeg)
      */
     private String avatarContentType;
+
+    /**
+     * Avatar claim check (claim-check transport)
+     */
+    private MediaReference avatarRef;
 }
@@ -0,0 +1,53 @@
+package com.devision.jm.profile.api.internal.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Event File Chunk (Internal Kafka Event)
+ *
+ * One fixed-size piece of a chunked media transfer (see EventFileChunkManifest).
+ *
+ * Topic: event-file-chunks (key: eventId)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventFileChunk {
+
+    public static final String TYPE = "CHUNK";
+
+    /**
+     * Record type discriminator on the chunk topic (always CHUNK)
+     */
+    @Builder.Default
+    private String type = TYPE;
+
+    /**
+     * Transfer ID from the manifest
+     */
+    private String mediaId;
+
+    /**
+     * Event ID the file belongs to
+     */
+    private String eventId;
+
+    /**
+     * Position of this chunk, starting at 0
+     */
+    private int sequence;
+
+    /**
+     * Chunk bytes (base64 in JSON)
+     */
+    private byte[] data;
+
+    /**
+     * Hex encoded SHA-256 of this chunk's bytes
+     */
+    private String sha256;
+}
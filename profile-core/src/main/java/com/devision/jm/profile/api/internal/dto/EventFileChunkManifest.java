@@ -0,0 +1,80 @@
+package com.devision.jm.profile.api.internal.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Event File Chunk Manifest (Internal Kafka Event)
+ *
+ * First record of a chunked media transfer, sent from Profile Service to
+ * File Service. Describes the file; the bytes follow as EventFileChunk records
+ * with the same mediaId.
+ *
+ * Topic: event-file-chunks (key: eventId, so a transfer stays in order on one partition)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventFileChunkManifest {
+
+    public static final String TYPE = "MANIFEST";
+
+    /**
+     * Record type discriminator on the chunk topic (always MANIFEST)
+     */
+    @Builder.Default
+    private String type = TYPE;
+
+    /**
+     * Transfer ID, also listed in Event.chunkedMediaIds
+     */
+    private String mediaId;
+
+    /**
+     * Event ID the file belongs to
+     */
+    private String eventId;
+
+    /**
+     * Company ID (owner of the event)
+     */
+    private String companyId;
+
+    /**
+     * Role of the file in the event: COVER_IMAGE, IMAGE or VIDEO
+     */
+    private String role;
+
+    /**
+     * Original filename
+     */
+    private String filename;
+
+    /**
+     * Content type (e.g., video/mp4)
+     */
+    private String contentType;
+
+    /**
+     * Total size in bytes
+     */
+    private long totalSize;
+
+    /**
+     * Size of every chunk except possibly the last
+     */
+    private int chunkSize;
+
+    /**
+     * Number of chunks (sequence numbers 0..chunkCount-1)
+     */
+    private int chunkCount;
+
+    /**
+     * Hex encoded SHA-256 of the whole file, to verify the reassembly
+     */
+    private String sha256;
+}
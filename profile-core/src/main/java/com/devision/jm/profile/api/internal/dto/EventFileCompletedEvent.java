@@ -70,4 +70,11 @@ public class EventFileCompletedEvent {
      * S3 key for video (for deletion)
      */
     private String videoKey;
+
+    /**
+     * Chunked transfers (EventFileChunkManifest.mediaId) reassembled and verified
+     * by File Service. The event only becomes ACTIVE once every id in
+     * Event.chunkedMediaIds has been acknowledged.
+     */
+    private List<String> reassembledMediaIds;
 }
@@ -1,5 +1,6 @@
 package com.devision.jm.profile.api.internal.dto;
 
+import com.devision.jm.profile.media.InlineMedia;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,6 +15,12 @@ import java.util.List;
  * to request file uploads for an event.
  *
  * Topic: event-file-upload
+ *
+ * Media is carried either inline (xxxBase64 fields) or, with
+ * app.media.transport=claim-check, as MediaReferences (xxxRef fields).
+ * With app.media.transport=chunked, files above the chunking threshold are
+ * xxxRef fields pointing at a chunked transfer, smaller ones stay inline
+ * to blobs in the staging store. Exactly one of the two is set per file.
  */
 @Data
 @Builder
@@ -32,9 +39,9 @@ public class EventFileUploadRequest {
     private String companyId;
 
     /**
-     * Cover image as base64 encoded string
+     * Cover image as base64 encoded string (streamed from the upload on serialization)
      */
-    private String coverImageBase64;
+    private InlineMedia coverImageBase64;
 
     /**
      * Cover image original filename
@@ -46,15 +53,20 @@ public class EventFileUploadRequest {
      */
     private String coverImageContentType;
 
+    /**
+     * Cover image claim check (claim-check transport)
+     */
+    private MediaReference coverImageRef;
+
     /**
      * Additional images as base64 encoded strings
      */
     private List<FileData> additionalImages;
 
     /**
-     * Video as base64 encoded string (optional)
+     * Video as base64 encoded string (optional, streamed from the upload on serialization)
      */
-    private String videoBase64;
+    private InlineMedia videoBase64;
 
     /**
      * Video original filename
@@ -66,6 +78,11 @@ public class EventFileUploadRequest {
      */
     private String videoContentType;
 
+    /**
+     * Video claim check (claim-check transport)
+     */
+    private MediaReference videoRef;
+
     /**
      * Nested class for additional image data
      */
@@ -74,8 +91,9 @@ public class EventFileUploadRequest {
     @NoArgsConstructor
     @AllArgsConstructor
     public static class FileData {
-        private String base64;
+        private InlineMedia base64;
         private String filename;
         private String contentType;
+        private MediaReference ref;
     }
 }
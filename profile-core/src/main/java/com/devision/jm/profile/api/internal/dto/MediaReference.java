@@ -0,0 +1,49 @@
+package com.devision.jm.profile.api.internal.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Media Reference (Internal Kafka Event payload)
+ *
+ * Claim check for a media file staged in the blob staging store.
+ * Sent instead of the base64 bytes when app.media.transport=claim-check;
+ * the File Service fetches the bytes from the uri and verifies them.
+ *
+ * With app.media.transport=chunked, large files are referenced as
+ * kafka-chunks://{topic}/{mediaId}: the bytes arrive on that topic as an
+ * EventFileChunkManifest followed by EventFileChunk records.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaReference {
+
+    /**
+     * Location of the staged bytes (e.g. file:///..., s3://bucket/key, kafka-chunks://topic/mediaId)
+     */
+    private String uri;
+
+    /**
+     * Size in bytes
+     */
+    private long size;
+
+    /**
+     * Hex encoded SHA-256 of the bytes
+     */
+    private String sha256;
+
+    /**
+     * Original filename
+     */
+    private String filename;
+
+    /**
+     * Content type (e.g., image/jpeg)
+     */
+    private String contentType;
+}
@@ -0,0 +1,50 @@
+package com.devision.jm.profile.api.internal.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Profile Cache Invalidation Event (Internal Kafka Event)
+ *
+ * Broadcast between Profile Service replicas after a profile write so that
+ * every node drops its cached copy if it is older than the written version.
+ *
+ * Topic: profile.cache.invalidation (compacted, keyed by userId)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProfileCacheInvalidationEvent {
+
+    /**
+     * User ID of the written profile (also the record key)
+     */
+    private String userId;
+
+    /**
+     * BaseEntity.version of the persisted document.
+     * Null means the profile was deleted - drop it regardless of version.
+     */
+    private Long version;
+
+    /**
+     * Subscription type after the write (FREE/PREMIUM), only set when the write
+     * changed the subscription; null = subscription unchanged
+     */
+    private String subscriptionType;
+
+    /**
+     * Subscription end date after the write (with subscriptionType)
+     */
+    private LocalDateTime subscriptionEndDate;
+
+    /**
+     * Timestamp of the write
+     */
+    private LocalDateTime occurredAt;
+}
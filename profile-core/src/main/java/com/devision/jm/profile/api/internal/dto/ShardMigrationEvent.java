@@ -85,6 +85,29 @@ public class ShardMigrationEvent {
      */
     private LocalDateTime completedAt;
 
+    // ==================== Migration Metrics (COMPLETED) ====================
+
+    /**
+     * Documents moved between shards: the profile plus its company's events
+     * (0 when the new country maps to the same shard)
+     */
+    private long docsMoved;
+
+    /**
+     * Company events moved along with the profile
+     */
+    private long eventsMoved;
+
+    /**
+     * BSON bytes moved (the profile without this event, plus its events)
+     */
+    private long bytesMoved;
+
+    /**
+     * Milliseconds from initiation until the profile copy was written
+     */
+    private long durationMs;
+
     /**
      * Migration status enum
      */
@@ -0,0 +1,345 @@
+package com.devision.jm.profile.cache;
+
+import com.devision.jm.profile.api.external.dto.ApplicantSearchProfileDto;
+import com.devision.jm.profile.api.external.dto.ProfileResponse;
+import com.devision.jm.profile.model.enums.SubscriptionType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Profile Cache
+ *
+ * Bounded, size-weighted in-process read-through cache of ProfileResponse
+ * in front of ProfileRepository for the hot read paths
+ * (GET /api/profiles/me, GET /api/profiles/{userId}).
+ *
+ * Keys:
+ * - Entries are stored by userId (the only key writers know for sure)
+ * - Profile id and email are aliases pointing at a userId; an alias hit is
+ *   only trusted if the cached entry still carries that id/email
+ *
+ * Invalidation:
+ * - Every write path calls evict(userId, version) right after persisting the profile
+ * - The eviction is broadcast to the other replicas (ProfileCacheInvalidationPublisher),
+ *   which drop their entry only if it is older than the written version
+ * - With app.change-streams.enabled, ProfileCacheChangeListener also evicts
+ *   from the committed writes on the profiles collection
+ * - Entries are only added by loads by userId, which run inside the cache's
+ *   atomic compute, so an evict that races with a load cannot leave the
+ *   pre-write value behind. Lookups by email load outside it and only record
+ *   the alias; the entry is cached by the next lookup by userId
+ * - expire-after-write bounds staleness for anything that slips through
+ * - subscriptionActive and daysRemaining depend on the time of the load, so a
+ *   PREMIUM entry also expires when its daysRemaining would change (and at the
+ *   subscription end)
+ *
+ * Metrics (actuator /actuator/metrics):
+ * - cache.gets{cache=profiles,result=hit|miss}, cache.evictions, cache.size
+ */
+@Slf4j
+@Component
+public class ProfileCache {
+
+    public static final String CACHE_NAME = "profiles";
+
+    // Rough per-object overheads used by the weigher (header + fields + references)
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private final ProfileCacheInvalidationPublisher invalidationPublisher;
+    private final ConcurrentStatsCounter statsCounter = new ConcurrentStatsCounter();
+    private final Cache<String, ProfileResponse> profilesByUserId;
+    private final Cache<String, String> userIdById;
+    private final Cache<String, String> userIdByEmail;
+
+    public ProfileCache(
+            MeterRegistry meterRegistry,
+            ProfileCacheInvalidationPublisher invalidationPublisher,
+            @Value("${app.cache.profiles.max-weight-bytes:67108864}") long maxWeightBytes,
+            @Value("${app.cache.profiles.max-aliases:200000}") long maxAliases,
+            @Value("${app.cache.profiles.expire-after-write:PT10M}") Duration expireAfterWrite) {
+
+        this.invalidationPublisher = invalidationPublisher;
+        this.profilesByUserId = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher(ProfileCache::weigh)
+                .expireAfter(new WriteExpiry(expireAfterWrite))
+                .recordStats(() -> statsCounter)
+                .build();
+        this.userIdById = Caffeine.newBuilder()
+                .maximumSize(maxAliases)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+        this.userIdByEmail = Caffeine.newBuilder()
+                .maximumSize(maxAliases)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, profilesByUserId, CACHE_NAME);
+        log.info("Profile cache initialized. maxWeightBytes={}, expireAfterWrite={}",
+                maxWeightBytes, expireAfterWrite);
+    }
+
+    // ==================== Read-through ====================
+
+    /**
+     * Get a profile by userId, loading it on a miss.
+     * Exceptions thrown by the loader (e.g. not found) propagate and nothing is cached.
+     */
+    public ProfileResponse getByUserId(String userId, Supplier<ProfileResponse> loader) {
+        ProfileResponse response = profilesByUserId.get(userId, key -> loader.get());
+        remember(response);
+        return response;
+    }
+
+    /**
+     * Cached profiles for the given userIds; userIds that aren't cached are absent.
+     * Used by batch lookups, which load the misses themselves and don't populate
+     * the cache (a bulk put can't be made atomic with a concurrent evict).
+     */
+    public Map<String, ProfileResponse> getAllPresent(Collection<String> userIds) {
+        return profilesByUserId.getAllPresent(userIds);
+    }
+
+    /**
+     * Get a profile by its MongoDB _id, loading it on a miss.
+     */
+    public ProfileResponse getById(String profileId, Supplier<ProfileResponse> loader) {
+        String userId = userIdById.getIfPresent(profileId);
+        if (userId == null) {
+            // First lookup by this id: learn the alias, the entry is cached on the next call
+            statsCounter.recordMisses(1);
+            ProfileResponse response = loader.get();
+            remember(response);
+            return response;
+        }
+
+        ProfileResponse response = profilesByUserId.get(userId, key -> loader.get());
+        if (response != null && !profileId.equals(response.getId())) {
+            profilesByUserId.invalidate(userId);
+            response = loader.get();
+        }
+        remember(response);
+        return response;
+    }
+
+    /**
+     * Get a profile by email (case-insensitive), loading it on a miss.
+     * Only returns entries cached by getByUserId; its own loads are not cached.
+     */
+    public ProfileResponse getByEmail(String email, Supplier<ProfileResponse> loader) {
+        String emailKey = normalizeEmail(email);
+        String userId = userIdByEmail.getIfPresent(emailKey);
+        if (userId == null) {
+            statsCounter.recordMisses(1);
+            ProfileResponse response = loader.get();
+            remember(response);
+            return response;
+        }
+
+        ProfileResponse cached = profilesByUserId.getIfPresent(userId);
+        if (cached != null && emailKey.equals(normalizeEmail(cached.getEmail()))) {
+            return cached;
+        }
+
+        // Not loaded inside the compute of userId, so not cached: the load can race
+        // with a write, and after an email change the old email may now belong to
+        // another user
+        ProfileResponse response = loader.get();
+        if (response == null || !userId.equals(response.getUserId())) {
+            // Email changed since the alias was recorded - the alias is stale
+            userIdByEmail.invalidate(emailKey);
+        } else if (cached != null) {
+            // The cached entry carries another email than the stored profile - outdated
+            profilesByUserId.invalidate(userId);
+        }
+        remember(response);
+        return response;
+    }
+
+    // ==================== Invalidation ====================
+
+    /**
+     * Evict the cached profile after a write and tell the other replicas.
+     * Must be called by every code path that writes a profile.
+     *
+     * @param userId  owner of the written profile
+     * @param version BaseEntity.version of the persisted document
+     */
+    public void evict(String userId, Long version) {
+        if (userId == null) {
+            return;
+        }
+        profilesByUserId.invalidate(userId);
+        log.debug("Evicted profile cache entry for userId: {}, version: {}", userId, version);
+        invalidationPublisher.publish(userId, version);
+    }
+
+    /**
+     * Evict the cached profile after a write that changed the subscription.
+     * The broadcast carries the new subscription, so other replicas update their
+     * PremiumEntitlementIndex without reading the profile.
+     */
+    public void evict(String userId, Long version, SubscriptionType subscriptionType,
+                      LocalDateTime subscriptionEndDate) {
+        if (userId == null) {
+            return;
+        }
+        profilesByUserId.invalidate(userId);
+        log.debug("Evicted profile cache entry for userId: {}, version: {}", userId, version);
+        invalidationPublisher.publish(userId, version, subscriptionType, subscriptionEndDate);
+    }
+
+    /**
+     * Evict the cached profile after a delete (or a write whose version is unknown)
+     * and tell the other replicas to drop it unconditionally.
+     */
+    public void evict(String userId) {
+        evict(userId, null);
+    }
+
+    /**
+     * Apply an invalidation broadcast by another replica.
+     * Only drops the local entry if it is older than the broadcast version;
+     * a null version (delete) always drops it.
+     */
+    public void evictIfOlder(String userId, Long version) {
+        if (userId == null) {
+            return;
+        }
+        profilesByUserId.asMap().computeIfPresent(userId, (key, cached) ->
+                version == null || cached.getVersion() == null || cached.getVersion() < version
+                        ? null
+                        : cached);
+    }
+
+    /**
+     * Evict locally by profile _id (e.g. a delete seen on the change stream,
+     * which only carries the document key). Not broadcast.
+     */
+    public void evictByProfileId(String profileId) {
+        String userId = userIdById.getIfPresent(profileId);
+        if (userId != null) {
+            profilesByUserId.invalidate(userId);
+        }
+    }
+
+    /**
+     * Drop every cached profile on this node. Not broadcast.
+     */
+    public void evictAll() {
+        profilesByUserId.invalidateAll();
+        log.info("Evicted all profile cache entries");
+    }
+
+    // ==================== Helpers ====================
+
+    private void remember(ProfileResponse response) {
+        if (response == null || response.getUserId() == null) {
+            return;
+        }
+        if (response.getId() != null) {
+            userIdById.put(response.getId(), response.getUserId());
+        }
+        if (response.getEmail() != null) {
+            userIdByEmail.put(normalizeEmail(response.getEmail()), response.getUserId());
+        }
+    }
+
+    /**
+     * expire-after-write, shortened for PREMIUM profiles to the moment their
+     * daysRemaining changes (whole days before the subscription end)
+     */
+    static Duration timeToLive(ProfileResponse response, Duration expireAfterWrite) {
+        if (!"PREMIUM".equals(response.getSubscriptionType()) || response.getSubscriptionEndDate() == null) {
+            return expireAfterWrite;
+        }
+        Duration untilEnd = Duration.between(LocalDateTime.now(), response.getSubscriptionEndDate());
+        if (untilEnd.isNegative()) {
+            return expireAfterWrite;
+        }
+        Duration untilNextDay = Duration.ofNanos(untilEnd.toNanos() % Duration.ofDays(1).toNanos());
+        return untilNextDay.compareTo(expireAfterWrite) < 0 ? untilNextDay : expireAfterWrite;
+    }
+
+    /**
+     * Expire timeToLive() after the entry was written
+     */
+    private record WriteExpiry(Duration expireAfterWrite) implements Expiry<String, ProfileResponse> {
+
+        @Override
+        public long expireAfterCreate(String userId, ProfileResponse response, long currentTime) {
+            return timeToLive(response, expireAfterWrite).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String userId, ProfileResponse response, long currentTime,
+                                      long currentDuration) {
+            return timeToLive(response, expireAfterWrite).toNanos();
+        }
+
+        @Override
+        public long expireAfterRead(String userId, ProfileResponse response, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Approximate retained size of a cached ProfileResponse in bytes.
+     * Dominated by the free-text fields (aboutUs, whoWeAreLookingFor).
+     */
+    static int weigh(String userId, ProfileResponse response) {
+        long bytes = ENTRY_OVERHEAD_BYTES + sizeOf(userId);
+        bytes += sizeOf(response.getId()) + sizeOf(response.getUserId()) + sizeOf(response.getEmail());
+        bytes += sizeOf(response.getCompanyName()) + sizeOf(response.getAvatarUrl()) + sizeOf(response.getLogoUrl());
+        bytes += sizeOf(response.getAboutUs()) + sizeOf(response.getWhoWeAreLookingFor());
+        bytes += sizeOf(response.getCountry()) + sizeOf(response.getCity()) + sizeOf(response.getStreetAddress());
+        bytes += sizeOf(response.getPhoneNumber()) + sizeOf(response.getSubscriptionType());
+        bytes += sizeOf(response.getAuthProvider());
+
+        ApplicantSearchProfileDto searchProfile = response.getApplicantSearchProfile();
+        if (searchProfile != null) {
+            bytes += ENTRY_OVERHEAD_BYTES;
+            bytes += sizeOf(searchProfile.getDesiredTechnicalSkills());
+            bytes += sizeOf(searchProfile.getDesiredEmploymentStatus());
+            bytes += sizeOf(searchProfile.getDesiredCountry()) + sizeOf(searchProfile.getSalaryCurrency());
+            bytes += sizeOf(searchProfile.getDesiredEducationDegree());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long sizeOf(String value) {
+        return value == null ? 0 : STRING_OVERHEAD_BYTES + 2L * value.length();
+    }
+
+    private static long sizeOf(List<String> values) {
+        if (values == null) {
+            return 0;
+        }
+        long bytes = STRING_OVERHEAD_BYTES;
+        for (String value : values) {
+            bytes += sizeOf(value);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,58 @@
+package com.devision.jm.profile.cache;
+
+import com.devision.jm.profile.changestream.ChangeStreamListener;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Profile Cache Change Listener
+ *
+ * Keeps ProfileCache in line with the committed writes on the "profiles"
+ * collection, including writes that bypass the service's own evict calls
+ * (manual fixes, other services, future writers).
+ *
+ * Only active when app.change-streams.enabled=true.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.change-streams.enabled", havingValue = "true")
+public class ProfileCacheChangeListener implements ChangeStreamListener {
+
+    private final ProfileCache profileCache;
+
+    @Override
+    public String collection() {
+        return "profiles";
+    }
+
+    @Override
+    public void onChange(ChangeStreamDocument<Document> change) {
+        Document profile = change.getFullDocument();
+        if (profile != null && profile.getString("user_id") != null) {
+            Number version = profile.get("version", Number.class);
+            profileCache.evictIfOlder(profile.getString("user_id"), version != null ? version.longValue() : null);
+            return;
+        }
+
+        // Deletes (and updates of since-deleted documents) only carry the _id
+        if (change.getDocumentKey() != null) {
+            BsonValue id = change.getDocumentKey().get("_id");
+            if (id != null) {
+                profileCache.evictByProfileId(id.isObjectId()
+                        ? id.asObjectId().getValue().toHexString()
+                        : id.asString().getValue());
+            }
+        }
+    }
+
+    @Override
+    public void onReset() {
+        profileCache.evictAll();
+    }
+}
@@ -0,0 +1,82 @@
+package com.devision.jm.profile.cache;
+
+import com.devision.jm.profile.api.internal.dto.ProfileCacheInvalidationEvent;
+import com.devision.jm.profile.messaging.KafkaSendTracker;
+import com.devision.jm.profile.model.enums.SubscriptionType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Profile Cache Invalidation Publisher
+ *
+ * Broadcasts profile writes to the other Profile Service replicas so their
+ * ProfileCache does not keep serving stale subscription/avatar data.
+ *
+ * The topic is compacted and keyed by userId, so it only ever holds the
+ * latest version per profile. Replicas consume it with a per-node group
+ * (see KafkaConsumerConfig#cacheInvalidationListenerContainerFactory).
+ *
+ * Topic: profile.cache.invalidation
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProfileCacheInvalidationPublisher {
+
+    // KafkaTemplate only exists when kafka.enabled=true; the cache itself must work without it
+    private final ObjectProvider<KafkaTemplate<String, String>> kafkaTemplateProvider;
+    private final ObjectMapper objectMapper;
+    private final KafkaSendTracker sendTracker;
+
+    @Value("${kafka.topics.profile-cache-invalidation:profile.cache.invalidation}")
+    private String invalidationTopic;
+
+    @Value("${kafka.enabled:false}")
+    private boolean kafkaEnabled;
+
+    /**
+     * Publish an invalidation for a profile write (version != null) or delete (version == null).
+     * Failures are logged only - expire-after-write still bounds staleness on other nodes.
+     */
+    public void publish(String userId, Long version) {
+        publish(userId, version, null, null);
+    }
+
+    /**
+     * Publish an invalidation for a write that changed the subscription; other replicas
+     * apply it to their PremiumEntitlementIndex from the broadcast.
+     */
+    public void publish(String userId, Long version, SubscriptionType subscriptionType,
+                        LocalDateTime subscriptionEndDate) {
+        if (!kafkaEnabled) {
+            return;
+        }
+        KafkaTemplate<String, String> kafkaTemplate = kafkaTemplateProvider.getIfAvailable();
+        if (kafkaTemplate == null) {
+            return;
+        }
+
+        try {
+            ProfileCacheInvalidationEvent event = ProfileCacheInvalidationEvent.builder()
+                    .userId(userId)
+                    .version(version)
+                    .subscriptionType(subscriptionType != null ? subscriptionType.name() : null)
+                    .subscriptionEndDate(subscriptionType != null ? subscriptionEndDate : null)
+                    .occurredAt(LocalDateTime.now())
+                    .build();
+
+            sendTracker.send(kafkaTemplate, invalidationTopic, userId, objectMapper.writeValueAsString(event));
+            log.debug("Published profile cache invalidation. userId={}, version={}", userId, version);
+        } catch (Exception e) {
+            log.error("Failed to publish profile cache invalidation. userId={}, error={}",
+                    userId, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.devision.jm.profile.changestream;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.Document;
+
+/**
+ * Change Stream Listener
+ *
+ * Implemented by local caches and projections that want to be fed from the
+ * committed writes of a MongoDB collection instead of from hand-wired
+ * invalidation calls in every writer.
+ *
+ * Beans implementing this interface are picked up by MongoChangeStreamTailer
+ * when app.change-streams.enabled=true.
+ */
+public interface ChangeStreamListener {
+
+    /**
+     * Collection to receive changes for (e.g. "profiles", "events")
+     */
+    String collection();
+
+    /**
+     * Called once per committed change, in commit order for the collection.
+     * For inserts/updates/replaces the full document is looked up by the tailer.
+     */
+    void onChange(ChangeStreamDocument<Document> change);
+
+    /**
+     * Called when the stream had to restart without its resume token
+     * (history lost / invalid token), i.e. some changes may have been missed.
+     * Caches should drop everything they hold for the collection.
+     */
+    default void onReset() {
+    }
+}
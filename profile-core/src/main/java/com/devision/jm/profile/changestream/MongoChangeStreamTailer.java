@@ -0,0 +1,283 @@
+package com.devision.jm.profile.changestream;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.devision.jm.profile.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * MongoDB Change Stream Tailer
+ *
+ * Tails the change streams of every collection that has a ChangeStreamListener
+ * (e.g. "profiles", "events") and feeds the committed writes to those listeners.
+ * This way local caches and projections follow the database itself, no matter
+ * whether the write came from a controller, a Kafka consumer or shard migration.
+ *
+ * Requires MongoDB to run as a replica set (change streams are oplog based),
+ * so it is opt-in via app.change-streams.enabled=true.
+ *
+ * Sharding:
+ * - Every shard has its own oplog, so each collection is tailed once per shard
+ *   (ShardRouter.shards()) and listeners get the changes of all shards
+ * - The default shard keeps the plain collection as resume token key, the
+ *   other shards use "collection@shard"
+ *
+ * Resume:
+ * - The last resume token per collection is checkpointed in ResumeTokenStore
+ * - On restart the stream resumes after that token
+ * - If the token is no longer in the oplog, the stream restarts from "now"
+ *   and listeners get onReset() so they can drop what they hold
+ *
+ * Metrics:
+ * - mongo.changestream.lag{collection,shard}    - ms between commit and dispatch (0 when idle)
+ * - mongo.changestream.events{collection,shard} - number of changes dispatched
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.change-streams.enabled", havingValue = "true")
+public class MongoChangeStreamTailer implements SmartLifecycle {
+
+    // ChangeStreamHistoryLost, ChangeStreamFatalError, InvalidResumeToken
+    private static final Set<Integer> NON_RESUMABLE_ERROR_CODES = Set.of(286, 280, 260);
+
+    private final ShardRouter shardRouter;
+    private final ResumeTokenStore resumeTokenStore;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, List<ChangeStreamListener>> listenersByCollection;
+    private final String tailerName;
+    private final Duration maxAwait;
+    private final Duration checkpointInterval;
+    private final Duration retryBackoff;
+
+    private final List<CollectionTail> tails = new ArrayList<>();
+    private volatile boolean running;
+
+    public MongoChangeStreamTailer(
+            ShardRouter shardRouter,
+            ResumeTokenStore resumeTokenStore,
+            MeterRegistry meterRegistry,
+            List<ChangeStreamListener> listeners,
+            @Value("${app.change-streams.name:${spring.application.name:profile-service}}") String tailerName,
+            @Value("${app.change-streams.max-await:PT1S}") Duration maxAwait,
+            @Value("${app.change-streams.checkpoint-interval:PT5S}") Duration checkpointInterval,
+            @Value("${app.change-streams.retry-backoff:PT5S}") Duration retryBackoff) {
+        this.shardRouter = shardRouter;
+        this.resumeTokenStore = resumeTokenStore;
+        this.meterRegistry = meterRegistry;
+        this.listenersByCollection = listeners.stream()
+                .collect(Collectors.groupingBy(ChangeStreamListener::collection));
+        this.tailerName = tailerName;
+        this.maxAwait = maxAwait;
+        this.checkpointInterval = checkpointInterval;
+        this.retryBackoff = retryBackoff;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (String shard : shardRouter.shards()) {
+            listenersByCollection.forEach((collection, listeners) -> {
+                CollectionTail tail = new CollectionTail(shard, collection, listeners);
+                tails.add(tail);
+                tail.start();
+            });
+        }
+        log.info("Change stream tailer started. name={}, collections={}, shards={}",
+                tailerName, listenersByCollection.keySet(), shardRouter.shards());
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        tails.forEach(CollectionTail::close);
+        tails.clear();
+        log.info("Change stream tailer stopped. name={}", tailerName);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * One tailing thread per collection and shard, so a slow listener on one
+     * collection never delays the others.
+     */
+    private final class CollectionTail implements Runnable {
+
+        private final String shard;
+        private final String collection;
+        private final MongoTemplate template;
+        // Resume token key and thread name
+        private final String streamName;
+        private final List<ChangeStreamListener> listeners;
+        private final AtomicLong lagMillis = new AtomicLong();
+        private final Counter dispatched;
+
+        private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+        private Thread thread;
+
+        private CollectionTail(String shard, String collection, List<ChangeStreamListener> listeners) {
+            this.shard = shard;
+            this.collection = collection;
+            this.template = shardRouter.template(shard);
+            this.streamName = shard.equals(shardRouter.defaultShard()) ? collection : collection + "@" + shard;
+            this.listeners = listeners;
+            Gauge.builder("mongo.changestream.lag", lagMillis, AtomicLong::get)
+                    .tag("collection", collection)
+                    .tag("shard", shard)
+                    .baseUnit("milliseconds")
+                    .description("Delay between a committed write and its dispatch to listeners")
+                    .register(meterRegistry);
+            this.dispatched = Counter.builder("mongo.changestream.events")
+                    .tag("collection", collection)
+                    .tag("shard", shard)
+                    .register(meterRegistry);
+        }
+
+        private void start() {
+            thread = Thread.ofPlatform()
+                    .name("change-stream-" + streamName)
+                    .daemon(true)
+                    .start(this);
+        }
+
+        private void close() {
+            MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = cursor;
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (Exception e) {
+                    log.debug("Error closing change stream cursor. collection={}, shard={}", collection, shard, e);
+                }
+            }
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    tail();
+                } catch (MongoCommandException e) {
+                    if (!running) {
+                        break;
+                    }
+                    if (NON_RESUMABLE_ERROR_CODES.contains(e.getErrorCode())) {
+                        log.warn("Change stream cannot resume, restarting from now. collection={}, shard={}, code={}",
+                                collection, shard, e.getErrorCode());
+                        resumeTokenStore.clear(tailerName, streamName);
+                        listeners.forEach(ChangeStreamListener::onReset);
+                    } else {
+                        log.error("Change stream failed. collection={}, shard={}, error={}", collection, shard, e.getMessage(), e);
+                        backOff();
+                    }
+                } catch (Exception e) {
+                    if (!running) {
+                        break;
+                    }
+                    log.error("Change stream failed. collection={}, shard={}, error={}", collection, shard, e.getMessage(), e);
+                    backOff();
+                }
+            }
+        }
+
+        private void tail() {
+            ChangeStreamIterable<Document> stream = template.getCollection(collection)
+                    .watch()
+                    .fullDocument(FullDocument.UPDATE_LOOKUP)
+                    .maxAwaitTime(maxAwait.toMillis(), TimeUnit.MILLISECONDS);
+
+            Optional<BsonDocument> resumeToken = resumeTokenStore.load(tailerName, streamName);
+            resumeToken.ifPresent(stream::resumeAfter);
+            log.info("Tailing change stream. collection={}, shard={}, resuming={}",
+                    collection, shard, resumeToken.isPresent());
+
+            long lastCheckpoint = System.currentTimeMillis();
+            BsonDocument lastSaved = resumeToken.orElse(null);
+
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = stream.cursor()) {
+                cursor = current;
+                while (running) {
+                    ChangeStreamDocument<Document> change = current.tryNext();
+                    if (change != null) {
+                        dispatch(change);
+                    } else {
+                        lagMillis.set(0);
+                    }
+
+                    // The post-batch resume token advances even when the collection is idle
+                    BsonDocument token = current.getResumeToken();
+                    long now = System.currentTimeMillis();
+                    if (token != null && !token.equals(lastSaved)
+                            && now - lastCheckpoint >= checkpointInterval.toMillis()) {
+                        resumeTokenStore.save(tailerName, streamName, token);
+                        lastSaved = token;
+                        lastCheckpoint = now;
+                    }
+                }
+
+                BsonDocument token = current.getResumeToken();
+                if (token != null && !token.equals(lastSaved)) {
+                    resumeTokenStore.save(tailerName, streamName, token);
+                }
+            } finally {
+                cursor = null;
+            }
+        }
+
+        private void dispatch(ChangeStreamDocument<Document> change) {
+            long committedAt = change.getWallTime() != null
+                    ? change.getWallTime().getValue()
+                    : TimeUnit.SECONDS.toMillis(change.getClusterTime().getTime());
+            lagMillis.set(Math.max(0, System.currentTimeMillis() - committedAt));
+
+            for (ChangeStreamListener listener : listeners) {
+                try {
+                    listener.onChange(change);
+                } catch (Exception e) {
+                    // One failing listener must not stop the stream for the others
+                    log.error("Change stream listener failed. collection={}, shard={}, listener={}, operation={}",
+                            collection, shard, listener.getClass().getSimpleName(), change.getOperationType(), e);
+                }
+            }
+            dispatched.increment();
+        }
+
+        private void backOff() {
+            try {
+                Thread.sleep(retryBackoff.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.devision.jm.profile.changestream;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Resume Token Store
+ *
+ * Persists the last processed change stream resume token per tailer and
+ * collection, so a restarted node continues exactly where it stopped.
+ *
+ * Collection: change_stream_tokens
+ * Document:   { _id: "<tailer>:<collection>", token: {...}, updated_at: Date }
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.change-streams.enabled", havingValue = "true")
+public class ResumeTokenStore {
+
+    static final String COLLECTION = "change_stream_tokens";
+
+    private final MongoTemplate mongoTemplate;
+
+    public Optional<BsonDocument> load(String tailerName, String collection) {
+        BsonDocument stored = tokens().find(Filters.eq("_id", key(tailerName, collection))).first();
+        if (stored == null || !stored.isDocument("token")) {
+            return Optional.empty();
+        }
+        return Optional.of(stored.getDocument("token"));
+    }
+
+    public void save(String tailerName, String collection, BsonDocument token) {
+        String id = key(tailerName, collection);
+        BsonDocument stored = new BsonDocument("_id", new BsonString(id))
+                .append("token", token)
+                .append("updated_at", new BsonDateTime(System.currentTimeMillis()));
+        tokens().replaceOne(Filters.eq("_id", id), stored, new ReplaceOptions().upsert(true));
+    }
+
+    public void clear(String tailerName, String collection) {
+        tokens().deleteOne(Filters.eq("_id", key(tailerName, collection)));
+        log.warn("Cleared change stream resume token. tailer={}, collection={}", tailerName, collection);
+    }
+
+    private MongoCollection<BsonDocument> tokens() {
+        return mongoTemplate.getDb().getCollection(COLLECTION, BsonDocument.class);
+    }
+
+    private static String key(String tailerName, String collection) {
+        return tailerName + ":" + collection;
+    }
+}
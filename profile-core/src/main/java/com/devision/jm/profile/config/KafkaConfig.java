@@ -1,6 +1,9 @@
 package com.devision.jm.profile.config;
 
+import com.devision.jm.profile.idempotency.ProcessedMessageLedger;
+import com.devision.jm.profile.messaging.KafkaRetryTopics;
 import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.config.SaslConfigs;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -10,8 +13,12 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.util.backoff.FixedBackOff;
 
@@ -20,6 +27,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -52,6 +60,18 @@ public class KafkaConfig {
     @Value("${kafka.listener.auto-startup:true}")
     private boolean autoStartup;
 
+    @Value("${kafka.consumer.key-ordered.max-poll-records:500}")
+    private int keyOrderedMaxPollRecords;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${app.kafka.retry.topics:}")
+    private List<String> retryBaseTopics;
+
+    @Value("${app.kafka.retry.partitions:3}")
+    private int retryTopicPartitions;
+
     // SASL/SSL authentication for Confluent Cloud
     @Value("${KAFKA_SECURITY_PROTOCOL:#{null}}")
     private String securityProtocol;
@@ -76,6 +96,10 @@ public class KafkaConfig {
 
     @Bean
     public ConsumerFactory<String, String> consumerFactory() {
+        return new DefaultKafkaConsumerFactory<>(consumerProperties());
+    }
+
+    private Map<String, Object> consumerProperties() {
         Map<String, Object> configProps = new HashMap<>();
 
         // Get Kafka address from Eureka discovery
@@ -114,7 +138,7 @@ public class KafkaConfig {
             configProps.put(SaslConfigs.SASL_JAAS_CONFIG, jaasConfig);
         }
 
-        return new DefaultKafkaConsumerFactory<>(configProps);
+        return configProps;
     }
 
     @Bean
@@ -130,6 +154,7 @@ public class KafkaConfig {
         // Allow disabling auto-startup via KAFKA_LISTENER_AUTO_STARTUP=false
         // This lets the service start even when Kafka broker is unavailable
         factory.setAutoStartup(autoStartup);
+        VirtualThreadConfig.applyListenerThreads(factory, "kafka-listener-", virtualThreads);
 
         // Error handler with retry backoff
         DefaultErrorHandler errorHandler = new DefaultErrorHandler(
@@ -139,4 +164,56 @@ public class KafkaConfig {
         log.info("Kafka listener auto-startup: {}", autoStartup);
         return factory;
     }
+
+    /**
+     * Consumers whose polls are processed by KeyOrderedDispatcher.
+     * Offsets are committed by the container after each poll (not auto-commit),
+     * so a failed poll is committed only up to its lowest failed record.
+     */
+    @Bean
+    public ConsumerFactory<String, String> keyOrderedConsumerFactory() {
+        Map<String, Object> configProps = consumerProperties();
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, keyOrderedMaxPollRecords);
+        return new DefaultKafkaConsumerFactory<>(configProps);
+    }
+
+    /**
+     * Batch listener container for the user, payment, subscription and file
+     * completion topics and their retry tiers.
+     * Assigned partitions warm the ProcessedMessageLedger Bloom filter.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> keyOrderedListenerContainerFactory(
+            KafkaRetryTopics kafkaRetryTopics, KafkaTemplate<String, String> kafkaTemplate,
+            ProcessedMessageLedger processedMessageLedger) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(keyOrderedConsumerFactory());
+        factory.setBatchListener(true);
+
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.getContainerProperties().setConsumerRebalanceListener(
+                processedMessageLedger.rebalanceListener(kafkaRetryTopics::baseTopic));
+        factory.getContainerProperties().setMissingTopicsFatal(false);
+        factory.getContainerProperties().setAuthExceptionRetryInterval(java.time.Duration.ofSeconds(10));
+        factory.setAutoStartup(autoStartup);
+        VirtualThreadConfig.applyListenerThreads(factory, "kafka-key-ordered-", virtualThreads);
+
+        // BatchListenerFailedException: commit before the failed record, move it to its
+        // next retry tier (or the DLT) right away and continue with the records after it
+        factory.setCommonErrorHandler(new DefaultErrorHandler(
+                kafkaRetryTopics.recoverer(kafkaTemplate), new FixedBackOff(0L, 0L)));
+        return factory;
+    }
+
+    /**
+     * Retry tier and dead-letter topics owned by this service.
+     */
+    @Bean
+    public KafkaAdmin.NewTopics retryTopics(KafkaRetryTopics kafkaRetryTopics) {
+        return new KafkaAdmin.NewTopics(kafkaRetryTopics.ownedTopics(retryBaseTopics).stream()
+                .map(topic -> TopicBuilder.name(topic).partitions(retryTopicPartitions).build())
+                .toArray(NewTopic[]::new));
+    }
 }
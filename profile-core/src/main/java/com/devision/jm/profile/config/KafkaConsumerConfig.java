@@ -16,6 +16,8 @@ import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -40,6 +42,15 @@ public class KafkaConsumerConfig {
     @Value("${KAFKA_SASL_PASSWORD:#{null}}")
     private String saslPassword;
 
+    @Value("${spring.application.name:profile-service}")
+    private String applicationName;
+
+    @Value("${kafka.consumer.company-name-requests.max-poll-records:500}")
+    private int companyNameRequestMaxPollRecords;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
     private void addSaslConfig(Map<String, Object> configProps) {
         if (securityProtocol != null && saslUsername != null && saslPassword != null) {
             log.info("Configuring SASL/SSL authentication for Kafka Consumer");
@@ -74,16 +85,24 @@ public class KafkaConsumerConfig {
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "profile-service-group");
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
 
+        // Batch listener: the whole poll is resolved with one query
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, companyNameRequestMaxPollRecords);
+
         addSaslConfig(props);
 
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
+    /**
+     * Batch listener container - CompanyNameRequestConsumer gets every record of a poll at once.
+     */
     @Bean(name = "companyNameRequestListenerContainerFactory")
     public ConcurrentKafkaListenerContainerFactory<String, CompanyNameRequestEvent> companyNameRequestListenerContainerFactory() {
 
         ConcurrentKafkaListenerContainerFactory<String, CompanyNameRequestEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(companyNameRequestConsumerFactory());
+        factory.setBatchListener(true);
+        VirtualThreadConfig.applyListenerThreads(factory, "kafka-company-name-", virtualThreads);
         return factory;
     }
 
@@ -118,6 +137,59 @@ public class KafkaConsumerConfig {
     public ConcurrentKafkaListenerContainerFactory<String, PremiumStatusRequestEvent> premiumStatusRequestListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, PremiumStatusRequestEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(premiumStatusRequestConsumerFactory());
+        VirtualThreadConfig.applyListenerThreads(factory, "kafka-premium-status-", virtualThreads);
+        return factory;
+    }
+
+    // === Profile Cache Invalidation Consumer ===
+
+    /**
+     * Every replica must see every invalidation, so each node joins with its own
+     * consumer group and starts from the latest offset (its cache starts empty).
+     * The group is named after the host and process, so a restarted container
+     * (same hostname, same pid) rejoins its group instead of leaving one behind.
+     */
+    @Bean
+    public ConsumerFactory<String, String> cacheInvalidationConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        String bootstrapServers = kafkaDiscoveryService.getKafkaBootstrapServers();
+        String groupId = applicationName + "-cache-" + instanceId();
+        log.info("Configuring cache invalidation Kafka Consumer with bootstrap servers: {}, group: {}",
+                bootstrapServers, groupId);
+
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+
+        addSaslConfig(props);
+
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    /**
+     * Host name (the pod name on Kubernetes) and pid: stable across restarts of a
+     * container, distinct for replicas sharing a host.
+     */
+    private static String instanceId() {
+        String hostname = System.getenv("HOSTNAME");
+        if (hostname == null || hostname.isBlank()) {
+            try {
+                hostname = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                hostname = "localhost";
+            }
+        }
+        return hostname + "-" + ProcessHandle.current().pid();
+    }
+
+    @Bean(name = "cacheInvalidationListenerContainerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, String> cacheInvalidationListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(cacheInvalidationConsumerFactory());
+        factory.getContainerProperties().setMissingTopicsFatal(false);
+        VirtualThreadConfig.applyListenerThreads(factory, "kafka-cache-invalidation-", virtualThreads);
         return factory;
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,29 @@
 package com.devision.jm.profile.config;
 
 import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.config.SaslConfigs;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
 
 import com.devision.jm.profile.api.external.dto.ProfileUpdateEventResponse;
 import com.devision.jm.profile.api.external.dto.CompanyNameEvent.CompanyNameResponseEvent;
@@ -20,6 +33,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -27,14 +42,27 @@ import java.util.Map;
  *
  * Configures Kafka producer for sending events to File Service.
  * Uses Eureka discovery to find Kafka broker address.
+ *
+ * There are two shared producers, one per performance profile
+ * (kafka.producer.profiles, see KafkaProducerProperties):
+ * - low-latency (@Primary): kafkaTemplate, profileUpdate/companyNameResponse/
+ *   premiumStatusResponse templates
+ * - high-throughput: bulkKafkaTemplate (File Service uploads, chunked media,
+ *   shard migration events)
+ *
+ * Client metrics are bound to Micrometer per profile
+ * (e.g. kafka.producer.batch.size.avg, kafka.producer.compression.rate.avg{profile}).
  */
 @Configuration
+@EnableConfigurationProperties(KafkaProducerProperties.class)
 @RequiredArgsConstructor
 @ConditionalOnProperty(name = "kafka.enabled", havingValue = "true")
 @Slf4j
 public class KafkaProducerConfig {
 
     private final KafkaDiscoveryService kafkaDiscoveryService;
+    private final KafkaProducerProperties producerProperties;
+    private final MeterRegistry meterRegistry;
 
     // SASL/SSL authentication for Confluent Cloud
     @Value("${KAFKA_SECURITY_PROTOCOL:#{null}}")
@@ -49,6 +77,12 @@ public class KafkaProducerConfig {
     @Value("${KAFKA_SASL_PASSWORD:#{null}}")
     private String saslPassword;
 
+    @Value("${kafka.topics.profile-cache-invalidation:profile.cache.invalidation}")
+    private String profileCacheInvalidationTopic;
+
+    @Value("${spring.application.name:profile-service}")
+    private String applicationName;
+
     private void addSaslConfig(Map<String, Object> configProps) {
         if (securityProtocol != null && saslUsername != null && saslPassword != null) {
             configProps.put(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG, securityProtocol);
@@ -60,105 +94,132 @@ public class KafkaProducerConfig {
         }
     }
 
-    // 1) Basic String → String template (for existing EventServiceImpl)
+    // === Shared producers, one per performance profile ===
 
     @Bean
-    public ProducerFactory<String, String> stringProducerFactory() {
+    @Primary
+    public ProducerFactory<String, Object> lowLatencyProducerFactory() {
+        return producerFactory(KafkaProducerProperties.LOW_LATENCY);
+    }
+
+    @Bean
+    public ProducerFactory<String, Object> highThroughputProducerFactory() {
+        return producerFactory(KafkaProducerProperties.HIGH_THROUGHPUT);
+    }
+
+    private ProducerFactory<String, Object> producerFactory(String profileName) {
+        KafkaProducerProperties.Profile profile = producerProperties.profile(profileName);
         Map<String, Object> configProps = new HashMap<>();
         String bootstrapServers = kafkaDiscoveryService.getKafkaBootstrapServers();
-        log.info("Configuring String Kafka Producer with bootstrap servers: {}", bootstrapServers);
 
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
-        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
-        configProps.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 1000);
+        configProps.put(ProducerConfig.CLIENT_ID_CONFIG, applicationName + "-" + profileName);
+        configProps.put(ProducerConfig.ACKS_CONFIG, profile.getAcks());
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, profile.isEnableIdempotence());
+        putIfSet(configProps, ProducerConfig.RETRIES_CONFIG, profile.getRetries());
+        putIfSet(configProps, ProducerConfig.RETRY_BACKOFF_MS_CONFIG, profile.getRetryBackoffMs());
+        putIfSet(configProps, ProducerConfig.LINGER_MS_CONFIG, profile.getLingerMs());
+        putIfSet(configProps, ProducerConfig.BATCH_SIZE_CONFIG, profile.getBatchSize());
+        putIfSet(configProps, ProducerConfig.COMPRESSION_TYPE_CONFIG, profile.getCompressionType());
+        putIfSet(configProps, ProducerConfig.MAX_REQUEST_SIZE_CONFIG, profile.getMaxRequestSize());
+        putIfSet(configProps, ProducerConfig.BUFFER_MEMORY_CONFIG, profile.getBufferMemory());
+        putIfSet(configProps, ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, profile.getDeliveryTimeoutMs());
+        configProps.putAll(profile.getProperties());
 
         addSaslConfig(configProps);
 
-        return new DefaultKafkaProducerFactory<>(configProps);
-    }
+        log.info("Configuring {} Kafka Producer with bootstrap servers: {}, linger.ms={}, batch.size={}, compression={}",
+                profileName, bootstrapServers, profile.getLingerMs(), profile.getBatchSize(), profile.getCompressionType());
 
-    @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
-        // This satisfies EventServiceImpl's KafkaTemplate<String,String> dependency
-        return new KafkaTemplate<>(stringProducerFactory());
+        DefaultKafkaProducerFactory<String, Object> factory =
+                new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), valueSerializer());
+        // kafka.producer.* client metrics, incl. batch.size.avg and compression.rate.avg
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry,
+                List.of(Tag.of("profile", profileName))));
+        return factory;
     }
 
-    // 2) ProfileUpdateEventResponse template (for profile update events)
+    /**
+     * Per-type value serializer shared by every template of a producer:
+     * String and byte[] payloads are written as is (pre-serialized JSON),
+     * event objects as JSON (with type headers, as before).
+     */
+    private static Serializer<Object> valueSerializer() {
+        Map<Class<?>, Serializer<?>> delegates = new LinkedHashMap<>();
+        delegates.put(String.class, new StringSerializer());
+        delegates.put(byte[].class, new ByteArraySerializer());
+        delegates.put(Object.class, new JsonSerializer<>());
+        return new DelegatingByTypeSerializer(delegates, true);
+    }
 
-    @Bean
-    public ProducerFactory<String, ProfileUpdateEventResponse> profileUpdateProducerFactory() {
-        Map<String, Object> configProps = new HashMap<>();
-        String bootstrapServers = kafkaDiscoveryService.getKafkaBootstrapServers();
-        log.info("Configuring ProfileUpdate Kafka Producer with bootstrap servers: {}", bootstrapServers);
+    private static void putIfSet(Map<String, Object> configProps, String key, Object value) {
+        if (value != null) {
+            configProps.put(key, value);
+        }
+    }
 
-        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
-                        org.springframework.kafka.support.serializer.JsonSerializer.class);
-        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
-        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
-        configProps.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 1000);
+    @SuppressWarnings("unchecked")
+    private static <V> ProducerFactory<String, V> shared(ProducerFactory<String, Object> factory) {
+        // The value serializer picks the delegate by payload type, so every
+        // template of a profile can share its producer
+        return (ProducerFactory<String, V>) (ProducerFactory<String, ?>) factory;
+    }
 
-        addSaslConfig(configProps);
+    // === Low-latency templates (request/reply, notifications) ===
 
-        return new DefaultKafkaProducerFactory<>(configProps);
+    @Bean
+    @Primary
+    public KafkaTemplate<String, String> kafkaTemplate() {
+        // This satisfies EventServiceImpl's KafkaTemplate<String,String> dependency
+        return new KafkaTemplate<>(shared(lowLatencyProducerFactory()));
     }
 
     @Bean
     public KafkaTemplate<String, ProfileUpdateEventResponse> profileUpdateKafkaTemplate() {
-        return new KafkaTemplate<>(profileUpdateProducerFactory());
+        return new KafkaTemplate<>(shared(lowLatencyProducerFactory()));
     }
 
-    // === CompanyNameResponseEvent producer ===
     @Bean
-    public ProducerFactory<String, CompanyNameResponseEvent> companyNameResponseProducerFactory() {
-        Map<String, Object> configProps = new HashMap<>();
-        String bootstrapServers = kafkaDiscoveryService.getKafkaBootstrapServers();
-        log.info("Configuring CompanyNameResponse Kafka Producer with bootstrap servers: {}", bootstrapServers);
-
-        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
-                        org.springframework.kafka.support.serializer.JsonSerializer.class);
-        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
-        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
-        configProps.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 1000);
-
-        addSaslConfig(configProps);
-
-        return new DefaultKafkaProducerFactory<>(configProps);
+    public KafkaTemplate<String, CompanyNameResponseEvent> companyNameResponseKafkaTemplate() {
+        return new KafkaTemplate<>(shared(lowLatencyProducerFactory()));
     }
 
     @Bean
-    public KafkaTemplate<String, CompanyNameResponseEvent> companyNameResponseKafkaTemplate() {
-        return new KafkaTemplate<>(companyNameResponseProducerFactory());
+    public KafkaTemplate<String, PremiumStatusResponseEvent> premiumStatusResponseKafkaTemplate() {
+        return new KafkaTemplate<>(shared(lowLatencyProducerFactory()));
     }
 
-    // === PremiumStatusResponseEvent producer ===
+    // === High-throughput template (media, chunked transfers, shard migration) ===
+    //     JSON serialized directly to bytes (no intermediate String holding base64 media)
+
     @Bean
-    public ProducerFactory<String, PremiumStatusResponseEvent> premiumStatusResponseProducerFactory() {
-        Map<String, Object> configProps = new HashMap<>();
-        String bootstrapServers = kafkaDiscoveryService.getKafkaBootstrapServers();
-        log.info("Configuring PremiumStatusResponse Kafka Producer with bootstrap servers: {}", bootstrapServers);
+    public KafkaTemplate<String, byte[]> bulkKafkaTemplate() {
+        return new KafkaTemplate<>(shared(highThroughputProducerFactory()));
+    }
 
-        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
-                        org.springframework.kafka.support.serializer.JsonSerializer.class);
-        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
-        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
-        configProps.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 1000);
+    // === Topic administration ===
 
+    @Bean
+    public KafkaAdmin kafkaAdmin() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaDiscoveryService.getKafkaBootstrapServers());
         addSaslConfig(configProps);
 
-        return new DefaultKafkaProducerFactory<>(configProps);
+        KafkaAdmin admin = new KafkaAdmin(configProps);
+        // Don't fail startup if the broker is unavailable
+        admin.setFatalIfBrokerNotAvailable(false);
+        return admin;
     }
 
+    /**
+     * Compacted topic carrying the latest written version per userId
+     * (see ProfileCacheInvalidationPublisher).
+     */
     @Bean
-    public KafkaTemplate<String, PremiumStatusResponseEvent> premiumStatusResponseKafkaTemplate() {
-        return new KafkaTemplate<>(premiumStatusResponseProducerFactory());
+    public NewTopic profileCacheInvalidationTopic() {
+        return TopicBuilder.name(profileCacheInvalidationTopic)
+                .partitions(3)
+                .compact()
+                .build();
     }
 }
@@ -0,0 +1,87 @@
+package com.devision.jm.profile.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Kafka Producer Properties (kafka.producer.*)
+ *
+ * Named performance profiles for the shared producers built by KafkaProducerConfig.
+ * Every profile is one producer (one I/O thread, one buffer pool, one set of
+ * broker connections) shared by all templates assigned to it:
+ * - low-latency:     request/reply and notification topics - small batches, no linger
+ * - high-throughput: media uploads, chunked transfers, shard migration events -
+ *                    lingers to build large compressed batches
+ *
+ * Unset values fall back to the Kafka client defaults.
+ */
+@Data
+@ConfigurationProperties(prefix = "kafka.producer")
+public class KafkaProducerProperties {
+
+    public static final String LOW_LATENCY = "low-latency";
+    public static final String HIGH_THROUGHPUT = "high-throughput";
+
+    private Map<String, Profile> profiles = new LinkedHashMap<>();
+
+    /**
+     * Settings of the given profile (empty settings if it isn't configured).
+     */
+    public Profile profile(String name) {
+        return profiles.getOrDefault(name, new Profile());
+    }
+
+    @Data
+    public static class Profile {
+
+        /**
+         * acks (all, 1, 0)
+         */
+        private String acks = "all";
+
+        /**
+         * enable.idempotence - no duplicates or reordering on retries (requires acks=all)
+         */
+        private boolean enableIdempotence = true;
+
+        private Integer retries = 3;
+
+        private Integer retryBackoffMs = 1000;
+
+        /**
+         * linger.ms - how long a batch may wait for more records
+         */
+        private Integer lingerMs;
+
+        /**
+         * batch.size in bytes, per partition
+         */
+        private Integer batchSize;
+
+        /**
+         * compression.type (none, gzip, snappy, lz4, zstd)
+         */
+        private String compressionType;
+
+        /**
+         * max.request.size in bytes; must not exceed the broker's message.max.bytes
+         */
+        private Integer maxRequestSize;
+
+        /**
+         * buffer.memory in bytes; send() blocks (back-pressure) when it is full
+         */
+        private Long bufferMemory;
+
+        private Integer deliveryTimeoutMs;
+
+        /**
+         * Any other producer property, passed through as is
+         */
+        private Map<String, String> properties = new HashMap<>();
+    }
+}
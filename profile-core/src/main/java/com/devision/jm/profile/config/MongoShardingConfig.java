@@ -3,6 +3,7 @@ package com.devision.jm.profile.config;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Sort;
@@ -34,10 +35,14 @@ import org.springframework.data.mongodb.core.index.Index;
  * - Most queries filter by country (geographic locality)
  * - Data is naturally distributed by country
  * - Supports data residency requirements
+ *
+ * Alternatively (app.sharding.enabled), the application routes profiles itself to
+ * one database per region shard - see ShardingProperties and ShardRouter.
  */
 @Slf4j
 @Configuration
 @RequiredArgsConstructor
+@EnableConfigurationProperties(ShardingProperties.class)
 public class MongoShardingConfig {
 
     private final MongoTemplate mongoTemplate;
@@ -0,0 +1,109 @@
+package com.devision.jm.profile.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sharding Properties (app.sharding.*)
+ *
+ * Region shards of the profiles collection (Requirement 3.3.1). Every shard is
+ * its own database, possibly on its own cluster, with its own MongoTemplate
+ * (see ShardTemplates).
+ *
+ * The default shard is the primary database (spring.data.mongodb). It also holds
+ * the global collections: profile_directory, processed_messages, outbox lease,
+ * change stream tokens. Profiles of countries without a configured shard stay there.
+ *
+ * Shard names are map keys; write them in brackets in YAML so the underscores
+ * are kept, e.g. "[SHARD_APAC]".
+ */
+@Data
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+
+    /**
+     * Route profiles to region shards. When false every profile lives in the
+     * default shard and no directory lookups are made.
+     */
+    private boolean enabled = false;
+
+    private String defaultShard = "SHARD_DEFAULT";
+
+    /**
+     * How long a userId -> shard directory entry is cached
+     */
+    private Duration directoryCacheTtl = Duration.ofSeconds(5);
+
+    private long directoryCacheSize = 100_000;
+
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+
+    /**
+     * ISO-3166 alpha-2 codes per shard id (see ConfigShardResolver)
+     */
+    private Map<String, List<String>> regions = new LinkedHashMap<>();
+
+    /**
+     * Extra country names -> ISO-3166 alpha-2 code (codes and English names are built in)
+     */
+    private Map<String, String> countryAliases = new LinkedHashMap<>();
+
+    /**
+     * Optional properties file overriding regions/aliases, reloaded when it changes
+     */
+    private String resolverFile;
+
+    /**
+     * Deadline for the shards' answers to a cross-shard query (see ShardScatterGather);
+     * shards answering later are left out of the result
+     */
+    private Duration scatterTimeout = Duration.ofSeconds(2);
+
+    private Rebalance rebalance = new Rebalance();
+
+    @Data
+    public static class Shard {
+
+        /**
+         * Connection string of the shard's cluster
+         */
+        private String uri;
+
+        /**
+         * Database of the shard
+         */
+        private String database;
+    }
+
+    /**
+     * Bulk rebalancing of a country's profiles (see ShardRebalancer)
+     */
+    @Data
+    public static class Rebalance {
+
+        /**
+         * Profiles copied per bulk write
+         */
+        private int batchSize = 500;
+
+        /**
+         * Upper bound of the copy rate
+         */
+        private int maxDocsPerSecond = 500;
+
+        /**
+         * Copy + delete latency per batch above which the rate is halved
+         */
+        private Duration maxWriteLatency = Duration.ofMillis(250);
+
+        /**
+         * A job whose runner has not checkpointed for this long is resumed by another instance
+         */
+        private Duration leaseDuration = Duration.ofMinutes(1);
+    }
+}
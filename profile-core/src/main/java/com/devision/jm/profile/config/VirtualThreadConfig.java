@@ -0,0 +1,168 @@
+package com.devision.jm.profile.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Virtual Thread Configuration
+ *
+ * Opt-in with spring.threads.virtual.enabled=true (SPRING_THREADS_VIRTUAL_ENABLED).
+ * Besides what Spring Boot switches over itself (Tomcat, @Async, @Scheduled):
+ * - Kafka listener consumer threads (KafkaConfig, KafkaConsumerConfig) become
+ *   virtual threads, see applyListenerThreads()
+ * - KeyOrderedDispatcher runs every lane on its own virtual thread instead of
+ *   the fixed worker pool
+ * - MongoConcurrencyLimiter keeps the blocking Mongo work of Kafka records,
+ *   shard queries and HTTP requests within the connection pool
+ *
+ * Metrics registered here, to compare against the platform-thread mode:
+ * - jvm.threads.platform          - live platform (native) threads
+ * - jvm.threads.virtual.carriers  - live carrier threads of the virtual thread
+ *   scheduler; above its parallelism while carriers are compensated for blocking
+ * - jvm.threads.virtual.carriers.cpu - CPU time of the carrier threads, i.e. time
+ *   spent running virtual threads; its rate is the average number of busy carriers
+ * - jvm.threads.virtual.pinned    - virtual threads pinned to their carrier for
+ *   longer than app.virtual-threads.pinned-threshold (JFR jdk.VirtualThreadPinned);
+ *   pinned time is carrier time no other virtual thread can use
+ * kafka.consumer.record{consumer,threads=virtual|platform} (KeyOrderedDispatcher)
+ * gives the processing time in either mode.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final String CARRIER_THREAD_CLASS = "jdk.internal.misc.CarrierThread";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.virtual-threads.pinned-threshold:PT0.02S}")
+    private Duration pinnedThreshold;
+
+    private RecordingStream pinnedEvents;
+
+    /**
+     * Task executor for listener containers: one virtual thread per consumer.
+     */
+    public static AsyncTaskExecutor listenerTaskExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    /**
+     * Consumer threads of the factory's containers become virtual threads when
+     * spring.threads.virtual.enabled=true.
+     */
+    public static void applyListenerThreads(ConcurrentKafkaListenerContainerFactory<?, ?> factory,
+                                            String threadNamePrefix, boolean virtualThreads) {
+        if (virtualThreads) {
+            factory.getContainerProperties().setListenerTaskExecutor(listenerTaskExecutor(threadNamePrefix));
+        }
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("jvm.threads.platform", ManagementFactory.getThreadMXBean(), bean -> bean.getThreadCount())
+                .description("Live platform threads (virtual threads are not counted)")
+                .register(meterRegistry);
+        Gauge.builder("jvm.threads.virtual.carriers", () -> carrierThreads().size())
+                .description("Live carrier threads of the virtual thread scheduler")
+                .register(meterRegistry);
+        if (ManagementFactory.getThreadMXBean().isThreadCpuTimeSupported()) {
+            FunctionCounter.builder("jvm.threads.virtual.carriers.cpu", new CarrierCpuTime(),
+                            CarrierCpuTime::seconds)
+                    .description("CPU time of the carrier threads; the rate is the number of busy carriers")
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+
+        Counter pinned = Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads pinned to their carrier longer than the threshold")
+                .register(meterRegistry);
+        try {
+            pinnedEvents = new RecordingStream();
+            pinnedEvents.enable("jdk.VirtualThreadPinned").withThreshold(pinnedThreshold);
+            pinnedEvents.onEvent("jdk.VirtualThreadPinned", event -> pinned.increment());
+            pinnedEvents.startAsync();
+        } catch (Exception e) {
+            log.warn("Failed to start virtual thread pinning recording: {}", e.getMessage());
+        }
+        log.info("Virtual threads enabled. carriers={}, pinned-threshold={}", carrierParallelism(), pinnedThreshold);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pinnedEvents != null) {
+            pinnedEvents.close();
+        }
+    }
+
+    /**
+     * The scheduler's carrier threads (platform threads, so they are enumerable).
+     */
+    private static List<Thread> carrierThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> CARRIER_THREAD_CLASS.equals(thread.getClass().getName()))
+                .toList();
+    }
+
+    /**
+     * Total CPU time of the carrier threads. The scheduler retires idle carriers,
+     * so the last reading of a retired one is kept to keep the total monotonic.
+     */
+    private static final class CarrierCpuTime {
+
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final Map<Long, Long> liveNanos = new HashMap<>();
+        private long retiredNanos;
+
+        synchronized double seconds() {
+            Map<Long, Long> current = new HashMap<>();
+            for (Thread carrier : carrierThreads()) {
+                long nanos = threads.getThreadCpuTime(carrier.threadId());
+                if (nanos >= 0) {
+                    current.put(carrier.threadId(), nanos);
+                }
+            }
+            liveNanos.forEach((id, nanos) -> {
+                if (!current.containsKey(id)) {
+                    retiredNanos += nanos;
+                }
+            });
+            liveNanos.clear();
+            liveNanos.putAll(current);
+            long total = retiredNanos;
+            for (long nanos : current.values()) {
+                total += nanos;
+            }
+            return total / 1e9;
+        }
+    }
+
+    private static int carrierParallelism() {
+        String parallelism = System.getProperty("jdk.virtualThreadScheduler.parallelism");
+        return parallelism != null ? Integer.parseInt(parallelism) : Runtime.getRuntime().availableProcessors();
+    }
+}
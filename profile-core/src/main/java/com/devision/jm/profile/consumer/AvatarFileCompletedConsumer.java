@@ -1,15 +1,22 @@
 package com.devision.jm.profile.consumer;
 
 import com.devision.jm.profile.api.internal.dto.AvatarFileCompletedEvent;
+import com.devision.jm.profile.cache.ProfileCache;
+import com.devision.jm.profile.idempotency.ProcessedMessageLedger;
+import com.devision.jm.profile.messaging.KeyOrderedDispatcher;
 import com.devision.jm.profile.model.entity.Profile;
 import com.devision.jm.profile.repository.ProfileRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * Avatar File Completed Consumer
  *
@@ -24,42 +31,78 @@ import org.springframework.stereotype.Component;
 @ConditionalOnProperty(name = "kafka.enabled", havingValue = "true")
 public class AvatarFileCompletedConsumer {
 
+    private static final String CONSUMER = "avatar-file-completed";
+
     private final ProfileRepository profileRepository;
     private final ObjectMapper objectMapper;
+    private final ProfileCache profileCache;
+    private final ProcessedMessageLedger processedMessageLedger;
+    private final KeyOrderedDispatcher keyOrderedDispatcher;
 
     @KafkaListener(
             topics = "${kafka.topics.avatar-file-completed:avatar-file-completed}",
-            groupId = "${spring.kafka.consumer.group-id:profile-service-group}"
+            groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
+            containerFactory = "keyOrderedListenerContainerFactory"
     )
-    public void handleAvatarFileCompleted(String message) {
-        log.info("Received avatar-file-completed message");
+    public void handleAvatarFileCompletedBatch(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatch(CONSUMER, records, this::handleAvatarFileCompleted, "userId");
+    }
+
+    /**
+     * Retry tiers of avatar-file-completed (see KafkaRetryTopics).
+     */
+    @KafkaListener(
+            topics = "#{@kafkaRetryTopics.retryTopics('${kafka.topics.avatar-file-completed:avatar-file-completed}')}",
+            groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
+            containerFactory = "keyOrderedListenerContainerFactory"
+    )
+    public void handleAvatarFileCompletedRetries(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatchRetries(CONSUMER, records, this::handleAvatarFileCompleted, "userId");
+    }
+
+    /**
+     * Process one record. Runs on a KeyOrderedDispatcher worker, in order per user.
+     */
+    public void handleAvatarFileCompleted(ConsumerRecord<String, String> record) {
+        String message = record.value();
+        String messageId = ProcessedMessageLedger.messageId(record);
+        log.info("Received avatar-file-completed message. messageId={}", messageId);
+
+        if (processedMessageLedger.isDuplicate(messageId, CONSUMER)) {
+            return;
+        }
 
         try {
             AvatarFileCompletedEvent event = objectMapper.readValue(message, AvatarFileCompletedEvent.class);
             log.info("Processing avatar completion for userId: {}, success: {}",
                     event.getUserId(), event.isSuccess());
 
-            Profile profile = profileRepository.findByUserId(event.getUserId())
-                    .orElse(null);
-
-            if (profile == null) {
-                log.error("Profile not found for userId: {}", event.getUserId());
-                return;
-            }
-
             if (event.isSuccess()) {
-                // Update profile with new avatar URL
-                profile.setAvatarUrl(event.getAvatarUrl());
-                profileRepository.save(profile);
-                log.info("Profile avatar updated successfully. userId={}, avatarUrl={}",
-                        event.getUserId(), event.getAvatarUrl());
+                // Update profile with new avatar URL - only if this message hasn't been applied yet,
+                // so a redelivered completion can't bring back an older avatar
+                Update update = processedMessageLedger.stamp(new Update().set("avatarUrl", event.getAvatarUrl()), messageId);
+                Profile savedProfile = profileRepository.updateByUserId(
+                        event.getUserId(), null, processedMessageLedger.notAppliedTo(messageId), update).orElse(null);
+                if (savedProfile == null) {
+                    // Not found may be a profile created later or just moved - retried (retry topics / DLT), not recorded
+                    if (!profileRepository.existsByUserId(event.getUserId())) {
+                        throw new RuntimeException("Profile not found for userId: " + event.getUserId());
+                    }
+                    log.info("Avatar already applied to userId: {}", event.getUserId());
+                } else {
+                    profileCache.evict(savedProfile.getUserId(), savedProfile.getVersion());
+                    log.info("Profile avatar updated successfully. userId={}, avatarUrl={}",
+                            event.getUserId(), event.getAvatarUrl());
+                }
             } else {
                 log.error("Avatar upload failed for userId: {}. Error: {}",
                         event.getUserId(), event.getErrorMessage());
             }
+            processedMessageLedger.record(messageId, CONSUMER);
 
         } catch (Exception e) {
             log.error("Failed to process avatar-file-completed message", e);
+            throw new RuntimeException("Failed to process avatar-file-completed message", e);
         }
     }
 }
@@ -2,6 +2,7 @@ package com.devision.jm.profile.consumer;
 
 import com.devision.jm.profile.api.external.dto.CompanyNameEvent.CompanyNameRequestEvent;
 import com.devision.jm.profile.api.external.dto.CompanyNameEvent.CompanyNameResponseEvent;
+import com.devision.jm.profile.messaging.KafkaSendTracker;
 import com.devision.jm.profile.model.entity.Profile;
 import com.devision.jm.profile.repository.ProfileRepository;
 import lombok.RequiredArgsConstructor;
@@ -10,6 +11,22 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Company Name Request Consumer
+ *
+ * Answers company-name.requests in batches (companyNameRequestListenerContainerFactory
+ * is a batch listener):
+ * - companyIds are deduplicated within the poll
+ * - all names are resolved with one projected $in query on user_id
+ * - all responses are sent in one burst and flushed together
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -17,24 +34,39 @@ public class CompanyNameRequestConsumer {
 
     private final ProfileRepository profileRepository;
     private final KafkaTemplate<String, CompanyNameResponseEvent> companyNameResponseKafkaTemplate;
+    private final KafkaSendTracker sendTracker;
 
     @KafkaListener(topics = "company-name.requests", groupId = "profile-service", containerFactory = "companyNameRequestListenerContainerFactory")
-    public void handleCompanyNameRequest(CompanyNameRequestEvent event) {
-        String companyId = event.getCompanyId(); // actually user_id
-        log.info("Received company-name.request for companyId={} requestId={}", companyId,
-                event.getRequestId());
-
-        String companyName = profileRepository.findByUserId(companyId)
-                .map(Profile::getCompanyName)
-                .orElse(null);
-
-        CompanyNameResponseEvent response = CompanyNameResponseEvent.builder()
-                .requestId(event.getRequestId())
-                .companyId(companyId)
-                .companyName(companyName)
-                .build();
-
-        companyNameResponseKafkaTemplate.send("company-name.responses", companyId, response);
-        log.info("Sent company-name.response for companyId={} name={}", companyId, companyName);
+    public void handleCompanyNameRequests(List<CompanyNameRequestEvent> events) {
+        Set<String> companyIds = new LinkedHashSet<>(); // actually user_ids
+        for (CompanyNameRequestEvent event : events) {
+            if (event != null && event.getCompanyId() != null) {
+                companyIds.add(event.getCompanyId());
+            }
+        }
+        log.info("Received {} company-name.requests for {} distinct companyIds", events.size(), companyIds.size());
+
+        Map<String, String> companyNames = new HashMap<>();
+        if (!companyIds.isEmpty()) {
+            for (Profile profile : profileRepository.findCompanyNamesByUserIdIn(companyIds)) {
+                companyNames.put(profile.getUserId(), profile.getCompanyName());
+            }
+        }
+
+        // Every request gets its own response (requestId), unknown companies get a null name
+        events.stream()
+                .filter(Objects::nonNull)
+                .forEach(event -> {
+                    String companyId = event.getCompanyId();
+                    CompanyNameResponseEvent response = CompanyNameResponseEvent.builder()
+                            .requestId(event.getRequestId())
+                            .companyId(companyId)
+                            .companyName(companyNames.get(companyId))
+                            .build();
+                    sendTracker.send(companyNameResponseKafkaTemplate, "company-name.responses", companyId, response);
+                });
+        companyNameResponseKafkaTemplate.flush();
+
+        log.info("Sent {} company-name.responses ({} names found)", events.size(), companyNames.size());
     }
 }
@@ -1,23 +1,35 @@
 package com.devision.jm.profile.consumer;
 
 import com.devision.jm.profile.api.internal.dto.EventFileCompletedEvent;
+import com.devision.jm.profile.idempotency.ProcessedMessageLedger;
+import com.devision.jm.profile.messaging.KeyOrderedDispatcher;
 import com.devision.jm.profile.model.entity.Event;
 import com.devision.jm.profile.model.enums.EventStatus;
 import com.devision.jm.profile.repository.EventRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Event File Completed Consumer
  *
  * Consumes events from File Service when file uploads are completed.
  * Updates the Event entity with file URLs and sets status to ACTIVE.
  *
+ * Events with chunked transfers (Event.chunkedMediaIds) stay PENDING until
+ * File Service has acknowledged the reassembly of every transfer
+ * (EventFileCompletedEvent.reassembledMediaIds, which may arrive over several messages).
+ *
  * Topic: event-file-completed
  */
 @Slf4j
@@ -26,16 +38,46 @@ import org.springframework.transaction.annotation.Transactional;
 @ConditionalOnProperty(name = "kafka.enabled", havingValue = "true")
 public class EventFileCompletedConsumer {
 
+    private static final String CONSUMER = "event-file-completed";
+
     private final EventRepository eventRepository;
     private final ObjectMapper objectMapper;
+    private final ProcessedMessageLedger processedMessageLedger;
+    private final KeyOrderedDispatcher keyOrderedDispatcher;
 
     @KafkaListener(
             topics = "${kafka.topics.event-file-completed:event-file-completed}",
-            groupId = "${spring.kafka.consumer.group-id:profile-service-group}"
+            groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
+            containerFactory = "keyOrderedListenerContainerFactory"
     )
+    public void handleEventFileCompletedBatch(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatch(CONSUMER, records, this::handleEventFileCompleted, "eventId");
+    }
+
+    /**
+     * Retry tiers of event-file-completed (see KafkaRetryTopics).
+     */
+    @KafkaListener(
+            topics = "#{@kafkaRetryTopics.retryTopics('${kafka.topics.event-file-completed:event-file-completed}')}",
+            groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
+            containerFactory = "keyOrderedListenerContainerFactory"
+    )
+    public void handleEventFileCompletedRetries(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatchRetries(CONSUMER, records, this::handleEventFileCompleted, "eventId");
+    }
+
+    /**
+     * Process one record. Runs on a KeyOrderedDispatcher worker, in order per eventId.
+     */
     @Transactional
-    public void handleEventFileCompleted(String message) {
-        log.info("Received event-file-completed message");
+    public void handleEventFileCompleted(ConsumerRecord<String, String> record) {
+        String message = record.value();
+        String messageId = ProcessedMessageLedger.messageId(record);
+        log.info("Received event-file-completed message. messageId={}", messageId);
+
+        if (processedMessageLedger.isDuplicate(messageId, CONSUMER)) {
+            return;
+        }
 
         try {
             EventFileCompletedEvent event = objectMapper.readValue(message, EventFileCompletedEvent.class);
@@ -47,6 +89,7 @@ public class EventFileCompletedConsumer {
 
             if (existingEvent == null) {
                 log.warn("Event not found for eventId: {}. Ignoring message.", event.getEventId());
+                processedMessageLedger.record(messageId, CONSUMER);
                 return;
             }
 
@@ -56,6 +99,7 @@ public class EventFileCompletedConsumer {
                         event.getEventId(), event.getErrorMessage());
                 existingEvent.setStatus(EventStatus.FAILED);
                 eventRepository.save(existingEvent);
+                processedMessageLedger.record(messageId, CONSUMER);
                 return;
             }
 
@@ -73,10 +117,20 @@ public class EventFileCompletedConsumer {
                 existingEvent.setVideoKey(event.getVideoKey());
             }
 
+            List<String> awaiting = awaitingReassembly(existingEvent, event.getReassembledMediaIds());
+            if (!awaiting.isEmpty()) {
+                eventRepository.save(existingEvent);
+                log.info("Event still awaiting reassembly of chunked media. eventId={}, awaiting={}",
+                        event.getEventId(), awaiting);
+                processedMessageLedger.record(messageId, CONSUMER);
+                return;
+            }
+
             // Set status to ACTIVE
             existingEvent.setStatus(EventStatus.ACTIVE);
 
             eventRepository.save(existingEvent);
+            processedMessageLedger.record(messageId, CONSUMER);
             log.info("Event updated with file URLs and set to ACTIVE. eventId={}", event.getEventId());
 
         } catch (Exception e) {
@@ -84,4 +138,28 @@ public class EventFileCompletedConsumer {
             throw new RuntimeException("Failed to process event-file-completed message", e);
         }
     }
+
+    /**
+     * Record newly acknowledged reassemblies and return the chunked transfers
+     * that are still unacknowledged.
+     */
+    private List<String> awaitingReassembly(Event existingEvent, List<String> reassembledMediaIds) {
+        List<String> chunked = existingEvent.getChunkedMediaIds();
+        if (chunked == null || chunked.isEmpty()) {
+            return List.of();
+        }
+
+        Set<String> acknowledged = new LinkedHashSet<>();
+        if (existingEvent.getReassembledMediaIds() != null) {
+            acknowledged.addAll(existingEvent.getReassembledMediaIds());
+        }
+        if (reassembledMediaIds != null) {
+            acknowledged.addAll(reassembledMediaIds);
+        }
+        existingEvent.setReassembledMediaIds(new ArrayList<>(acknowledged));
+
+        return chunked.stream()
+                .filter(mediaId -> !acknowledged.contains(mediaId))
+                .toList();
+    }
 }
@@ -2,19 +2,26 @@ package com.devision.jm.profile.consumer;
 
 import com.devision.jm.profile.api.internal.dto.PaymentCompletedEvent;
 import com.devision.jm.profile.api.internal.dto.SubscriptionChangedEvent;
+import com.devision.jm.profile.cache.ProfileCache;
+import com.devision.jm.profile.entitlement.PremiumEntitlementIndex;
+import com.devision.jm.profile.idempotency.ProcessedMessageLedger;
+import com.devision.jm.profile.messaging.KeyOrderedDispatcher;
 import com.devision.jm.profile.model.entity.Profile;
 import com.devision.jm.profile.model.enums.SubscriptionType;
+import com.devision.jm.profile.outbox.ProfileOutbox;
 import com.devision.jm.profile.repository.ProfileRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Kafka Consumer for Payment Completed Events
@@ -31,6 +38,11 @@ import java.time.LocalDateTime;
  * 2. Payment Service publishes PaymentCompletedEvent to Kafka
  * 3. This consumer receives the event
  * 4. Updates Profile subscription to PREMIUM
+ * 5. Records SubscriptionChangedEvent in the profile's outbox (same write, published by OutboxRelay)
+ *
+ * Redeliveries are dropped (ProcessedMessageLedger): the upgrade only applies
+ * if the message id isn't stamped on the profile yet, so a payment never
+ * extends the subscription twice.
  */
 @Slf4j
 @Service
@@ -40,10 +52,15 @@ import java.time.LocalDateTime;
 public class PaymentCompletedEventConsumer {
 
     private static final String SUBSCRIPTION_CHANGED_TOPIC = "subscription.changed";
+    private static final String CONSUMER = "payment-completed";
 
     private final ProfileRepository profileRepository;
     private final ObjectMapper objectMapper;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ProfileOutbox profileOutbox;
+    private final ProfileCache profileCache;
+    private final PremiumEntitlementIndex premiumEntitlementIndex;
+    private final ProcessedMessageLedger processedMessageLedger;
+    private final KeyOrderedDispatcher keyOrderedDispatcher;
 
     /**
      * Consume PaymentCompletedEvent from Kafka
@@ -54,11 +71,38 @@ public class PaymentCompletedEventConsumer {
     @KafkaListener(
             topics = "payment-completed",
             groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
-            autoStartup = "${kafka.consumer.auto-startup:true}"
+            autoStartup = "${kafka.consumer.auto-startup:true}",
+            containerFactory = "keyOrderedListenerContainerFactory"
     )
-    public void consumePaymentCompletedEvent(String message) {
+    public void consumePaymentCompletedEvents(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatch(CONSUMER, records, this::consumePaymentCompletedEvent, "userId");
+    }
+
+    /**
+     * Retry tiers of payment-completed (see KafkaRetryTopics).
+     */
+    @KafkaListener(
+            topics = "#{@kafkaRetryTopics.retryTopics('payment-completed')}",
+            groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
+            autoStartup = "${kafka.consumer.auto-startup:true}",
+            containerFactory = "keyOrderedListenerContainerFactory"
+    )
+    public void consumePaymentCompletedRetries(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatchRetries(CONSUMER, records, this::consumePaymentCompletedEvent, "userId");
+    }
+
+    /**
+     * Process one record. Runs on a KeyOrderedDispatcher worker, in order per user.
+     */
+    public void consumePaymentCompletedEvent(ConsumerRecord<String, String> record) {
+        String message = record.value();
+        String messageId = ProcessedMessageLedger.messageId(record);
         log.info("========== RECEIVED PAYMENT COMPLETED EVENT ==========");
-        log.info("Message: {}", message);
+        log.info("Message: {}, messageId: {}", message, messageId);
+
+        if (processedMessageLedger.isDuplicate(messageId, CONSUMER)) {
+            return;
+        }
 
         try {
             // Deserialize JSON message to DTO
@@ -67,30 +111,37 @@ public class PaymentCompletedEventConsumer {
             log.info("Processing PaymentCompletedEvent for userId: {}, planType: {}",
                     event.getUserId(), event.getPlanType());
 
-            // Find profile by userId
-            Profile profile = profileRepository.findByUserId(event.getUserId())
-                    .orElse(null);
-
-            if (profile == null) {
-                log.error("Profile not found for userId: {}. Cannot upgrade subscription.", event.getUserId());
+            // Upgrade subscription to PREMIUM in one findAndModify:
+            // - precondition: this message hasn't been applied to the profile yet
+            // - the message id and the SubscriptionChangedEvent (outbox) are written with it
+            LocalDateTime startDate = event.getPaidAt() != null ? event.getPaidAt() : LocalDateTime.now();
+            Update update = new Update()
+                    .set("subscriptionType", SubscriptionType.PREMIUM)
+                    .set("subscriptionStartDate", startDate)
+                    .set("subscriptionEndDate", startDate.plusDays(30))
+                    .set("expiryNotificationSent", false)
+                    .set("expiredNotificationSent", false);
+            processedMessageLedger.stamp(update, messageId);
+            // Subscription changed event for Applicant-Search-Service
+            profileOutbox.append(update, SUBSCRIPTION_CHANGED_TOPIC, event.getUserId(),
+                    subscriptionChangedEvent(event.getUserId(), true));
+
+            Profile savedProfile = profileRepository.updateByUserId(
+                    event.getUserId(), null, processedMessageLedger.notAppliedTo(messageId), update).orElse(null);
+
+            if (savedProfile == null) {
+                // Not found may be a profile created later or just moved - retried (retry topics / DLT), not recorded
+                if (!profileRepository.existsByUserId(event.getUserId())) {
+                    throw new RuntimeException("Profile not found for userId: " + event.getUserId());
+                }
+                log.info("Payment already applied to userId: {}", event.getUserId());
+                processedMessageLedger.record(messageId, CONSUMER);
                 return;
             }
-
-            // Check if already PREMIUM (idempotency)
-            if (profile.getSubscriptionType() == SubscriptionType.PREMIUM) {
-                log.warn("Profile already has PREMIUM subscription for userId: {}. Extending subscription.",
-                        event.getUserId());
-            }
-
-            // Update subscription to PREMIUM
-            profile.setSubscriptionType(SubscriptionType.PREMIUM);
-            profile.setSubscriptionStartDate(event.getPaidAt() != null ? event.getPaidAt() : LocalDateTime.now());
-            profile.setSubscriptionEndDate(profile.getSubscriptionStartDate().plusDays(30));
-            profile.setExpiryNotificationSent(false);
-            profile.setExpiredNotificationSent(false);
-
-            // Save to database
-            Profile savedProfile = profileRepository.save(profile);
+            profileCache.evict(savedProfile.getUserId(), savedProfile.getVersion(),
+                    savedProfile.getSubscriptionType(), savedProfile.getSubscriptionEndDate());
+            premiumEntitlementIndex.apply(savedProfile);
+            processedMessageLedger.record(messageId, CONSUMER);
 
             log.info("========== SUBSCRIPTION UPGRADED TO PREMIUM ==========");
             log.info("UserId: {}", event.getUserId());
@@ -100,9 +151,6 @@ public class PaymentCompletedEventConsumer {
             log.info("SubscriptionEndDate: {}", savedProfile.getSubscriptionEndDate());
             log.info("======================================================");
 
-            // Publish subscription changed event for Applicant-Search-Service
-            publishSubscriptionChangedEvent(event.getUserId(), true);
-
         } catch (Exception e) {
             log.error("Failed to process PaymentCompletedEvent: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to process PaymentCompletedEvent", e);
@@ -110,24 +158,15 @@ public class PaymentCompletedEventConsumer {
     }
 
     /**
-     * Publish subscription changed event to Kafka
+     * Subscription changed event for the outbox (published by OutboxRelay)
      * Consumed by Applicant-Search-Service to update isPremium flag
      */
-    private void publishSubscriptionChangedEvent(String companyId, boolean isPremium) {
-        try {
-            SubscriptionChangedEvent event = SubscriptionChangedEvent.builder()
-                    .companyId(companyId)
-                    .isPremium(isPremium)
-                    .subscriptionType(isPremium ? "PREMIUM" : "FREE")
-                    .changedAt(LocalDateTime.now())
-                    .build();
-
-            String json = objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(SUBSCRIPTION_CHANGED_TOPIC, companyId, json);
-
-            log.info("Published subscription changed event: companyId={}, isPremium={}", companyId, isPremium);
-        } catch (Exception e) {
-            log.error("Failed to publish subscription changed event: {}", e.getMessage(), e);
-        }
+    private static SubscriptionChangedEvent subscriptionChangedEvent(String companyId, boolean isPremium) {
+        return SubscriptionChangedEvent.builder()
+                .companyId(companyId)
+                .isPremium(isPremium)
+                .subscriptionType(isPremium ? "PREMIUM" : "FREE")
+                .changedAt(LocalDateTime.now())
+                .build();
     }
 }
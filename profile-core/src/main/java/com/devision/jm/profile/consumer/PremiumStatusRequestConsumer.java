@@ -2,6 +2,8 @@ package com.devision.jm.profile.consumer;
 
 import com.devision.jm.profile.api.external.dto.PremiumStatusEvent.PremiumStatusRequestEvent;
 import com.devision.jm.profile.api.external.dto.PremiumStatusEvent.PremiumStatusResponseEvent;
+import com.devision.jm.profile.messaging.KafkaSendTracker;
+import com.devision.jm.profile.entitlement.PremiumEntitlementIndex;
 import com.devision.jm.profile.model.enums.SubscriptionType;
 import com.devision.jm.profile.repository.ProfileRepository;
 import lombok.RequiredArgsConstructor;
@@ -18,6 +20,9 @@ import org.springframework.stereotype.Service;
  *
  * Topic: premium-status.requests
  * Response Topic: premium-status.responses
+ *
+ * Answered from the in-memory PremiumEntitlementIndex; MongoDB is only
+ * queried until the index has finished loading.
  */
 @Service
 @RequiredArgsConstructor
@@ -25,7 +30,9 @@ import org.springframework.stereotype.Service;
 public class PremiumStatusRequestConsumer {
 
     private final ProfileRepository profileRepository;
+    private final PremiumEntitlementIndex premiumEntitlementIndex;
     private final KafkaTemplate<String, PremiumStatusResponseEvent> premiumStatusResponseKafkaTemplate;
+    private final KafkaSendTracker sendTracker;
 
     @KafkaListener(
             topics = "premium-status.requests",
@@ -37,10 +44,12 @@ public class PremiumStatusRequestConsumer {
         log.info("Received premium-status.request for companyId={} requestId={}",
                 companyId, event.getRequestId());
 
-        Boolean isPremium = profileRepository.findByUserId(companyId)
-                .map(profile -> profile.getSubscriptionType() == SubscriptionType.PREMIUM
-                        && profile.isSubscriptionActive())
-                .orElse(false);
+        Boolean isPremium = premiumEntitlementIndex.isReady()
+                ? premiumEntitlementIndex.isPremium(companyId)
+                : profileRepository.findByUserId(companyId)
+                        .map(profile -> profile.getSubscriptionType() == SubscriptionType.PREMIUM
+                                && profile.isSubscriptionActive())
+                        .orElse(false);
 
         PremiumStatusResponseEvent response = PremiumStatusResponseEvent.builder()
                 .requestId(event.getRequestId())
@@ -48,7 +57,7 @@ public class PremiumStatusRequestConsumer {
                 .isPremium(isPremium)
                 .build();
 
-        premiumStatusResponseKafkaTemplate.send("premium-status.responses", companyId, response);
+        sendTracker.send(premiumStatusResponseKafkaTemplate, "premium-status.responses", companyId, response);
         log.info("Sent premium-status.response for companyId={} isPremium={}", companyId, isPremium);
     }
 }
@@ -0,0 +1,60 @@
+package com.devision.jm.profile.consumer;
+
+import com.devision.jm.profile.api.internal.dto.ProfileCacheInvalidationEvent;
+import com.devision.jm.profile.cache.ProfileCache;
+import com.devision.jm.profile.entitlement.PremiumEntitlementIndex;
+import com.devision.jm.profile.model.enums.SubscriptionType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Profile Cache Invalidation Consumer
+ *
+ * Applies profile write broadcasts from other replicas to the local ProfileCache
+ * and PremiumEntitlementIndex. The index is only touched by broadcasts of
+ * subscription changes, which carry the new subscription and version (applied
+ * without a read, unless the index already holds a newer version), and of
+ * deletes (re-read by user_id).
+ * Every node consumes the topic with its own consumer group, so every node sees
+ * every invalidation (including its own, which is a no-op after the local evict).
+ *
+ * Topic: profile.cache.invalidation
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "kafka.enabled", havingValue = "true")
+public class ProfileCacheInvalidationConsumer {
+
+    private final ProfileCache profileCache;
+    private final PremiumEntitlementIndex premiumEntitlementIndex;
+    private final ObjectMapper objectMapper;
+
+    @KafkaListener(
+            topics = "${kafka.topics.profile-cache-invalidation:profile.cache.invalidation}",
+            containerFactory = "cacheInvalidationListenerContainerFactory"
+    )
+    public void handleInvalidation(String message) {
+        try {
+            ProfileCacheInvalidationEvent event = objectMapper.readValue(message, ProfileCacheInvalidationEvent.class);
+            profileCache.evictIfOlder(event.getUserId(), event.getVersion());
+            if (event.getVersion() == null) {
+                // Deleted (or version unknown) - re-read it (projected, by user_id)
+                premiumEntitlementIndex.refresh(event.getUserId());
+            } else if (event.getSubscriptionType() != null) {
+                premiumEntitlementIndex.apply(event.getUserId(),
+                        SubscriptionType.PREMIUM.name().equals(event.getSubscriptionType()),
+                        event.getSubscriptionEndDate(), event.getVersion());
+            }
+            log.debug("Applied profile cache invalidation. userId={}, version={}",
+                    event.getUserId(), event.getVersion());
+        } catch (Exception e) {
+            // Never block the invalidation stream on one bad record
+            log.error("Failed to process profile cache invalidation message", e);
+        }
+    }
+}
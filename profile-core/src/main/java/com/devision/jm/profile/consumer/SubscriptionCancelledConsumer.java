@@ -1,16 +1,23 @@
 package com.devision.jm.profile.consumer;
 
 import com.devision.jm.profile.api.internal.dto.SubscriptionCancelledEvent;
+import com.devision.jm.profile.cache.ProfileCache;
+import com.devision.jm.profile.entitlement.PremiumEntitlementIndex;
+import com.devision.jm.profile.idempotency.ProcessedMessageLedger;
+import com.devision.jm.profile.messaging.KeyOrderedDispatcher;
 import com.devision.jm.profile.model.entity.Profile;
 import com.devision.jm.profile.model.enums.SubscriptionType;
 import com.devision.jm.profile.repository.ProfileRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -27,19 +34,63 @@ import java.util.Optional;
 @ConditionalOnProperty(name = "kafka.enabled", havingValue = "true", matchIfMissing = true)
 public class SubscriptionCancelledConsumer {
 
+    private static final String CONSUMER = "subscription-cancelled";
+
     private final ProfileRepository profileRepository;
     private final ObjectMapper objectMapper;
-
-    public SubscriptionCancelledConsumer(ProfileRepository profileRepository) {
+    private final ProfileCache profileCache;
+    private final PremiumEntitlementIndex premiumEntitlementIndex;
+    private final ProcessedMessageLedger processedMessageLedger;
+    private final KeyOrderedDispatcher keyOrderedDispatcher;
+
+    public SubscriptionCancelledConsumer(ProfileRepository profileRepository, ProfileCache profileCache,
+                                         PremiumEntitlementIndex premiumEntitlementIndex,
+                                         ProcessedMessageLedger processedMessageLedger,
+                                         KeyOrderedDispatcher keyOrderedDispatcher) {
         this.profileRepository = profileRepository;
+        this.profileCache = profileCache;
+        this.premiumEntitlementIndex = premiumEntitlementIndex;
+        this.processedMessageLedger = processedMessageLedger;
+        this.keyOrderedDispatcher = keyOrderedDispatcher;
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
     }
 
-    @KafkaListener(topics = "subscription-cancelled", groupId = "${spring.kafka.consumer.group-id:profile-service-group}")
-    public void consumeSubscriptionCancelledEvent(String message) {
+    @KafkaListener(
+            topics = "subscription-cancelled",
+            groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
+            containerFactory = "keyOrderedListenerContainerFactory"
+    )
+    public void consumeSubscriptionCancelledEvents(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatch(CONSUMER, records, this::consumeSubscriptionCancelledEvent,
+                "userId", "companyId", "applicantId");
+    }
+
+    /**
+     * Retry tiers of subscription-cancelled (see KafkaRetryTopics).
+     */
+    @KafkaListener(
+            topics = "#{@kafkaRetryTopics.retryTopics('subscription-cancelled')}",
+            groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
+            containerFactory = "keyOrderedListenerContainerFactory"
+    )
+    public void consumeSubscriptionCancelledRetries(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatchRetries(CONSUMER, records, this::consumeSubscriptionCancelledEvent,
+                "userId", "companyId", "applicantId");
+    }
+
+    /**
+     * Process one record. Runs on a KeyOrderedDispatcher worker, in order per user.
+     */
+    public void consumeSubscriptionCancelledEvent(ConsumerRecord<String, String> record) {
+        String message = record.value();
+        String messageId = ProcessedMessageLedger.messageId(record);
         log.info("========== RECEIVED SUBSCRIPTION CANCELLED EVENT ==========");
-        log.info("Raw message: {}", message);
+        log.info("Raw message: {}, messageId: {}", message, messageId);
+
+        if (processedMessageLedger.isDuplicate(messageId, CONSUMER)) {
+            return;
+        }
 
         try {
             SubscriptionCancelledEvent event = objectMapper.readValue(message, SubscriptionCancelledEvent.class);
@@ -58,20 +109,31 @@ public class SubscriptionCancelledConsumer {
                 return;
             }
 
-            Optional<Profile> profileOpt = profileRepository.findByUserId(userId);
+            // Downgrade to FREE - one findAndModify, only if this message hasn't been applied yet
+            // (a redelivered cancellation must not downgrade a later renewal)
+            Update update = new Update()
+                    .set("subscriptionType", SubscriptionType.FREE)
+                    .unset("subscriptionEndDate");
+            processedMessageLedger.stamp(update, messageId);
+
+            Optional<Profile> profileOpt = profileRepository.updateByUserId(
+                    userId, null, processedMessageLedger.notAppliedTo(messageId), update);
 
             if (profileOpt.isEmpty()) {
-                log.warn("Profile not found for userId: {}", userId);
+                // Not found may be a profile created later or just moved - retried (retry topics / DLT), not recorded
+                if (!profileRepository.existsByUserId(userId)) {
+                    throw new RuntimeException("Profile not found for userId: " + userId);
+                }
+                log.info("Cancellation already applied to userId: {}", userId);
+                processedMessageLedger.record(messageId, CONSUMER);
                 return;
             }
 
-            Profile profile = profileOpt.get();
-
-            // Downgrade to FREE
-            profile.setSubscriptionType(SubscriptionType.FREE);
-            profile.setSubscriptionEndDate(null);
-
-            profileRepository.save(profile);
+            Profile savedProfile = profileOpt.get();
+            profileCache.evict(savedProfile.getUserId(), savedProfile.getVersion(),
+                    savedProfile.getSubscriptionType(), savedProfile.getSubscriptionEndDate());
+            premiumEntitlementIndex.apply(savedProfile);
+            processedMessageLedger.record(messageId, CONSUMER);
 
             log.info("========== SUBSCRIPTION DOWNGRADED TO FREE ==========");
             log.info("UserId: {}", userId);
@@ -81,6 +143,7 @@ public class SubscriptionCancelledConsumer {
 
         } catch (Exception e) {
             log.error("Failed to process subscription cancelled event: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to process SubscriptionCancelledEvent", e);
         }
     }
 }
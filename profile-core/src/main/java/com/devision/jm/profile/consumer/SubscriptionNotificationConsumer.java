@@ -2,19 +2,27 @@ package com.devision.jm.profile.consumer;
 
 import com.devision.jm.profile.api.internal.dto.SubscriptionChangedEvent;
 import com.devision.jm.profile.api.internal.dto.SubscriptionNotificationEvent;
+import com.devision.jm.profile.cache.ProfileCache;
+import com.devision.jm.profile.entitlement.PremiumEntitlementIndex;
+import com.devision.jm.profile.idempotency.ProcessedMessageLedger;
+import com.devision.jm.profile.messaging.KeyOrderedDispatcher;
 import com.devision.jm.profile.model.entity.Profile;
 import com.devision.jm.profile.model.enums.SubscriptionType;
+import com.devision.jm.profile.outbox.ProfileOutbox;
 import com.devision.jm.profile.repository.ProfileRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Kafka Consumer for Subscription Notification Events
@@ -29,6 +37,12 @@ import java.time.LocalDateTime;
  * 3. This consumer receives the event
  * 4. For ENDING_SOON: Sets expiryNotificationSent = true
  * 5. For ENDED: Sets expiredNotificationSent = true + subscriptionType = FREE
+ *
+ * A failed record is retried through the retry topics, behind later records of
+ * the same user, so an ENDING_SOON or ENDED can arrive after the subscription
+ * was renewed. Both only apply while the profile's subscriptionEndDate is not
+ * past the event's endDate: a late one for an earlier subscription period is
+ * skipped instead of downgrading a renewed profile.
  */
 @Slf4j
 @Service
@@ -38,10 +52,15 @@ import java.time.LocalDateTime;
 public class SubscriptionNotificationConsumer {
 
     private static final String SUBSCRIPTION_CHANGED_TOPIC = "subscription.changed";
+    private static final String CONSUMER = "subscription-notifications";
 
     private final ProfileRepository profileRepository;
     private final ObjectMapper objectMapper;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ProfileOutbox profileOutbox;
+    private final ProfileCache profileCache;
+    private final PremiumEntitlementIndex premiumEntitlementIndex;
+    private final ProcessedMessageLedger processedMessageLedger;
+    private final KeyOrderedDispatcher keyOrderedDispatcher;
 
     /**
      * Consume SubscriptionNotificationEvent from Kafka
@@ -51,11 +70,37 @@ public class SubscriptionNotificationConsumer {
      */
     @KafkaListener(
             topics = "subscription-notifications",
-            groupId = "${spring.kafka.consumer.group-id:profile-service-group}"
+            groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
+            containerFactory = "keyOrderedListenerContainerFactory"
     )
-    public void consumeSubscriptionNotificationEvent(String message) {
+    public void consumeSubscriptionNotificationEvents(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatch(CONSUMER, records, this::consumeSubscriptionNotificationEvent, "userId");
+    }
+
+    /**
+     * Retry tiers of subscription-notifications (see KafkaRetryTopics).
+     */
+    @KafkaListener(
+            topics = "#{@kafkaRetryTopics.retryTopics('subscription-notifications')}",
+            groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
+            containerFactory = "keyOrderedListenerContainerFactory"
+    )
+    public void consumeSubscriptionNotificationRetries(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatchRetries(CONSUMER, records, this::consumeSubscriptionNotificationEvent, "userId");
+    }
+
+    /**
+     * Process one record. Runs on a KeyOrderedDispatcher worker, in order per user.
+     */
+    public void consumeSubscriptionNotificationEvent(ConsumerRecord<String, String> record) {
+        String message = record.value();
+        String messageId = ProcessedMessageLedger.messageId(record);
         log.info("========== RECEIVED SUBSCRIPTION NOTIFICATION EVENT ==========");
-        log.info("Message: {}", message);
+        log.info("Message: {}, messageId: {}", message, messageId);
+
+        if (processedMessageLedger.isDuplicate(messageId, CONSUMER)) {
+            return;
+        }
 
         try {
             // Deserialize JSON message to DTO
@@ -64,35 +109,46 @@ public class SubscriptionNotificationConsumer {
             log.info("Processing SubscriptionNotificationEvent: eventType={}, userId={}, daysLeft={}",
                     event.getEventType(), event.getUserId(), event.getDaysLeft());
 
-            // Find profile by userId
-            Profile profile = profileRepository.findByUserId(event.getUserId()).orElse(null);
-
-            if (profile == null) {
-                log.error("Profile not found for userId: {}. Cannot update subscription status.", event.getUserId());
-                return;
-            }
-
-            // Handle based on event type
+            // Each update is one findAndModify that only applies if this message
+            // hasn't been applied to the profile yet, and stamps it
+            Update update;
             if ("ENDING_SOON".equals(event.getEventType())) {
                 // Mark that expiry notification was sent
-                profile.setExpiryNotificationSent(true);
-                profileRepository.save(profile);
-
-                log.info("✅ Updated expiryNotificationSent=true for userId={}", event.getUserId());
-
+                update = new Update().set("expiryNotificationSent", true);
             } else if ("ENDED".equals(event.getEventType())) {
                 // Mark that expired notification was sent + downgrade to FREE
-                profile.setExpiredNotificationSent(true);
-                profile.setSubscriptionType(SubscriptionType.FREE);
-                profileRepository.save(profile);
-
-                log.info("✅ Updated subscriptionType=FREE, expiredNotificationSent=true for userId={}", event.getUserId());
-
-                // Publish subscription changed event for Applicant-Search-Service
-                publishSubscriptionChangedEvent(event.getUserId(), false);
+                update = new Update()
+                        .set("expiredNotificationSent", true)
+                        .set("subscriptionType", SubscriptionType.FREE);
+                // Subscription changed event for Applicant-Search-Service, saved with the profile
+                profileOutbox.append(update, SUBSCRIPTION_CHANGED_TOPIC, event.getUserId(),
+                        subscriptionChangedEvent(event.getUserId(), false));
             } else {
                 log.warn("Unknown eventType: {}", event.getEventType());
+                processedMessageLedger.record(messageId, CONSUMER);
+                return;
             }
+            processedMessageLedger.stamp(update, messageId);
+
+            Profile savedProfile = profileRepository.updateByUserId(
+                    event.getUserId(), null, notRenewedSince(processedMessageLedger.notAppliedTo(messageId), event),
+                    update).orElse(null);
+
+            if (savedProfile == null) {
+                // Not found may be a profile created later or just moved - retried (retry topics / DLT), not recorded
+                if (!profileRepository.existsByUserId(event.getUserId())) {
+                    throw new RuntimeException("Profile not found for userId: " + event.getUserId());
+                }
+                log.info("{} already applied to userId: {}, or the subscription was renewed after endDate: {}",
+                        event.getEventType(), event.getUserId(), event.getEndDate());
+            } else {
+                profileCache.evict(savedProfile.getUserId(), savedProfile.getVersion(),
+                        savedProfile.getSubscriptionType(), savedProfile.getSubscriptionEndDate());
+                premiumEntitlementIndex.apply(savedProfile);
+                log.info("✅ Applied {} for userId={} (subscriptionType={})",
+                        event.getEventType(), event.getUserId(), savedProfile.getSubscriptionType());
+            }
+            processedMessageLedger.record(messageId, CONSUMER);
 
             log.info("========== SUBSCRIPTION NOTIFICATION PROCESSED ==========");
 
@@ -103,24 +159,26 @@ public class SubscriptionNotificationConsumer {
     }
 
     /**
-     * Publish subscription changed event to Kafka
-     * Consumed by Applicant-Search-Service to update isPremium flag
+     * Only while the subscription ends no later than the event's endDate (or has
+     * no end date). $not/$gte rather than $or, which the update query already uses.
      */
-    private void publishSubscriptionChangedEvent(String companyId, boolean isPremium) {
-        try {
-            SubscriptionChangedEvent event = SubscriptionChangedEvent.builder()
-                    .companyId(companyId)
-                    .isPremium(isPremium)
-                    .subscriptionType(isPremium ? "PREMIUM" : "FREE")
-                    .changedAt(LocalDateTime.now())
-                    .build();
-
-            String json = objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(SUBSCRIPTION_CHANGED_TOPIC, companyId, json);
-
-            log.info("Published subscription changed event: companyId={}, isPremium={}", companyId, isPremium);
-        } catch (Exception e) {
-            log.error("Failed to publish subscription changed event: {}", e.getMessage(), e);
+    private static Criteria notRenewedSince(Criteria precondition, SubscriptionNotificationEvent event) {
+        if (event.getEndDate() == null) {
+            return precondition;
         }
+        return precondition.and("subscriptionEndDate").not().gte(event.getEndDate().plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Subscription changed event for the outbox (published by OutboxRelay)
+     * Consumed by Applicant-Search-Service to update isPremium flag
+     */
+    private static SubscriptionChangedEvent subscriptionChangedEvent(String companyId, boolean isPremium) {
+        return SubscriptionChangedEvent.builder()
+                .companyId(companyId)
+                .isPremium(isPremium)
+                .subscriptionType(isPremium ? "PREMIUM" : "FREE")
+                .changedAt(LocalDateTime.now())
+                .build();
     }
 }
@@ -1,17 +1,24 @@
 package com.devision.jm.profile.consumer;
 
 import com.devision.jm.profile.api.internal.dto.UserCreatedEvent;
+import com.devision.jm.profile.cache.ProfileCache;
+import com.devision.jm.profile.idempotency.ProcessedMessageLedger;
+import com.devision.jm.profile.messaging.KeyOrderedDispatcher;
 import com.devision.jm.profile.model.entity.Profile;
 import com.devision.jm.profile.model.enums.SubscriptionType;
 import com.devision.jm.profile.repository.ProfileRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 
 /**
@@ -37,8 +44,13 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional(rollbackFor = Exception.class)
 public class UserCreatedEventConsumer {
 
+    private static final String CONSUMER = "user-created";
+
     private final ProfileRepository profileRepository;
     private final ObjectMapper objectMapper;
+    private final ProfileCache profileCache;
+    private final ProcessedMessageLedger processedMessageLedger;
+    private final KeyOrderedDispatcher keyOrderedDispatcher;
 
     /**
      * Consume UserCreatedEvent from Kafka
@@ -49,11 +61,38 @@ public class UserCreatedEventConsumer {
     @KafkaListener(
             topics = "user-created",
             groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
-            autoStartup = "${kafka.consumer.auto-startup:true}"
+            autoStartup = "${kafka.consumer.auto-startup:true}",
+            containerFactory = "keyOrderedListenerContainerFactory"
     )
-    public void consumeUserCreatedEvent(String message) {
+    public void consumeUserCreatedEvents(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatch(CONSUMER, records, this::consumeUserCreatedEvent, "userId");
+    }
+
+    /**
+     * Retry tiers of user-created (see KafkaRetryTopics).
+     */
+    @KafkaListener(
+            topics = "#{@kafkaRetryTopics.retryTopics('user-created')}",
+            groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
+            autoStartup = "${kafka.consumer.auto-startup:true}",
+            containerFactory = "keyOrderedListenerContainerFactory"
+    )
+    public void consumeUserCreatedRetries(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatchRetries(CONSUMER, records, this::consumeUserCreatedEvent, "userId");
+    }
+
+    /**
+     * Process one record. Runs on a KeyOrderedDispatcher worker, in order per user.
+     */
+    public void consumeUserCreatedEvent(ConsumerRecord<String, String> record) {
+        String message = record.value();
+        String messageId = ProcessedMessageLedger.messageId(record);
         log.info("Received user-created event: {}", message);
 
+        if (processedMessageLedger.isDuplicate(messageId, CONSUMER)) {
+            return;
+        }
+
         try {
             // Deserialize JSON message to DTO
             UserCreatedEvent event = objectMapper.readValue(message, UserCreatedEvent.class);
@@ -64,6 +103,7 @@ public class UserCreatedEventConsumer {
             // Check if profile already exists (idempotency)
             if (profileRepository.existsByUserId(event.getUserId())) {
                 log.warn("Profile already exists for userId: {}. Skipping creation.", event.getUserId());
+                processedMessageLedger.record(messageId, CONSUMER);
                 return;
             }
 
@@ -80,10 +120,13 @@ public class UserCreatedEventConsumer {
                     // New users start with FREE subscription (6.1.1)
                     .subscriptionType(SubscriptionType.FREE)
                     // avatarUrl will use default value from Profile entity
+                    .processedMessageIds(new ArrayList<>(List.of(messageId)))
                     .build();
 
             // Save to database
             Profile savedProfile = profileRepository.save(profile);
+            profileCache.evict(savedProfile.getUserId(), savedProfile.getVersion());
+            processedMessageLedger.record(messageId, CONSUMER);
 
             log.info("Profile created successfully for userId: {}, profileId: {}",
                     event.getUserId(), savedProfile.getId());
@@ -2,11 +2,16 @@ package com.devision.jm.profile.consumer;
 
 import com.devision.jm.profile.api.internal.dto.UserDeletedEvent;
 import com.devision.jm.profile.model.entity.Event;
+import com.devision.jm.profile.cache.ProfileCache;
+import com.devision.jm.profile.entitlement.PremiumEntitlementIndex;
+import com.devision.jm.profile.idempotency.ProcessedMessageLedger;
+import com.devision.jm.profile.messaging.KeyOrderedDispatcher;
 import com.devision.jm.profile.repository.EventRepository;
 import com.devision.jm.profile.repository.ProfileRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
@@ -42,9 +47,15 @@ import java.util.List;
 @Transactional(rollbackFor = Exception.class)
 public class UserDeletedEventConsumer {
 
+    private static final String CONSUMER = "user-deleted";
+
     private final ProfileRepository profileRepository;
     private final EventRepository eventRepository;
     private final ObjectMapper objectMapper;
+    private final ProfileCache profileCache;
+    private final PremiumEntitlementIndex premiumEntitlementIndex;
+    private final ProcessedMessageLedger processedMessageLedger;
+    private final KeyOrderedDispatcher keyOrderedDispatcher;
 
     /**
      * Consume UserDeletedEvent from Kafka
@@ -55,11 +66,38 @@ public class UserDeletedEventConsumer {
     @KafkaListener(
             topics = "user-deleted",
             groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
-            autoStartup = "${kafka.consumer.auto-startup:true}"
+            autoStartup = "${kafka.consumer.auto-startup:true}",
+            containerFactory = "keyOrderedListenerContainerFactory"
+    )
+    public void consumeUserDeletedEvents(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatch(CONSUMER, records, this::consumeUserDeletedEvent, "userId");
+    }
+
+    /**
+     * Retry tiers of user-deleted (see KafkaRetryTopics).
+     */
+    @KafkaListener(
+            topics = "#{@kafkaRetryTopics.retryTopics('user-deleted')}",
+            groupId = "${spring.kafka.consumer.group-id:profile-service-group}",
+            autoStartup = "${kafka.consumer.auto-startup:true}",
+            containerFactory = "keyOrderedListenerContainerFactory"
     )
-    public void consumeUserDeletedEvent(String message) {
+    public void consumeUserDeletedRetries(List<ConsumerRecord<String, String>> records) {
+        keyOrderedDispatcher.dispatchRetries(CONSUMER, records, this::consumeUserDeletedEvent, "userId");
+    }
+
+    /**
+     * Process one record. Runs on a KeyOrderedDispatcher worker, in order per user.
+     */
+    public void consumeUserDeletedEvent(ConsumerRecord<String, String> record) {
+        String message = record.value();
+        String messageId = ProcessedMessageLedger.messageId(record);
         log.info("Received user-deleted event: {}", message);
 
+        if (processedMessageLedger.isDuplicate(messageId, CONSUMER)) {
+            return;
+        }
+
         try {
             // Deserialize JSON message to DTO
             UserDeletedEvent event = objectMapper.readValue(message, UserDeletedEvent.class);
@@ -74,6 +112,7 @@ public class UserDeletedEventConsumer {
 
             // 2. Delete the profile
             deleteProfile(userId);
+            processedMessageLedger.record(messageId, CONSUMER);
 
             log.info("Successfully cleaned up data for deleted user. userId={}, email={}",
                     event.getUserId(), event.getEmail());
@@ -134,6 +173,8 @@ public class UserDeletedEventConsumer {
             // }
 
             profileRepository.deleteByUserId(userId);
+            profileCache.evict(userId);
+            premiumEntitlementIndex.remove(userId);
             log.info("Deleted profile for userId={}", userId);
 
         } catch (Exception e) {
@@ -0,0 +1,62 @@
+package com.devision.jm.profile.entitlement;
+
+import com.devision.jm.profile.changestream.ChangeStreamListener;
+import com.devision.jm.profile.model.enums.SubscriptionType;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Premium Entitlement Change Listener
+ *
+ * Keeps PremiumEntitlementIndex in line with the committed writes on the
+ * "profiles" collection, whichever replica or service made them.
+ *
+ * Only active when app.change-streams.enabled=true.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.change-streams.enabled", havingValue = "true")
+public class PremiumEntitlementChangeListener implements ChangeStreamListener {
+
+    private final PremiumEntitlementIndex premiumEntitlementIndex;
+
+    @Override
+    public String collection() {
+        return "profiles";
+    }
+
+    @Override
+    public void onChange(ChangeStreamDocument<Document> change) {
+        Document profile = change.getFullDocument();
+        if (profile == null || profile.getString("user_id") == null) {
+            // Deletes only carry the _id; the delete path removes the user by userId itself
+            if (change.getOperationType() != OperationType.DELETE) {
+                log.debug("Change without full document ignored. operation={}", change.getOperationType());
+            }
+            return;
+        }
+
+        Date end = profile.get("subscription_end_date", Date.class);
+        premiumEntitlementIndex.apply(
+                profile.getString("user_id"),
+                SubscriptionType.PREMIUM.name().equals(profile.getString("subscription_type")),
+                end == null ? null : LocalDateTime.ofInstant(end.toInstant(), ZoneId.systemDefault()),
+                profile.get("version") instanceof Number version ? version.longValue() : null);
+    }
+
+    @Override
+    public void onReset() {
+        // Changes may have been missed - reload the whole index
+        premiumEntitlementIndex.bootstrap();
+    }
+}
@@ -0,0 +1,218 @@
+package com.devision.jm.profile.entitlement;
+
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.model.enums.SubscriptionType;
+import com.devision.jm.profile.sharding.ShardRouter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Premium Entitlement Index
+ *
+ * In-memory map of userId -> subscription end (epoch millis) for every PREMIUM
+ * profile, so premium checks (premium-status.requests) are lock-free map reads
+ * instead of loading the whole Profile from MongoDB.
+ *
+ * Same rule as Profile.isSubscriptionActive():
+ * - PREMIUM with no end date  -> Long.MAX_VALUE (always active)
+ * - PREMIUM with an end date  -> active while now < end
+ * - FREE / unknown profile    -> not in the map, or an entry that is never active
+ *
+ * Every entry carries the profile version it was taken from, and an update with
+ * an older version is ignored (like ProfileCache.evictIfOlder): broadcasts of
+ * different replicas can arrive out of order, and the change stream may have
+ * applied a newer write already. A profile that stops being PREMIUM therefore
+ * keeps an inactive entry with its version until the next bootstrap.
+ *
+ * Kept current by:
+ * - Bootstrap: streams the PREMIUM profiles (projected) of every shard once the app is ready
+ * - Local writes: the subscription consumers call apply(...) after saving
+ * - Other replicas' writes: ProfileCacheInvalidationConsumer applies the subscription
+ *   carried by the broadcast of a subscription change, and calls refresh(userId) on deletes
+ * - With app.change-streams.enabled, PremiumEntitlementChangeListener applies
+ *   every committed write on the profiles collection
+ *
+ * Until the bootstrap has finished, isReady() is false and callers fall back to MongoDB.
+ */
+@Slf4j
+@Component
+public class PremiumEntitlementIndex {
+
+    private static final long NO_END_DATE = Long.MAX_VALUE;
+    private static final long NOT_PREMIUM = Long.MIN_VALUE;
+
+    private final ShardRouter shardRouter;
+    private final Map<String, Entitlement> premiumUntil = new ConcurrentHashMap<>();
+
+    // userIds written while the bootstrap is running - their snapshot value may be stale
+    private final Set<String> changedDuringBootstrap = ConcurrentHashMap.newKeySet();
+    private volatile boolean ready;
+
+    public PremiumEntitlementIndex(ShardRouter shardRouter, MeterRegistry meterRegistry) {
+        this.shardRouter = shardRouter;
+        Gauge.builder("premium.entitlements.size", premiumUntil,
+                        entitlements -> entitlements.values().stream().filter(Entitlement::premium).count())
+                .description("Number of PREMIUM profiles in the in-memory entitlement index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * (Re)load every PREMIUM profile (user_id and subscription end only).
+     * Also called after a change stream reset, when changes may have been missed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void bootstrap() {
+        long startedAt = System.currentTimeMillis();
+        ready = false;
+
+        Query query = new Query(Criteria.where("subscriptionType").is(SubscriptionType.PREMIUM));
+        query.fields().include("userId").include("subscriptionType").include("subscriptionEndDate")
+                .include("version");
+        query.cursorBatchSize(1000);
+
+        Set<String> seen = new HashSet<>();
+        try {
+            for (String shard : shardRouter.shards()) {
+                try (Stream<Profile> profiles = shardRouter.template(shard).stream(query, Profile.class)) {
+                    profiles.forEach(profile -> {
+                        seen.add(profile.getUserId());
+                        Entitlement entitlement = new Entitlement(
+                                endMillis(profile.getSubscriptionEndDate()), profile.getVersion());
+                        // A write applied meanwhile is newer than this snapshot
+                        premiumUntil.compute(profile.getUserId(),
+                                (userId, current) -> changedDuringBootstrap.contains(userId) ? current : entitlement);
+                    });
+                }
+            }
+            premiumUntil.keySet().removeIf(userId -> !seen.contains(userId) && !changedDuringBootstrap.contains(userId));
+
+            ready = true;
+            changedDuringBootstrap.clear();
+            log.info("Premium entitlement index ready. premiumProfiles={}, took={}ms",
+                    premiumUntil.size(), System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            // Stay not-ready: premium checks keep falling back to MongoDB
+            log.error("Failed to bootstrap premium entitlement index: {}", e.getMessage(), e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Whether the user currently has an active PREMIUM subscription.
+     * Only meaningful when isReady() is true.
+     */
+    public boolean isPremium(String userId) {
+        Entitlement entitlement = userId == null ? null : premiumUntil.get(userId);
+        return entitlement != null && System.currentTimeMillis() < entitlement.until();
+    }
+
+    // ==================== Updates ====================
+
+    /**
+     * Apply the subscription state of a just-persisted profile.
+     */
+    public void apply(Profile profile) {
+        if (profile == null || profile.getUserId() == null) {
+            return;
+        }
+        apply(profile.getUserId(), profile.getSubscriptionType() == SubscriptionType.PREMIUM,
+                profile.getSubscriptionEndDate(), profile.getVersion());
+    }
+
+    /**
+     * Apply a subscription state, unless the entry is from a newer version.
+     *
+     * @param premium          whether subscriptionType is PREMIUM
+     * @param subscriptionEnd  subscription end date, null = no end date
+     * @param version          BaseEntity.version the state was read from, null = unknown (always applied)
+     */
+    public void apply(String userId, boolean premium, LocalDateTime subscriptionEnd, Long version) {
+        Entitlement entitlement = new Entitlement(premium ? endMillis(subscriptionEnd) : NOT_PREMIUM, version);
+        // Per-key compute serializes with the bootstrap's write of the same user
+        premiumUntil.compute(userId, (key, current) -> {
+            if (current != null && current.isNewerThan(version)) {
+                log.debug("Ignored outdated entitlement. userId={}, version={}, current={}",
+                        key, version, current.version());
+                return current;
+            }
+            markChanged(key);
+            return entitlement.premium() || version != null ? entitlement : null;
+        });
+    }
+
+    /**
+     * Drop a user (profile deleted).
+     */
+    public void remove(String userId) {
+        if (userId == null) {
+            return;
+        }
+        premiumUntil.compute(userId, (key, current) -> {
+            markChanged(key);
+            return null;
+        });
+    }
+
+    /**
+     * Re-read one user's subscription state (projected, by the user_id index).
+     * Used when another replica wrote the profile.
+     */
+    public void refresh(String userId) {
+        if (userId == null) {
+            return;
+        }
+        Query query = new Query(Criteria.where("userId").is(userId));
+        query.fields().include("userId").include("subscriptionType").include("subscriptionEndDate")
+                .include("version");
+
+        Profile profile = shardRouter.onUserShard(userId, template -> template.findOne(query, Profile.class));
+        if (profile == null) {
+            remove(userId);
+        } else {
+            apply(profile);
+        }
+    }
+
+    private void markChanged(String userId) {
+        if (!ready) {
+            changedDuringBootstrap.add(userId);
+        }
+    }
+
+    /**
+     * Subscription end (epoch millis, NOT_PREMIUM if not PREMIUM) and the profile version it was read from
+     */
+    private record Entitlement(long until, Long version) {
+
+        boolean premium() {
+            return until != NOT_PREMIUM;
+        }
+
+        boolean isNewerThan(Long other) {
+            return version != null && other != null && version > other;
+        }
+    }
+
+    private static long endMillis(LocalDateTime subscriptionEnd) {
+        return subscriptionEnd == null
+                ? NO_END_DATE
+                : subscriptionEnd.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
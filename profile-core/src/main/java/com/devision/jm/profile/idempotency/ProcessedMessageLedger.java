@@ -0,0 +1,257 @@
+package com.devision.jm.profile.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Processed Message Ledger
+ *
+ * Drops redelivered Kafka messages (auto-commit, DefaultErrorHandler retries,
+ * rebalances) before they are applied a second time.
+ *
+ * Message identity: topic-partition-offset (the upstream events carry no id).
+ * For records coming through the retry topics or a DLT replay that is the
+ * original topic/partition/offset (kafka_dlt-original-* headers, kept from the
+ * first failure on every hop), so a retried record keeps the identity it was
+ * stamped with when it was first applied.
+ *
+ * Two levels:
+ * - Ledger collection processed_messages {_id: messageId, consumer, processed_at},
+ *   expired by a TTL index after app.idempotency.retention. An in-memory Bloom
+ *   filter sits in front of it, so a new message (the normal case) costs no
+ *   database read at all; only Bloom hits are confirmed against the collection
+ * - Profile writes are made atomic with the check: the consumer's update carries
+ *   notAppliedTo(messageId) as precondition and stamp(messageId) records the id on
+ *   the profile (last app.idempotency.profile-stamps ids), in the same findAndModify
+ *
+ * The Bloom filter has two generations rotated every retention period, so it
+ * forgets ids about when the TTL index removes them.
+ *
+ * The filter is per instance. It is filled from the collection on startup and,
+ * through rebalanceListener(), whenever partitions are assigned to this instance:
+ * the ids the previous owner recorded for them (it finishes its poll before giving
+ * them up) are loaded before the first record is consumed here, so its records
+ * redelivered after the rebalance are confirmed against the collection.
+ *
+ * Metrics: kafka.consumer.duplicates{consumer}
+ */
+@Slf4j
+@Component
+public class ProcessedMessageLedger {
+
+    static final String COLLECTION = "processed_messages";
+    private static final String PROFILE_STAMPS_FIELD = "processedMessageIds";
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Duration retention;
+    private final int profileStamps;
+    private final long expectedMessages;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+
+    public ProcessedMessageLedger(
+            MongoTemplate mongoTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${app.idempotency.retention:P7D}") Duration retention,
+            @Value("${app.idempotency.profile-stamps:50}") int profileStamps,
+            @Value("${app.idempotency.bloom.expected-messages:1000000}") long expectedMessages,
+            @Value("${app.idempotency.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+        this.retention = retention;
+        this.profileStamps = profileStamps;
+        this.expectedMessages = expectedMessages;
+        this.falsePositiveRate = falsePositiveRate;
+        this.current = new BloomFilter(expectedMessages, falsePositiveRate);
+        this.previous = new BloomFilter(expectedMessages, falsePositiveRate);
+    }
+
+    /**
+     * Identity of a consumed record: its original topic-partition-offset.
+     * The first DLT original headers win, should a hop have appended its own.
+     */
+    public static String messageId(ConsumerRecord<?, ?> record) {
+        Header topic = firstHeader(record, KafkaHeaders.DLT_ORIGINAL_TOPIC);
+        Header partition = firstHeader(record, KafkaHeaders.DLT_ORIGINAL_PARTITION);
+        Header offset = firstHeader(record, KafkaHeaders.DLT_ORIGINAL_OFFSET);
+        if (topic != null && partition != null && partition.value().length == Integer.BYTES
+                && offset != null && offset.value().length == Long.BYTES) {
+            return new String(topic.value(), StandardCharsets.UTF_8) + "-"
+                    + ByteBuffer.wrap(partition.value()).getInt() + "-"
+                    + ByteBuffer.wrap(offset.value()).getLong();
+        }
+        return record.topic() + "-" + record.partition() + "-" + record.offset();
+    }
+
+    private static Header firstHeader(ConsumerRecord<?, ?> record, String key) {
+        Iterator<Header> headers = record.headers().headers(key).iterator();
+        return headers.hasNext() ? headers.next() : null;
+    }
+
+    /**
+     * Whether the message has already been processed (per the ledger).
+     */
+    public boolean isDuplicate(String messageId, String consumer) {
+        if (!current.mightContain(messageId) && !previous.mightContain(messageId)) {
+            return false;
+        }
+        boolean duplicate = mongoTemplate.exists(Query.query(Criteria.where("_id").is(messageId)), COLLECTION);
+        if (duplicate) {
+            Counter.builder("kafka.consumer.duplicates")
+                    .tag("consumer", consumer)
+                    .register(meterRegistry)
+                    .increment();
+            log.info("Dropping duplicate message. consumer={}, messageId={}", consumer, messageId);
+        }
+        return duplicate;
+    }
+
+    /**
+     * Record a processed message. Recording twice is harmless.
+     */
+    public void record(String messageId, String consumer) {
+        current.put(messageId);
+        try {
+            mongoTemplate.insert(new Document("_id", messageId)
+                    .append("consumer", consumer)
+                    .append("processed_at", new Date()), COLLECTION);
+        } catch (DuplicateKeyException e) {
+            log.debug("Message already recorded. messageId={}", messageId);
+        }
+    }
+
+    /**
+     * Profile update precondition: the message hasn't been applied to this profile.
+     */
+    public Criteria notAppliedTo(String messageId) {
+        return Criteria.where(PROFILE_STAMPS_FIELD).ne(messageId);
+    }
+
+    /**
+     * Record the message id on the profile, in the same update as the change.
+     */
+    public Update stamp(Update update, String messageId) {
+        update.push(PROFILE_STAMPS_FIELD).slice(-profileStamps).each(messageId);
+        return update;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            mongoTemplate.indexOps(COLLECTION).ensureIndex(new Index()
+                    .on("processed_at", Sort.Direction.ASC)
+                    .expire(retention)
+                    .named("idx_processed_at_ttl"));
+            log.info("Created index: idx_processed_at_ttl (expire after {})", retention);
+        } catch (Exception e) {
+            log.warn("Failed to create processed message TTL index (may already exist): {}", e.getMessage());
+        }
+
+        // Warm the Bloom filter with the ids still in the ledger
+        Query all = new Query();
+        all.fields().include("_id");
+        long loaded = 0;
+        try (Stream<Document> ids = mongoTemplate.stream(all, Document.class, COLLECTION)) {
+            for (Document id : (Iterable<Document>) ids::iterator) {
+                current.put(id.getString("_id"));
+                loaded++;
+            }
+        } catch (Exception e) {
+            log.error("Failed to load processed message ids: {}", e.getMessage(), e);
+        }
+        log.info("Processed message ledger ready. ids={}", loaded);
+    }
+
+    /**
+     * Rebalance listener for the containers of ledger-checked consumers: loads the
+     * ids recorded for newly assigned partitions into the Bloom filter.
+     *
+     * @param baseTopic maps a retry/dead-letter topic to its original topic; ids of
+     *                  retried records are those of the original record (see messageId),
+     *                  so for those the original topic's ids are loaded
+     */
+    public ConsumerRebalanceListener rebalanceListener(UnaryOperator<String> baseTopic) {
+        return new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                Set<String> prefixes = new LinkedHashSet<>();
+                for (TopicPartition partition : partitions) {
+                    String topic = baseTopic.apply(partition.topic());
+                    prefixes.add(topic.equals(partition.topic())
+                            ? topic + "-" + partition.partition() + "-"
+                            : topic + "-");
+                }
+                prefixes.forEach(ProcessedMessageLedger.this::load);
+            }
+        };
+    }
+
+    /**
+     * Put the recorded ids starting with the prefix (one _id index range scan) into the Bloom filter.
+     */
+    private void load(String prefix) {
+        // Every id with the prefix sorts within [prefix, prefix with its last char incremented)
+        String upper = prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1);
+        Query query = Query.query(Criteria.where("_id").gte(prefix).lt(upper));
+        query.fields().include("_id");
+        long loaded = 0;
+        try (Stream<Document> ids = mongoTemplate.stream(query, Document.class, COLLECTION)) {
+            for (Document id : (Iterable<Document>) ids::iterator) {
+                current.put(id.getString("_id"));
+                loaded++;
+            }
+            log.info("Loaded processed message ids for assigned partitions. prefix={}, ids={}", prefix, loaded);
+        } catch (Exception e) {
+            // Profile stamps still catch re-applied profile updates
+            log.error("Failed to load processed message ids for prefix {}: {}", prefix, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Start a new Bloom generation; ids of the generation before the previous one are forgotten.
+     */
+    @Scheduled(fixedDelayString = "${app.idempotency.retention:P7D}",
+            initialDelayString = "${app.idempotency.retention:P7D}")
+    public void rotate() {
+        previous = current;
+        current = new BloomFilter(expectedMessages, falsePositiveRate);
+        log.info("Rotated processed message Bloom filter");
+    }
+}
@@ -0,0 +1,34 @@
+package com.devision.jm.profile.media;
+
+import com.devision.jm.profile.api.internal.dto.MediaReference;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Blob Staging Store
+ *
+ * Where uploaded media is staged for the File Service when media is sent as
+ * a claim check (app.media.transport=claim-check) instead of inline base64.
+ *
+ * Implementations must write the content once, streaming, and compute size and
+ * SHA-256 on the way, so the Kafka message only carries the MediaReference.
+ */
+public interface BlobStagingStore {
+
+    /**
+     * Stage content under a key derived from ownerId.
+     *
+     * @param ownerId     event or user the media belongs to (used in the key)
+     * @param content     bytes to stage; read to the end but not closed
+     * @param filename    original filename
+     * @param contentType content type
+     * @return reference to the staged bytes
+     */
+    MediaReference stage(String ownerId, InputStream content, String filename, String contentType) throws IOException;
+
+    /**
+     * Remove a staged blob (e.g. the request that referenced it could not be sent).
+     */
+    void delete(MediaReference reference);
+}
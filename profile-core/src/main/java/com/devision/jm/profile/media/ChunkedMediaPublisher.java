@@ -0,0 +1,169 @@
+package com.devision.jm.profile.media;
+
+import com.devision.jm.profile.api.internal.dto.EventFileChunk;
+import com.devision.jm.profile.api.internal.dto.EventFileChunkManifest;
+import com.devision.jm.profile.api.internal.dto.MediaReference;
+import com.devision.jm.profile.messaging.KafkaSendTracker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Chunked Media Publisher
+ *
+ * Sends one event file to the File Service as a chunked transfer
+ * (app.media.transport=chunked):
+ * 1. EventFileChunkManifest - size, chunk size/count and SHA-256 of the whole file
+ * 2. EventFileChunk records - sequence 0..chunkCount-1, each with its own SHA-256
+ *
+ * All records are keyed by eventId, so a transfer stays in order on one partition
+ * and every record stays well below max.request.size. A large video no longer
+ * occupies the partition with one giant record: uploads of other events
+ * interleave with its chunks.
+ *
+ * The file is read twice from the upload stream (checksum, then chunks), so
+ * memory use is one chunk no matter how large the file is. Sends are
+ * asynchronous; the KafkaSendTracker in-flight budget and the producer's
+ * buffer.memory apply back-pressure.
+ *
+ * File Service reassembles the file, verifies both checksums and lists the
+ * mediaId in EventFileCompletedEvent.reassembledMediaIds.
+ */
+@Slf4j
+@Component
+public class ChunkedMediaPublisher {
+
+    public static final String URI_SCHEME = "kafka-chunks";
+
+    private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+    private final KafkaTemplate<String, byte[]> mediaKafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final KafkaSendTracker sendTracker;
+    private final String chunkTopic;
+    private final int chunkSize;
+
+    /**
+     * A published transfer: the reference for the upload request and the
+     * completion of all its sends.
+     */
+    public record Transfer(MediaReference reference, CompletableFuture<Void> sent) {
+    }
+
+    public ChunkedMediaPublisher(
+            KafkaTemplate<String, byte[]> mediaKafkaTemplate,
+            ObjectMapper objectMapper,
+            KafkaSendTracker sendTracker,
+            @Value("${kafka.topics.event-file-chunks:event-file-chunks}") String chunkTopic,
+            @Value("${app.media.chunking.chunk-size:256KB}") DataSize chunkSize) {
+        this.mediaKafkaTemplate = mediaKafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.sendTracker = sendTracker;
+        this.chunkTopic = chunkTopic;
+        this.chunkSize = (int) chunkSize.toBytes();
+    }
+
+    /**
+     * Publish a file as a chunked transfer.
+     *
+     * @param mediaId   transfer id (also recorded in Event.chunkedMediaIds)
+     * @param eventId   record key
+     * @param companyId owner of the event
+     * @param role      COVER_IMAGE, IMAGE or VIDEO
+     */
+    public Transfer publish(String mediaId, String eventId, String companyId, String role, MultipartFile file)
+            throws IOException {
+
+        long totalSize = file.getSize();
+        int chunkCount = (int) Math.max(1, (totalSize + chunkSize - 1) / chunkSize);
+        String sha256 = digest(file);
+
+        List<CompletableFuture<?>> sends = new ArrayList<>(chunkCount + 1);
+        sends.add(send(eventId, EventFileChunkManifest.builder()
+                .mediaId(mediaId)
+                .eventId(eventId)
+                .companyId(companyId)
+                .role(role)
+                .filename(file.getOriginalFilename())
+                .contentType(file.getContentType())
+                .totalSize(totalSize)
+                .chunkSize(chunkSize)
+                .chunkCount(chunkCount)
+                .sha256(sha256)
+                .build()));
+
+        int sequence = 0;
+        try (InputStream in = file.getInputStream()) {
+            byte[] data;
+            while ((data = in.readNBytes(chunkSize)).length > 0 || sequence == 0) {
+                sends.add(send(eventId, EventFileChunk.builder()
+                        .mediaId(mediaId)
+                        .eventId(eventId)
+                        .sequence(sequence++)
+                        .data(data)
+                        .sha256(hex(newSha256().digest(data)))
+                        .build()));
+                if (data.length < chunkSize) {
+                    break;
+                }
+            }
+        }
+        if (sequence != chunkCount) {
+            throw new IOException("Upload size changed while chunking. mediaId=" + mediaId
+                    + ", expectedChunks=" + chunkCount + ", sentChunks=" + sequence);
+        }
+
+        log.info("Published chunked transfer. eventId={}, mediaId={}, role={}, size={}, chunks={}",
+                eventId, mediaId, role, totalSize, chunkCount);
+
+        MediaReference reference = MediaReference.builder()
+                .uri(URI_SCHEME + "://" + chunkTopic + "/" + mediaId)
+                .size(totalSize)
+                .sha256(sha256)
+                .filename(file.getOriginalFilename())
+                .contentType(file.getContentType())
+                .build();
+        return new Transfer(reference, CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)));
+    }
+
+    private CompletableFuture<?> send(String eventId, Object record) throws IOException {
+        return sendTracker.send(mediaKafkaTemplate, chunkTopic, eventId, objectMapper.writeValueAsBytes(record));
+    }
+
+    private static String digest(MultipartFile file) throws IOException {
+        MessageDigest sha256 = newSha256();
+        byte[] buffer = new byte[DIGEST_BUFFER_SIZE];
+        try (InputStream in = file.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                sha256.update(buffer, 0, read);
+            }
+        }
+        return hex(sha256.digest());
+    }
+
+    private static String hex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.devision.jm.profile.media;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Inline Media
+ *
+ * Media sent inline (base64) in a File Service upload request, without ever
+ * holding the file as a byte[] or the base64 as a String: when the request is
+ * serialized, the file is read from its stream and base64-encoded incrementally
+ * straight into the JSON output.
+ *
+ * Serialized as a plain base64 JSON string (standard alphabet, padded), i.e. the
+ * same wire format as Base64.getEncoder().encodeToString(bytes).
+ */
+@JsonSerialize(using = InlineMedia.Base64StreamingSerializer.class)
+public final class InlineMedia {
+
+    private final InputStreamSource source;
+    private final long size;
+
+    private InlineMedia(InputStreamSource source, long size) {
+        this.source = source;
+        this.size = size;
+    }
+
+    /**
+     * @param source e.g. a MultipartFile (re-opened on each serialization)
+     * @param size   content length in bytes, or -1 if unknown
+     */
+    public static InlineMedia of(InputStreamSource source, long size) {
+        return new InlineMedia(source, size);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    static final class Base64StreamingSerializer extends StdSerializer<InlineMedia> {
+
+        Base64StreamingSerializer() {
+            super(InlineMedia.class);
+        }
+
+        @Override
+        public void serialize(InlineMedia media, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            try (InputStream in = media.source.getInputStream()) {
+                // -1: let Jackson read to the end instead of trusting the declared size
+                generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, in, -1);
+            }
+        }
+    }
+}
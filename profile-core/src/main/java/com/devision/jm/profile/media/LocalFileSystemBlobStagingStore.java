@@ -0,0 +1,159 @@
+package com.devision.jm.profile.media;
+
+import com.devision.jm.profile.api.internal.dto.MediaReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Local File System Blob Staging Store
+ *
+ * Stages media in a local directory (file:// URIs). Meant for local development
+ * and tests, or deployments where the File Service shares the volume.
+ *
+ * - Content is streamed to a temp file and moved into place once complete,
+ *   so a reader never sees a partial blob
+ * - Blobs older than app.media.staging.local.retention are purged periodically
+ *   (the File Service is expected to have fetched them by then)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.media.staging.store", havingValue = "local", matchIfMissing = true)
+public class LocalFileSystemBlobStagingStore implements BlobStagingStore {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final Path baseDirectory;
+    private final Duration retention;
+
+    public LocalFileSystemBlobStagingStore(
+            @Value("${app.media.staging.local.directory:${java.io.tmpdir}/profile-media-staging}") String baseDirectory,
+            @Value("${app.media.staging.local.retention:PT24H}") Duration retention) {
+        this.baseDirectory = Paths.get(baseDirectory).toAbsolutePath().normalize();
+        this.retention = retention;
+        log.info("Local blob staging store initialized. directory={}, retention={}", this.baseDirectory, retention);
+    }
+
+    @Override
+    public MediaReference stage(String ownerId, InputStream content, String filename, String contentType)
+            throws IOException {
+        Path directory = baseDirectory.resolve(safeName(ownerId));
+        Files.createDirectories(directory);
+
+        Path target = directory.resolve(UUID.randomUUID() + "-" + safeName(filename));
+        Path temp = Files.createTempFile(directory, ".staging-", ".tmp");
+
+        MessageDigest sha256 = newSha256();
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            DigestInputStream in = new DigestInputStream(content, sha256);
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                size += read;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+
+        MediaReference reference = MediaReference.builder()
+                .uri(target.toUri().toString())
+                .size(size)
+                .sha256(HexFormat.of().formatHex(sha256.digest()))
+                .filename(filename)
+                .contentType(contentType)
+                .build();
+        log.debug("Staged media. uri={}, size={}", reference.getUri(), size);
+        return reference;
+    }
+
+    @Override
+    public void delete(MediaReference reference) {
+        if (reference == null || reference.getUri() == null) {
+            return;
+        }
+        try {
+            Path path = Paths.get(URI.create(reference.getUri())).normalize();
+            if (path.startsWith(baseDirectory)) {
+                Files.deleteIfExists(path);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to delete staged media. uri={}, error={}", reference.getUri(), e.getMessage());
+        }
+    }
+
+    /**
+     * Purge blobs older than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${app.media.staging.local.purge-interval:PT1H}")
+    public void purgeExpired() {
+        if (!Files.isDirectory(baseDirectory)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(retention);
+        try (Stream<Path> files = Files.walk(baseDirectory)) {
+            long purged = files.filter(Files::isRegularFile)
+                    .filter(file -> isOlderThan(file, cutoff))
+                    .filter(this::deleteQuietly)
+                    .count();
+            if (purged > 0) {
+                log.info("Purged {} expired staged media files", purged);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to purge staged media: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isOlderThan(Path file, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean deleteQuietly(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String safeName(String value) {
+        if (value == null || value.isBlank()) {
+            return "unnamed";
+        }
+        return value.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.devision.jm.profile.media;
+
+import com.devision.jm.profile.api.internal.dto.MediaReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Media Stager
+ *
+ * Prepares uploaded files for the File Service upload requests according to
+ * app.media.transport:
+ * - inline:      base64 of the file (original protocol), encoded from the
+ *                upload stream while the request is serialized
+ * - claim-check: file streamed once into the BlobStagingStore, the request
+ *                only carries the MediaReference (uri, size, sha256)
+ * - chunked:     event files above app.media.chunking.threshold are sent as
+ *                chunk records (ChunkedMediaPublisher), smaller ones inline;
+ *                avatars are always inline
+ *
+ * Neither path calls MultipartFile.getBytes(): uploads above
+ * spring.servlet.multipart.file-size-threshold stay on disk and are only read
+ * through bounded buffers.
+ */
+@Slf4j
+@Component
+public class MediaStager {
+
+    private final BlobStagingStore blobStagingStore;
+    private final MediaTransport transport;
+    private final DataSize chunkingThreshold;
+
+    public MediaStager(
+            BlobStagingStore blobStagingStore,
+            @Value("${app.media.transport:inline}") String transport,
+            @Value("${app.media.chunking.threshold:512KB}") DataSize chunkingThreshold) {
+        this.blobStagingStore = blobStagingStore;
+        this.transport = MediaTransport.valueOf(transport.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        this.chunkingThreshold = chunkingThreshold;
+        log.info("Media transport: {}, chunkingThreshold={}", this.transport, chunkingThreshold);
+    }
+
+    public boolean isClaimCheck() {
+        return transport == MediaTransport.CLAIM_CHECK;
+    }
+
+    /**
+     * Whether an event file goes as a chunked transfer instead of inline.
+     */
+    public boolean shouldChunk(MultipartFile file) {
+        return transport == MediaTransport.CHUNKED && file.getSize() > chunkingThreshold.toBytes();
+    }
+
+    /**
+     * Stage a file and return its claim check.
+     */
+    public MediaReference stage(String ownerId, MultipartFile file) throws IOException {
+        try (InputStream content = file.getInputStream()) {
+            return blobStagingStore.stage(ownerId, content, file.getOriginalFilename(), file.getContentType());
+        }
+    }
+
+    /**
+     * Inline (base64) content of a file for the inline transport.
+     */
+    public InlineMedia inline(MultipartFile file) {
+        return InlineMedia.of(file, file.getSize());
+    }
+
+    /**
+     * Remove staged blobs of a request that could not be sent.
+     */
+    public void discard(List<MediaReference> references) {
+        references.forEach(blobStagingStore::delete);
+    }
+}
@@ -0,0 +1,23 @@
+package com.devision.jm.profile.media;
+
+/**
+ * How media bytes travel to the File Service (app.media.transport).
+ */
+public enum MediaTransport {
+
+    /**
+     * Base64 inside the Kafka message (original protocol, default for File Service compatibility)
+     */
+    INLINE,
+
+    /**
+     * Bytes staged in the BlobStagingStore; the Kafka message only carries MediaReferences
+     */
+    CLAIM_CHECK,
+
+    /**
+     * Event files above app.media.chunking.threshold are sent as a manifest plus
+     * fixed-size chunk records (ChunkedMediaPublisher); smaller files stay inline
+     */
+    CHUNKED
+}
@@ -0,0 +1,295 @@
+package com.devision.jm.profile.messaging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.KafkaBackoffException;
+import org.springframework.kafka.listener.ListenerContainerPauseService;
+import org.springframework.kafka.listener.ListenerContainerRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.listener.SeekUtils;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Kafka Retry Topics
+ *
+ * Non-blocking retries for the KeyOrderedDispatcher listeners. A failed record
+ * leaves its partition right away instead of being retried in place:
+ *
+ *   topic -> topic.retry-0 -> topic.retry-1 -> ... -> topic.dlt
+ *
+ * - Tier n is consumed after initial-delay * multiplier^n (capped at max-delay);
+ *   the due time travels in the retry-due-at header. A record that is not due
+ *   yet is not waited for on the consumer thread: its partition is paused until
+ *   it is due and the container seeks back to it (backOff()), so other
+ *   partitions and tiers keep being consumed
+ * - Records that can never succeed (unparseable JSON) go straight to the DLT
+ * - Every hop carries Spring Kafka's failure headers (kafka_dlt-exception-fqcn,
+ *   -exception-message, -exception-stacktrace) plus the original topic, partition,
+ *   offset and consumer group of the first failure, and retry-attempt
+ * - DLT records are replayed to their original topic through DeadLetterApi
+ *
+ * Retry and DLT topics of app.kafka.retry.topics are created on startup.
+ *
+ * Metrics: kafka.consumer.retries{topic,tier}, kafka.consumer.dead-letters{topic}
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "kafka.enabled", havingValue = "true")
+public class KafkaRetryTopics {
+
+    public static final String RETRY_ATTEMPT_HEADER = "retry-attempt";
+    public static final String RETRY_DUE_AT_HEADER = "retry-due-at";
+
+    private static final String RETRY_SUFFIX = ".retry-";
+    private static final String DLT_SUFFIX = ".dlt";
+
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<ListenerContainerRegistry> containerRegistry;
+    private final ObjectProvider<TaskScheduler> taskScheduler;
+    private final int attempts;
+    private final Duration initialDelay;
+    private final double multiplier;
+    private final Duration maxDelay;
+
+    public KafkaRetryTopics(
+            MeterRegistry meterRegistry,
+            ObjectProvider<ListenerContainerRegistry> containerRegistry,
+            ObjectProvider<TaskScheduler> taskScheduler,
+            @Value("${app.kafka.retry.attempts:3}") int attempts,
+            @Value("${app.kafka.retry.initial-delay:PT2S}") Duration initialDelay,
+            @Value("${app.kafka.retry.multiplier:5}") double multiplier,
+            @Value("${app.kafka.retry.max-delay:PT2M}") Duration maxDelay) {
+        this.meterRegistry = meterRegistry;
+        this.containerRegistry = containerRegistry;
+        this.taskScheduler = taskScheduler;
+        this.attempts = attempts;
+        this.initialDelay = initialDelay;
+        this.multiplier = multiplier;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Retry tier topics of a topic, for the retry listener's topics attribute.
+     */
+    public String[] retryTopics(String topic) {
+        String[] topics = new String[attempts];
+        for (int tier = 0; tier < attempts; tier++) {
+            topics[tier] = topic + RETRY_SUFFIX + tier;
+        }
+        return topics;
+    }
+
+    /**
+     * Retry and dead-letter topics of the given topics.
+     */
+    public List<String> ownedTopics(List<String> topics) {
+        List<String> owned = new ArrayList<>();
+        for (String topic : topics) {
+            owned.addAll(List.of(retryTopics(topic)));
+            owned.add(dltTopic(topic));
+        }
+        return owned;
+    }
+
+    public String dltTopic(String topic) {
+        return baseTopic(topic) + DLT_SUFFIX;
+    }
+
+    /**
+     * The topic a retry or dead-letter topic belongs to.
+     */
+    public String baseTopic(String topic) {
+        int retry = retrySuffix(topic);
+        if (retry > 0) {
+            return topic.substring(0, retry);
+        }
+        return topic.endsWith(DLT_SUFFIX) ? topic.substring(0, topic.length() - DLT_SUFFIX.length()) : topic;
+    }
+
+    /**
+     * Recoverer for DefaultErrorHandler: publishes a failed record to its next tier.
+     */
+    public DeadLetterPublishingRecoverer recoverer(KafkaOperations<?, ?> template) {
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(template, this::destination) {
+            @Override
+            public void accept(ConsumerRecord<?, ?> record, Consumer<?, ?> consumer, Exception exception) {
+                // Not due yet (backOff()): fail the recovery, so the error handler seeks back to the record
+                if (SeekUtils.isBackoffException(exception)) {
+                    throw new KafkaException("Retry record is not due yet", KafkaException.Level.DEBUG, exception);
+                }
+                super.accept(record, consumer, exception);
+            }
+        };
+        // Keep the original topic/partition/offset of the first failure on every hop
+        recoverer.setAppendOriginalHeaders(false);
+        recoverer.setHeadersFunction((record, ex) -> retryHeaders(record));
+        return recoverer;
+    }
+
+    /**
+     * Index of the first record of a retry poll that is not due yet; records.size() when all are due.
+     */
+    public int firstNotDue(List<ConsumerRecord<String, String>> records) {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < records.size(); i++) {
+            if (longHeader(records.get(i).headers(), RETRY_DUE_AT_HEADER, 0) > now) {
+                return i;
+            }
+        }
+        return records.size();
+    }
+
+    /**
+     * Back off from a retry record that is not due yet, without blocking the consumer
+     * thread: its partition is paused until the record is due, and the returned
+     * exception (thrown by the listener) makes the error handler commit the records
+     * before it and seek back to it. The recoverer doesn't move it to the next tier.
+     */
+    public BatchListenerFailedException backOff(List<ConsumerRecord<String, String>> records, int index) {
+        ConsumerRecord<String, String> record = records.get(index);
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        long dueAt = longHeader(record.headers(), RETRY_DUE_AT_HEADER, 0);
+        Duration wait = Duration.ofMillis(Math.min(Math.max(0, dueAt - System.currentTimeMillis()), maxDelay.toMillis()));
+
+        MessageListenerContainer container = containerOf(partition);
+        TaskScheduler scheduler = taskScheduler.getIfAvailable();
+        if (container != null && scheduler != null) {
+            new ListenerContainerPauseService(containerRegistry.getObject(), scheduler)
+                    .pausePartition(container, partition, wait);
+        } else {
+            log.warn("No listener container to pause for {}, record at offset {} is polled again right away",
+                    partition, record.offset());
+        }
+        return new BatchListenerFailedException("Retry record at offset " + record.offset() + " is not due yet",
+                new KafkaBackoffException("Not due for " + wait.toMillis() + " ms", partition,
+                        container != null ? container.getListenerId() : null, dueAt),
+                index);
+    }
+
+    private MessageListenerContainer containerOf(TopicPartition partition) {
+        ListenerContainerRegistry registry = containerRegistry.getIfAvailable();
+        if (registry == null) {
+            return null;
+        }
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            Collection<TopicPartition> assigned = container.getAssignedPartitions();
+            if (assigned != null && assigned.contains(partition)) {
+                return container;
+            }
+        }
+        return null;
+    }
+
+    TopicPartition destination(ConsumerRecord<?, ?> record, Exception ex) {
+        String base = baseTopic(record.topic());
+        int nextTier = tierOf(record.topic()) + 1;
+
+        String destination;
+        if (nextTier >= attempts || isPoison(ex)) {
+            destination = dltTopic(base);
+            Counter.builder("kafka.consumer.dead-letters")
+                    .tag("topic", base)
+                    .register(meterRegistry)
+                    .increment();
+            log.error("Routing record to dead-letter topic. topic={}, partition={}, offset={}, error={}",
+                    record.topic(), record.partition(), record.offset(), ex.getMessage());
+        } else {
+            destination = base + RETRY_SUFFIX + nextTier;
+            Counter.builder("kafka.consumer.retries")
+                    .tag("topic", base)
+                    .tag("tier", String.valueOf(nextTier))
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("Routing record to retry tier. topic={}, partition={}, offset={}, destination={}, error={}",
+                    record.topic(), record.partition(), record.offset(), destination, ex.getMessage());
+        }
+        // Negative partition: partitioned by key, so the retry tiers may have any partition count
+        return new TopicPartition(destination, -1);
+    }
+
+    private Headers retryHeaders(ConsumerRecord<?, ?> record) {
+        int nextTier = tierOf(record.topic()) + 1;
+        long dueAt = System.currentTimeMillis() + delay(nextTier).toMillis();
+        Headers headers = new RecordHeaders();
+        headers.add(new RecordHeader(RETRY_ATTEMPT_HEADER, bytes(nextTier + 1)));
+        headers.add(new RecordHeader(RETRY_DUE_AT_HEADER, bytes(dueAt)));
+        return headers;
+    }
+
+    private Duration delay(int tier) {
+        long millis = (long) (initialDelay.toMillis() * Math.pow(multiplier, tier));
+        return Duration.ofMillis(Math.min(millis, maxDelay.toMillis()));
+    }
+
+    /**
+     * -1 for the main topic, n for topic.retry-n.
+     */
+    static int tierOf(String topic) {
+        int retry = retrySuffix(topic);
+        return retry > 0 ? Integer.parseInt(topic.substring(retry + RETRY_SUFFIX.length())) : -1;
+    }
+
+    /**
+     * Start of the trailing .retry-n, or -1; a topic like orders.retry-queue is not a retry tier.
+     */
+    private static int retrySuffix(String topic) {
+        int retry = topic.lastIndexOf(RETRY_SUFFIX);
+        if (retry <= 0 || retry + RETRY_SUFFIX.length() == topic.length()) {
+            return -1;
+        }
+        for (int i = retry + RETRY_SUFFIX.length(); i < topic.length(); i++) {
+            if (!Character.isDigit(topic.charAt(i))) {
+                return -1;
+            }
+        }
+        return retry;
+    }
+
+    private static boolean isPoison(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonProcessingException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] bytes(long value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long longHeader(Headers headers, String name, long defaultValue) {
+        Header header = headers.lastHeader(name);
+        if (header == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.devision.jm.profile.messaging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Kafka Send Tracker
+ *
+ * Every KafkaTemplate.send of the service goes through here:
+ * - In-flight budget: at most app.kafka.send.max-in-flight unacknowledged sends.
+ *   A caller over budget waits up to app.kafka.send.acquire-timeout, then gets
+ *   a RuntimeException (back-pressure instead of unbounded buffering)
+ * - Completion callbacks record latency and failures per topic
+ * - onFailure() runs compensation (e.g. marking an Event FAILED) on a separate
+ *   executor, never on the producer's network thread
+ *
+ * Metrics:
+ * - kafka.send{topic,result=success|failure} - time from send() to broker ack
+ * - kafka.send.errors{topic,exception}
+ * - kafka.send.in-flight
+ */
+@Slf4j
+@Component
+public class KafkaSendTracker {
+
+    private final MeterRegistry meterRegistry;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final Duration acquireTimeout;
+    private final ExecutorService callbackExecutor;
+
+    public KafkaSendTracker(
+            MeterRegistry meterRegistry,
+            @Value("${app.kafka.send.max-in-flight:2000}") int maxInFlight,
+            @Value("${app.kafka.send.acquire-timeout:PT30S}") Duration acquireTimeout,
+            @Value("${app.kafka.send.callback-threads:2}") int callbackThreads) {
+        this.meterRegistry = meterRegistry;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.acquireTimeout = acquireTimeout;
+        this.callbackExecutor = Executors.newFixedThreadPool(callbackThreads,
+                Thread.ofPlatform().name("kafka-send-callback-", 0).daemon(true).factory());
+        Gauge.builder("kafka.send.in-flight", this, KafkaSendTracker::inFlight)
+                .description("Sends waiting for a broker acknowledgement")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Send a record within the in-flight budget and track its completion.
+     *
+     * @return the send future; completes exceptionally if the record could not be delivered
+     */
+    public <K, V> CompletableFuture<SendResult<K, V>> send(KafkaTemplate<K, V> template, String topic, K key, V value) {
+        acquire(topic);
+        long start = System.nanoTime();
+
+        CompletableFuture<SendResult<K, V>> future;
+        try {
+            future = template.send(topic, key, value);
+        } catch (RuntimeException e) {
+            completed(topic, start, e);
+            throw e;
+        }
+        // Cheap bookkeeping only - this runs on the producer's network thread
+        future.whenComplete((result, ex) -> completed(topic, start, ex));
+        return future;
+    }
+
+    /**
+     * Run a compensation if the future fails, off the producer's network thread.
+     */
+    public void onFailure(CompletableFuture<?> future, Consumer<Throwable> handler) {
+        future.whenCompleteAsync((result, ex) -> {
+            if (ex != null) {
+                try {
+                    handler.accept(ex);
+                } catch (Exception e) {
+                    log.error("Kafka send failure handler failed: {}", e.getMessage(), e);
+                }
+            }
+        }, callbackExecutor);
+    }
+
+    public int inFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callbackExecutor.shutdown();
+    }
+
+    private void acquire(String topic) {
+        boolean acquired;
+        try {
+            acquired = inFlight.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Kafka send capacity. topic=" + topic, e);
+        }
+        if (!acquired) {
+            Counter.builder("kafka.send.errors")
+                    .tag("topic", topic)
+                    .tag("exception", "InFlightBudgetExhausted")
+                    .register(meterRegistry)
+                    .increment();
+            throw new RuntimeException("Kafka send backlog full (" + maxInFlight + " in flight). topic=" + topic);
+        }
+    }
+
+    private void completed(String topic, long start, Throwable ex) {
+        inFlight.release();
+        Timer.builder("kafka.send")
+                .tag("topic", topic)
+                .tag("result", ex == null ? "success" : "failure")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (ex != null) {
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            Counter.builder("kafka.send.errors")
+                    .tag("topic", topic)
+                    .tag("exception", cause.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("Kafka send failed. topic={}, error={}", topic, cause.getMessage());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.devision.jm.profile.messaging;
+
+import com.devision.jm.profile.repository.MongoConcurrencyLimiter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Key-Ordered Dispatcher
+ *
+ * Processes one poll of a batch listener (keyOrderedListenerContainerFactory)
+ * in parallel while keeping the order per key within the poll:
+ * - Records are grouped into lanes by key: the first present of the given
+ *   JSON fields (userId, eventId, ...), or the record key when they are all
+ *   missing. Records with neither stay in one lane per partition
+ * - Lanes run concurrently on a shared worker pool (app.kafka.consumer.dispatch.workers),
+ *   or on one virtual thread each with spring.threads.virtual.enabled=true;
+ *   the records of one lane run one after the other, in offset order
+ * - Every record is processed within MongoConcurrencyLimiter
+ * - A lane stops at its first failure, so later records of that key don't
+ *   overtake it within the poll
+ * - The batch fails at the lowest failed offset (BatchListenerFailedException):
+ *   the error handler commits everything before it, moves the failed record to
+ *   its retry tier (KafkaRetryTopics) and redelivers the rest. Records after it
+ *   that had already succeeded are dropped on redelivery by ProcessedMessageLedger
+ *
+ * Per-key order therefore only holds until a record fails: the failed record is
+ * retried from its retry tier later, after the key's following records were
+ * processed from the main topic. Consumers whose records must apply in order
+ * (subscription-notifications: ENDING_SOON, then ENDED) have to make a late
+ * record harmless themselves - a stamp, version or date precondition on the
+ * update - rather than rely on the dispatcher.
+ * - dispatchRetries() processes the records of a retry tier poll that are due;
+ *   at the first one that isn't, its partition backs off (KafkaRetryTopics.backOff)
+ *
+ * Consumer throughput is no longer capped at one Mongo round trip per record
+ * per partition.
+ *
+ * Metrics:
+ * - kafka.consumer.dispatch.lanes{consumer} - lanes per poll
+ * - kafka.consumer.record{consumer,threads=virtual|platform} - processing time per record
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "kafka.enabled", havingValue = "true")
+public class KeyOrderedDispatcher {
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final MongoConcurrencyLimiter mongoConcurrencyLimiter;
+    private final KafkaRetryTopics kafkaRetryTopics;
+    private final ExecutorService workers;
+    private final String threads;
+
+    public KeyOrderedDispatcher(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            MongoConcurrencyLimiter mongoConcurrencyLimiter,
+            KafkaRetryTopics kafkaRetryTopics,
+            @Value("${app.kafka.consumer.dispatch.workers:16}") int workerThreads,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.mongoConcurrencyLimiter = mongoConcurrencyLimiter;
+        this.kafkaRetryTopics = kafkaRetryTopics;
+        this.workers = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("kafka-dispatch-", 0).factory())
+                : Executors.newFixedThreadPool(workerThreads,
+                        Thread.ofPlatform().name("kafka-dispatch-", 0).daemon(true).factory());
+        this.threads = virtualThreads ? "virtual" : "platform";
+    }
+
+    /**
+     * Process a poll, in parallel across keys and in order within a key.
+     *
+     * @param consumer  name of the consumer (metrics, logs)
+     * @param handler   processes one record; throws to fail it
+     * @param keyFields JSON fields holding the ordering key, in order of preference
+     * @throws BatchListenerFailedException for the lowest failed record
+     */
+    public void dispatch(String consumer, List<ConsumerRecord<String, String>> records,
+                         Consumer<ConsumerRecord<String, String>> handler, String... keyFields) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<Integer>> lanes = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            lanes.computeIfAbsent(keyOf(records.get(i), keyFields), k -> new ArrayList<>()).add(i);
+        }
+        DistributionSummary.builder("kafka.consumer.dispatch.lanes")
+                .tag("consumer", consumer)
+                .register(meterRegistry)
+                .record(lanes.size());
+
+        Throwable[] failures = new Throwable[records.size()];
+        List<CompletableFuture<Void>> running = new ArrayList<>(lanes.size());
+        for (List<Integer> lane : lanes.values()) {
+            running.add(CompletableFuture.runAsync(() -> runLane(consumer, records, lane, handler, failures), workers));
+        }
+        CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+
+        for (int i = 0; i < failures.length; i++) {
+            if (failures[i] != null) {
+                ConsumerRecord<String, String> failed = records.get(i);
+                log.warn("Batch failed at record {} of {}. consumer={}, partition={}, offset={}",
+                        i, records.size(), consumer, failed.partition(), failed.offset());
+                throw new BatchListenerFailedException(
+                        "Failed to process " + consumer + " record at offset " + failed.offset(), failures[i], i);
+            }
+        }
+    }
+
+    /**
+     * Process a poll of retry tier topics: dispatch the records before the first one
+     * that is not due yet, then back off from that one (paused partition, seek back).
+     *
+     * @throws BatchListenerFailedException for the lowest failed record, or the first one not due
+     */
+    public void dispatchRetries(String consumer, List<ConsumerRecord<String, String>> records,
+                                Consumer<ConsumerRecord<String, String>> handler, String... keyFields) {
+        int due = kafkaRetryTopics.firstNotDue(records);
+        dispatch(consumer, records.subList(0, due), handler, keyFields);
+        if (due < records.size()) {
+            throw kafkaRetryTopics.backOff(records, due);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private void runLane(String consumer, List<ConsumerRecord<String, String>> records, List<Integer> lane,
+                         Consumer<ConsumerRecord<String, String>> handler, Throwable[] failures) {
+        Timer timer = Timer.builder("kafka.consumer.record")
+                .tag("consumer", consumer)
+                .tag("threads", threads)
+                .register(meterRegistry);
+        for (int index : lane) {
+            long start = System.nanoTime();
+            try {
+                mongoConcurrencyLimiter.run(() -> handler.accept(records.get(index)));
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            } catch (Exception e) {
+                // Later records of this key must not overtake the failed one in this poll
+                failures[index] = e;
+                return;
+            }
+        }
+    }
+
+    private String keyOf(ConsumerRecord<String, String> record, String... keyFields) {
+        if (keyFields.length > 0 && record.value() != null) {
+            try {
+                JsonNode value = objectMapper.readTree(record.value());
+                for (String keyField : keyFields) {
+                    JsonNode field = value.get(keyField);
+                    if (field != null && !field.isNull()) {
+                        return "field:" + field.asText();
+                    }
+                }
+            } catch (Exception e) {
+                // Not JSON - the handler reports it
+            }
+        }
+        if (record.key() != null) {
+            return "key:" + record.key();
+        }
+        return "partition:" + record.partition();
+    }
+}
@@ -0,0 +1,49 @@
+package com.devision.jm.profile.model.embedded;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+
+/**
+ * Outbox Message Embedded Document
+ *
+ * A Kafka message recorded on the profile it belongs to, in the same document
+ * write as the profile change. Published and removed by OutboxRelay.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxMessage {
+
+    /**
+     * Unique message ID (removal of published messages)
+     */
+    @Field("id")
+    private String id;
+
+    /**
+     * Destination topic
+     */
+    @Field("topic")
+    private String topic;
+
+    /**
+     * Record key
+     */
+    @Field("key")
+    private String key;
+
+    /**
+     * Record value (JSON)
+     */
+    @Field("payload")
+    private String payload;
+
+    @Field("created_at")
+    private Instant createdAt;
+}
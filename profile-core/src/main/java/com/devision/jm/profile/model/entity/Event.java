@@ -101,4 +101,17 @@ public class Event extends BaseEntity {
      */
     @Field("video_key")
     private String videoKey;
+
+    // ==================== Chunked Transfers ====================
+    /**
+     * Media sent as chunked transfers (EventFileChunkManifest.mediaId)
+     */
+    @Field("chunked_media_ids")
+    private List<String> chunkedMediaIds;
+
+    /**
+     * Chunked transfers File Service has acknowledged as reassembled
+     */
+    @Field("reassembled_media_ids")
+    private List<String> reassembledMediaIds;
 }
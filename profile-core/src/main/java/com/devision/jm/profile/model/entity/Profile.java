@@ -1,6 +1,7 @@
 package com.devision.jm.profile.model.entity;
 
 import com.devision.jm.profile.model.embedded.ApplicantSearchProfile;
+import com.devision.jm.profile.model.embedded.OutboxMessage;
 import com.devision.jm.profile.model.enums.SubscriptionType;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
@@ -8,7 +9,9 @@ import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Profile Document (MongoDB) - User Profile Data
@@ -145,6 +148,55 @@ public class Profile extends BaseEntity {
     @Field("applicant_search_profile")
     private ApplicantSearchProfile applicantSearchProfile;
 
+    // ==================== Search Index (admin search) ====================
+
+    /**
+     * Lower-cased trigrams of companyName, maintained by ProfileSearchIndexer on every save.
+     * Multikey-indexed so substring search does not scan the collection.
+     */
+    @Field("company_name_grams")
+    private List<String> companyNameGrams;
+
+    /**
+     * Lower-cased trigrams of email, maintained by ProfileSearchIndexer on every save.
+     */
+    @Field("email_grams")
+    private List<String> emailGrams;
+
+    // ==================== Outbox ====================
+
+    /**
+     * Kafka messages written together with the profile change, in order.
+     * Drained by OutboxRelay; empty/absent when everything has been published.
+     */
+    @Field("outbox")
+    private List<OutboxMessage> outbox;
+
+    // ==================== Idempotency ====================
+
+    /**
+     * Ids of the last Kafka messages applied to this profile (ProcessedMessageLedger.stamp),
+     * so a redelivered message can't be applied twice
+     */
+    @Field("processed_message_ids")
+    private List<String> processedMessageIds;
+
+    // ==================== Shard Migration ====================
+
+    /**
+     * How long a shard migration may hold the profile before its lock is ignored
+     * (the migrating instance died)
+     */
+    public static final Duration MIGRATION_LOCK_TIMEOUT = Duration.ofMinutes(5);
+
+    /**
+     * Set while ShardMigrationService or ShardRebalancer moves the profile to another shard.
+     * updateByUserId and save refuse the profile until it is cleared again,
+     * so no write can land on a copy that the move is about to delete
+     */
+    @Field("migrating_since")
+    private LocalDateTime migratingSince;
+
     // ==================== Auth Provider (for display) ====================
 
     @Field("auth_provider")
@@ -0,0 +1,108 @@
+package com.devision.jm.profile.model.entity;
+
+import com.devision.jm.profile.model.enums.ShardRebalanceStatus;
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shard Rebalance Job Document (MongoDB)
+ *
+ * A bulk move of one country's profiles to the shard the country is mapped to
+ * now. Stored on the default shard and checkpointed after every batch, so a job
+ * interrupted by a crash or restart resumes where it stopped (ShardRebalancer).
+ */
+@Document(collection = "shard_rebalance_jobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ShardRebalanceJob {
+
+    @Id
+    private String id;
+
+    /**
+     * Country as requested
+     */
+    @Field("country")
+    private String country;
+
+    /**
+     * Canonical country key (ShardResolver.countryKey); every stored spelling
+     * with this key is moved
+     */
+    @Field("country_key")
+    private String countryKey;
+
+    @Field("target_shard")
+    private String targetShard;
+
+    @Field("status")
+    private ShardRebalanceStatus status;
+
+    // ==================== Checkpoint ====================
+
+    /**
+     * Source shards that have been drained
+     */
+    @Field("completed_shards")
+    @Builder.Default
+    private List<String> completedShards = new ArrayList<>();
+
+    /**
+     * Source shard being drained
+     */
+    @Field("current_shard")
+    private String currentShard;
+
+    /**
+     * Profiles to move, counted when the job started
+     */
+    @Field("total")
+    private long total;
+
+    @Field("moved")
+    private long moved;
+
+    /**
+     * Profiles written during their move (left on the source, retried by the next pass)
+     */
+    @Field("conflicts")
+    private long conflicts;
+
+    /**
+     * Current throttled copy rate
+     */
+    @Field("docs_per_second")
+    private double docsPerSecond;
+
+    @Field("error")
+    private String error;
+
+    // ==================== Lease ====================
+
+    /**
+     * Instance running the job
+     */
+    @Field("owner")
+    private String owner;
+
+    @Field("heartbeat_at")
+    private Instant heartbeatAt;
+
+    @Field("created_at")
+    private Instant createdAt;
+
+    @Field("updated_at")
+    private Instant updatedAt;
+
+    @Field("completed_at")
+    private Instant completedAt;
+}
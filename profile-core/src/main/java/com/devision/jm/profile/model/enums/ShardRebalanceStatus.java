@@ -0,0 +1,29 @@
+package com.devision.jm.profile.model.enums;
+
+/**
+ * Shard Rebalance Status Enum
+ *
+ * Lifecycle of a bulk shard rebalancing job (ShardRebalancer).
+ */
+public enum ShardRebalanceStatus {
+
+    /**
+     * Job is moving profiles (or waiting for an instance to resume it)
+     */
+    RUNNING,
+
+    /**
+     * Paused by an operator; resumable
+     */
+    PAUSED,
+
+    /**
+     * Every source shard has been drained
+     */
+    COMPLETED,
+
+    /**
+     * Stopped by an error; resumable
+     */
+    FAILED
+}
@@ -0,0 +1,248 @@
+package com.devision.jm.profile.outbox;
+
+import com.devision.jm.profile.messaging.KafkaSendTracker;
+import com.devision.jm.profile.model.embedded.OutboxMessage;
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbox Relay
+ *
+ * Publishes the messages recorded by ProfileOutbox and removes them from the
+ * profile once Kafka has acknowledged them. Request and consumer threads
+ * never wait for the broker; while Kafka is down messages simply stay in the
+ * outbox and go out once it is back.
+ *
+ * - Only one replica relays at a time (lease in outbox_relay_lease)
+ * - Every shard's profiles are relayed, one shard after the other
+ * - Profiles with pending messages are found via the idx_outbox_created_at index,
+ *   oldest first, app.outbox.batch-size profiles per round
+ * - A profile's messages are sent in outbox order with the userId key, one at a
+ *   time: its next message is only sent once Kafka acknowledged the previous one.
+ *   Each step sends the next message of every profile of the batch, so producer
+ *   batches still span profiles. On the first failed send the rest of that
+ *   profile's messages wait for the next round, so ordering per userId is kept
+ * - Published messages are removed with $pull by id, so messages appended in
+ *   the meantime are untouched
+ * - Profiles under a migration lock (Profile.migratingSince) are skipped, and
+ *   their messages are not removed: the migration rewrites the outbox it read
+ *   under the lock, so a removal made meanwhile would be undone. Messages sent
+ *   just before the lock are therefore sent again after the migration
+ *   (at-least-once, like any send whose removal fails)
+ *
+ * Metrics: outbox.relay.published, outbox.relay.failures
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "kafka.enabled", havingValue = "true")
+public class OutboxRelay {
+
+    static final String LEASE_COLLECTION = "outbox_relay_lease";
+    private static final String LEASE_ID = "profile-outbox";
+
+    private final ShardRouter shardRouter;
+    private final KafkaTemplate<String, byte[]> bulkKafkaTemplate;
+    private final KafkaSendTracker sendTracker;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Duration leaseDuration;
+    private final String owner = UUID.randomUUID().toString();
+    private final Counter published;
+    private final Counter failures;
+
+    public OutboxRelay(
+            ShardRouter shardRouter,
+            KafkaTemplate<String, byte[]> bulkKafkaTemplate,
+            KafkaSendTracker sendTracker,
+            MeterRegistry meterRegistry,
+            @Value("${app.outbox.batch-size:200}") int batchSize,
+            @Value("${app.outbox.send-timeout:PT10S}") Duration sendTimeout,
+            @Value("${app.outbox.lease-duration:PT30S}") Duration leaseDuration) {
+        this.shardRouter = shardRouter;
+        this.bulkKafkaTemplate = bulkKafkaTemplate;
+        this.sendTracker = sendTracker;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.leaseDuration = leaseDuration;
+        this.published = Counter.builder("outbox.relay.published").register(meterRegistry);
+        this.failures = Counter.builder("outbox.relay.failures").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeIndex() {
+        for (String shard : shardRouter.shards()) {
+            try {
+                shardRouter.template(shard).indexOps(Profile.class).ensureIndex(
+                        new Index().on("outbox.created_at", Sort.Direction.ASC).sparse().named("idx_outbox_created_at"));
+                log.info("Created index: idx_outbox_created_at on shard {}", shard);
+            } catch (Exception e) {
+                log.warn("Failed to create outbox index on shard {} (may already exist): {}", shard, e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval:PT1S}")
+    public void relay() {
+        if (!acquireLease()) {
+            return;
+        }
+        try {
+            // Keep draining full batches, but give the lease back in time
+            long deadline = System.currentTimeMillis() + leaseDuration.toMillis() / 2;
+            for (String shard : shardRouter.shards()) {
+                MongoTemplate mongoTemplate = shardRouter.template(shard);
+                while (relayBatch(mongoTemplate) == batchSize && System.currentTimeMillis() < deadline && acquireLease()) {
+                    log.debug("Outbox relay continuing with the next batch. shard={}", shard);
+                }
+                if (System.currentTimeMillis() >= deadline || !acquireLease()) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Outbox relay failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Publish the outboxes of one batch of profiles of a shard.
+     *
+     * @return number of profiles in the batch
+     */
+    private int relayBatch(MongoTemplate mongoTemplate) {
+        Query query = new Query(Criteria.where("outbox.created_at").exists(true).orOperator(notMigrating()))
+                .with(Sort.by("outbox.created_at"))
+                .limit(batchSize);
+        query.fields().include("user_id").include("outbox");
+        List<Profile> profiles = mongoTemplate.find(query, Profile.class);
+        if (profiles.isEmpty()) {
+            return 0;
+        }
+
+        // Acknowledged message ids per profile, in outbox order
+        List<List<String>> sentIds = new ArrayList<>(profiles.size());
+        List<Integer> active = new ArrayList<>(profiles.size());
+        for (int i = 0; i < profiles.size(); i++) {
+            sentIds.add(new ArrayList<>());
+            active.add(i);
+        }
+
+        // Step n sends message n of every profile still going, then waits for those acks
+        while (!active.isEmpty()) {
+            List<CompletableFuture<?>> sends = new ArrayList<>(active.size());
+            for (int i : active) {
+                OutboxMessage message = profiles.get(i).getOutbox().get(sentIds.get(i).size());
+                sends.add(sendTracker.send(bulkKafkaTemplate, message.getTopic(), message.getKey(),
+                        message.getPayload().getBytes(StandardCharsets.UTF_8)));
+            }
+            List<Integer> next = new ArrayList<>(active.size());
+            for (int j = 0; j < active.size(); j++) {
+                int i = active.get(j);
+                Profile profile = profiles.get(i);
+                OutboxMessage message = profile.getOutbox().get(sentIds.get(i).size());
+                if (!acknowledged(profile, message, sends.get(j))) {
+                    continue;
+                }
+                sentIds.get(i).add(message.getId());
+                if (sentIds.get(i).size() < profile.getOutbox().size()) {
+                    next.add(i);
+                }
+            }
+            active = next;
+        }
+
+        BulkOperations removals = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Profile.class);
+        int pending = 0;
+        for (int i = 0; i < profiles.size(); i++) {
+            Profile profile = profiles.get(i);
+            if (!sentIds.get(i).isEmpty()) {
+                removals.updateOne(
+                        Query.query(Criteria.where("_id").is(profile.getId()).orOperator(notMigrating())),
+                        new Update().pull("outbox", new Document("id", new Document("$in", sentIds.get(i)))));
+                pending++;
+            }
+        }
+        if (pending > 0) {
+            removals.execute();
+        }
+        return profiles.size();
+    }
+
+    /**
+     * Profile not under a live migration lock.
+     */
+    private static Criteria[] notMigrating() {
+        return new Criteria[]{
+                Criteria.where("migratingSince").is(null),
+                Criteria.where("migratingSince").lt(LocalDateTime.now().minus(Profile.MIGRATION_LOCK_TIMEOUT))};
+    }
+
+    /**
+     * Wait for Kafka's acknowledgement of one message.
+     */
+    private boolean acknowledged(Profile profile, OutboxMessage message, CompletableFuture<?> send) {
+        try {
+            send.get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            published.increment();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            failures.increment();
+            log.warn("Failed to publish outbox message. userId={}, topic={}, id={}, error={}",
+                    profile.getUserId(), message.getTopic(), message.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Take or extend the relay lease. Only the holder relays.
+     */
+    private boolean acquireLease() {
+        Instant now = Instant.now();
+        Query query = Query.query(new Criteria().andOperator(
+                Criteria.where("_id").is(LEASE_ID),
+                new Criteria().orOperator(
+                        Criteria.where("owner").is(owner),
+                        Criteria.where("expires_at").lt(now))));
+        Update update = new Update()
+                .set("owner", owner)
+                .set("expires_at", now.plus(leaseDuration));
+        try {
+            shardRouter.template(shardRouter.defaultShard()).upsert(query, update, LEASE_COLLECTION);
+            return true;
+        } catch (DuplicateKeyException e) {
+            // Held by another replica
+            return false;
+        }
+    }
+}
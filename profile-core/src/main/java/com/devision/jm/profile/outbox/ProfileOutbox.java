@@ -0,0 +1,90 @@
+package com.devision.jm.profile.outbox;
+
+import com.devision.jm.profile.model.embedded.OutboxMessage;
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.sharding.ShardRouter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Profile Outbox
+ *
+ * Records Kafka messages on the profile document they belong to (Profile.outbox),
+ * so the message is written by the same single-document MongoDB operation as
+ * the profile change: either both are persisted or neither is. OutboxRelay
+ * publishes them in the background.
+ *
+ * - append(): add to the profile in memory; the caller's save persists it,
+ *             or add to an Update the caller applies to the profile
+ * - push():   add with one $push when there is no profile save to piggyback on
+ *
+ * Delivery is at-least-once: a message can be published again if the relay
+ * stops between the send and the removal, so consumers must be idempotent.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProfileOutbox {
+
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Add a message to the profile's outbox. Persisted by the next save of that profile.
+     */
+    public void append(Profile profile, String topic, String key, Object event) {
+        if (profile.getOutbox() == null) {
+            profile.setOutbox(new ArrayList<>());
+        }
+        profile.getOutbox().add(message(topic, key, event));
+    }
+
+    /**
+     * Add a message to the outbox as part of a profile update.
+     */
+    public Update append(Update update, String topic, String key, Object event) {
+        return update.push("outbox", message(topic, key, event));
+    }
+
+    /**
+     * Add messages to a stored profile's outbox in one atomic update (on the profile's shard).
+     */
+    public void push(Profile profile, List<OutboxMessage> messages) {
+        Query query = Query.query(Criteria.where("_id").is(profile.getId()));
+        Update update = new Update().push("outbox").each(messages.toArray());
+        Boolean pushed = shardRouter.onUserShard(profile.getUserId(), template ->
+                template.updateFirst(query, update, Profile.class).getMatchedCount() > 0 ? Boolean.TRUE : null);
+        if (pushed == null) {
+            throw new RuntimeException("Profile not found for outbox messages, profileId: " + profile.getId());
+        }
+        log.debug("Pushed {} outbox messages for profileId: {}", messages.size(), profile.getId());
+    }
+
+    /**
+     * Build an outbox message with the event serialized to JSON.
+     */
+    public OutboxMessage message(String topic, String key, Object event) {
+        try {
+            return OutboxMessage.builder()
+                    .id(UUID.randomUUID().toString())
+                    .topic(topic)
+                    .key(key)
+                    .payload(objectMapper.writeValueAsString(event))
+                    .createdAt(Instant.now())
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize outbox message for topic " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.devision.jm.profile.repository;
+
+import com.devision.jm.profile.model.entity.Event;
+import com.devision.jm.profile.model.enums.EventStatus;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Event Repository (custom operations)
+ *
+ * Shard-aware event access: a company's events live on the shard of its profile
+ * (see ShardRouter), so a company page reads one shard.
+ * - by companyId / saves / deletes: the company's shard, from the profile directory
+ * - by eventId: every shard, the default shard first
+ *
+ * Implemented by EventRepositoryCustomImpl and exposed through EventRepository.
+ */
+public interface EventRepositoryCustom {
+
+    /**
+     * Save an event to its company's shard. An existing event is only updated
+     * where it is stored; throws if it no longer exists.
+     */
+    <S extends Event> S save(S event);
+
+    /**
+     * Delete an event from its company's shard
+     */
+    void delete(Event event);
+
+    /**
+     * Find all events by company ID
+     *
+     * @param companyId Company ID (Profile.userId)
+     * @return List of events for the company
+     */
+    List<Event> findByCompanyId(String companyId);
+
+    /**
+     * Find events by company ID and status
+     *
+     * @param companyId Company ID (Profile.userId)
+     * @param status Event status
+     * @return List of events matching criteria
+     */
+    List<Event> findByCompanyIdAndStatus(String companyId, EventStatus status);
+
+    /**
+     * Stream all events by company ID from a MongoDB cursor
+     * The caller must close the stream.
+     *
+     * @param companyId Company ID (Profile.userId)
+     * @return Stream of events for the company
+     */
+    Stream<Event> streamByCompanyId(String companyId);
+
+    /**
+     * Stream events by company ID and status from a MongoDB cursor
+     * The caller must close the stream.
+     *
+     * @param companyId Company ID (Profile.userId)
+     * @param status Event status
+     * @return Stream of events matching criteria
+     */
+    Stream<Event> streamByCompanyIdAndStatus(String companyId, EventStatus status);
+
+    /**
+     * Find event by event ID
+     *
+     * @param eventId Business event ID
+     * @return Event if found
+     */
+    Optional<Event> findByEventId(String eventId);
+
+    /**
+     * Check if event exists by event ID
+     *
+     * @param eventId Business event ID
+     * @return true if exists
+     */
+    boolean existsByEventId(String eventId);
+
+    /**
+     * Delete event by event ID
+     *
+     * @param eventId Business event ID
+     */
+    void deleteByEventId(String eventId);
+
+    /**
+     * Delete all events by company ID
+     * Used when a company/user is deleted from Auth Service
+     *
+     * @param companyId Company ID (Profile.userId)
+     */
+    void deleteByCompanyId(String companyId);
+}
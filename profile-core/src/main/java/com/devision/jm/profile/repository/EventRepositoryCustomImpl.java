@@ -0,0 +1,142 @@
+package com.devision.jm.profile.repository;
+
+import com.devision.jm.profile.model.entity.Event;
+import com.devision.jm.profile.model.enums.EventStatus;
+import com.devision.jm.profile.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Event Repository (custom operations) Implementation
+ *
+ * Every operation runs on the MongoTemplate of the company's shard (ShardRouter),
+ * or on every shard for lookups by eventId. With sharding disabled that is
+ * always the primary MongoTemplate. Operations by companyId that find nothing
+ * are retried once on a freshly read directory entry (ShardRouter.onUserShard),
+ * since the company may just have moved; updates of a stored event never insert
+ * it again on the shard the company left.
+ */
+@RequiredArgsConstructor
+public class EventRepositoryCustomImpl implements EventRepositoryCustom {
+
+    private final ShardRouter shardRouter;
+
+    @Override
+    public <S extends Event> S save(S event) {
+        if (event.getId() == null) {
+            return shardRouter.templateForUser(event.getCompanyId()).save(event);
+        }
+        // Only where the event is stored - the versioned save would fail on a shard the company just left
+        S saved = shardRouter.onUserShard(event.getCompanyId(),
+                template -> template.exists(byId(event.getId()), Event.class) ? template.save(event) : null);
+        if (saved == null) {
+            throw new RuntimeException("Event not found, eventId: " + event.getEventId());
+        }
+        return saved;
+    }
+
+    @Override
+    public void delete(Event event) {
+        shardRouter.onUserShard(event.getCompanyId(), template ->
+                template.remove(byId(event.getId()), Event.class).getDeletedCount() > 0 ? Boolean.TRUE : null);
+    }
+
+    @Override
+    public List<Event> findByCompanyId(String companyId) {
+        return find(companyId, byCompanyId(companyId, null));
+    }
+
+    @Override
+    public List<Event> findByCompanyIdAndStatus(String companyId, EventStatus status) {
+        return find(companyId, byCompanyId(companyId, status));
+    }
+
+    @Override
+    public Stream<Event> streamByCompanyId(String companyId) {
+        return stream(companyId, byCompanyId(companyId, null));
+    }
+
+    @Override
+    public Stream<Event> streamByCompanyIdAndStatus(String companyId, EventStatus status) {
+        return stream(companyId, byCompanyId(companyId, status));
+    }
+
+    @Override
+    public Optional<Event> findByEventId(String eventId) {
+        Query query = byEventId(eventId);
+        for (String shard : shardRouter.shards()) {
+            Event event = shardRouter.template(shard).findOne(query, Event.class);
+            if (event != null) {
+                return Optional.of(event);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean existsByEventId(String eventId) {
+        Query query = byEventId(eventId);
+        return shardRouter.shards().stream()
+                .anyMatch(shard -> shardRouter.template(shard).exists(query, Event.class));
+    }
+
+    @Override
+    public void deleteByEventId(String eventId) {
+        Query query = byEventId(eventId);
+        shardRouter.shards().forEach(shard -> shardRouter.template(shard).remove(query, Event.class));
+    }
+
+    @Override
+    public void deleteByCompanyId(String companyId) {
+        Query query = byCompanyId(companyId, null);
+        shardRouter.onUserShard(companyId,
+                template -> template.remove(query, Event.class).getDeletedCount() > 0 ? Boolean.TRUE : null);
+    }
+
+    private List<Event> find(String companyId, Query query) {
+        List<Event> events = shardRouter.onUserShard(companyId, template -> {
+            List<Event> found = template.find(query, Event.class);
+            return found.isEmpty() ? null : found;
+        });
+        return events != null ? events : List.of();
+    }
+
+    private Stream<Event> stream(String companyId, Query query) {
+        Stream<Event> events = shardRouter.onUserShard(companyId, template -> {
+            Stream<Event> found = template.stream(query, Event.class);
+            Iterator<Event> iterator = found.iterator();
+            if (!iterator.hasNext()) {
+                found.close();
+                return null;
+            }
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                    .onClose(found::close);
+        });
+        return events != null ? events : Stream.empty();
+    }
+
+    private static Query byId(String id) {
+        return Query.query(Criteria.where("_id").is(id));
+    }
+
+    private static Query byCompanyId(String companyId, EventStatus status) {
+        Criteria criteria = Criteria.where("companyId").is(companyId);
+        if (status != null) {
+            criteria = criteria.and("status").is(status);
+        }
+        return Query.query(criteria);
+    }
+
+    private static Query byEventId(String eventId) {
+        return Query.query(Criteria.where("eventId").is(eventId));
+    }
+}
@@ -0,0 +1,105 @@
+package com.devision.jm.profile.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Mongo Concurrency Limiter
+ *
+ * Bounds the number of units of blocking Mongo work running at once
+ * (app.mongo.max-concurrency, sized to the driver's connection pool).
+ *
+ * With virtual threads nothing else limits concurrency: thousands of
+ * virtual threads would all queue inside the driver's connection pool,
+ * each holding its wait-queue slot and timing out after maxWaitTime. Waiting
+ * here instead is cheap (a parked virtual thread) and shows up in metrics.
+ * A caller that can't get a permit within app.mongo.acquire-timeout gets a
+ * RuntimeException.
+ *
+ * Applied by KeyOrderedDispatcher (each Kafka record), ShardScatterGather (each
+ * shard query) and the request-driven services (ProfileServiceImpl,
+ * EventServiceImpl - each repository call). Work run here must not take a
+ * second permit: callers holding permits while waiting for more can use up
+ * the whole limit.
+ *
+ * Metrics:
+ * - mongo.limiter.in-use, mongo.limiter.waiting
+ * - mongo.limiter.wait - time spent waiting for a permit
+ */
+@Slf4j
+@Component
+public class MongoConcurrencyLimiter {
+
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final Duration acquireTimeout;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer waitTimer;
+
+    public MongoConcurrencyLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${app.mongo.max-concurrency:100}") int maxConcurrency,
+            @Value("${app.mongo.acquire-timeout:PT30S}") Duration acquireTimeout) {
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.acquireTimeout = acquireTimeout;
+        this.waitTimer = Timer.builder("mongo.limiter.wait").register(meterRegistry);
+        Gauge.builder("mongo.limiter.in-use", this, MongoConcurrencyLimiter::inUse).register(meterRegistry);
+        Gauge.builder("mongo.limiter.waiting", waiting, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * Run blocking Mongo work within the concurrency limit.
+     */
+    public void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run blocking Mongo work within the concurrency limit and return its result.
+     */
+    public <T> T call(Supplier<T> work) {
+        acquire();
+        try {
+            return work.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int inUse() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    private void acquire() {
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Mongo capacity", e);
+        } finally {
+            waiting.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            log.warn("Mongo concurrency limit reached ({} in use) for {}", maxConcurrency, acquireTimeout);
+            throw new RuntimeException("Mongo concurrency limit reached (" + maxConcurrency + " in use)");
+        }
+    }
+}
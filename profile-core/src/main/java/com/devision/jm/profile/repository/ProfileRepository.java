@@ -1,13 +1,9 @@
 package com.devision.jm.profile.repository;
 
 import com.devision.jm.profile.model.entity.Profile;
-import com.devision.jm.profile.model.enums.SubscriptionType;
 import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -15,69 +11,25 @@ import java.util.Optional;
  *
  * Data access layer for Profile entity.
  * Implements A.2.2: Repository Layer (Data Access Layer)
+ *
+ * Lookups by userId/email/id, saves and the queries over many profiles (by subscription
+ * type, country, company name, subscription end date) are shard-aware (see
+ * ProfileRepositoryCustom). New queries over many profiles belong there too (scatter-gather)
+ * or in ProfileSearchService: derived queries and the inherited MongoRepository methods
+ * (findAll, count, ...) only read the default shard.
  */
 @Repository
-public interface ProfileRepository extends MongoRepository<Profile, String> {
-
-    /**
-     * Find profile by userId (from Auth Service)
-     */
-    Optional<Profile> findByUserId(String userId);
-
-    /**
-     * Find profile by email
-     */
-    Optional<Profile> findByEmailIgnoreCase(String email);
-
-    /**
-     * Check if profile exists for userId
-     */
-    boolean existsByUserId(String userId);
-
-    /**
-     * Check if email is already in use by another profile
-     */
-    boolean existsByEmailIgnoreCase(String email);
-
-    /**
-     * Find profiles by country (for sharding/analytics)
-     */
-    List<Profile> findByCountry(String country);
-
-    /**
-     * Search profiles by company name (partial match)
-     */
-    List<Profile> findByCompanyNameContainingIgnoreCase(String companyName);
-
-    /**
-     * Find profiles by email or company name (admin search)
-     */
-    List<Profile> findByEmailContainingIgnoreCaseOrCompanyNameContainingIgnoreCase(
-            String email, String companyName);
-
-    // ==================== Subscription Notification Queries (6.1.2) ====================
-
-    /**
-     * Find profiles expiring in a date range that haven't been notified yet
-     * Used to send 7-day expiry warning notifications
-     */
-    @Query("{ 'subscription_end_date': { $gte: ?0, $lte: ?1 }, 'subscription_type': { $ne: 'EXPIRED' }, 'expiry_notification_sent': { $ne: true } }")
-    List<Profile> findProfilesExpiringBetweenAndNotNotified(LocalDateTime start, LocalDateTime end);
-
-    /**
-     * Find profiles that have expired and haven't been notified
-     */
-    @Query("{ 'subscription_end_date': { $lt: ?0 }, 'subscription_type': { $ne: 'EXPIRED' }, 'expired_notification_sent': { $ne: true } }")
-    List<Profile> findExpiredProfilesNotNotified(LocalDateTime now);
+public interface ProfileRepository extends MongoRepository<Profile, String>, ProfileRepositoryCustom {
 
     /**
-     * Find profiles by subscription type
+     * Shard-aware save (implemented by ProfileRepositoryCustomImpl)
      */
-    List<Profile> findBySubscriptionType(SubscriptionType subscriptionType);
+    @Override
+    <S extends Profile> S save(S profile);
 
     /**
-     * Delete profile by userId
-     * Used when a user is deleted from Auth Service
+     * Shard-aware find by id (implemented by ProfileRepositoryCustomImpl)
      */
-    void deleteByUserId(String userId);
+    @Override
+    Optional<Profile> findById(String id);
 }
@@ -0,0 +1,141 @@
+package com.devision.jm.profile.repository;
+
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.model.enums.SubscriptionType;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Profile Repository (custom operations)
+ *
+ * Field-level updates that don't fit derived queries, and the shard-aware
+ * versions of the lookups and saves (see ShardRouter):
+ * - by userId: the user's shard, from the profile directory
+ * - by email / id: every shard, the default shard first
+ * - queries over many profiles (by subscription type, country, company name,
+ *   subscription end date): every shard at once (ShardScatterGather), failing
+ *   rather than returning a partial list
+ *
+ * Implemented by ProfileRepositoryCustomImpl and exposed through ProfileRepository.
+ */
+public interface ProfileRepositoryCustom {
+
+    /**
+     * Apply a partial ($set/$unset) update to a profile in one round trip
+     * and return the updated document.
+     *
+     * The update also bumps version, sets updatedAt and refreshes the search
+     * grams of companyName/email when those fields are part of it.
+     *
+     * @param userId          owner of the profile
+     * @param expectedVersion only update if the profile is still at this version (null = any)
+     * @param precondition    extra criteria the profile must match (null = none)
+     * @param update          fields to change, by entity property name
+     * @return the updated profile, or empty if no profile matched userId/version/precondition
+     * @throws RuntimeException while the profile is locked by a shard migration (Profile.migratingSince)
+     */
+    Optional<Profile> updateByUserId(String userId, Long expectedVersion, Criteria precondition, Update update);
+
+    /**
+     * Save a profile to its shard. A new profile goes to the shard of its country
+     * and gets a directory entry; an existing one stays on the shard holding it
+     * (country changes go through ShardMigrationService).
+     */
+    <S extends Profile> S save(S profile);
+
+    /**
+     * Find profile by id
+     */
+    Optional<Profile> findById(String id);
+
+    /**
+     * Find profile by userId (from Auth Service)
+     */
+    Optional<Profile> findByUserId(String userId);
+
+    /**
+     * Find profiles for a set of userIds (one $in query per shard on the unique user_id index)
+     */
+    List<Profile> findByUserIdIn(Collection<String> userIds);
+
+    /**
+     * Find userId and companyName only, for a set of userIds
+     * Projected $in query used to answer company-name requests in bulk
+     */
+    List<Profile> findCompanyNamesByUserIdIn(Collection<String> userIds);
+
+    /**
+     * Find profile by email
+     */
+    Optional<Profile> findByEmailIgnoreCase(String email);
+
+    /**
+     * Find profiles by subscription type, from all shards concurrently.
+     *
+     * @throws RuntimeException when a shard fails or doesn't answer within
+     *         app.sharding.scatter-timeout, instead of returning a partial list
+     */
+    List<Profile> findBySubscriptionType(SubscriptionType subscriptionType);
+
+    /**
+     * Find profiles by country (for sharding/analytics), from all shards concurrently.
+     * A country's profiles are normally on its region's shard, but not while they
+     * are being rebalanced.
+     *
+     * @throws RuntimeException when not all shards answered
+     */
+    List<Profile> findByCountry(String country);
+
+    /**
+     * Search profiles by company name (partial match), from all shards concurrently.
+     *
+     * @throws RuntimeException when not all shards answered
+     */
+    List<Profile> findByCompanyNameContainingIgnoreCase(String companyName);
+
+    /**
+     * Find profiles by email or company name (admin search), from all shards concurrently.
+     *
+     * @throws RuntimeException when not all shards answered
+     */
+    List<Profile> findByEmailContainingIgnoreCaseOrCompanyNameContainingIgnoreCase(
+            String email, String companyName);
+
+    // ==================== Subscription Notification Queries (6.1.2) ====================
+
+    /**
+     * Find profiles expiring in a date range that haven't been notified yet, from all
+     * shards concurrently. Used to send 7-day expiry warning notifications
+     *
+     * @throws RuntimeException when not all shards answered
+     */
+    List<Profile> findProfilesExpiringBetweenAndNotNotified(LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Find profiles that have expired and haven't been notified, from all shards concurrently.
+     *
+     * @throws RuntimeException when not all shards answered
+     */
+    List<Profile> findExpiredProfilesNotNotified(LocalDateTime now);
+
+    /**
+     * Check if profile exists for userId
+     */
+    boolean existsByUserId(String userId);
+
+    /**
+     * Check if email is already in use by another profile
+     */
+    boolean existsByEmailIgnoreCase(String email);
+
+    /**
+     * Delete profile by userId
+     * Used when a user is deleted from Auth Service
+     */
+    void deleteByUserId(String userId);
+}
@@ -0,0 +1,292 @@
+package com.devision.jm.profile.repository;
+
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.model.enums.SubscriptionType;
+import com.devision.jm.profile.search.ProfileSearchIndexer;
+import com.devision.jm.profile.sharding.ProfileDirectory;
+import com.devision.jm.profile.sharding.ShardRouter;
+import com.devision.jm.profile.sharding.ShardScatterGather;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.regex.Pattern;
+
+/**
+ * Profile Repository (custom operations) Implementation
+ *
+ * Uses findAndModify so a profile edit is a single round trip and only the
+ * changed fields end up in the oplog, instead of load + whole-document save.
+ *
+ * Optimistic concurrency:
+ * - version is part of the query when an expected version is given
+ * - version is incremented by every update, like @Version does on save
+ *
+ * Profiles locked by a shard migration (Profile.migratingSince) are not written:
+ * updateByUserId and save throw, so callers fail (and Kafka consumers retry)
+ * instead of writing to a copy the migration is about to delete.
+ *
+ * Every operation runs on the MongoTemplate of the profile's shard (ShardRouter).
+ * With sharding disabled that is always the primary MongoTemplate. Operations by
+ * userId that find nothing are retried once on a freshly read directory entry,
+ * since another instance may have just moved the profile.
+ */
+@RequiredArgsConstructor
+public class ProfileRepositoryCustomImpl implements ProfileRepositoryCustom {
+
+    private final ShardRouter shardRouter;
+    private final ProfileDirectory profileDirectory;
+    private final ShardScatterGather shardScatterGather;
+
+    @Override
+    public Optional<Profile> updateByUserId(String userId, Long expectedVersion, Criteria precondition, Update update) {
+        Criteria criteria = Criteria.where("userId").is(userId).orOperator(notMigrating());
+        if (expectedVersion != null) {
+            criteria = criteria.and("version").is(expectedVersion);
+        }
+        Query query = new Query(criteria);
+        if (precondition != null) {
+            query.addCriteria(precondition);
+        }
+
+        // BeforeConvertCallback doesn't run for updates - keep the search grams in sync here
+        refreshGrams(update, "companyName", "companyNameGrams");
+        refreshGrams(update, "email", "emailGrams");
+
+        update.inc("version", 1).set("updatedAt", LocalDateTime.now());
+
+        Profile updated = shardRouter.onUserShard(userId, template -> template.findAndModify(
+                query, update, FindAndModifyOptions.options().returnNew(true), Profile.class));
+        if (updated == null && isMigrating(userId)) {
+            throw new RuntimeException("Profile is being migrated to another shard, userId: " + userId);
+        }
+        return Optional.ofNullable(updated);
+    }
+
+    @Override
+    public <S extends Profile> S save(S profile) {
+        if (profile.getMigratingSince() != null
+                && profile.getMigratingSince().isAfter(LocalDateTime.now().minus(Profile.MIGRATION_LOCK_TIMEOUT))) {
+            throw new RuntimeException("Profile is being migrated to another shard, userId: " + profile.getUserId());
+        }
+        if (profile.getId() != null || !shardRouter.isEnabled()) {
+            return shardRouter.templateForUser(profile.getUserId()).save(profile);
+        }
+        // Directory entry first: a profile is never stored without one
+        String shard = shardRouter.shardForCountry(profile.getCountry());
+        profileDirectory.assign(profile.getUserId(), shard);
+        return shardRouter.template(shard).save(profile);
+    }
+
+    @Override
+    public Optional<Profile> findById(String id) {
+        return findFirst(Query.query(Criteria.where("_id").is(id)));
+    }
+
+    @Override
+    public Optional<Profile> findByUserId(String userId) {
+        return Optional.ofNullable(shardRouter.onUserShard(userId,
+                template -> template.findOne(byUserId(userId), Profile.class)));
+    }
+
+    @Override
+    public List<Profile> findByUserIdIn(Collection<String> userIds) {
+        return findByUserIdIn(userIds, false);
+    }
+
+    @Override
+    public List<Profile> findCompanyNamesByUserIdIn(Collection<String> userIds) {
+        return findByUserIdIn(userIds, true);
+    }
+
+    @Override
+    public Optional<Profile> findByEmailIgnoreCase(String email) {
+        return findFirst(byEmailIgnoreCase(email));
+    }
+
+    @Override
+    public List<Profile> findBySubscriptionType(SubscriptionType subscriptionType) {
+        return findOnAllShards(Query.query(Criteria.where("subscriptionType").is(subscriptionType)),
+                "subscriptionType: " + subscriptionType);
+    }
+
+    @Override
+    public List<Profile> findByCountry(String country) {
+        return findOnAllShards(Query.query(Criteria.where("country").is(country)), "country: " + country);
+    }
+
+    @Override
+    public List<Profile> findByCompanyNameContainingIgnoreCase(String companyName) {
+        return findOnAllShards(Query.query(containingIgnoreCase("companyName", companyName)),
+                "companyName: " + companyName);
+    }
+
+    @Override
+    public List<Profile> findByEmailContainingIgnoreCaseOrCompanyNameContainingIgnoreCase(
+            String email, String companyName) {
+        Query query = Query.query(new Criteria().orOperator(
+                containingIgnoreCase("email", email), containingIgnoreCase("companyName", companyName)));
+        return findOnAllShards(query, "email: " + email + ", companyName: " + companyName);
+    }
+
+    @Override
+    public List<Profile> findProfilesExpiringBetweenAndNotNotified(LocalDateTime start, LocalDateTime end) {
+        // Same filter as the former @Query, including the 'EXPIRED' subscription_type string
+        Query query = Query.query(Criteria.where("subscriptionEndDate").gte(start).lte(end)
+                .and("subscriptionType").ne("EXPIRED")
+                .and("expiryNotificationSent").ne(true));
+        return findOnAllShards(query, "expiring between " + start + " and " + end);
+    }
+
+    @Override
+    public List<Profile> findExpiredProfilesNotNotified(LocalDateTime now) {
+        Query query = Query.query(Criteria.where("subscriptionEndDate").lt(now)
+                .and("subscriptionType").ne("EXPIRED")
+                .and("expiredNotificationSent").ne(true));
+        return findOnAllShards(query, "expired before " + now);
+    }
+
+    @Override
+    public boolean existsByUserId(String userId) {
+        return shardRouter.onUserShard(userId,
+                template -> template.exists(byUserId(userId), Profile.class) ? Boolean.TRUE : null) != null;
+    }
+
+    @Override
+    public boolean existsByEmailIgnoreCase(String email) {
+        Query query = byEmailIgnoreCase(email);
+        return shardRouter.shards().stream()
+                .anyMatch(shard -> shardRouter.template(shard).exists(query, Profile.class));
+    }
+
+    @Override
+    public void deleteByUserId(String userId) {
+        shardRouter.onUserShard(userId,
+                template -> template.remove(byUserId(userId), Profile.class).getDeletedCount() > 0 ? Boolean.TRUE : null);
+        profileDirectory.remove(userId);
+    }
+
+    private List<Profile> findByUserIdIn(Collection<String> userIds, boolean companyNamesOnly) {
+        List<Profile> profiles = new ArrayList<>(userIds.size());
+        Map<String, List<String>> byShard = shardRouter.groupByShard(userIds);
+        for (Map.Entry<String, List<String>> shard : byShard.entrySet()) {
+            profiles.addAll(findOnShard(shard.getKey(), shard.getValue(), companyNamesOnly));
+        }
+
+        // Users not found where the (cached) directory pointed may have just moved - see ShardRouter.onUserShard
+        if (shardRouter.isEnabled() && profiles.size() < userIds.size()) {
+            Set<String> found = profiles.stream().map(Profile::getUserId).collect(Collectors.toSet());
+            List<String> missing = userIds.stream().distinct().filter(userId -> !found.contains(userId)).toList();
+            if (!missing.isEmpty()) {
+                for (Map.Entry<String, List<String>> shard : shardRouter.regroupByShard(missing).entrySet()) {
+                    List<String> moved = shard.getValue().stream()
+                            .filter(userId -> !byShard.getOrDefault(shard.getKey(), List.of()).contains(userId))
+                            .toList();
+                    if (!moved.isEmpty()) {
+                        profiles.addAll(findOnShard(shard.getKey(), moved, companyNamesOnly));
+                    }
+                }
+            }
+        }
+        return profiles;
+    }
+
+    private List<Profile> findOnShard(String shard, List<String> userIds, boolean companyNamesOnly) {
+        Query query = Query.query(Criteria.where("userId").in(userIds));
+        if (companyNamesOnly) {
+            query.fields().include("userId").include("companyName");
+        }
+        return shardRouter.template(shard).find(query, Profile.class);
+    }
+
+    /**
+     * All matches from every shard, queried concurrently
+     */
+    private List<Profile> findOnAllShards(Query query, String description) {
+        ShardScatterGather.Gathered<List<Profile>> gathered =
+                shardScatterGather.query(template -> template.find(query, Profile.class));
+        if (gathered.partial()) {
+            // Callers act on the whole list - a silently shorter one is worse than a retry
+            throw new RuntimeException("Not all shards answered, " + description + ", shards: " + gathered.shards());
+        }
+        return gathered.results().values().stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    /**
+     * First match on any shard, default shard first
+     */
+    private Optional<Profile> findFirst(Query query) {
+        for (String shard : shardRouter.shards()) {
+            Profile profile = shardRouter.template(shard).findOne(query, Profile.class);
+            if (profile != null) {
+                return Optional.of(profile);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private boolean isMigrating(String userId) {
+        Query locked = Query.query(Criteria.where("userId").is(userId)
+                .and("migratingSince").gte(LocalDateTime.now().minus(Profile.MIGRATION_LOCK_TIMEOUT)));
+        return shardRouter.templateForUser(userId).exists(locked, Profile.class);
+    }
+
+    /**
+     * Not locked by a shard migration (or the lock has expired)
+     */
+    private static Criteria[] notMigrating() {
+        return new Criteria[]{
+                Criteria.where("migratingSince").is(null),
+                Criteria.where("migratingSince").lt(LocalDateTime.now().minus(Profile.MIGRATION_LOCK_TIMEOUT))};
+    }
+
+    private static Query byUserId(String userId) {
+        return Query.query(Criteria.where("userId").is(userId));
+    }
+
+    /**
+     * Same match as the derived IgnoreCase query: anchored, quoted, case-insensitive regex
+     */
+    private static Query byEmailIgnoreCase(String email) {
+        return Query.query(Criteria.where("email").regex("^" + Pattern.quote(email) + "$", "i"));
+    }
+
+    /**
+     * Same match as the derived ContainingIgnoreCase query: quoted, case-insensitive regex
+     */
+    private static Criteria containingIgnoreCase(String field, String value) {
+        return Criteria.where(field).regex(Pattern.quote(value), "i");
+    }
+
+    private static void refreshGrams(Update update, String field, String gramsField) {
+        Document set = update.getUpdateObject().get("$set", Document.class);
+        Document unset = update.getUpdateObject().get("$unset", Document.class);
+        if (set != null && set.containsKey(field)) {
+            setOrUnset(update, gramsField, ProfileSearchIndexer.grams(set.getString(field)));
+        } else if (unset != null && unset.containsKey(field)) {
+            update.unset(gramsField);
+        }
+    }
+
+    private static void setOrUnset(Update update, String field, List<String> value) {
+        if (value == null) {
+            update.unset(field);
+        } else {
+            update.set(field, value);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.devision.jm.profile.search;
+
+import com.devision.jm.profile.sharding.ShardScatterGather;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Incomplete Search Exception
+ *
+ * Thrown when a search that has no way to report missing shards (the JSON list
+ * and the NDJSON stream) can't read every shard. Answered with 503 Service
+ * Unavailable by Spring MVC rather than with results that silently lack a shard.
+ */
+public class IncompleteSearchException extends ResponseStatusException {
+
+    public IncompleteSearchException(List<ShardScatterGather.ShardStatus> shards) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "Not all shards answered: " + shards.stream()
+                .filter(shard -> shard.status() != ShardScatterGather.Status.OK)
+                .map(shard -> shard.shard() + " " + shard.status() + " (" + shard.error() + ")")
+                .collect(Collectors.joining(", ")));
+    }
+
+    public IncompleteSearchException(String reason, Throwable cause) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, reason, cause);
+    }
+}
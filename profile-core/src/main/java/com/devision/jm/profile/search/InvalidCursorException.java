@@ -0,0 +1,22 @@
+package com.devision.jm.profile.search;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Invalid Cursor Exception
+ *
+ * Thrown for a search cursor that can't be decoded - malformed, truncated or
+ * tampered with by the client. Answered with 400 Bad Request by Spring MVC,
+ * without a handler in the presentation layer (which can't see profile-core).
+ */
+public class InvalidCursorException extends ResponseStatusException {
+
+    public InvalidCursorException(String reason) {
+        super(HttpStatus.BAD_REQUEST, reason);
+    }
+
+    public InvalidCursorException(String reason, Throwable cause) {
+        super(HttpStatus.BAD_REQUEST, reason, cause);
+    }
+}
@@ -0,0 +1,141 @@
+package com.devision.jm.profile.search;
+
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.sharding.ShardRouter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Profile Search Indexer
+ *
+ * Maintains the trigram index used by admin search (ProfileSearchService):
+ * - company_name_grams / email_grams hold the distinct lower-cased trigrams of
+ *   companyName / email, padded at the end so every character starts a gram
+ * - Both fields are multikey-indexed, so "contains" becomes an index lookup
+ *   instead of an unanchored regex over the whole collection
+ *
+ * The grams are recomputed before every save (BeforeConvertCallback), so every
+ * write path that goes through ProfileRepository/MongoTemplate#save keeps them
+ * current. Profiles written before the index existed are backfilled on startup,
+ * on every shard (search queries all of them, see ShardScatterGather); the
+ * indexes themselves are created on the default shard and copied to the others
+ * by ShardTemplates.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProfileSearchIndexer implements BeforeConvertCallback<Profile> {
+
+    static final int GRAM_LENGTH = 3;
+
+    // Pads the end of a value so the last characters also start a gram
+    static final char END_PADDING = '\u001F';
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final ShardRouter shardRouter;
+
+    @Override
+    public Profile onBeforeConvert(Profile profile, String collection) {
+        profile.setCompanyNameGrams(grams(profile.getCompanyName()));
+        profile.setEmailGrams(grams(profile.getEmail()));
+        return profile;
+    }
+
+    /**
+     * Distinct trigrams of a field value (lower-cased, end-padded).
+     * Returns null for null/blank values so the field stays absent.
+     */
+    public static List<String> grams(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String padded = value.toLowerCase(Locale.ROOT)
+                + String.valueOf(END_PADDING).repeat(GRAM_LENGTH - 1);
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + GRAM_LENGTH));
+        }
+        return new ArrayList<>(grams);
+    }
+
+    /**
+     * Create the gram indexes and backfill profiles that don't have grams yet.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeSearchIndex() {
+        try {
+            mongoTemplate.indexOps(Profile.class).ensureIndex(
+                    new Index().on("company_name_grams", Sort.Direction.ASC).named("idx_company_name_grams"));
+            mongoTemplate.indexOps(Profile.class).ensureIndex(
+                    new Index().on("email_grams", Sort.Direction.ASC).named("idx_email_grams"));
+            // Keyset order of paginated search
+            mongoTemplate.indexOps(Profile.class).ensureIndex(
+                    new Index().on("company_name", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                            .named("idx_company_name_id"));
+            log.info("Created indexes: idx_company_name_grams, idx_email_grams, idx_company_name_id");
+        } catch (Exception e) {
+            log.warn("Failed to create search gram indexes (may already exist): {}", e.getMessage());
+        }
+
+        for (String shard : shardRouter.shards()) {
+            try {
+                backfill(shard, shardRouter.template(shard));
+            } catch (Exception e) {
+                log.error("Failed to backfill search grams on shard {}: {}", shard, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void backfill(String shard, MongoTemplate template) {
+        Query missing = new Query(new Criteria().orOperator(
+                Criteria.where("company_name").exists(true).and("company_name_grams").exists(false),
+                Criteria.where("email").exists(true).and("email_grams").exists(false)));
+        missing.fields().include("company_name").include("email");
+
+        long updated = 0;
+        BulkOperations bulk = template.bulkOps(BulkOperations.BulkMode.UNORDERED, Profile.class);
+        int pending = 0;
+
+        try (Stream<Profile> profiles = template.stream(missing, Profile.class)) {
+            for (Profile profile : (Iterable<Profile>) profiles::iterator) {
+                bulk.updateOne(
+                        Query.query(Criteria.where("_id").is(profile.getId())),
+                        new Update()
+                                .set("company_name_grams", grams(profile.getCompanyName()))
+                                .set("email_grams", grams(profile.getEmail())));
+                if (++pending == BACKFILL_BATCH_SIZE) {
+                    updated += bulk.execute().getModifiedCount();
+                    bulk = template.bulkOps(BulkOperations.BulkMode.UNORDERED, Profile.class);
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            updated += bulk.execute().getModifiedCount();
+        }
+
+        if (updated > 0) {
+            log.info("Backfilled search grams for {} profiles on shard {}", updated, shard);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.devision.jm.profile.search;
+
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.sharding.ShardScatterGather;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Profile Search Service
+ *
+ * Admin search over email and company name (case-insensitive "contains"),
+ * served from the trigram index maintained by ProfileSearchIndexer.
+ *
+ * Query plan:
+ * - term >= 3 chars: documents whose grams contain ALL grams of the term
+ *   ($all on a multikey index)
+ * - term of 1-2 chars: documents having a gram that STARTS with the term
+ *   (anchored regex = index range scan; the end padding makes this exact)
+ * - candidates are then verified against the real field values, so results
+ *   are identical to the previous unanchored regex search
+ *
+ * Results are ranked by relevance:
+ * exact company name > exact email > company name prefix > email prefix
+ * > company word prefix > company name contains > email contains.
+ *
+ * Streaming search (stream) and paginated search (searchPage) instead use keyset order (company_name, _id)
+ * so results can be produced straight from the cursor and a page can be resumed
+ * from an opaque cursor; memory stays bounded regardless of the number of matches.
+ *
+ * Profiles are spread over the region shards, so every search reads all of them:
+ * - search / searchPage query the shards concurrently (ShardScatterGather); each
+ *   shard returns its matches already ordered (and at most a page + 1), and the
+ *   per-shard lists are merged with a k-way merge
+ * - stream opens the shards' cursors concurrently as well, with the same
+ *   deadline, and merges them lazily in keyset order
+ *
+ * Only searchPage reports shards that time out or fail (Page.shards, partial
+ * page). search and stream have no place for that, so they fail instead
+ * (IncompleteSearchException, 503); a shard failing after the stream started
+ * ends it with that exception rather than as if it was complete.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProfileSearchService {
+
+    private static final int STREAM_BATCH_SIZE = 200;
+
+    private static final Comparator<Profile> KEYSET_ORDER = Comparator
+            .comparing(Profile::getCompanyName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(Profile::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final ShardScatterGather shardScatterGather;
+
+    @Value("${app.search.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${app.search.max-page-size:100}")
+    private int maxPageSize;
+
+    /**
+     * One page of matches plus the cursor of the next page (null on the last page),
+     * and how each shard answered.
+     */
+    public record Page(List<Profile> profiles, String nextCursor, List<ShardScatterGather.ShardStatus> shards) {
+
+        public boolean partial() {
+            return shards.stream().anyMatch(shard -> shard.status() != ShardScatterGather.Status.OK);
+        }
+    }
+
+    /**
+     * Search profiles whose email or company name contains the term,
+     * most relevant first.
+     */
+    public List<Profile> search(String searchTerm) {
+        String term = normalize(searchTerm);
+
+        if (term.isEmpty()) {
+            // Same as "contains empty string": every profile
+            return merge(shardScatterGather.query(template -> template.find(
+                    new Query().with(Sort.by("company_name", "_id")), Profile.class)), KEYSET_ORDER);
+        }
+
+        Comparator<Profile> order = relevanceOrder(term);
+        List<Profile> results = merge(shardScatterGather.query(template ->
+                template.find(new Query(matchCriteria(term)), Profile.class).stream()
+                        .filter(profile -> score(profile, term) > 0)
+                        .sorted(order)
+                        .toList()), order);
+
+        log.debug("Search term '{}' matched {} profiles", term, results.size());
+        return results;
+    }
+
+    /**
+     * Stream profiles whose email or company name contains the term, in
+     * (company_name, _id) order, straight from a MongoDB cursor.
+     * A blank term streams all profiles. The caller must close the stream.
+     */
+    public Stream<Profile> stream(String searchTerm) {
+        String term = normalize(searchTerm);
+
+        Query query = term.isEmpty() ? new Query() : new Query(matchCriteria(term));
+        query.with(Sort.by("company_name", "_id")).cursorBatchSize(STREAM_BATCH_SIZE);
+
+        // Opening a cursor runs the query and reads its first batch
+        ShardScatterGather.Gathered<Stream<Profile>> opened = shardScatterGather.query(template -> {
+            Stream<Profile> candidates = template.stream(query, Profile.class);
+            return term.isEmpty() ? candidates : candidates.filter(profile -> score(profile, term) > 0);
+        });
+        Collection<Stream<Profile>> shardStreams = opened.results().values();
+        try {
+            if (opened.partial()) {
+                throw new IncompleteSearchException(opened.shards());
+            }
+            Iterator<Profile> merged = ShardScatterGather.mergeSorted(opened.results().entrySet().stream()
+                    .map(shard -> failingAsIncomplete(shard.getKey(), shard.getValue().iterator()))
+                    .toList(), KEYSET_ORDER);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false)
+                    .onClose(() -> shardStreams.forEach(Stream::close));
+        } catch (RuntimeException e) {
+            shardStreams.forEach(Stream::close);
+            throw e;
+        }
+    }
+
+    /**
+     * A shard's cursor whose read errors (a getMore after the stream started)
+     * surface as IncompleteSearchException naming the shard.
+     */
+    private static Iterator<Profile> failingAsIncomplete(String shard, Iterator<Profile> cursor) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return cursor.hasNext();
+                } catch (RuntimeException e) {
+                    throw new IncompleteSearchException("Shard " + shard + " failed during the stream", e);
+                }
+            }
+
+            @Override
+            public Profile next() {
+                try {
+                    return cursor.next();
+                } catch (NoSuchElementException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    throw new IncompleteSearchException("Shard " + shard + " failed during the stream", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Keyset-paginated search ordered by (company_name, _id).
+     * A blank term lists all profiles.
+     *
+     * @param cursor nextCursor of the previous page, or null for the first page
+     * @param limit  page size; null/non-positive means the default, capped at max-page-size
+     */
+    public Page searchPage(String searchTerm, String cursor, Integer limit) {
+        String term = normalize(searchTerm);
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+
+        List<Criteria> filters = new ArrayList<>();
+        if (!term.isEmpty()) {
+            filters.add(matchCriteria(term));
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            filters.add(after(SearchCursor.decode(cursor)));
+        }
+
+        Query query = new Query();
+        if (!filters.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(filters));
+        }
+        query.with(Sort.by("company_name", "_id")).cursorBatchSize(pageSize + 1);
+
+        // Up to one match past the page from every shard, merged in keyset order
+        ShardScatterGather.Gathered<List<Profile>> gathered = shardScatterGather.query(template -> {
+            List<Profile> matches = new ArrayList<>(pageSize + 1);
+            try (Stream<Profile> candidates = template.stream(query, Profile.class)) {
+                Iterator<Profile> iterator = candidates.iterator();
+                while (iterator.hasNext() && matches.size() <= pageSize) {
+                    Profile profile = iterator.next();
+                    if (term.isEmpty() || score(profile, term) > 0) {
+                        matches.add(profile);
+                    }
+                }
+            }
+            return matches;
+        });
+
+        List<Profile> page = new ArrayList<>(pageSize);
+        Iterator<Profile> merged = ShardScatterGather.mergeSorted(
+                gathered.results().values().stream().map(List::iterator).toList(), KEYSET_ORDER);
+        while (merged.hasNext() && page.size() < pageSize) {
+            page.add(merged.next());
+        }
+        boolean hasMore = merged.hasNext();
+
+        String nextCursor = null;
+        if (hasMore) {
+            Profile last = page.get(page.size() - 1);
+            nextCursor = new SearchCursor(last.getCompanyName(), last.getId()).encode();
+        }
+        return new Page(page, nextCursor, gathered.shards());
+    }
+
+    private static List<Profile> merge(ShardScatterGather.Gathered<List<Profile>> gathered, Comparator<Profile> order) {
+        if (gathered.partial()) {
+            throw new IncompleteSearchException(gathered.shards());
+        }
+        List<Profile> results = new ArrayList<>();
+        ShardScatterGather.mergeSorted(gathered.results().values().stream().map(List::iterator).toList(), order)
+                .forEachRemaining(results::add);
+        return results;
+    }
+
+    /**
+     * Profiles strictly after the cursor in (company_name, _id) order.
+     * Missing/null company names sort before every string.
+     */
+    private static Criteria after(SearchCursor cursor) {
+        if (cursor.companyName() == null) {
+            return new Criteria().orOperator(
+                    new Criteria().andOperator(
+                            Criteria.where("company_name").is(null),
+                            Criteria.where("_id").gt(cursor.id())),
+                    Criteria.where("company_name").ne(null));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("company_name").gt(cursor.companyName()),
+                new Criteria().andOperator(
+                        Criteria.where("company_name").is(cursor.companyName()),
+                        Criteria.where("_id").gt(cursor.id())));
+    }
+
+    /**
+     * Index-backed candidate filter for a normalized (lower-cased, non-empty) term.
+     */
+    public static Criteria matchCriteria(String term) {
+        if (term.length() >= ProfileSearchIndexer.GRAM_LENGTH) {
+            // Term grams without end padding - they must all occur inside the value
+            Set<String> grams = new LinkedHashSet<>();
+            for (int i = 0; i + ProfileSearchIndexer.GRAM_LENGTH <= term.length(); i++) {
+                grams.add(term.substring(i, i + ProfileSearchIndexer.GRAM_LENGTH));
+            }
+            return new Criteria().orOperator(
+                    Criteria.where("company_name_grams").all(grams),
+                    Criteria.where("email_grams").all(grams));
+        }
+
+        // Plain backslash escapes keep the regex a simple prefix, so MongoDB can use index bounds
+        Pattern prefix = Pattern.compile("^" + term.replaceAll("([\\\\.^$|?*+()\\[\\]{}])", "\\\\$1"));
+        return new Criteria().orOperator(
+                Criteria.where("company_name_grams").regex(prefix),
+                Criteria.where("email_grams").regex(prefix));
+    }
+
+    public static String normalize(String searchTerm) {
+        return searchTerm == null ? "" : searchTerm.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Relevance of a profile for a normalized term; 0 means "not a match".
+     */
+    public static int score(Profile profile, String term) {
+        String companyName = lower(profile.getCompanyName());
+        String email = lower(profile.getEmail());
+
+        if (companyName.equals(term)) {
+            return 100;
+        }
+        if (email.equals(term)) {
+            return 90;
+        }
+        if (companyName.startsWith(term)) {
+            return 80;
+        }
+        if (email.startsWith(term)) {
+            return 70;
+        }
+        if (companyName.contains(" " + term)) {
+            return 60;
+        }
+        if (companyName.contains(term)) {
+            return 40;
+        }
+        if (email.contains(term)) {
+            return 30;
+        }
+        return 0;
+    }
+
+    private static Comparator<Profile> relevanceOrder(String term) {
+        return Comparator.<Profile>comparingInt(profile -> score(profile, term)).reversed()
+                .thenComparingInt(profile -> lower(profile.getCompanyName()).length())
+                .thenComparing(profile -> lower(profile.getCompanyName()))
+                .thenComparing(Profile::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+    }
+
+    private static String lower(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+}
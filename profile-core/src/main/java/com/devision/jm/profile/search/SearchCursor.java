@@ -0,0 +1,45 @@
+package com.devision.jm.profile.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Search Cursor
+ *
+ * Keyset position of a paginated profile search: the (company_name, _id) of
+ * the last profile returned. Encoded as an opaque base64url token so clients
+ * can't depend on its format.
+ *
+ * companyName may be null - profiles without a company name sort first.
+ */
+public record SearchCursor(String companyName, String id) {
+
+    private static final char SEPARATOR = ':';
+    private static final char NULL_MARKER = '-';
+    private static final char VALUE_MARKER = '+';
+
+    public String encode() {
+        // _id is an ObjectId hex string, so it never contains the separator
+        String raw = id + SEPARATOR + (companyName == null ? String.valueOf(NULL_MARKER) : VALUE_MARKER + companyName);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws InvalidCursorException if the token is not a cursor produced by {@link #encode()}
+     */
+    public static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            String id = raw.substring(0, separator);
+            char marker = raw.charAt(separator + 1);
+            boolean nullWithMore = marker == NULL_MARKER && raw.length() > separator + 2;
+            if (id.isEmpty() || (marker != NULL_MARKER && marker != VALUE_MARKER) || nullWithMore) {
+                throw new InvalidCursorException("Invalid search cursor");
+            }
+            return new SearchCursor(marker == NULL_MARKER ? null : raw.substring(separator + 2), id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid search cursor", e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.devision.jm.profile.service;
+
+import com.devision.jm.profile.api.external.dto.DeadLetterReplayResponse;
+import com.devision.jm.profile.api.external.interfaces.DeadLetterApi;
+import com.devision.jm.profile.messaging.KafkaRetryTopics;
+import com.devision.jm.profile.messaging.KafkaSendTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dead Letter Service Implementation
+ *
+ * Replays dead-lettered records (see KafkaRetryTopics) to their original topic,
+ * e.g. after the bug or outage that made them fail has been fixed.
+ *
+ * - The DLT is read with its own consumer group (app.kafka.retry.replay-group-id)
+ *   whose offsets are committed once Kafka has acknowledged the republished
+ *   records; a poll is replayed again only if its republish failed
+ * - Replayed records get a new offset, so the processed-message ledger treats
+ *   them as new messages
+ * - One replay at a time per instance
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "kafka.enabled", havingValue = "true")
+public class DeadLetterServiceImpl implements DeadLetterApi {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+
+    private final ConsumerFactory<String, String> consumerFactory;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaSendTracker sendTracker;
+    private final KafkaRetryTopics kafkaRetryTopics;
+    private final String replayGroupId;
+    private final Duration sendTimeout;
+
+    public DeadLetterServiceImpl(
+            @Qualifier("keyOrderedConsumerFactory") ConsumerFactory<String, String> consumerFactory,
+            KafkaTemplate<String, String> kafkaTemplate,
+            KafkaSendTracker sendTracker,
+            KafkaRetryTopics kafkaRetryTopics,
+            @Value("${app.kafka.retry.replay-group-id:profile-service-dlt-replay}") String replayGroupId,
+            @Value("${app.kafka.retry.replay-send-timeout:PT30S}") Duration sendTimeout) {
+        this.consumerFactory = consumerFactory;
+        this.kafkaTemplate = kafkaTemplate;
+        this.sendTracker = sendTracker;
+        this.kafkaRetryTopics = kafkaRetryTopics;
+        this.replayGroupId = replayGroupId;
+        this.sendTimeout = sendTimeout;
+    }
+
+    @Override
+    public synchronized DeadLetterReplayResponse replay(String topic, int maxRecords) {
+        String baseTopic = kafkaRetryTopics.baseTopic(topic);
+        String deadLetterTopic = kafkaRetryTopics.dltTopic(baseTopic);
+        log.info("Replaying dead-letter topic. dlt={}, topic={}, maxRecords={}", deadLetterTopic, baseTopic, maxRecords);
+
+        int replayed = 0;
+        try (Consumer<String, String> consumer = consumerFactory.createConsumer(replayGroupId, "dlt-replay")) {
+            List<PartitionInfo> partitions = consumer.partitionsFor(deadLetterTopic);
+            if (partitions == null || partitions.isEmpty()) {
+                log.info("Dead-letter topic has no partitions. dlt={}", deadLetterTopic);
+                return response(baseTopic, deadLetterTopic, 0);
+            }
+            consumer.assign(partitions.stream()
+                    .map(partition -> new TopicPartition(deadLetterTopic, partition.partition()))
+                    .toList());
+
+            while (replayed < maxRecords) {
+                ConsumerRecords<String, String> polled = consumer.poll(POLL_TIMEOUT);
+                if (polled.isEmpty()) {
+                    break;
+                }
+                List<CompletableFuture<?>> sends = new ArrayList<>();
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                for (ConsumerRecord<String, String> record : polled) {
+                    if (replayed == maxRecords) {
+                        break;
+                    }
+                    sends.add(sendTracker.send(kafkaTemplate, baseTopic, record.key(), record.value()));
+                    offsets.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
+                    replayed++;
+                }
+                CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                        .get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                consumer.commitSync(offsets);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while replaying " + deadLetterTopic, e);
+        } catch (Exception e) {
+            log.error("Failed to replay dead-letter topic. dlt={}, error={}", deadLetterTopic, e.getMessage(), e);
+            throw new RuntimeException("Failed to replay " + deadLetterTopic + ": " + e.getMessage(), e);
+        }
+
+        log.info("Replayed dead-letter records. dlt={}, topic={}, replayed={}", deadLetterTopic, baseTopic, replayed);
+        return response(baseTopic, deadLetterTopic, replayed);
+    }
+
+    private static DeadLetterReplayResponse response(String topic, String deadLetterTopic, int replayed) {
+        return DeadLetterReplayResponse.builder()
+                .topic(topic)
+                .deadLetterTopic(deadLetterTopic)
+                .replayed(replayed)
+                .build();
+    }
+}
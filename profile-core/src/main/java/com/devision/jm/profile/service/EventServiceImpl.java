@@ -5,9 +5,14 @@ import com.devision.jm.profile.api.external.dto.EventResponse;
 import com.devision.jm.profile.api.external.dto.EventUpdateRequest;
 import com.devision.jm.profile.api.external.interfaces.EventApi;
 import com.devision.jm.profile.api.internal.dto.EventFileUploadRequest;
+import com.devision.jm.profile.api.internal.dto.MediaReference;
+import com.devision.jm.profile.media.ChunkedMediaPublisher;
+import com.devision.jm.profile.media.MediaStager;
+import com.devision.jm.profile.messaging.KafkaSendTracker;
 import com.devision.jm.profile.model.entity.Event;
 import com.devision.jm.profile.model.enums.EventStatus;
 import com.devision.jm.profile.repository.EventRepository;
+import com.devision.jm.profile.repository.MongoConcurrencyLimiter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,10 +24,13 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Event Service Implementation
@@ -35,10 +43,14 @@ import java.util.stream.Collectors;
  * 2. Send file upload request to File Service via Kafka
  * 3. File Service uploads to S3 and sends back URLs via Kafka
  * 4. EventFileCompletedConsumer updates event with URLs and ACTIVE status
+ *    (for chunked transfers: once File Service acknowledged every reassembly)
  *
  * Ownership rules:
  * - Only owning company can update/delete event
  * - companyId is resolved from X-User-Id
+ *
+ * Repository calls run within MongoConcurrencyLimiter (request threads may be
+ * virtual). Streams hold a permit only while their cursor is opened.
  */
 @Slf4j
 @Service
@@ -49,6 +61,11 @@ public class EventServiceImpl implements EventApi {
     private final EventRepository eventRepository;
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
+    private final MediaStager mediaStager;
+    private final KafkaTemplate<String, byte[]> mediaKafkaTemplate;
+    private final ChunkedMediaPublisher chunkedMediaPublisher;
+    private final KafkaSendTracker sendTracker;
+    private final MongoConcurrencyLimiter mongoConcurrencyLimiter;
 
     @Value("${kafka.topics.event-file-upload:event-file-upload}")
     private String eventFileUploadTopic;
@@ -75,6 +92,12 @@ public class EventServiceImpl implements EventApi {
         // Generate event ID
         String eventId = generateEventId();
 
+        // Files going as chunked transfers are recorded before anything is sent,
+        // so the completion can't be processed without knowing about them
+        Map<MultipartFile, String> chunkedMediaIds = kafkaEnabled
+                ? planChunkedTransfers(coverImage, images, video)
+                : Map.of();
+
         // Create event with PENDING status
         Event event = Event.builder()
                 .eventId(eventId)
@@ -82,19 +105,21 @@ public class EventServiceImpl implements EventApi {
                 .title(request.getTitle())
                 .caption(request.getCaption())
                 .status(EventStatus.PENDING)
+                .chunkedMediaIds(chunkedMediaIds.isEmpty() ? null : new ArrayList<>(chunkedMediaIds.values()))
                 .build();
 
-        Event saved = eventRepository.save(event);
+        Event saved = mongoConcurrencyLimiter.call(() -> eventRepository.save(event));
         log.info("Event created with PENDING status. eventId={}", saved.getEventId());
 
         // Send file upload request to File Service via Kafka
         if (kafkaEnabled) {
-            sendFileUploadRequest(eventId, companyId, coverImage, images, video);
+            sendFileUploadRequest(eventId, companyId, coverImage, images, video, chunkedMediaIds);
         } else {
             log.warn("Kafka is disabled. Files will not be uploaded. eventId={}", eventId);
             // For local testing without Kafka, set to ACTIVE immediately
             saved.setStatus(EventStatus.ACTIVE);
-            saved = eventRepository.save(saved);
+            Event active = saved;
+            saved = mongoConcurrencyLimiter.call(() -> eventRepository.save(active));
         }
 
         return toEventResponse(saved);
@@ -102,34 +127,54 @@ public class EventServiceImpl implements EventApi {
 
     /**
      * Send file upload request to File Service via Kafka
+     *
+     * Files travel inline (base64), as claim checks to the blob staging store or
+     * as chunked transfers, depending on app.media.transport (see MediaStager).
      */
     private void sendFileUploadRequest(
             String eventId,
             String companyId,
             MultipartFile coverImage,
             List<MultipartFile> images,
-            MultipartFile video) {
+            MultipartFile video,
+            Map<MultipartFile, String> chunkedMediaIds) {
 
+        List<MediaReference> staged = new ArrayList<>();
+        List<CompletableFuture<Void>> transfers = new ArrayList<>();
         try {
             EventFileUploadRequest.EventFileUploadRequestBuilder builder = EventFileUploadRequest.builder()
                     .eventId(eventId)
                     .companyId(companyId);
 
             // Add cover image
-            builder.coverImageBase64(encodeToBase64(coverImage))
-                    .coverImageFilename(coverImage.getOriginalFilename())
+            builder.coverImageFilename(coverImage.getOriginalFilename())
                     .coverImageContentType(coverImage.getContentType());
+            if (chunkedMediaIds.containsKey(coverImage)) {
+                builder.coverImageRef(publishChunked(eventId, companyId, "COVER_IMAGE", coverImage,
+                        chunkedMediaIds, transfers));
+            } else if (mediaStager.isClaimCheck()) {
+                builder.coverImageRef(stage(eventId, coverImage, staged));
+            } else {
+                builder.coverImageBase64(mediaStager.inline(coverImage));
+            }
 
             // Add additional images if present
             if (images != null && !images.isEmpty()) {
                 List<EventFileUploadRequest.FileData> imageDataList = new ArrayList<>();
                 for (MultipartFile img : images) {
                     if (img != null && !img.isEmpty()) {
-                        imageDataList.add(EventFileUploadRequest.FileData.builder()
-                                .base64(encodeToBase64(img))
+                        EventFileUploadRequest.FileData.FileDataBuilder fileData = EventFileUploadRequest.FileData.builder()
                                 .filename(img.getOriginalFilename())
-                                .contentType(img.getContentType())
-                                .build());
+                                .contentType(img.getContentType());
+                        if (chunkedMediaIds.containsKey(img)) {
+                            fileData.ref(publishChunked(eventId, companyId, "IMAGE", img,
+                                    chunkedMediaIds, transfers));
+                        } else if (mediaStager.isClaimCheck()) {
+                            fileData.ref(stage(eventId, img, staged));
+                        } else {
+                            fileData.base64(mediaStager.inline(img));
+                        }
+                        imageDataList.add(fileData.build());
                     }
                 }
                 builder.additionalImages(imageDataList);
@@ -137,30 +182,88 @@ public class EventServiceImpl implements EventApi {
 
             // Add video if present
             if (video != null && !video.isEmpty()) {
-                builder.videoBase64(encodeToBase64(video))
-                        .videoFilename(video.getOriginalFilename())
+                builder.videoFilename(video.getOriginalFilename())
                         .videoContentType(video.getContentType());
+                if (chunkedMediaIds.containsKey(video)) {
+                    builder.videoRef(publishChunked(eventId, companyId, "VIDEO", video,
+                            chunkedMediaIds, transfers));
+                } else if (mediaStager.isClaimCheck()) {
+                    builder.videoRef(stage(eventId, video, staged));
+                } else {
+                    builder.videoBase64(mediaStager.inline(video));
+                }
             }
 
             EventFileUploadRequest request = builder.build();
-            String json = objectMapper.writeValueAsString(request);
-
-            kafkaTemplate.send(eventFileUploadTopic, eventId, json);
-            log.info("Sent file upload request to Kafka. eventId={}, topic={}", eventId, eventFileUploadTopic);
+            // Serialized straight to UTF-8 bytes - inline media is encoded from the upload streams
+            byte[] payload = objectMapper.writeValueAsBytes(request);
+
+            CompletableFuture<?> sent = sendTracker.send(mediaKafkaTemplate, eventFileUploadTopic, eventId, payload);
+            log.info("Sent file upload request to Kafka. eventId={}, topic={}, stagedFiles={}, chunkedFiles={}",
+                    eventId, eventFileUploadTopic, staged.size(), transfers.size());
+
+            // An undelivered request or a lost chunk means File Service never completes the event
+            transfers.add(sent.thenRun(() -> { }));
+            sendTracker.onFailure(CompletableFuture.allOf(transfers.toArray(CompletableFuture[]::new)), ex -> {
+                log.error("File upload request could not be delivered. eventId={}", eventId, ex);
+                mediaStager.discard(staged);
+                markFailed(eventId);
+            });
 
-        } catch (IOException e) {
+        } catch (IOException | RuntimeException e) {
+            // RuntimeException: e.g. KafkaSendTracker back-pressure timeout
             log.error("Failed to send file upload request to Kafka. eventId={}", eventId, e);
-            // Mark event as FAILED
-            eventRepository.findByEventId(eventId).ifPresent(event -> {
-                event.setStatus(EventStatus.FAILED);
-                eventRepository.save(event);
-            });
+            mediaStager.discard(staged);
+            markFailed(eventId);
             throw new RuntimeException("Failed to process file upload request", e);
         }
     }
 
-    private String encodeToBase64(MultipartFile file) throws IOException {
-        return Base64.getEncoder().encodeToString(file.getBytes());
+    private MediaReference stage(String eventId, MultipartFile file, List<MediaReference> staged) throws IOException {
+        MediaReference reference = mediaStager.stage(eventId, file);
+        staged.add(reference);
+        return reference;
+    }
+
+    /**
+     * Assign a transfer id to every file that goes as a chunked transfer.
+     */
+    private Map<MultipartFile, String> planChunkedTransfers(
+            MultipartFile coverImage, List<MultipartFile> images, MultipartFile video) {
+        List<MultipartFile> files = new ArrayList<>();
+        files.add(coverImage);
+        if (images != null) {
+            files.addAll(images);
+        }
+        files.add(video);
+
+        Map<MultipartFile, String> mediaIds = new IdentityHashMap<>();
+        for (MultipartFile file : files) {
+            if (file != null && !file.isEmpty() && mediaStager.shouldChunk(file)) {
+                mediaIds.put(file, "MED-" + UUID.randomUUID());
+            }
+        }
+        return mediaIds;
+    }
+
+    private MediaReference publishChunked(
+            String eventId,
+            String companyId,
+            String role,
+            MultipartFile file,
+            Map<MultipartFile, String> chunkedMediaIds,
+            List<CompletableFuture<Void>> transfers) throws IOException {
+        ChunkedMediaPublisher.Transfer transfer =
+                chunkedMediaPublisher.publish(chunkedMediaIds.get(file), eventId, companyId, role, file);
+        transfers.add(transfer.sent());
+        return transfer.reference();
+    }
+
+    private void markFailed(String eventId) {
+        mongoConcurrencyLimiter.call(() -> eventRepository.findByEventId(eventId)).ifPresent(event -> {
+            event.setStatus(EventStatus.FAILED);
+            mongoConcurrencyLimiter.call(() -> eventRepository.save(event));
+        });
     }
 
     // ==================== READ ====================
@@ -168,7 +271,7 @@ public class EventServiceImpl implements EventApi {
     public List<EventResponse> getEventsByCompanyId(String companyId) {
         log.info("Fetching all events for companyId: {}", companyId);
 
-        return eventRepository.findByCompanyId(companyId).stream()
+        return mongoConcurrencyLimiter.call(() -> eventRepository.findByCompanyId(companyId)).stream()
                 .map(this::toEventResponse)
                 .collect(Collectors.toList());
     }
@@ -177,16 +280,34 @@ public class EventServiceImpl implements EventApi {
     public List<EventResponse> getActiveEventsByCompanyId(String companyId) {
         log.info("Fetching active events for companyId: {}", companyId);
 
-        return eventRepository.findByCompanyIdAndStatus(companyId, EventStatus.ACTIVE).stream()
+        return mongoConcurrencyLimiter.call(
+                        () -> eventRepository.findByCompanyIdAndStatus(companyId, EventStatus.ACTIVE)).stream()
                 .map(this::toEventResponse)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Stream<EventResponse> streamEventsByCompanyId(String companyId) {
+        log.info("Streaming all events for companyId: {}", companyId);
+
+        return mongoConcurrencyLimiter.call(() -> eventRepository.streamByCompanyId(companyId))
+                .map(this::toEventResponse);
+    }
+
+    @Override
+    public Stream<EventResponse> streamActiveEventsByCompanyId(String companyId) {
+        log.info("Streaming active events for companyId: {}", companyId);
+
+        return mongoConcurrencyLimiter.call(
+                        () -> eventRepository.streamByCompanyIdAndStatus(companyId, EventStatus.ACTIVE))
+                .map(this::toEventResponse);
+    }
+
     @Override
     public EventResponse getEventByEventId(String eventId) {
         log.info("Fetching event by eventId: {}", eventId);
 
-        Event event = eventRepository.findByEventId(eventId)
+        Event event = mongoConcurrencyLimiter.call(() -> eventRepository.findByEventId(eventId))
                 .orElseThrow(() -> new RuntimeException("Event not found for eventId: " + eventId));
 
         return toEventResponse(event);
@@ -197,7 +318,7 @@ public class EventServiceImpl implements EventApi {
     public EventResponse updateEvent(String companyId, String eventId, EventUpdateRequest request) {
         log.info("Updating event. eventId={}, companyId={}", eventId, companyId);
 
-        Event event = eventRepository.findByEventId(eventId)
+        Event event = mongoConcurrencyLimiter.call(() -> eventRepository.findByEventId(eventId))
                 .orElseThrow(() -> new RuntimeException("Event not found for eventId: " + eventId));
 
         // Ownership check
@@ -214,7 +335,7 @@ public class EventServiceImpl implements EventApi {
             event.setCaption(request.getCaption());
         }
 
-        Event updated = eventRepository.save(event);
+        Event updated = mongoConcurrencyLimiter.call(() -> eventRepository.save(event));
         log.info("Event updated successfully. eventId={}", updated.getEventId());
 
         return toEventResponse(updated);
@@ -225,7 +346,7 @@ public class EventServiceImpl implements EventApi {
     public void deleteEvent(String companyId, String eventId) {
         log.info("Deleting event. eventId={}, companyId={}", eventId, companyId);
 
-        Event event = eventRepository.findByEventId(eventId)
+        Event event = mongoConcurrencyLimiter.call(() -> eventRepository.findByEventId(eventId))
                 .orElseThrow(() -> new RuntimeException("Event not found for eventId: " + eventId));
 
         // Ownership check
@@ -237,7 +358,7 @@ public class EventServiceImpl implements EventApi {
         // TODO: Send Kafka message to File Service to delete files from S3
         // For now, just delete the event record
 
-        eventRepository.delete(event);
+        mongoConcurrencyLimiter.run(() -> eventRepository.delete(event));
         log.info("Event deleted successfully. eventId={}", eventId);
     }
 
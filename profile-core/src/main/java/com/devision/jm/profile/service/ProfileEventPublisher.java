@@ -1,6 +1,7 @@
 package com.devision.jm.profile.service;
 
 import com.devision.jm.profile.api.external.dto.ProfileUpdateEventResponse;
+import com.devision.jm.profile.messaging.KafkaSendTracker;
 import com.devision.jm.profile.model.entity.Profile;    
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,6 +14,7 @@ import org.springframework.stereotype.Service;
 public class ProfileEventPublisher {
 
     private final KafkaTemplate<String, ProfileUpdateEventResponse> profileUpdateKafkaTemplate;
+    private final KafkaSendTracker sendTracker;
 
     public void handleCompanyUpdated(Profile company) {
         ProfileUpdateEventResponse event = ProfileUpdateEventResponse.builder()
@@ -26,7 +28,7 @@ public class ProfileEventPublisher {
                 .phoneNumber(company.getPhoneNumber())
                 .build();
 
-        profileUpdateKafkaTemplate.send("company-profile.updates", company.getId(), event);
+        sendTracker.send(profileUpdateKafkaTemplate, "company-profile.updates", company.getId(), event);
         log.info("Sent company-profile.update event for companyId={} name={}",
                 company.getId(), company.getCompanyName());
     }
@@ -1,32 +1,52 @@
 package com.devision.jm.profile.service;
 
 import com.devision.jm.profile.api.external.dto.ApplicantSearchProfileDto;
+import com.devision.jm.profile.api.external.dto.ProfileBatchResponse;
 import com.devision.jm.profile.api.external.dto.ProfileCreateRequest;
 import com.devision.jm.profile.api.external.dto.ProfileFullUpdateRequest;
 import com.devision.jm.profile.api.external.dto.ProfileResponse;
+import com.devision.jm.profile.api.external.dto.ProfileSearchPage;
+import com.devision.jm.profile.api.external.dto.ShardSearchStatus;
 import com.devision.jm.profile.api.external.dto.ProfileUpdateRequest;
 import com.devision.jm.profile.api.external.interfaces.ProfileApi;
 import com.devision.jm.profile.api.internal.dto.AvatarFileUploadRequest;
+import com.devision.jm.profile.cache.ProfileCache;
+import com.devision.jm.profile.media.MediaStager;
+import com.devision.jm.profile.messaging.KafkaSendTracker;
 import com.devision.jm.profile.model.embedded.ApplicantSearchProfile;
 import com.devision.jm.profile.model.entity.Profile;
 import com.devision.jm.profile.model.enums.EducationDegree;
 import com.devision.jm.profile.model.enums.EmploymentStatus;
 import com.devision.jm.profile.model.enums.SubscriptionType;
+import com.devision.jm.profile.repository.MongoConcurrencyLimiter;
 import com.devision.jm.profile.repository.ProfileRepository;
+import com.devision.jm.profile.search.ProfileSearchService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.Base64;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Profile Service Implementation
@@ -43,6 +63,10 @@ import java.util.stream.Collectors;
  * - 3.2.1: Company Logo
  * - 3.3.1: Country change triggers shard migration (Ultimo)
  * - 6.2.1-6.2.4: Applicant Search Profile (Premium Feature)
+ *
+ * Repository calls and shard migrations run within MongoConcurrencyLimiter:
+ * request threads may be virtual, so nothing else bounds them. Searches are
+ * limited per shard by ShardScatterGather instead.
  */
 @Slf4j
 @Service
@@ -54,6 +78,12 @@ public class ProfileServiceImpl implements ProfileApi {
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
     private final ShardMigrationService shardMigrationService;
+    private final ProfileCache profileCache;
+    private final ProfileSearchService profileSearchService;
+    private final MediaStager mediaStager;
+    private final KafkaTemplate<String, byte[]> mediaKafkaTemplate;
+    private final KafkaSendTracker sendTracker;
+    private final MongoConcurrencyLimiter mongoConcurrencyLimiter;
 
     @Value("${kafka.topics.avatar-file-upload:avatar-file-upload}")
     private String avatarFileUploadTopic;
@@ -65,107 +95,131 @@ public class ProfileServiceImpl implements ProfileApi {
     public ProfileResponse getProfileByUserId(String userId) {
         log.info("Getting profile for userId: {}", userId);
 
-        Profile profile = profileRepository.findByUserId(userId)
-                .orElseThrow(() -> new RuntimeException("Profile not found for userId: " + userId));
-
-        return toProfileResponse(profile);
+        return profileCache.getByUserId(userId, () -> {
+            Profile profile = mongoConcurrencyLimiter.call(() -> profileRepository.findByUserId(userId))
+                    .orElseThrow(() -> new RuntimeException("Profile not found for userId: " + userId));
+            return toProfileResponse(profile);
+        });
     }
 
     @Override
     public ProfileResponse getProfileById(String profileId) {
         log.info("Getting profile by id: {}", profileId);
 
-        Profile profile = profileRepository.findById(profileId)
-                .orElseThrow(() -> new RuntimeException("Profile not found for id: " + profileId));
-
-        return toProfileResponse(profile);
+        return profileCache.getById(profileId, () -> {
+            Profile profile = mongoConcurrencyLimiter.call(() -> profileRepository.findById(profileId))
+                    .orElseThrow(() -> new RuntimeException("Profile not found for id: " + profileId));
+            return toProfileResponse(profile);
+        });
     }
 
     @Override
     public ProfileResponse getProfileByEmail(String email) {
         log.info("Getting profile for email: {}", email);
 
-        Profile profile = profileRepository.findByEmailIgnoreCase(email)
-                .orElseThrow(() -> new RuntimeException("Profile not found for email: " + email));
-
-        return toProfileResponse(profile);
+        return profileCache.getByEmail(email, () -> {
+            Profile profile = mongoConcurrencyLimiter.call(() -> profileRepository.findByEmailIgnoreCase(email))
+                    .orElseThrow(() -> new RuntimeException("Profile not found for email: " + email));
+            return toProfileResponse(profile);
+        });
     }
 
     @Override
-    public ProfileResponse updateProfile(String userId, ProfileUpdateRequest request) {
-        log.info("Updating profile for userId: {}", userId);
+    public ProfileBatchResponse getProfilesByUserIds(Collection<String> userIds) {
+        Set<String> requested = new LinkedHashSet<>(userIds);
+        requested.remove(null);
+        log.info("Getting profiles for {} userIds", requested.size());
+
+        // Cache first, then one $in query for the rest
+        Map<String, ProfileResponse> profiles = new LinkedHashMap<>(profileCache.getAllPresent(requested));
+        Set<String> toLoad = new LinkedHashSet<>(requested);
+        toLoad.removeAll(profiles.keySet());
+
+        if (!toLoad.isEmpty()) {
+            List<Profile> loaded = mongoConcurrencyLimiter.call(() -> profileRepository.findByUserIdIn(toLoad));
+            for (Profile profile : loaded) {
+                profiles.put(profile.getUserId(), toProfileResponse(profile));
+            }
+        }
 
-        Profile profile = profileRepository.findByUserId(userId)
-                .orElseThrow(() -> new RuntimeException("Profile not found for userId: " + userId));
+        List<String> missing = requested.stream()
+                .filter(userId -> !profiles.containsKey(userId))
+                .collect(Collectors.toList());
 
-        // ==================== Check for Country Change (3.3.1 Shard Migration) ====================
-        String previousCountry = profile.getCountry();
-        String newCountry = request.getCountry();
-        boolean countryChanged = newCountry != null && shardMigrationService.requiresMigration(previousCountry, newCountry);
+        log.debug("Batch lookup: requested={}, cached={}, loaded={}, missing={}",
+                requested.size(), requested.size() - toLoad.size(), toLoad.size() - missing.size(), missing.size());
 
-        if (countryChanged) {
-            log.info("Country change detected for userId: {}. Shard migration required. from={} to={}",
-                    userId, previousCountry, newCountry);
-        }
+        return ProfileBatchResponse.builder()
+                .profiles(profiles)
+                .missing(missing)
+                .build();
+    }
 
-        // ==================== Basic Company Info ====================
-        if (request.getCompanyName() != null) {
-            profile.setCompanyName(request.getCompanyName());
-        }
-        if (request.getAvatarUrl() != null) {
-            profile.setAvatarUrl(request.getAvatarUrl());
-        }
-        if (request.getLogoUrl() != null) {
-            profile.setLogoUrl(request.getLogoUrl());
-        }
-        if (request.getAboutUs() != null) {
-            profile.setAboutUs(request.getAboutUs());
-        }
-        if (request.getWhoWeAreLookingFor() != null) {
-            profile.setWhoWeAreLookingFor(request.getWhoWeAreLookingFor());
-        }
+    @Override
+    public ProfileResponse updateProfile(String userId, ProfileUpdateRequest request) {
+        log.info("Updating profile for userId: {}", userId);
 
-        // ==================== Location Info ====================
-        // Note: Country is handled separately for shard migration
-        if (request.getCity() != null) {
-            profile.setCity(request.getCity());
+        // ==================== Field-level update (one round trip) ====================
+        // Only provided fields are $set. Conditions that used to be checked after
+        // loading the profile are part of the query instead:
+        // - unchanged country (otherwise the shard migration path below is needed)
+        // - active premium subscription when the applicant search profile is set
+        Update update = new Update();
+        applyUpdate(update, request);
+
+        List<Criteria> preconditions = new ArrayList<>();
+        if (request.getCountry() != null) {
+            preconditions.add(sameValueIgnoreCase("country", request.getCountry()));
         }
-        if (request.getStreetAddress() != null) {
-            profile.setStreetAddress(request.getStreetAddress());
+        if (request.getApplicantSearchProfile() != null) {
+            preconditions.add(activePremiumSubscription());
         }
 
-        // ==================== Contact Info ====================
-        if (request.getPhoneNumber() != null) {
-            profile.setPhoneNumber(request.getPhoneNumber());
+        Optional<Profile> updated = mongoConcurrencyLimiter.call(() -> profileRepository.updateByUserId(
+                userId, request.getVersion(), allOf(preconditions), update));
+        if (updated.isPresent()) {
+            profileCache.evict(userId, updated.get().getVersion());
+            log.info("Profile updated successfully for userId: {}", userId);
+            return toProfileResponse(updated.get());
         }
 
+        // ==================== Update didn't apply - find out why ====================
+        Profile profile = mongoConcurrencyLimiter.call(() -> profileRepository.findByUserId(userId))
+                .orElseThrow(() -> new RuntimeException("Profile not found for userId: " + userId));
+        checkVersion(profile, request.getVersion());
+
         // ==================== Applicant Search Profile (6.2.1-6.2.4) ====================
-        if (request.getApplicantSearchProfile() != null) {
+        if (request.getApplicantSearchProfile() != null && !profile.isPremiumSubscriber()) {
             // Check if this is a premium feature
-            if (!profile.isPremiumSubscriber()) {
-                log.warn("User {} attempted to update applicant search profile without premium subscription", userId);
-                throw new RuntimeException("Applicant Search Profile is a premium feature. Please upgrade your subscription.");
-            }
-            ApplicantSearchProfile searchProfile = toApplicantSearchProfile(request.getApplicantSearchProfile());
-            profile.setApplicantSearchProfile(searchProfile);
+            log.warn("User {} attempted to update applicant search profile without premium subscription", userId);
+            throw new RuntimeException("Applicant Search Profile is a premium feature. Please upgrade your subscription.");
         }
 
-        // ==================== Handle Country Change with Shard Migration (3.3.1) ====================
+        // ==================== Check for Country Change (3.3.1 Shard Migration) ====================
+        String previousCountry = profile.getCountry();
+        String newCountry = request.getCountry();
+        boolean countryChanged = newCountry != null && shardMigrationService.requiresMigration(previousCountry, newCountry);
+
         Profile updatedProfile;
         if (countryChanged) {
+            log.info("Country change detected for userId: {}. Shard migration required. from={} to={}",
+                    userId, previousCountry, newCountry);
+
             // Requirement 3.3.1 (Ultimo):
             // If the company changes the Country field, the application logic must perform
             // a data migration of the entire user record to the new, corresponding database shard.
-            updatedProfile = shardMigrationService.migrateProfileToNewShard(profile, previousCountry, newCountry);
+            applyUpdate(profile, request);
+            updatedProfile = mongoConcurrencyLimiter.call(
+                    () -> shardMigrationService.migrateProfileToNewShard(profile, previousCountry, newCountry));
             log.info("Shard migration completed for userId: {}. New shard: {}",
                     userId, shardMigrationService.getShardForCountry(newCountry));
         } else {
-            // Normal save without shard migration
-            if (newCountry != null) {
-                profile.setCountry(newCountry);
-            }
-            updatedProfile = profileRepository.save(profile);
+            // Concurrent write between the update and the read - retry once against the version we saw
+            updatedProfile = mongoConcurrencyLimiter.call(
+                            () -> profileRepository.updateByUserId(userId, profile.getVersion(), null, update))
+                    .orElseThrow(() -> concurrentModification(userId));
         }
+        profileCache.evict(userId, updatedProfile.getVersion());
 
         log.info("Profile updated successfully for userId: {}", userId);
 
@@ -176,20 +230,51 @@ public class ProfileServiceImpl implements ProfileApi {
     public List<ProfileResponse> searchProfiles(String searchTerm) {
         log.info("Searching profiles with term: {}", searchTerm);
 
-        List<Profile> profiles = profileRepository
-                .findByEmailContainingIgnoreCaseOrCompanyNameContainingIgnoreCase(searchTerm, searchTerm);
+        // Trigram index lookup, most relevant first
+        List<Profile> profiles = profileSearchService.search(searchTerm);
 
         return profiles.stream()
                 .map(this::toProfileResponse)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Stream<ProfileResponse> streamProfiles(String searchTerm) {
+        log.info("Streaming profiles with term: {}", searchTerm);
+
+        return profileSearchService.stream(searchTerm)
+                .map(this::toProfileResponse);
+    }
+
+    @Override
+    public ProfileSearchPage searchProfiles(String searchTerm, String cursor, Integer limit) {
+        log.info("Searching profiles with term: {}, cursor: {}, limit: {}", searchTerm, cursor, limit);
+
+        ProfileSearchService.Page page = profileSearchService.searchPage(searchTerm, cursor, limit);
+
+        return ProfileSearchPage.builder()
+                .items(page.profiles().stream()
+                        .map(this::toProfileResponse)
+                        .collect(Collectors.toList()))
+                .nextCursor(page.nextCursor())
+                .partial(page.partial())
+                .shards(page.shards().stream()
+                        .map(shard -> ShardSearchStatus.builder()
+                                .shard(shard.shard())
+                                .status(shard.status().name())
+                                .tookMs(shard.tookMs())
+                                .error(shard.error())
+                                .build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
     @Override
     public ProfileResponse createProfile(ProfileCreateRequest request) {
         log.info("Creating profile for userId: {}, email: {}", request.getUserId(), request.getEmail());
 
         // Check if profile already exists
-        if (profileRepository.existsByUserId(request.getUserId())) {
+        if (mongoConcurrencyLimiter.call(() -> profileRepository.existsByUserId(request.getUserId()))) {
             log.warn("Profile already exists for userId: {}", request.getUserId());
             throw new RuntimeException("Profile already exists for userId: " + request.getUserId());
         }
@@ -208,7 +293,7 @@ public class ProfileServiceImpl implements ProfileApi {
                 // avatarUrl will use default value from Profile entity
                 .build();
 
-        Profile savedProfile = profileRepository.save(profile);
+        Profile savedProfile = mongoConcurrencyLimiter.call(() -> profileRepository.save(profile));
         log.info("Profile created successfully for userId: {}, profileId: {}",
                 request.getUserId(), savedProfile.getId());
 
@@ -219,8 +304,32 @@ public class ProfileServiceImpl implements ProfileApi {
     public ProfileResponse fullUpdateProfile(String userId, ProfileFullUpdateRequest request) {
         log.info("Full update profile for userId: {}", userId);
 
-        Profile profile = profileRepository.findByUserId(userId)
+        // ==================== Field-level update (one round trip) ====================
+        // Fast path for the common edit: email and country unchanged, so neither the
+        // email uniqueness check nor a shard migration is needed.
+        Update update = new Update();
+        applyFullUpdate(update, request);
+
+        List<Criteria> preconditions = new ArrayList<>();
+        if (request.getEmail() != null) {
+            preconditions.add(sameValueIgnoreCase("email", request.getEmail()));
+        }
+        preconditions.add(request.getCountry() != null
+                ? sameValueIgnoreCase("country", request.getCountry())
+                : Criteria.where("country").is(null));
+
+        Optional<Profile> updated = mongoConcurrencyLimiter.call(() -> profileRepository.updateByUserId(
+                userId, request.getVersion(), allOf(preconditions), update));
+        if (updated.isPresent()) {
+            profileCache.evict(userId, updated.get().getVersion());
+            log.info("Profile fully updated for userId: {}", userId);
+            return toProfileResponse(updated.get());
+        }
+
+        // ==================== Update didn't apply - find out why ====================
+        Profile profile = mongoConcurrencyLimiter.call(() -> profileRepository.findByUserId(userId))
                 .orElseThrow(() -> new RuntimeException("Profile not found for userId: " + userId));
+        checkVersion(profile, request.getVersion());
 
         // ==================== Check for Country Change (3.3.1 Shard Migration) ====================
         String previousCountry = profile.getCountry();
@@ -236,45 +345,180 @@ public class ProfileServiceImpl implements ProfileApi {
         String newEmail = request.getEmail();
         if (newEmail != null && !newEmail.equalsIgnoreCase(profile.getEmail())) {
             // Check if new email is already in use by another profile
-            if (profileRepository.existsByEmailIgnoreCase(newEmail)) {
+            if (mongoConcurrencyLimiter.call(() -> profileRepository.existsByEmailIgnoreCase(newEmail))) {
                 log.warn("Email {} is already in use", newEmail);
                 throw new RuntimeException("Email is already in use: " + newEmail);
             }
             log.info("Updating email for userId: {} from {} to {}", userId, profile.getEmail(), newEmail);
             profile.setEmail(newEmail);
+            update.set("email", newEmail);
         }
 
-        // ==================== Contact Info ====================
-        profile.setCompanyName(request.getCompanyName());
-        profile.setPhoneNumber(request.getPhoneNumber());
-        // Note: Country is handled separately for shard migration
-        profile.setCity(request.getCity());
-        profile.setStreetAddress(request.getStreetAddress());
-
-        // ==================== Public Profile (3.1.2) ====================
-        profile.setAboutUs(request.getAboutUs());
-        profile.setWhoWeAreLookingFor(request.getWhoWeAreLookingFor());
-
         // ==================== Handle Country Change with Shard Migration (3.3.1) ====================
         Profile updatedProfile;
         if (countryChanged) {
             // Requirement 3.3.1 (Ultimo):
             // If the company changes the Country field, the application logic must perform
             // a data migration of the entire user record to the new, corresponding database shard.
-            updatedProfile = shardMigrationService.migrateProfileToNewShard(profile, previousCountry, newCountry);
+            applyFullUpdate(profile, request);
+            updatedProfile = mongoConcurrencyLimiter.call(
+                    () -> shardMigrationService.migrateProfileToNewShard(profile, previousCountry, newCountry));
             log.info("Shard migration completed for userId: {}. New shard: {}",
                     userId, shardMigrationService.getShardForCountry(newCountry));
         } else {
-            // Normal save without shard migration
-            profile.setCountry(newCountry);
-            updatedProfile = profileRepository.save(profile);
+            // Field-level update against the version we just read
+            updatedProfile = mongoConcurrencyLimiter.call(
+                            () -> profileRepository.updateByUserId(userId, profile.getVersion(), null, update))
+                    .orElseThrow(() -> concurrentModification(userId));
         }
+        profileCache.evict(userId, updatedProfile.getVersion());
 
         log.info("Profile fully updated for userId: {}", userId);
 
         return toProfileResponse(updatedProfile);
     }
 
+    // ==================== Field-level Update Helpers ====================
+
+    /**
+     * $set the provided (non-null) fields of a partial update.
+     */
+    private void applyUpdate(Update update, ProfileUpdateRequest request) {
+        // ==================== Basic Company Info ====================
+        setIfPresent(update, "companyName", request.getCompanyName());
+        setIfPresent(update, "avatarUrl", request.getAvatarUrl());
+        setIfPresent(update, "logoUrl", request.getLogoUrl());
+        setIfPresent(update, "aboutUs", request.getAboutUs());
+        setIfPresent(update, "whoWeAreLookingFor", request.getWhoWeAreLookingFor());
+
+        // ==================== Location Info ====================
+        setIfPresent(update, "country", request.getCountry());
+        setIfPresent(update, "city", request.getCity());
+        setIfPresent(update, "streetAddress", request.getStreetAddress());
+
+        // ==================== Contact Info ====================
+        setIfPresent(update, "phoneNumber", request.getPhoneNumber());
+
+        // ==================== Applicant Search Profile (6.2.1-6.2.4) ====================
+        if (request.getApplicantSearchProfile() != null) {
+            update.set("applicantSearchProfile", toApplicantSearchProfile(request.getApplicantSearchProfile()));
+        }
+    }
+
+    /**
+     * Same as applyUpdate(Update, ...) but on a loaded entity (shard migration path).
+     */
+    private void applyUpdate(Profile profile, ProfileUpdateRequest request) {
+        if (request.getCompanyName() != null) {
+            profile.setCompanyName(request.getCompanyName());
+        }
+        if (request.getAvatarUrl() != null) {
+            profile.setAvatarUrl(request.getAvatarUrl());
+        }
+        if (request.getLogoUrl() != null) {
+            profile.setLogoUrl(request.getLogoUrl());
+        }
+        if (request.getAboutUs() != null) {
+            profile.setAboutUs(request.getAboutUs());
+        }
+        if (request.getWhoWeAreLookingFor() != null) {
+            profile.setWhoWeAreLookingFor(request.getWhoWeAreLookingFor());
+        }
+        // Note: Country is set by the shard migration
+        if (request.getCity() != null) {
+            profile.setCity(request.getCity());
+        }
+        if (request.getStreetAddress() != null) {
+            profile.setStreetAddress(request.getStreetAddress());
+        }
+        if (request.getPhoneNumber() != null) {
+            profile.setPhoneNumber(request.getPhoneNumber());
+        }
+        if (request.getApplicantSearchProfile() != null) {
+            profile.setApplicantSearchProfile(toApplicantSearchProfile(request.getApplicantSearchProfile()));
+        }
+    }
+
+    /**
+     * $set/$unset all editable fields of a full update (null clears the field).
+     * Email is only added by the caller once it is known to change.
+     */
+    private void applyFullUpdate(Update update, ProfileFullUpdateRequest request) {
+        // ==================== Contact Info ====================
+        setOrUnset(update, "companyName", request.getCompanyName());
+        setOrUnset(update, "phoneNumber", request.getPhoneNumber());
+        setOrUnset(update, "country", request.getCountry());
+        setOrUnset(update, "city", request.getCity());
+        setOrUnset(update, "streetAddress", request.getStreetAddress());
+
+        // ==================== Public Profile (3.1.2) ====================
+        setOrUnset(update, "aboutUs", request.getAboutUs());
+        setOrUnset(update, "whoWeAreLookingFor", request.getWhoWeAreLookingFor());
+    }
+
+    /**
+     * Same as applyFullUpdate(Update, ...) but on a loaded entity (shard migration path).
+     */
+    private void applyFullUpdate(Profile profile, ProfileFullUpdateRequest request) {
+        profile.setCompanyName(request.getCompanyName());
+        profile.setPhoneNumber(request.getPhoneNumber());
+        // Note: Country is set by the shard migration
+        profile.setCity(request.getCity());
+        profile.setStreetAddress(request.getStreetAddress());
+        profile.setAboutUs(request.getAboutUs());
+        profile.setWhoWeAreLookingFor(request.getWhoWeAreLookingFor());
+    }
+
+    private static void setIfPresent(Update update, String field, Object value) {
+        if (value != null) {
+            update.set(field, value);
+        }
+    }
+
+    private static void setOrUnset(Update update, String field, Object value) {
+        if (value == null) {
+            update.unset(field);
+        } else {
+            update.set(field, value);
+        }
+    }
+
+    private static Criteria sameValueIgnoreCase(String field, String value) {
+        return Criteria.where(field).regex("^" + Pattern.quote(value) + "$", "i");
+    }
+
+    /**
+     * Same rule as Profile.isPremiumSubscriber(), evaluated by the database.
+     */
+    private static Criteria activePremiumSubscription() {
+        return new Criteria().andOperator(
+                Criteria.where("subscriptionType").is(SubscriptionType.PREMIUM),
+                new Criteria().orOperator(
+                        Criteria.where("subscriptionEndDate").is(null),
+                        Criteria.where("subscriptionEndDate").gt(LocalDateTime.now())));
+    }
+
+    private static Criteria allOf(List<Criteria> criteria) {
+        return criteria.isEmpty() ? null : new Criteria().andOperator(criteria);
+    }
+
+    /**
+     * Reject the write if the client edited an outdated version of the profile.
+     */
+    private static void checkVersion(Profile profile, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(profile.getVersion())) {
+            log.warn("Version conflict for userId: {}. expected={}, actual={}",
+                    profile.getUserId(), expectedVersion, profile.getVersion());
+            throw new OptimisticLockingFailureException("Profile was modified concurrently for userId: "
+                    + profile.getUserId() + " (expected version " + expectedVersion
+                    + ", found " + profile.getVersion() + ")");
+        }
+    }
+
+    private static OptimisticLockingFailureException concurrentModification(String userId) {
+        return new OptimisticLockingFailureException("Profile was modified concurrently for userId: " + userId);
+    }
+
     // ==================== Conversion Methods ====================
 
     /**
@@ -310,6 +554,7 @@ public class ProfileServiceImpl implements ProfileApi {
                 .authProvider(profile.getAuthProvider())
                 .createdAt(profile.getCreatedAt())
                 .updatedAt(profile.getUpdatedAt())
+                .version(profile.getVersion())
                 .build();
     }
 
@@ -368,7 +613,7 @@ public class ProfileServiceImpl implements ProfileApi {
             throw new RuntimeException("Avatar image is required");
         }
 
-        Profile profile = profileRepository.findByUserId(userId)
+        Profile profile = mongoConcurrencyLimiter.call(() -> profileRepository.findByUserId(userId))
                 .orElseThrow(() -> new RuntimeException("Profile not found for userId: " + userId));
 
         if (kafkaEnabled) {
@@ -387,15 +632,27 @@ public class ProfileServiceImpl implements ProfileApi {
      */
     private void sendAvatarUploadRequest(String userId, MultipartFile avatar) {
         try {
-            AvatarFileUploadRequest request = AvatarFileUploadRequest.builder()
+            AvatarFileUploadRequest.AvatarFileUploadRequestBuilder builder = AvatarFileUploadRequest.builder()
                     .userId(userId)
-                    .avatarBase64(Base64.getEncoder().encodeToString(avatar.getBytes()))
                     .avatarFilename(avatar.getOriginalFilename())
-                    .avatarContentType(avatar.getContentType())
-                    .build();
+                    .avatarContentType(avatar.getContentType());
 
-            String json = objectMapper.writeValueAsString(request);
-            kafkaTemplate.send(avatarFileUploadTopic, userId, json);
+            // Inline base64 or claim check to the blob staging store (app.media.transport)
+            if (mediaStager.isClaimCheck()) {
+                builder.avatarRef(mediaStager.stage(userId, avatar));
+            } else {
+                builder.avatarBase64(mediaStager.inline(avatar));
+            }
+            AvatarFileUploadRequest request = builder.build();
+
+            // Serialized straight to UTF-8 bytes - inline media is encoded from the upload stream
+            byte[] payload = objectMapper.writeValueAsBytes(request);
+            sendTracker.onFailure(sendTracker.send(mediaKafkaTemplate, avatarFileUploadTopic, userId, payload), ex -> {
+                log.error("Avatar upload request could not be delivered. userId={}", userId, ex);
+                if (request.getAvatarRef() != null) {
+                    mediaStager.discard(List.of(request.getAvatarRef()));
+                }
+            });
             log.info("Sent avatar upload request to Kafka. userId={}, topic={}", userId, avatarFileUploadTopic);
 
         } catch (IOException e) {
@@ -1,18 +1,34 @@
 package com.devision.jm.profile.service;
 
 import com.devision.jm.profile.api.internal.dto.ShardMigrationEvent;
+import com.devision.jm.profile.cache.ProfileCache;
 import com.devision.jm.profile.api.internal.dto.ShardMigrationEvent.MigrationStatus;
+import com.devision.jm.profile.model.embedded.OutboxMessage;
 import com.devision.jm.profile.model.entity.Profile;
-import com.devision.jm.profile.repository.ProfileRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.devision.jm.profile.outbox.ProfileOutbox;
+import com.devision.jm.profile.sharding.CompanyEventMover;
+import com.devision.jm.profile.sharding.ProfileDirectory;
+import com.devision.jm.profile.sharding.ShardResolver;
+import com.devision.jm.profile.sharding.ShardRouter;
+import com.mongodb.MongoClientSettings;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * Shard Migration Service
@@ -27,25 +43,51 @@ import java.time.LocalDateTime;
  * Architecture (A.3.4):
  * - Database sharding techniques to partition and query different shards.
  *
- * Note: In a real sharded MongoDB setup, this would involve:
- * 1. Reading the document from the source shard
- * 2. Deleting from source shard
- * 3. Inserting to destination shard (based on new country shard key)
+ * With app.sharding.enabled and a country whose region lives on another shard,
+ * the profile and its company's events are moved between shard databases
+ * (copy-verify-delete):
+ * 1. Lock the source profile (Profile.migratingSince), only if it is still at the
+ *    loaded version; writes to a locked profile are refused until step 7
+ * 2. Bulk copy the events (events.company_id = userId) to the target shard
+ * 3. Insert the updated, still locked profile into the target shard
+ * 4. Verify the stored copy (fields, version, userId, country)
+ * 5. Point the profile directory at the target shard
+ * 6. Delete the source profile; if any step fails, undo 5, 3, 2 and 1 and fail
+ * 7. Unlock the target copy, recording the INITIATED and COMPLETED events
+ * 8. Bulk delete the source events
  *
- * For this implementation:
- * - We simulate shard migration by updating the document with the new country
- * - We publish a Kafka event for audit/notification purposes
- * - In a production sharded cluster, MongoDB would automatically route the document
- *   to the correct shard based on the shard key (country)
+ * Once step 6 succeeded the move is committed: a failure of step 7 or 8 is only
+ * logged (an unlock that keeps failing leaves the profile locked until
+ * Profile.MIGRATION_LOCK_TIMEOUT), never rolled back or recorded as FAILED.
+ *
+ * The COMPLETED event reports docsMoved, eventsMoved, bytesMoved and durationMs.
+ *
+ * Otherwise (same shard, or sharding disabled) the profile is locked the same
+ * way and then saved in place, unlocking it.
+ *
+ * Both paths write the whole profile, outbox included, so they take the outbox
+ * from the stored profile read under the lock, never from the copy loaded before
+ * the request: OutboxRelay may have published and removed messages since, and
+ * leaves locked profiles alone.
+ *
+ * Either way the shard migration events are recorded in the profile's outbox
+ * by the same write that completes the migration (see ProfileOutbox), so
+ * OutboxRelay never publishes COMPLETED for a move that is rolled back.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ShardMigrationService {
 
-    private final ProfileRepository profileRepository;
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private static final String PROFILES_COLLECTION = "profiles";
+    private static final int UNLOCK_ATTEMPTS = 3;
+
+    private final ProfileOutbox profileOutbox;
+    private final ProfileCache profileCache;
+    private final ShardRouter shardRouter;
+    private final ProfileDirectory profileDirectory;
+    private final ShardResolver shardResolver;
+    private final CompanyEventMover companyEventMover;
 
     @Value("${kafka.topics.shard-migration:profile.shard.migration}")
     private String shardMigrationTopic;
@@ -57,9 +99,8 @@ public class ShardMigrationService {
      * Migrate profile data when country (shard key) changes
      *
      * This method:
-     * 1. Publishes INITIATED event
-     * 2. Performs the migration (update with new country)
-     * 3. Publishes COMPLETED or FAILED event
+     * 1. Performs the migration (update with new country)
+     * 2. Records INITIATED and COMPLETED (same write) or FAILED events in the outbox
      *
      * @param profile The profile being updated
      * @param previousCountry The old country (source shard)
@@ -72,43 +113,25 @@ public class ShardMigrationService {
                 profile.getUserId(), profile.getId(), previousCountry, newCountry);
 
         LocalDateTime initiatedAt = LocalDateTime.now();
-
-        // Publish INITIATED event
-        publishMigrationEvent(profile, previousCountry, newCountry, MigrationStatus.INITIATED, null, initiatedAt, null);
+        String sourceShard = shardRouter.shardOfUser(profile.getUserId());
+        String targetShard = shardRouter.shardForCountry(newCountry);
 
         try {
-            // ==================== SHARD MIGRATION LOGIC ====================
-            //
-            // In a real MongoDB sharded cluster:
-            // - The shard key would be 'country'
-            // - MongoDB would route documents to shards based on country
-            // - Changing the country field would trigger MongoDB's chunk migration
-            //
-            // For this implementation, we:
-            // 1. Create a complete copy of the profile data
-            // 2. Update the country field (shard key)
-            // 3. Save to the repository (MongoDB routes to correct shard)
-            // 4. The old document is effectively replaced
-            //
-            // Note: In MongoDB 4.2+, shard key values CAN be updated if:
-            // - The transaction is used
-            // - The update uses the full shard key
-
-            // Update the country (triggers MongoDB to route to new shard)
             profile.setCountry(newCountry);
 
-            // Save the profile - MongoDB handles shard routing
-            Profile migratedProfile = profileRepository.save(profile);
+            // INITIATED + COMPLETED events go into the profile's outbox, so they are
+            // written by the same save as the migration (published by OutboxRelay)
+            Profile migratedProfile;
+            if (sourceShard.equals(targetShard)) {
+                migratedProfile = updateInPlace(profile, previousCountry, newCountry, initiatedAt, sourceShard);
+            } else {
+                migratedProfile = moveProfile(profile, previousCountry, newCountry, initiatedAt, sourceShard, targetShard);
+            }
+            profileCache.evict(migratedProfile.getUserId(), migratedProfile.getVersion());
 
-            LocalDateTime completedAt = LocalDateTime.now();
-
-            // Publish COMPLETED event
-            publishMigrationEvent(migratedProfile, previousCountry, newCountry,
-                    MigrationStatus.COMPLETED, null, initiatedAt, completedAt);
-
-            log.info("Shard migration completed successfully. userId={}, profileId={}, from={} to={}, duration={}ms",
-                    profile.getUserId(), profile.getId(), previousCountry, newCountry,
-                    java.time.Duration.between(initiatedAt, completedAt).toMillis());
+            log.info("Shard migration completed successfully. userId={}, profileId={}, from={} ({}) to={} ({}), duration={}ms",
+                    profile.getUserId(), profile.getId(), previousCountry, sourceShard, newCountry, targetShard,
+                    Duration.between(initiatedAt, LocalDateTime.now()).toMillis());
 
             return migratedProfile;
 
@@ -116,14 +139,266 @@ public class ShardMigrationService {
             log.error("Shard migration failed. userId={}, profileId={}, from={} to={}, error={}",
                     profile.getUserId(), profile.getId(), previousCountry, newCountry, e.getMessage(), e);
 
-            // Publish FAILED event
-            publishMigrationEvent(profile, previousCountry, newCountry,
-                    MigrationStatus.FAILED, e.getMessage(), initiatedAt, LocalDateTime.now());
+            // Record FAILED event
+            recordFailure(profile, previousCountry, newCountry, e.getMessage(), initiatedAt);
 
             throw new RuntimeException("Shard migration failed for profile " + profile.getId(), e);
         }
     }
 
+    /**
+     * Copy-verify-delete of a profile and its company's events from the source to
+     * the target shard. The profile is locked for writes for the whole move, so
+     * neither copy can take a write that a rollback or the source delete would
+     * lose. The profile directory switches to the target only after both copies
+     * are complete and the profile copy is verified.
+     */
+    private Profile moveProfile(Profile profile, String previousCountry, String newCountry,
+                                LocalDateTime initiatedAt, String sourceShard, String targetShard) {
+        MongoTemplate source = shardRouter.template(sourceShard);
+        MongoTemplate target = shardRouter.template(targetShard);
+        Query byId = Query.query(Criteria.where("_id").is(profile.getId()));
+
+        // 1. Lock the source profile, unless it was written since it was loaded
+        long lockedVersion = lock(source, profile);
+        long newVersion = lockedVersion + 1;
+
+        CompanyEventMover.Copy events = null;
+        try {
+            profile.setOutbox(storedOutbox(source, profile));
+
+            // 2. Copy the company's events (batched bulk upserts; reads still go to the source)
+            events = companyEventMover.copy(List.of(profile.getUserId()), sourceShard, targetShard);
+
+            // 3. Copy the profile, still locked - insert() always starts at version 0, so stamp the version
+            //    afterwards. A leftover copy from an earlier failed attempt is replaced
+            try {
+                target.insert(profile);
+            } catch (DuplicateKeyException e) {
+                log.warn("Replacing stale copy on target shard. userId={}, shard={}", profile.getUserId(), targetShard);
+                target.remove(byId, Profile.class);
+                target.insert(profile);
+            }
+            target.updateFirst(byId, new Update().set("version", newVersion), Profile.class);
+            profile.setVersion(newVersion);
+
+            // 4. Verify
+            verifyCopy(target, profile, targetShard);
+
+            // 5. Switch reads and writes to the target
+            profileDirectory.assign(profile.getUserId(), targetShard);
+
+            // 6. Delete the source profile - only misses when the lock expired and it was written meanwhile
+            Query stillLocked = Query.query(Criteria.where("_id").is(profile.getId()).and("version").is(lockedVersion));
+            if (source.remove(stillLocked, Profile.class).getDeletedCount() == 0) {
+                throw new RuntimeException("Profile was modified during shard migration. userId=" + profile.getUserId());
+            }
+        } catch (RuntimeException e) {
+            rollback(profile, source, target, sourceShard, lockedVersion, newVersion, events);
+            throw e;
+        }
+
+        // The move is committed from here on: failures are logged, never rolled back or reported as FAILED
+
+        // 7. Unlock the target copy; the INITIATED and COMPLETED events are written by the same update
+        Update unlock = new Update().unset("migratingSince").inc("version", 1);
+        appendMigrationEvents(unlock, profile, previousCountry, newCountry, initiatedAt,
+                events.docs() + 1, events.docs(), events.bytes() + bsonSize(target, profile));
+        Profile moved = unlock(target, profile, newVersion, unlock);
+
+        // 8. Delete the source events (batched bulk deletes)
+        try {
+            companyEventMover.deleteSource(events);
+        } catch (RuntimeException e) {
+            log.error("Failed to delete moved events from shard {}, copies left there. userId={}, error={}",
+                    sourceShard, profile.getUserId(), e.getMessage(), e);
+        }
+
+        log.info("Moved profile between shards. userId={}, from={}, to={}, events={}, bytes={}",
+                profile.getUserId(), sourceShard, targetShard, events.docs(), events.bytes());
+        return moved != null ? moved : profile;
+    }
+
+    /**
+     * Save a country change that keeps the profile on its shard. The profile is
+     * locked first, so the save carries the outbox as stored rather than as loaded.
+     */
+    private Profile updateInPlace(Profile profile, String previousCountry, String newCountry,
+                                  LocalDateTime initiatedAt, String shard) {
+        MongoTemplate template = shardRouter.template(shard);
+        long lockedVersion = lock(template, profile);
+        try {
+            profile.setOutbox(storedOutbox(template, profile));
+            appendMigrationEvents(profile, previousCountry, newCountry, initiatedAt, 0, 0, 0);
+            profile.setMigratingSince(null);
+            profile.setVersion(lockedVersion);
+            return template.save(profile);
+        } catch (RuntimeException e) {
+            template.updateFirst(Query.query(Criteria.where("_id").is(profile.getId()).and("version").is(lockedVersion)),
+                    new Update().unset("migratingSince"), Profile.class);
+            profile.setMigratingSince(null);
+            throw e;
+        }
+    }
+
+    /**
+     * Lock the stored profile for the migration, only if it is still at the
+     * loaded version and not locked by another migration.
+     *
+     * @return the version of the locked profile
+     */
+    private static long lock(MongoTemplate template, Profile profile) {
+        Long loadedVersion = profile.getVersion();
+        LocalDateTime lockedAt = LocalDateTime.now();
+        Query loaded = Query.query(Criteria.where("_id").is(profile.getId()).and("version").is(loadedVersion)
+                .orOperator(Criteria.where("migratingSince").is(null),
+                        Criteria.where("migratingSince").lt(lockedAt.minus(Profile.MIGRATION_LOCK_TIMEOUT))));
+        if (template.updateFirst(loaded, new Update().set("migratingSince", lockedAt).inc("version", 1), Profile.class)
+                .getModifiedCount() == 0) {
+            throw new RuntimeException("Profile was modified before shard migration. userId=" + profile.getUserId());
+        }
+        profile.setMigratingSince(lockedAt);
+        return loadedVersion == null ? 1 : loadedVersion + 1;
+    }
+
+    /**
+     * Outbox of the locked profile as stored. OutboxRelay no longer changes it,
+     * so it is safe to write back with the migrated profile.
+     */
+    private static List<OutboxMessage> storedOutbox(MongoTemplate template, Profile profile) {
+        Query query = Query.query(Criteria.where("_id").is(profile.getId()));
+        query.fields().include("outbox");
+        Profile stored = template.findOne(query, Profile.class);
+        if (stored == null) {
+            throw new RuntimeException("Profile was deleted during shard migration. userId=" + profile.getUserId());
+        }
+        return stored.getOutbox();
+    }
+
+    /**
+     * Unlock the moved profile, retried a few times. If it still fails the profile
+     * stays locked until Profile.MIGRATION_LOCK_TIMEOUT, and the migration events
+     * written by the unlock are lost.
+     *
+     * @return the unlocked profile, or null if it could not be unlocked
+     */
+    private Profile unlock(MongoTemplate target, Profile profile, long lockedVersion, Update unlock) {
+        Query locked = Query.query(Criteria.where("_id").is(profile.getId()).and("version").is(lockedVersion));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return target.findAndModify(locked, unlock, FindAndModifyOptions.options().returnNew(true), Profile.class);
+            } catch (RuntimeException e) {
+                if (attempt == UNLOCK_ATTEMPTS) {
+                    log.error("Failed to unlock moved profile, locked until the lock times out ({}). userId={}, error={}",
+                            Profile.MIGRATION_LOCK_TIMEOUT, profile.getUserId(), e.getMessage(), e);
+                    return null;
+                }
+                log.warn("Failed to unlock moved profile, retrying. userId={}, attempt={}, error={}",
+                        profile.getUserId(), attempt, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Undo a move that failed before the source profile was deleted: point the
+     * directory back at the source, delete the target copy unless it was written
+     * (only possible once the lock expired), unlock the source and delete the
+     * copied events.
+     */
+    private void rollback(Profile profile, MongoTemplate source, MongoTemplate target, String sourceShard,
+                          long lockedVersion, long newVersion, CompanyEventMover.Copy events) {
+        profileDirectory.assign(profile.getUserId(), sourceShard);
+
+        Query unwrittenCopy = Query.query(Criteria.where("_id").is(profile.getId())
+                .and("version").in(0L, newVersion).and("migratingSince").ne(null));
+        if (target.remove(unwrittenCopy, Profile.class).getDeletedCount() == 0
+                && target.exists(Query.query(Criteria.where("_id").is(profile.getId())), Profile.class)) {
+            log.error("Copy on target shard was written after the migration lock expired, kept for repair. userId={}",
+                    profile.getUserId());
+        }
+
+        source.updateFirst(Query.query(Criteria.where("_id").is(profile.getId()).and("version").is(lockedVersion)),
+                new Update().unset("migratingSince"), Profile.class);
+        profile.setMigratingSince(null);
+
+        if (events != null) {
+            companyEventMover.discard(events);
+        }
+    }
+
+    /**
+     * Append the INITIATED and COMPLETED events to the profile's outbox.
+     */
+    private void appendMigrationEvents(Profile profile, String previousCountry, String newCountry,
+                                       LocalDateTime initiatedAt, long docsMoved, long eventsMoved, long bytesMoved) {
+        if (!kafkaEnabled) {
+            return;
+        }
+        profileOutbox.append(profile, shardMigrationTopic, profile.getUserId(), migrationEvent(profile,
+                previousCountry, newCountry, MigrationStatus.INITIATED, null, initiatedAt, null));
+        profileOutbox.append(profile, shardMigrationTopic, profile.getUserId(), completedEvent(profile,
+                previousCountry, newCountry, initiatedAt, docsMoved, eventsMoved, bytesMoved));
+    }
+
+    /**
+     * Append the INITIATED and COMPLETED events to an update of the profile's outbox.
+     */
+    private void appendMigrationEvents(Update update, Profile profile, String previousCountry, String newCountry,
+                                       LocalDateTime initiatedAt, long docsMoved, long eventsMoved, long bytesMoved) {
+        if (!kafkaEnabled) {
+            return;
+        }
+        update.push("outbox").each(
+                profileOutbox.message(shardMigrationTopic, profile.getUserId(), migrationEvent(profile,
+                        previousCountry, newCountry, MigrationStatus.INITIATED, null, initiatedAt, null)),
+                profileOutbox.message(shardMigrationTopic, profile.getUserId(), completedEvent(profile,
+                        previousCountry, newCountry, initiatedAt, docsMoved, eventsMoved, bytesMoved)));
+    }
+
+    /**
+     * COMPLETED event with the move's metrics
+     */
+    private ShardMigrationEvent completedEvent(Profile profile, String previousCountry, String newCountry,
+                                              LocalDateTime initiatedAt, long docsMoved, long eventsMoved,
+                                              long bytesMoved) {
+        LocalDateTime completedAt = LocalDateTime.now();
+        ShardMigrationEvent completed = migrationEvent(profile, previousCountry, newCountry,
+                MigrationStatus.COMPLETED, null, initiatedAt, completedAt);
+        completed.setDocsMoved(docsMoved);
+        completed.setEventsMoved(eventsMoved);
+        completed.setBytesMoved(bytesMoved);
+        completed.setDurationMs(Duration.between(initiatedAt, completedAt).toMillis());
+        return completed;
+    }
+
+    /**
+     * BSON size of the profile as it will be stored
+     */
+    private static long bsonSize(MongoTemplate template, Profile profile) {
+        Document document = new Document();
+        template.getConverter().write(profile, document);
+        return new RawBsonDocument(document, MongoClientSettings.getDefaultCodecRegistry().get(Document.class))
+                .getByteBuffer().remaining();
+    }
+
+    /**
+     * Compare the stored copy with the profile that was written.
+     */
+    private void verifyCopy(MongoTemplate target, Profile profile, String targetShard) {
+        Document stored = target.findById(profile.getId(), Document.class, PROFILES_COLLECTION);
+        Document expected = new Document();
+        target.getConverter().write(profile, expected);
+
+        if (stored == null
+                || !stored.keySet().equals(expected.keySet())
+                || !Objects.equals(stored.get("version"), expected.get("version"))
+                || !Objects.equals(stored.get("user_id"), profile.getUserId())
+                || !Objects.equals(stored.get("country"), profile.getCountry())) {
+            throw new RuntimeException("Copy of profile on shard " + targetShard + " does not match. userId="
+                    + profile.getUserId());
+        }
+    }
+
     /**
      * Check if the country change requires shard migration
      *
@@ -142,107 +417,58 @@ public class ShardMigrationService {
     }
 
     /**
-     * Publish shard migration event to Kafka
+     * Shard migration event for the outbox
      */
-    private void publishMigrationEvent(Profile profile, String previousCountry, String newCountry,
-                                        MigrationStatus status, String errorMessage,
-                                        LocalDateTime initiatedAt, LocalDateTime completedAt) {
+    private ShardMigrationEvent migrationEvent(Profile profile, String previousCountry, String newCountry,
+                                               MigrationStatus status, String errorMessage,
+                                               LocalDateTime initiatedAt, LocalDateTime completedAt) {
+        return ShardMigrationEvent.builder()
+                .eventType("SHARD_MIGRATION")
+                .userId(profile.getUserId())
+                .profileId(profile.getId())
+                .email(profile.getEmail())
+                .companyName(profile.getCompanyName())
+                .previousCountry(previousCountry)
+                .newCountry(newCountry)
+                .status(status)
+                .errorMessage(errorMessage)
+                .initiatedAt(initiatedAt)
+                .completedAt(completedAt)
+                .build();
+    }
+
+    /**
+     * Record INITIATED + FAILED directly on the stored profile (the migration itself wasn't saved).
+     * Never masks the migration error.
+     */
+    private void recordFailure(Profile profile, String previousCountry, String newCountry,
+                               String errorMessage, LocalDateTime initiatedAt) {
         if (!kafkaEnabled) {
-            log.debug("Kafka disabled, skipping shard migration event. status={}", status);
             return;
         }
-
         try {
-            ShardMigrationEvent event = ShardMigrationEvent.builder()
-                    .eventType("SHARD_MIGRATION")
-                    .userId(profile.getUserId())
-                    .profileId(profile.getId())
-                    .email(profile.getEmail())
-                    .companyName(profile.getCompanyName())
-                    .previousCountry(previousCountry)
-                    .newCountry(newCountry)
-                    .status(status)
-                    .errorMessage(errorMessage)
-                    .initiatedAt(initiatedAt)
-                    .completedAt(completedAt)
-                    .build();
-
-            String json = objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(shardMigrationTopic, profile.getUserId(), json);
-
-            log.info("Published shard migration event. userId={}, status={}, topic={}",
-                    profile.getUserId(), status, shardMigrationTopic);
-
+            profileOutbox.push(profile, List.of(
+                    profileOutbox.message(shardMigrationTopic, profile.getUserId(), migrationEvent(profile,
+                            previousCountry, newCountry, MigrationStatus.INITIATED, null, initiatedAt, null)),
+                    profileOutbox.message(shardMigrationTopic, profile.getUserId(), migrationEvent(profile,
+                            previousCountry, newCountry, MigrationStatus.FAILED, errorMessage, initiatedAt,
+                            LocalDateTime.now()))));
         } catch (Exception e) {
-            // Don't fail the migration if event publishing fails
-            log.error("Failed to publish shard migration event. userId={}, status={}, error={}",
-                    profile.getUserId(), status, e.getMessage(), e);
+            log.error("Failed to record shard migration failure event. userId={}, error={}",
+                    profile.getUserId(), e.getMessage(), e);
         }
     }
 
     /**
      * Get the shard identifier for a given country
      *
-     * This method returns which shard a country maps to.
-     * In a real implementation, this would match MongoDB's shard key ranges.
-     *
-     * Example shard strategy:
-     * - APAC: Vietnam, Singapore, Australia, Japan, China, etc.
-     * - EMEA: Germany, UK, France, etc.
-     * - AMERICAS: USA, Canada, Brazil, etc.
+     * The shard the ShardResolver maps the country to; with sharding enabled,
+     * the default shard when that shard is not configured.
      *
      * @param country The country name
      * @return The shard identifier
      */
     public String getShardForCountry(String country) {
-        if (country == null) {
-            return "DEFAULT";
-        }
-
-        // Normalize country name
-        String normalizedCountry = country.toUpperCase().trim();
-
-        // APAC region
-        if (normalizedCountry.contains("VIETNAM") ||
-            normalizedCountry.contains("SINGAPORE") ||
-            normalizedCountry.contains("AUSTRALIA") ||
-            normalizedCountry.contains("JAPAN") ||
-            normalizedCountry.contains("CHINA") ||
-            normalizedCountry.contains("KOREA") ||
-            normalizedCountry.contains("INDIA") ||
-            normalizedCountry.contains("MALAYSIA") ||
-            normalizedCountry.contains("THAILAND") ||
-            normalizedCountry.contains("INDONESIA") ||
-            normalizedCountry.contains("PHILIPPINES")) {
-            return "SHARD_APAC";
-        }
-
-        // EMEA region
-        if (normalizedCountry.contains("GERMANY") ||
-            normalizedCountry.contains("UNITED KINGDOM") ||
-            normalizedCountry.contains("UK") ||
-            normalizedCountry.contains("FRANCE") ||
-            normalizedCountry.contains("ITALY") ||
-            normalizedCountry.contains("SPAIN") ||
-            normalizedCountry.contains("NETHERLANDS") ||
-            normalizedCountry.contains("SWEDEN") ||
-            normalizedCountry.contains("NORWAY") ||
-            normalizedCountry.contains("DENMARK") ||
-            normalizedCountry.contains("SWITZERLAND")) {
-            return "SHARD_EMEA";
-        }
-
-        // Americas region
-        if (normalizedCountry.contains("UNITED STATES") ||
-            normalizedCountry.contains("USA") ||
-            normalizedCountry.contains("CANADA") ||
-            normalizedCountry.contains("BRAZIL") ||
-            normalizedCountry.contains("MEXICO") ||
-            normalizedCountry.contains("ARGENTINA")) {
-            return "SHARD_AMERICAS";
-        }
-
-        // Default shard for other countries
-        return "SHARD_DEFAULT";
+        return shardRouter.isEnabled() ? shardRouter.shardForCountry(country) : shardResolver.resolve(country);
     }
 }
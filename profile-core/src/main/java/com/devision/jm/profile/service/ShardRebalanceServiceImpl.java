@@ -0,0 +1,76 @@
+package com.devision.jm.profile.service;
+
+import com.devision.jm.profile.api.external.dto.ShardRebalanceJobResponse;
+import com.devision.jm.profile.api.external.interfaces.ShardRebalanceApi;
+import com.devision.jm.profile.model.entity.ShardRebalanceJob;
+import com.devision.jm.profile.sharding.ShardRebalancer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Shard Rebalance Service Implementation
+ *
+ * Operator API over ShardRebalancer: start, inspect, pause and resume bulk
+ * moves of a country's profiles to the shard it is mapped to.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ShardRebalanceServiceImpl implements ShardRebalanceApi {
+
+    private final ShardRebalancer shardRebalancer;
+
+    @Override
+    public ShardRebalanceJobResponse start(String country) {
+        log.info("Starting shard rebalance for country: {}", country);
+        return toResponse(shardRebalancer.start(country));
+    }
+
+    @Override
+    public ShardRebalanceJobResponse getJob(String jobId) {
+        return toResponse(shardRebalancer.find(jobId)
+                .orElseThrow(() -> new RuntimeException("Rebalance job not found: " + jobId)));
+    }
+
+    @Override
+    public List<ShardRebalanceJobResponse> listJobs() {
+        return shardRebalancer.findAll().stream().map(this::toResponse).toList();
+    }
+
+    @Override
+    public ShardRebalanceJobResponse pause(String jobId) {
+        log.info("Pausing shard rebalance job: {}", jobId);
+        return toResponse(shardRebalancer.pause(jobId)
+                .orElseThrow(() -> new RuntimeException("Rebalance job not found or not running: " + jobId)));
+    }
+
+    @Override
+    public ShardRebalanceJobResponse resume(String jobId) {
+        log.info("Resuming shard rebalance job: {}", jobId);
+        return toResponse(shardRebalancer.resume(jobId)
+                .orElseThrow(() -> new RuntimeException("Rebalance job not found or not paused/failed: " + jobId)));
+    }
+
+    private ShardRebalanceJobResponse toResponse(ShardRebalanceJob job) {
+        return ShardRebalanceJobResponse.builder()
+                .jobId(job.getId())
+                .country(job.getCountry())
+                .targetShard(job.getTargetShard())
+                .status(job.getStatus() != null ? job.getStatus().name() : null)
+                .currentShard(job.getCurrentShard())
+                .total(job.getTotal())
+                .moved(job.getMoved())
+                .conflicts(job.getConflicts())
+                .remaining(ShardRebalancer.remaining(job))
+                .docsPerSecond(job.getDocsPerSecond())
+                .etaSeconds(ShardRebalancer.etaSeconds(job))
+                .error(job.getError())
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
+}
@@ -0,0 +1,221 @@
+package com.devision.jm.profile.sharding;
+
+import com.devision.jm.profile.config.ShardingProperties;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Company Event Mover
+ *
+ * Moves a company's events (events.company_id = Profile.userId) along with its
+ * profile when the profile changes shard (ShardMigrationService, ShardRebalancer),
+ * so a company's profile and events always share a shard.
+ *
+ * - copy():         stream the events from the source shard and bulk upsert them
+ *                   into the target, app.sharding.rebalance.batch-size at a time.
+ *                   Raw BSON is copied as is (no entity conversion); reads keep
+ *                   going to the source until the caller switches the directory
+ * - deleteSource(): once the directory points at the target, bulk delete the
+ *                   source copies, each guarded by the copied version; then the
+ *                   source is scanned again for the companies' events, and those
+ *                   updated or inserted since the copy (by this instance before the
+ *                   switch, or by another one still routing to the source) are
+ *                   copied over and deleted with the same guard, in up to three
+ *                   rounds
+ * - discard():      undo a copy (the profile move was rolled back)
+ * - discardFor():   undo the copy for some of the companies only
+ */
+@Slf4j
+@Component
+public class CompanyEventMover {
+
+    static final String EVENTS_COLLECTION = "events";
+
+    /**
+     * Rescans of the source for events written during the move
+     */
+    private static final int LEFTOVER_ROUNDS = 3;
+
+    private final ShardRouter shardRouter;
+    private final int batchSize;
+
+    public CompanyEventMover(ShardRouter shardRouter, ShardingProperties properties) {
+        this.shardRouter = shardRouter;
+        this.batchSize = properties.getRebalance().getBatchSize();
+    }
+
+    /**
+     * Events copied to the target shard, with the _id, company_id and version they had.
+     */
+    public record Copy(String sourceShard, String targetShard, Set<String> companyIds,
+                       List<BsonDocument> keys, long docs, long bytes) {
+    }
+
+    /**
+     * Copy the companies' events from the source to the target shard.
+     */
+    public Copy copy(Collection<String> companyIds, String sourceShard, String targetShard) {
+        MongoCollection<RawBsonDocument> source = events(sourceShard);
+        MongoCollection<RawBsonDocument> target = events(targetShard);
+        BsonDocument filter = byCompanyIds(companyIds);
+
+        List<BsonDocument> keys = new ArrayList<>();
+        List<ReplaceOneModel<RawBsonDocument>> batch = new ArrayList<>(batchSize);
+        long bytes = 0;
+        try (MongoCursor<RawBsonDocument> cursor = source.find(filter).batchSize(batchSize).cursor()) {
+            while (cursor.hasNext()) {
+                RawBsonDocument event = cursor.next();
+                keys.add(key(event));
+                bytes += event.getByteBuffer().remaining();
+                batch.add(new ReplaceOneModel<>(new BsonDocument("_id", event.get("_id")), event,
+                        new ReplaceOptions().upsert(true)));
+                if (batch.size() == batchSize) {
+                    target.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            target.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+        }
+        log.debug("Copied {} events ({} bytes) from shard {} to {}", keys.size(), bytes, sourceShard, targetShard);
+        return new Copy(sourceShard, targetShard, Set.copyOf(companyIds), keys, keys.size(), bytes);
+    }
+
+    /**
+     * Delete the copied events from the source shard. Call after the directory switch.
+     */
+    public void deleteSource(Copy copy) {
+        MongoCollection<RawBsonDocument> source = events(copy.sourceShard());
+        for (List<BsonDocument> chunk : chunks(copy.keys())) {
+            List<DeleteOneModel<RawBsonDocument>> deletes = chunk.stream()
+                    .map(key -> new DeleteOneModel<RawBsonDocument>(key))
+                    .toList();
+            source.bulkWrite(deletes, new BulkWriteOptions().ordered(false));
+        }
+        if (copy.companyIds().isEmpty()) {
+            return;
+        }
+
+        // Whatever is left was updated or inserted on the source after the copy - move its latest version.
+        // The deletes are guarded like the ones above, so an event written again meanwhile is left for the next round
+        MongoCollection<RawBsonDocument> target = events(copy.targetShard());
+        long moved = 0;
+        for (int round = 0; round < LEFTOVER_ROUNDS; round++) {
+            long leftovers = moveLeftovers(source, target, copy.companyIds());
+            if (leftovers == 0) {
+                break;
+            }
+            moved += leftovers;
+            if (round == LEFTOVER_ROUNDS - 1) {
+                log.warn("Events of {} still being written on shard {} after {} rounds, left there",
+                        copy.companyIds(), copy.sourceShard(), LEFTOVER_ROUNDS);
+            }
+        }
+        if (moved > 0) {
+            log.info("Moved {} events written during their companies' move from shard {} to {}",
+                    moved, copy.sourceShard(), copy.targetShard());
+        }
+    }
+
+    /**
+     * Copy the companies' events still on the source to the target, and delete each
+     * unless it changed since it was read.
+     *
+     * @return number of events copied
+     */
+    private long moveLeftovers(MongoCollection<RawBsonDocument> source, MongoCollection<RawBsonDocument> target,
+                               Set<String> companyIds) {
+        List<ReplaceOneModel<RawBsonDocument>> copies = new ArrayList<>(batchSize);
+        List<DeleteOneModel<RawBsonDocument>> deletes = new ArrayList<>(batchSize);
+        long moved = 0;
+        try (MongoCursor<RawBsonDocument> cursor = source.find(byCompanyIds(companyIds))
+                .batchSize(batchSize).cursor()) {
+            while (cursor.hasNext()) {
+                RawBsonDocument event = cursor.next();
+                copies.add(new ReplaceOneModel<>(new BsonDocument("_id", event.get("_id")), event,
+                        new ReplaceOptions().upsert(true)));
+                deletes.add(new DeleteOneModel<>(key(event)));
+                if (copies.size() == batchSize || !cursor.hasNext()) {
+                    target.bulkWrite(copies, new BulkWriteOptions().ordered(false));
+                    source.bulkWrite(deletes, new BulkWriteOptions().ordered(false));
+                    moved += copies.size();
+                    copies.clear();
+                    deletes.clear();
+                }
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Remove the copies from the target shard (the move was rolled back).
+     */
+    public void discard(Copy copy) {
+        MongoCollection<RawBsonDocument> target = events(copy.targetShard());
+        for (List<BsonDocument> chunk : chunks(copy.keys())) {
+            target.deleteMany(new BsonDocument("_id", new BsonDocument("$in",
+                    new BsonArray(chunk.stream().map(key -> key.get("_id")).toList()))));
+        }
+    }
+
+    /**
+     * Remove the copies of the given companies' events from the target shard
+     * (their profiles stayed on the source).
+     *
+     * @return the rest of the copy; bytes() stays the total copied
+     */
+    public Copy discardFor(Copy copy, Set<String> companyIds) {
+        Map<Boolean, List<BsonDocument>> split = copy.keys().stream().collect(Collectors.partitioningBy(
+                key -> companyIds.contains(key.getString("company_id").getValue())));
+        discard(new Copy(copy.sourceShard(), copy.targetShard(), companyIds, split.get(true), split.get(true).size(), 0));
+        List<BsonDocument> kept = split.get(false);
+        Set<String> keptCompanyIds = copy.companyIds().stream()
+                .filter(companyId -> !companyIds.contains(companyId))
+                .collect(Collectors.toUnmodifiableSet());
+        return new Copy(copy.sourceShard(), copy.targetShard(), keptCompanyIds, kept, kept.size(), copy.bytes());
+    }
+
+    private static BsonDocument byCompanyIds(Collection<String> companyIds) {
+        return new BsonDocument("company_id", new BsonDocument("$in", new BsonArray(
+                companyIds.stream().<BsonValue>map(BsonString::new).toList())));
+    }
+
+    private MongoCollection<RawBsonDocument> events(String shard) {
+        return shardRouter.template(shard).getCollection(EVENTS_COLLECTION).withDocumentClass(RawBsonDocument.class);
+    }
+
+    private static BsonDocument key(RawBsonDocument event) {
+        BsonValue version = event.get("version");
+        return new BsonDocument("_id", event.get("_id"))
+                .append("company_id", event.get("company_id"))
+                .append("version", version != null ? version : BsonNull.VALUE);
+    }
+
+    private List<List<BsonDocument>> chunks(List<BsonDocument> keys) {
+        List<List<BsonDocument>> chunks = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i += batchSize) {
+            chunks.add(keys.subList(i, Math.min(keys.size(), i + batchSize)));
+        }
+        return chunks;
+    }
+}
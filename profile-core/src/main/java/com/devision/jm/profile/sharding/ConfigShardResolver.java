@@ -0,0 +1,248 @@
+package com.devision.jm.profile.sharding;
+
+import com.devision.jm.profile.config.ShardingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.regex.Pattern;
+
+/**
+ * Config Shard Resolver
+ *
+ * Resolves countries with two lookups in precomputed, immutable maps:
+ * normalized country key -> ISO-3166 alpha-2 code -> shard id. Replaces the
+ * old substring matching, which also misrouted e.g. "UKRAINE" (contains "UK").
+ *
+ * Keys of the first map, for every ISO-3166 country known to the JDK:
+ * - the alpha-2 and alpha-3 codes (VN, VNM)
+ * - the English country name (VIETNAM)
+ * - every alias configured for the code (VIET NAM, ...)
+ *
+ * Mapping sources (app.sharding.*):
+ * - regions / country-aliases in the application configuration
+ * - resolver-file (optional): a file of region.<SHARD>=<codes> and alias.<NAME>=<code>
+ *   lines, overriding the configuration per shard / alias. One entry per line, split
+ *   at the first '=', so names may contain spaces (alias.VIET NAM=VN); blank lines
+ *   and lines starting with # are skipped. It is checked every resolver-reload-interval
+ *   and the maps are rebuilt when it changed, without a restart
+ *
+ * Keys are normalized the same way as lookups: accents removed, upper case,
+ * runs of anything that is not a letter or digit replaced by one space.
+ *
+ * Metrics: sharding.resolver.unmapped (countries that fell back to the default shard)
+ */
+@Slf4j
+@Component
+public class ConfigShardResolver implements ShardResolver {
+
+    private static final String REGION_PREFIX = "region.";
+    private static final String ALIAS_PREFIX = "alias.";
+    private static final Pattern ISO_CODE = Pattern.compile("[A-Za-z]{2}");
+
+    private final ShardingProperties properties;
+    private final Path resolverFile;
+    private final Counter unmapped;
+
+    private volatile Mapping mapping = new Mapping(Map.of(), Map.of());
+    private volatile FileTime loadedFileTime;
+
+    /**
+     * Both maps, swapped together on reload
+     */
+    private record Mapping(Map<String, String> codeByKey, Map<String, String> shardByCode) {
+    }
+
+    public ConfigShardResolver(ShardingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.resolverFile = StringUtils.hasText(properties.getResolverFile())
+                ? Paths.get(properties.getResolverFile()).toAbsolutePath().normalize()
+                : null;
+        this.unmapped = Counter.builder("sharding.resolver.unmapped")
+                .description("Countries resolved to the default shard because they have no mapping")
+                .register(meterRegistry);
+        reload();
+    }
+
+    @Override
+    public String resolve(String country) {
+        Mapping current = mapping;
+        String code = country == null ? null : current.codeByKey().get(normalize(country));
+        String shard = code == null ? null : current.shardByCode().get(code);
+        if (shard == null) {
+            unmapped.increment();
+            return properties.getDefaultShard();
+        }
+        return shard;
+    }
+
+    @Override
+    public String countryKey(String country) {
+        if (country == null) {
+            return null;
+        }
+        String key = normalize(country);
+        return mapping.codeByKey().getOrDefault(key, key);
+    }
+
+    @Override
+    public synchronized void reload() {
+        Map<String, List<String>> regions = new LinkedHashMap<>(properties.getRegions());
+        Map<String, String> aliases = new LinkedHashMap<>(properties.getCountryAliases());
+        FileTime fileTime = null;
+
+        if (resolverFile != null && Files.isRegularFile(resolverFile)) {
+            try {
+                fileTime = Files.getLastModifiedTime(resolverFile);
+                // Not java.util.Properties: it would split "alias.VIET NAM=VN" at the first space
+                List<String> lines = Files.readAllLines(resolverFile, StandardCharsets.UTF_8);
+                for (int i = 0; i < lines.size(); i++) {
+                    String line = lines.get(i).trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    int separator = line.indexOf('=');
+                    if (separator < 0) {
+                        log.warn("Ignoring line {} of shard resolver file {} (no '='): {}", i + 1, resolverFile, line);
+                        continue;
+                    }
+                    String key = line.substring(0, separator).trim();
+                    String value = line.substring(separator + 1).trim();
+                    if (key.startsWith(REGION_PREFIX)) {
+                        regions.put(key.substring(REGION_PREFIX.length()),
+                                List.of(StringUtils.commaDelimitedListToStringArray(value.replace(" ", ""))));
+                    } else if (key.startsWith(ALIAS_PREFIX)) {
+                        if (!ISO_CODE.matcher(value).matches()) {
+                            log.warn("Alias {} in shard resolver file {} maps to '{}', not an ISO-3166 alpha-2 code",
+                                    key.substring(ALIAS_PREFIX.length()), resolverFile, value);
+                        }
+                        aliases.put(key.substring(ALIAS_PREFIX.length()), value);
+                    } else {
+                        log.warn("Ignoring unknown key {} in shard resolver file {}", key, resolverFile);
+                    }
+                }
+            } catch (IOException e) {
+                // Keep the current mapping rather than routing with half a file
+                log.error("Failed to read shard resolver file {}: {}", resolverFile, e.getMessage(), e);
+                return;
+            }
+        }
+
+        mapping = new Mapping(codesByKey(aliases), shardsByCode(regions));
+        loadedFileTime = fileTime;
+        log.info("Shard resolver loaded. shards={}, countries={}, keys={}, file={}",
+                regions.keySet(), mapping.shardByCode().size(), mapping.codeByKey().size(),
+                fileTime != null ? resolverFile : "none");
+    }
+
+    /**
+     * Reload when the resolver file was changed, added or removed.
+     */
+    @Scheduled(fixedDelayString = "${app.sharding.resolver-reload-interval:PT30S}")
+    public void reloadIfChanged() {
+        if (resolverFile == null) {
+            return;
+        }
+        try {
+            FileTime current = Files.isRegularFile(resolverFile) ? Files.getLastModifiedTime(resolverFile) : null;
+            if (current == null ? loadedFileTime != null : !current.equals(loadedFileTime)) {
+                reload();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to check shard resolver file {}: {}", resolverFile, e.getMessage());
+        }
+    }
+
+    private static Map<String, String> codesByKey(Map<String, String> aliases) {
+        Map<String, String> map = new HashMap<>();
+        for (String code : Locale.getISOCountries()) {
+            Locale locale = new Locale.Builder().setRegion(code).build();
+            map.put(code, code);
+            putKey(map, iso3(locale), code);
+            putKey(map, locale.getDisplayCountry(Locale.ENGLISH), code);
+        }
+        aliases.forEach((alias, code) -> putKey(map, alias, code.trim().toUpperCase(Locale.ROOT)));
+        return Map.copyOf(map);
+    }
+
+    private static Map<String, String> shardsByCode(Map<String, List<String>> regions) {
+        Map<String, String> map = new HashMap<>();
+        regions.forEach((shard, codes) -> {
+            for (String rawCode : codes) {
+                String code = rawCode.trim().toUpperCase(Locale.ROOT);
+                String previous = map.put(code, shard);
+                if (previous != null && !previous.equals(shard)) {
+                    log.warn("Country {} is mapped to both {} and {} - using {}", code, previous, shard, shard);
+                }
+            }
+        });
+        return Map.copyOf(map);
+    }
+
+    private static void putKey(Map<String, String> map, String country, String code) {
+        if (StringUtils.hasText(country)) {
+            map.put(normalize(country), code);
+        }
+    }
+
+    private static String iso3(Locale locale) {
+        try {
+            return locale.getISO3Country();
+        } catch (MissingResourceException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Upper case, accents removed, every run of non-alphanumerics as one space, trimmed.
+     * ASCII input (the common case) is handled without the Unicode normalizer.
+     */
+    static String normalize(String country) {
+        StringBuilder key = new StringBuilder(country.length());
+        boolean separator = false;
+        for (int i = 0; i < country.length(); i++) {
+            char c = country.charAt(i);
+            if (c >= 128) {
+                return normalizeUnicode(country);
+            }
+            if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                appendChar(key, c, separator);
+                separator = false;
+            } else if (c >= 'a' && c <= 'z') {
+                appendChar(key, (char) (c - ('a' - 'A')), separator);
+                separator = false;
+            } else {
+                separator = true;
+            }
+        }
+        return key.toString();
+    }
+
+    private static String normalizeUnicode(String country) {
+        String stripped = Normalizer.normalize(country, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return stripped.toUpperCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    private static void appendChar(StringBuilder key, char c, boolean separator) {
+        if (separator && !key.isEmpty()) {
+            key.append(' ');
+        }
+        key.append(c);
+    }
+}
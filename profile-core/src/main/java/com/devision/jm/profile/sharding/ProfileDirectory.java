@@ -0,0 +1,158 @@
+package com.devision.jm.profile.sharding;
+
+import com.devision.jm.profile.config.ShardingProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Profile Directory
+ *
+ * Global userId -> shard lookup, so reads and writes by user_id go straight to
+ * the one shard holding the profile instead of asking every shard.
+ *
+ * - Collection profile_directory {_id: userId, shard, updated_at} on the default shard
+ * - Entries are cached for app.sharding.directory-cache-ttl (small, hot data);
+ *   the instance running a migration updates its cache immediately, other
+ *   instances within the TTL. Until then their reads by userId miss on the old
+ *   shard; ShardRouter.onUserShard() then re-reads the entry (refresh) and retries
+ * - No entry = default shard (profiles stored before sharding was enabled)
+ * - With sharding disabled no lookups are made at all
+ */
+@Slf4j
+@Component
+public class ProfileDirectory {
+
+    static final String COLLECTION = "profile_directory";
+
+    private final ShardTemplates shardTemplates;
+    private final Cache<String, String> shardByUserId;
+
+    public ProfileDirectory(ShardTemplates shardTemplates, ShardingProperties properties) {
+        this.shardTemplates = shardTemplates;
+        this.shardByUserId = Caffeine.newBuilder()
+                .maximumSize(properties.getDirectoryCacheSize())
+                .expireAfterWrite(properties.getDirectoryCacheTtl())
+                .build();
+    }
+
+    /**
+     * Shard holding the user's profile.
+     */
+    public String shardOf(String userId) {
+        if (!shardTemplates.isEnabled() || userId == null) {
+            return shardTemplates.defaultShard();
+        }
+        return shardByUserId.get(userId, this::lookup);
+    }
+
+    /**
+     * Group users by the shard holding their profiles (one $in query for the uncached ones).
+     */
+    public Map<String, List<String>> groupByShard(Collection<String> userIds) {
+        Map<String, List<String>> byShard = new LinkedHashMap<>();
+        if (!shardTemplates.isEnabled()) {
+            byShard.put(shardTemplates.defaultShard(), new ArrayList<>(userIds));
+            return byShard;
+        }
+
+        Map<String, String> known = new HashMap<>(shardByUserId.getAllPresent(userIds));
+        List<String> unknown = userIds.stream().filter(userId -> !known.containsKey(userId)).toList();
+        if (!unknown.isEmpty()) {
+            List<Document> entries = shardTemplates.defaultTemplate().find(
+                    Query.query(Criteria.where("_id").in(unknown)), Document.class, COLLECTION);
+            for (Document entry : entries) {
+                known.put(entry.getString("_id"), entry.getString("shard"));
+            }
+            for (String userId : unknown) {
+                String shard = known.computeIfAbsent(userId, id -> shardTemplates.defaultShard());
+                shardByUserId.put(userId, shard);
+            }
+        }
+        for (String userId : userIds) {
+            byShard.computeIfAbsent(known.get(userId), shard -> new ArrayList<>()).add(userId);
+        }
+        return byShard;
+    }
+
+    /**
+     * Shard holding the user's profile, read from the collection (cache bypassed and updated).
+     */
+    public String refresh(String userId) {
+        if (!shardTemplates.isEnabled() || userId == null) {
+            return shardTemplates.defaultShard();
+        }
+        shardByUserId.invalidate(userId);
+        return shardOf(userId);
+    }
+
+    /**
+     * Group users by shard like groupByShard, with their cached entries dropped first.
+     */
+    public Map<String, List<String>> refreshAll(Collection<String> userIds) {
+        shardByUserId.invalidateAll(userIds);
+        return groupByShard(userIds);
+    }
+
+    /**
+     * Record the shard of a user's profile.
+     */
+    public void assign(String userId, String shard) {
+        if (!shardTemplates.isEnabled()) {
+            return;
+        }
+        shardTemplates.defaultTemplate().upsert(
+                Query.query(Criteria.where("_id").is(userId)),
+                new Update().set("shard", shard).set("updated_at", new Date()),
+                COLLECTION);
+        shardByUserId.put(userId, shard);
+        log.debug("Directory entry set. userId={}, shard={}", userId, shard);
+    }
+
+    /**
+     * Record the shard of many users' profiles (one unordered bulk write).
+     */
+    public void assignAll(Collection<String> userIds, String shard) {
+        if (!shardTemplates.isEnabled() || userIds.isEmpty()) {
+            return;
+        }
+        Date now = new Date();
+        BulkOperations bulk = shardTemplates.defaultTemplate().bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+        for (String userId : userIds) {
+            bulk.upsert(Query.query(Criteria.where("_id").is(userId)),
+                    new Update().set("shard", shard).set("updated_at", now));
+        }
+        bulk.execute();
+        userIds.forEach(userId -> shardByUserId.put(userId, shard));
+    }
+
+    /**
+     * Drop a user's entry (profile deleted).
+     */
+    public void remove(String userId) {
+        if (!shardTemplates.isEnabled()) {
+            return;
+        }
+        shardTemplates.defaultTemplate().remove(Query.query(Criteria.where("_id").is(userId)), COLLECTION);
+        shardByUserId.invalidate(userId);
+    }
+
+    private String lookup(String userId) {
+        Document entry = shardTemplates.defaultTemplate().findById(userId, Document.class, COLLECTION);
+        return entry != null ? entry.getString("shard") : shardTemplates.defaultShard();
+    }
+}
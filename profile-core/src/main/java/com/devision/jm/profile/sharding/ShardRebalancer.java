@@ -0,0 +1,658 @@
+package com.devision.jm.profile.sharding;
+
+import com.devision.jm.profile.config.ShardingProperties;
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.model.entity.ShardRebalanceJob;
+import com.devision.jm.profile.model.enums.ShardRebalanceStatus;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shard Rebalancer
+ *
+ * Moves every existing profile of a country to the shard the country is mapped
+ * to now, e.g. after the ShardResolver mapping changed. (ShardMigrationService
+ * only moves a profile when its owner edits the country.)
+ *
+ * Per source shard (every shard except the target):
+ * - Streams the country's profiles with one cursor over idx_country_shard
+ *   (all stored spellings of the country, see ShardResolver.countryKey),
+ *   skipping profiles locked by a shard migration
+ * - Per batch of app.sharding.rebalance.batch-size raw documents:
+ *   1. Lock the profiles unchanged since they were read, with the same lock as
+ *      ShardMigrationService (Profile.migratingSince + version bump): writes are
+ *      refused on both shards until step 6, also by instances whose cached
+ *      directory entry still names the source. Profiles that cannot be locked
+ *      (written since the read, or locked by a migration) are conflicts
+ *   2. Bulk upsert the locked profiles into the target shard (replace by _id,
+ *      so a batch copied before a crash is simply copied again)
+ *   3. Point the profile directory at the target shard
+ *   4. Bulk delete from the source, each guarded by the locked version and outbox;
+ *      profiles written in the meantime (only possible once the lock expired)
+ *      stay on the source (directory reverted, unlocked) and are counted as
+ *      conflicts, to be moved by the next run. The target copy is only deleted
+ *      with the same guard; if it was written too, it is kept and the source copy
+ *      deleted instead - unless that one is no longer at the locked version either,
+ *      then both are kept for repair
+ *   5. Move the moved companies' events along (CompanyEventMover)
+ *   6. Unlock the target copies
+ *   7. Checkpoint the job (counters, current shard, heartbeat)
+ *
+ * Resuming: moved profiles are gone from the source, so a resumed job just
+ * restarts the scan of its current shard. Jobs live in shard_rebalance_jobs on
+ * the default shard; the instance running a job holds a lease renewed by every
+ * checkpoint, and RUNNING jobs whose lease expired (crash, restart) are picked
+ * up again by any instance.
+ *
+ * Throttling: the copy rate never exceeds max-docs-per-second; it is halved when
+ * a batch's copy + delete took longer than max-write-latency and grows back by
+ * a tenth of the maximum per fast batch.
+ *
+ * One job runs at a time per instance.
+ * Metrics: shard.rebalance.moved, shard.rebalance.remaining,
+ * shard.rebalance.docs-per-second, shard.rebalance.eta.seconds (the job running here)
+ */
+@Slf4j
+@Component
+public class ShardRebalancer {
+
+    private static final String PROFILES_COLLECTION = "profiles";
+    private static final String COUNTRY_INDEX = "idx_country_shard";
+    private static final String MIGRATING_SINCE = "migrating_since";
+
+    private final ShardRouter shardRouter;
+    private final ShardResolver shardResolver;
+    private final ProfileDirectory profileDirectory;
+    private final CompanyEventMover companyEventMover;
+    private final ShardingProperties.Rebalance settings;
+    private final String owner = UUID.randomUUID().toString();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("shard-rebalancer").daemon().factory());
+    private final Set<String> scheduledJobs = ConcurrentHashMap.newKeySet();
+
+    // Job running on this instance, for the gauges
+    private volatile ShardRebalanceJob current;
+
+    public ShardRebalancer(ShardRouter shardRouter, ShardResolver shardResolver, ProfileDirectory profileDirectory,
+                           CompanyEventMover companyEventMover, ShardingProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.shardRouter = shardRouter;
+        this.shardResolver = shardResolver;
+        this.profileDirectory = profileDirectory;
+        this.companyEventMover = companyEventMover;
+        this.settings = properties.getRebalance();
+
+        Gauge.builder("shard.rebalance.moved", this, r -> r.current == null ? 0 : r.current.getMoved())
+                .description("Profiles moved by the rebalance job running on this instance")
+                .register(meterRegistry);
+        Gauge.builder("shard.rebalance.remaining", this, r -> r.current == null ? 0 : remaining(r.current))
+                .description("Estimated profiles left to move by the rebalance job running on this instance")
+                .register(meterRegistry);
+        Gauge.builder("shard.rebalance.docs-per-second", this, r -> r.current == null ? 0 : r.current.getDocsPerSecond())
+                .description("Throttled copy rate of the rebalance job running on this instance")
+                .register(meterRegistry);
+        Gauge.builder("shard.rebalance.eta.seconds", this,
+                        r -> r.current == null ? 0 : Optional.ofNullable(etaSeconds(r.current)).orElse(-1L))
+                .description("Estimated seconds until the rebalance job running on this instance completes")
+                .register(meterRegistry);
+    }
+
+    // ==================== Jobs ====================
+
+    /**
+     * Create a job moving the country's profiles to its current shard, and run it.
+     */
+    public ShardRebalanceJob start(String country) {
+        if (!shardRouter.isEnabled()) {
+            throw new RuntimeException("Sharding is disabled (app.sharding.enabled=false)");
+        }
+        String countryKey = shardResolver.countryKey(country);
+        ShardRebalanceJob running = jobs().findOne(Query.query(Criteria.where("countryKey").is(countryKey)
+                .and("status").is(ShardRebalanceStatus.RUNNING)), ShardRebalanceJob.class);
+        if (running != null) {
+            throw new RuntimeException("A rebalance job for " + country + " is already running: " + running.getId());
+        }
+
+        String targetShard = shardRouter.shardForCountry(country);
+        long total = 0;
+        for (String shard : sourceShards(targetShard)) {
+            List<String> values = countryValues(shard, countryKey);
+            if (!values.isEmpty()) {
+                total += shardRouter.template(shard).getCollection(PROFILES_COLLECTION)
+                        .countDocuments(new Document("country", new Document("$in", values)));
+            }
+        }
+
+        Instant now = Instant.now();
+        ShardRebalanceJob job = jobs().insert(ShardRebalanceJob.builder()
+                .id(UUID.randomUUID().toString())
+                .country(country)
+                .countryKey(countryKey)
+                .targetShard(targetShard)
+                .status(ShardRebalanceStatus.RUNNING)
+                .total(total)
+                .docsPerSecond(settings.getMaxDocsPerSecond())
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        log.info("Shard rebalance job created. jobId={}, country={}, target={}, total={}",
+                job.getId(), country, targetShard, total);
+
+        schedule(job.getId());
+        return job;
+    }
+
+    public Optional<ShardRebalanceJob> find(String jobId) {
+        return Optional.ofNullable(jobs().findById(jobId, ShardRebalanceJob.class));
+    }
+
+    /**
+     * All jobs, newest first
+     */
+    public List<ShardRebalanceJob> findAll() {
+        return jobs().find(new Query().with(Sort.by(Sort.Direction.DESC, "createdAt")), ShardRebalanceJob.class);
+    }
+
+    /**
+     * Pause a running job; its runner stops at the next checkpoint.
+     */
+    public Optional<ShardRebalanceJob> pause(String jobId) {
+        return Optional.ofNullable(jobs().findAndModify(
+                Query.query(Criteria.where("_id").is(jobId).and("status").is(ShardRebalanceStatus.RUNNING)),
+                new Update().set("status", ShardRebalanceStatus.PAUSED).unset("owner").set("updatedAt", Instant.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                ShardRebalanceJob.class));
+    }
+
+    /**
+     * Resume a paused or failed job from its checkpoint.
+     */
+    public Optional<ShardRebalanceJob> resume(String jobId) {
+        ShardRebalanceJob job = jobs().findAndModify(
+                Query.query(Criteria.where("_id").is(jobId)
+                        .and("status").in(ShardRebalanceStatus.PAUSED, ShardRebalanceStatus.FAILED)),
+                new Update().set("status", ShardRebalanceStatus.RUNNING).unset("owner").unset("error")
+                        .set("updatedAt", Instant.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                ShardRebalanceJob.class);
+        if (job != null) {
+            schedule(jobId);
+        }
+        return Optional.ofNullable(job);
+    }
+
+    /**
+     * Pick up RUNNING jobs nobody holds the lease of (created here, or their
+     * instance crashed or was stopped).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.sharding.rebalance.lease-duration:PT1M}",
+            initialDelayString = "${app.sharding.rebalance.lease-duration:PT1M}")
+    public void resumeOrphanedJobs() {
+        if (!shardRouter.isEnabled()) {
+            return;
+        }
+        try {
+            Query orphaned = Query.query(new Criteria().andOperator(
+                    Criteria.where("status").is(ShardRebalanceStatus.RUNNING),
+                    new Criteria().orOperator(
+                            Criteria.where("owner").exists(false),
+                            Criteria.where("heartbeatAt").lt(Instant.now().minus(settings.getLeaseDuration())))));
+            for (ShardRebalanceJob job : jobs().find(orphaned, ShardRebalanceJob.class)) {
+                log.info("Resuming shard rebalance job. jobId={}, country={}", job.getId(), job.getCountry());
+                schedule(job.getId());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to look for orphaned shard rebalance jobs: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Interrupted jobs keep status RUNNING; their lease expires and another instance resumes them
+        executor.shutdownNow();
+    }
+
+    // ==================== Runner ====================
+
+    private void schedule(String jobId) {
+        if (scheduledJobs.add(jobId)) {
+            executor.execute(() -> {
+                try {
+                    run(jobId);
+                } finally {
+                    scheduledJobs.remove(jobId);
+                }
+            });
+        }
+    }
+
+    private void run(String jobId) {
+        ShardRebalanceJob job = claim(jobId);
+        if (job == null) {
+            return;
+        }
+        current = job;
+        log.info("Shard rebalance job started. jobId={}, country={}, target={}, moved={}/{}",
+                jobId, job.getCountry(), job.getTargetShard(), job.getMoved(), job.getTotal());
+        try {
+            for (String shard : sourceShards(job.getTargetShard())) {
+                if (job.getCompletedShards().contains(shard)) {
+                    continue;
+                }
+                checkpoint(job, new Update().set("currentShard", shard));
+                job.setCurrentShard(shard);
+                drain(job, shard);
+                checkpoint(job, new Update().addToSet("completedShards", shard));
+                job.getCompletedShards().add(shard);
+            }
+            jobs().updateFirst(owned(jobId), new Update()
+                    .set("status", ShardRebalanceStatus.COMPLETED)
+                    .set("completedAt", Instant.now())
+                    .set("updatedAt", Instant.now())
+                    .unset("owner"), ShardRebalanceJob.class);
+            log.info("Shard rebalance job completed. jobId={}, moved={}, conflicts={}",
+                    jobId, job.getMoved(), job.getConflicts());
+        } catch (JobStoppedException e) {
+            log.info("Shard rebalance job stopped (paused or taken over). jobId={}, moved={}", jobId, job.getMoved());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Shard rebalance job interrupted. jobId={}, moved={}", jobId, job.getMoved());
+        } catch (Exception e) {
+            log.error("Shard rebalance job failed. jobId={}, error={}", jobId, e.getMessage(), e);
+            jobs().updateFirst(owned(jobId), new Update()
+                    .set("status", ShardRebalanceStatus.FAILED)
+                    .set("error", e.getMessage())
+                    .set("updatedAt", Instant.now())
+                    .unset("owner"), ShardRebalanceJob.class);
+        } finally {
+            current = null;
+        }
+    }
+
+    /**
+     * Take the job's lease if it is RUNNING and free (or ours, or expired).
+     */
+    private ShardRebalanceJob claim(String jobId) {
+        Instant now = Instant.now();
+        Query query = Query.query(new Criteria().andOperator(
+                Criteria.where("_id").is(jobId).and("status").is(ShardRebalanceStatus.RUNNING),
+                new Criteria().orOperator(
+                        Criteria.where("owner").exists(false),
+                        Criteria.where("owner").is(owner),
+                        Criteria.where("heartbeatAt").lt(now.minus(settings.getLeaseDuration())))));
+        return jobs().findAndModify(query, new Update().set("owner", owner).set("heartbeatAt", now),
+                FindAndModifyOptions.options().returnNew(true), ShardRebalanceJob.class);
+    }
+
+    /**
+     * Move the job's profiles off one source shard.
+     */
+    private void drain(ShardRebalanceJob job, String sourceShard) throws InterruptedException {
+        List<String> values = countryValues(sourceShard, job.getCountryKey());
+        if (values.isEmpty()) {
+            return;
+        }
+        MongoCollection<Document> source = shardRouter.template(sourceShard).getCollection(PROFILES_COLLECTION);
+        MongoCollection<Document> target = shardRouter.template(job.getTargetShard()).getCollection(PROFILES_COLLECTION);
+        Throttle throttle = new Throttle(job.getDocsPerSecond());
+
+        Document unlocked = new Document("country", new Document("$in", values))
+                .append("$or", notMigrating(new Date()));
+        try (MongoCursor<Document> cursor = source.find(unlocked)
+                .hintString(COUNTRY_INDEX)
+                .batchSize(settings.getBatchSize())
+                .cursor()) {
+            List<Document> batch = new ArrayList<>(settings.getBatchSize());
+            long batchStartedAt = System.nanoTime();
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() == settings.getBatchSize() || !cursor.hasNext()) {
+                    moveBatch(job, sourceShard, source, target, batch, throttle);
+                    throttle.await(job, batch.size(), batchStartedAt);
+                    batch.clear();
+                    batchStartedAt = System.nanoTime();
+                }
+            }
+        }
+    }
+
+    private void moveBatch(ShardRebalanceJob job, String sourceShard, MongoCollection<Document> source,
+                           MongoCollection<Document> target, List<Document> batch, Throttle throttle) {
+        long startedAt = System.nanoTime();
+        BulkWriteOptions unordered = new BulkWriteOptions().ordered(false);
+
+        // 1. Lock
+        Date lockedAt = new Date();
+        List<Document> locked = lock(source, batch, lockedAt);
+
+        int deleted = 0;
+        Set<String> reverted = Set.of();
+        if (!locked.isEmpty()) {
+            // 2. Copy (idempotent), still locked
+            List<ReplaceOneModel<Document>> copies = new ArrayList<>(locked.size());
+            for (Document profile : locked) {
+                copies.add(new ReplaceOneModel<>(new Document("_id", profile.get("_id")), profile,
+                        new ReplaceOptions().upsert(true)));
+            }
+            BulkWriteResult copied = target.bulkWrite(copies, unordered);
+            if (copied.getMatchedCount() + copied.getUpserts().size() != locked.size()) {
+                throw new RuntimeException("Copied " + (copied.getMatchedCount() + copied.getUpserts().size())
+                        + " of " + locked.size() + " profiles to shard " + job.getTargetShard());
+            }
+
+            // Events of the batch's companies, copied before the directory switch
+            List<String> userIds = locked.stream().map(profile -> profile.getString("user_id")).toList();
+            CompanyEventMover.Copy events = companyEventMover.copy(userIds, sourceShard, job.getTargetShard());
+
+            // 3. Switch the directory - before the deletes, so a profile is always found where it points
+            profileDirectory.assignAll(userIds, job.getTargetShard());
+
+            // 4. Delete the source copies that are unchanged since they were locked
+            List<DeleteOneModel<Document>> deletes = new ArrayList<>(locked.size());
+            for (Document profile : locked) {
+                deletes.add(new DeleteOneModel<>(unchanged(profile)));
+            }
+            deleted = source.bulkWrite(deletes, unordered).getDeletedCount();
+            if (deleted < locked.size()) {
+                reverted = revertConflicts(source, target, sourceShard, job.getTargetShard(), locked, lockedAt);
+            }
+
+            // 5. Events follow their profiles, including those written since the copy; events of
+            //    reverted profiles stay on the source
+            companyEventMover.deleteSource(reverted.isEmpty() ? events : companyEventMover.discardFor(events, reverted));
+
+            // 6. Unlock the target copies (reverted ones are gone, written ones no longer match)
+            target.bulkWrite(unlocks(locked, lockedAt), unordered);
+        }
+        throttle.adjust(System.nanoTime() - startedAt);
+
+        // 7. Checkpoint
+        int conflicts = batch.size() - deleted;
+        job.setMoved(job.getMoved() + deleted);
+        job.setConflicts(job.getConflicts() + conflicts);
+        job.setDocsPerSecond(throttle.rate);
+        checkpoint(job, new Update()
+                .inc("moved", deleted)
+                .inc("conflicts", conflicts)
+                .set("docsPerSecond", throttle.rate));
+    }
+
+    /**
+     * Lock the batch's profiles on the source, each only while unchanged since it was
+     * read and not locked by a shard migration.
+     *
+     * @return the locked profiles as stored now
+     */
+    private List<Document> lock(MongoCollection<Document> source, List<Document> batch, Date lockedAt) {
+        List<UpdateOneModel<Document>> locks = new ArrayList<>(batch.size());
+        for (Document profile : batch) {
+            locks.add(new UpdateOneModel<>(
+                    unchanged(profile).append("$or", notMigrating(lockedAt)),
+                    new Document("$set", new Document(MIGRATING_SINCE, lockedAt))
+                            .append("$inc", new Document("version", 1L))));
+        }
+        if (source.bulkWrite(locks, new BulkWriteOptions().ordered(false)).getModifiedCount() == 0) {
+            return List.of();
+        }
+
+        Map<Object, Long> lockedVersions = new HashMap<>();
+        batch.forEach(profile -> lockedVersions.put(profile.get("_id"), version(profile) + 1));
+        return source.find(new Document("_id", new Document("$in", new ArrayList<>(lockedVersions.keySet())))
+                        .append(MIGRATING_SINCE, lockedAt))
+                .into(new ArrayList<>())
+                .stream()
+                .filter(profile -> lockedVersions.get(profile.get("_id")) == version(profile))
+                .toList();
+    }
+
+    /**
+     * Unlock the copies still as they were locked (ShardMigrationService step 7)
+     */
+    private static List<UpdateOneModel<Document>> unlocks(List<Document> locked, Date lockedAt) {
+        List<UpdateOneModel<Document>> unlocks = new ArrayList<>(locked.size());
+        for (Document profile : locked) {
+            unlocks.add(new UpdateOneModel<>(
+                    new Document("_id", profile.get("_id"))
+                            .append("version", profile.get("version"))
+                            .append(MIGRATING_SINCE, lockedAt),
+                    new Document("$unset", new Document(MIGRATING_SINCE, ""))
+                            .append("$inc", new Document("version", 1L))));
+        }
+        return unlocks;
+    }
+
+    /**
+     * Profiles that were written on the source during their move stay on the source
+     * shard: their target copies are deleted, but only while unchanged since the copy,
+     * and the source copies are unlocked. A target copy that was written too (by an
+     * instance that already saw the directory switch) is the newer one, so it is kept
+     * and the source copy deleted - only while still at the locked version. A profile
+     * written on both shards is left on both, and the directory on the target, for repair.
+     *
+     * @return userIds of the reverted profiles
+     */
+    private Set<String> revertConflicts(MongoCollection<Document> source, MongoCollection<Document> target,
+                                        String sourceShard, String targetShard, List<Document> locked,
+                                        Date lockedAt) {
+        Map<Object, Document> copied = new HashMap<>();
+        locked.forEach(profile -> copied.put(profile.get("_id"), profile));
+        List<Document> remaining = source.find(new Document("_id", new Document("$in", new ArrayList<>(copied.keySet()))))
+                .projection(new Document("user_id", 1))
+                .into(new ArrayList<>());
+        if (remaining.isEmpty()) {
+            return Set.of();
+        }
+        List<Object> remainingIds = remaining.stream().map(profile -> profile.get("_id")).toList();
+        BulkWriteOptions unordered = new BulkWriteOptions().ordered(false);
+
+        // Delete the target copies that are unchanged since they were copied
+        List<DeleteOneModel<Document>> deletes = new ArrayList<>(remaining.size());
+        for (Object id : remainingIds) {
+            deletes.add(new DeleteOneModel<>(unchanged(copied.get(id))));
+        }
+        target.bulkWrite(deletes, unordered);
+
+        Set<Object> kept = target.find(new Document("_id", new Document("$in", remainingIds)))
+                .projection(new Document("_id", 1))
+                .map(profile -> profile.get("_id"))
+                .into(new HashSet<>());
+        List<Document> revertedProfiles = remaining.stream()
+                .filter(profile -> !kept.contains(profile.get("_id")))
+                .toList();
+        List<String> reverted = revertedProfiles.stream().map(profile -> profile.getString("user_id")).toList();
+        profileDirectory.assignAll(reverted, sourceShard);
+        if (!revertedProfiles.isEmpty()) {
+            List<UpdateOneModel<Document>> unlocks = new ArrayList<>(revertedProfiles.size());
+            for (Document profile : revertedProfiles) {
+                unlocks.add(new UpdateOneModel<>(
+                        new Document("_id", profile.get("_id"))
+                                .append("version", copied.get(profile.get("_id")).get("version"))
+                                .append(MIGRATING_SINCE, lockedAt),
+                        new Document("$unset", new Document(MIGRATING_SINCE, ""))));
+            }
+            source.bulkWrite(unlocks, unordered);
+        }
+        log.info("Profiles changed during rebalance, left on shard {}: {}", sourceShard, reverted.size());
+
+        if (!kept.isEmpty()) {
+            List<DeleteOneModel<Document>> sourceDeletes = new ArrayList<>(kept.size());
+            for (Object id : kept) {
+                sourceDeletes.add(new DeleteOneModel<>(new Document("_id", id)
+                        .append("version", copied.get(id).get("version"))));
+            }
+            int deleted = source.bulkWrite(sourceDeletes, unordered).getDeletedCount();
+            log.warn("Profiles written on the target during rebalance, kept the copy on shard {}: {}",
+                    targetShard, deleted);
+            if (deleted < kept.size()) {
+                log.error("Profiles written on both shards {} and {} during rebalance, kept on both for repair: {}",
+                        sourceShard, targetShard, kept.size() - deleted);
+            }
+        }
+        return Set.copyOf(reverted);
+    }
+
+    /**
+     * Matches the profile only while it is unchanged since it was read (version and outbox)
+     */
+    private static Document unchanged(Document profile) {
+        return new Document("_id", profile.get("_id"))
+                .append("version", profile.get("version"))
+                .append("outbox", profile.containsKey("outbox")
+                        ? profile.get("outbox")
+                        : new Document("$exists", false));
+    }
+
+    /**
+     * Not locked by a shard migration (or the lock has expired)
+     */
+    private static List<Document> notMigrating(Date now) {
+        return List.of(
+                new Document(MIGRATING_SINCE, null),
+                new Document(MIGRATING_SINCE, new Document("$lt",
+                        Date.from(now.toInstant().minus(Profile.MIGRATION_LOCK_TIMEOUT)))));
+    }
+
+    private static long version(Document profile) {
+        Object version = profile.get("version");
+        return version instanceof Number number ? number.longValue() : 0;
+    }
+
+    /**
+     * Record progress and renew the lease. Stops the job if it was paused or taken over.
+     */
+    private void checkpoint(ShardRebalanceJob job, Update update) {
+        Instant now = Instant.now();
+        update.set("heartbeatAt", now).set("updatedAt", now);
+        if (jobs().updateFirst(owned(job.getId()), update, ShardRebalanceJob.class).getMatchedCount() == 0) {
+            throw new JobStoppedException();
+        }
+    }
+
+    private Query owned(String jobId) {
+        return Query.query(Criteria.where("_id").is(jobId)
+                .and("owner").is(owner)
+                .and("status").is(ShardRebalanceStatus.RUNNING));
+    }
+
+    // ==================== Helpers ====================
+
+    private List<String> sourceShards(String targetShard) {
+        return shardRouter.shards().stream().filter(shard -> !shard.equals(targetShard)).toList();
+    }
+
+    /**
+     * Stored spellings of the country on a shard (distinct over idx_country_shard)
+     */
+    private List<String> countryValues(String shard, String countryKey) {
+        List<String> values = new ArrayList<>();
+        for (String value : shardRouter.template(shard).getCollection(PROFILES_COLLECTION)
+                .distinct("country", String.class)) {
+            if (value != null && countryKey.equals(shardResolver.countryKey(value))) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private MongoTemplate jobs() {
+        return shardRouter.template(shardRouter.defaultShard());
+    }
+
+    public static long remaining(ShardRebalanceJob job) {
+        return Math.max(0, job.getTotal() - job.getMoved());
+    }
+
+    /**
+     * Seconds until completion at the current rate (null if not running or no rate yet)
+     */
+    public static Long etaSeconds(ShardRebalanceJob job) {
+        if (job.getStatus() != ShardRebalanceStatus.RUNNING || job.getDocsPerSecond() <= 0) {
+            return null;
+        }
+        return (long) Math.ceil(remaining(job) / job.getDocsPerSecond());
+    }
+
+    /**
+     * AIMD rate limit: halve on slow batches, grow by a tenth of the maximum on fast ones.
+     */
+    private class Throttle {
+
+        private double rate;
+
+        Throttle(double rate) {
+            this.rate = rate > 0 ? Math.min(rate, settings.getMaxDocsPerSecond()) : settings.getMaxDocsPerSecond();
+        }
+
+        void adjust(long writeNanos) {
+            int max = settings.getMaxDocsPerSecond();
+            if (writeNanos > settings.getMaxWriteLatency().toNanos()) {
+                rate = Math.max(1, rate / 2);
+            } else {
+                rate = Math.min(max, rate + max / 10.0);
+            }
+        }
+
+        /**
+         * Sleep until a batch of this size fits the rate. At low rates that can take
+         * longer than the lease, so the heartbeat is renewed at least every third of
+         * lease-duration while waiting (another instance would take the job over).
+         */
+        void await(ShardRebalanceJob job, int docs, long batchStartedAt) throws InterruptedException {
+            long budgetNanos = (long) (docs / rate * 1_000_000_000L);
+            long wakeAt = batchStartedAt + budgetNanos;
+            long sliceNanos = Math.max(1, settings.getLeaseDuration().toNanos() / 3);
+            long remaining;
+            while ((remaining = wakeAt - System.nanoTime()) > 0) {
+                if (remaining > sliceNanos) {
+                    TimeUnit.NANOSECONDS.sleep(sliceNanos);
+                    checkpoint(job, new Update());
+                } else {
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                }
+            }
+        }
+    }
+
+    /**
+     * The job was paused or another instance took it over
+     */
+    private static class JobStoppedException extends RuntimeException {
+    }
+}
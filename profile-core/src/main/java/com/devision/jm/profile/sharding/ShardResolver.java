@@ -0,0 +1,32 @@
+package com.devision.jm.profile.sharding;
+
+/**
+ * Shard Resolver
+ *
+ * Maps a profile's country to the shard id it belongs on (e.g. SHARD_APAC).
+ * Called on every profile create and country change, so implementations must
+ * resolve without scanning (one lookup per call).
+ */
+public interface ShardResolver {
+
+    /**
+     * Shard id of a country, given as ISO-3166 alpha-2/alpha-3 code, English name
+     * or a configured alias (case, accents and punctuation are ignored).
+     *
+     * @param country the country as entered, may be null
+     * @return the shard id, or the default shard for null/unknown countries
+     */
+    String resolve(String country);
+
+    /**
+     * Canonical key of a country: its ISO-3166 alpha-2 code when known, otherwise
+     * the normalized input. Different spellings of one country have the same key.
+     */
+    String countryKey(String country);
+
+    /**
+     * Reload the mapping from its source. Lookups keep using the previous mapping
+     * until the new one is complete.
+     */
+    void reload();
+}
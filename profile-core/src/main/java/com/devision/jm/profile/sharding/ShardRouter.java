@@ -0,0 +1,100 @@
+package com.devision.jm.profile.sharding;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Shard Router
+ *
+ * Picks the shard (and its MongoTemplate) for profile data:
+ * - by country, for new profiles and migrations (ShardResolver, or the
+ *   default shard when the resolved shard is not configured)
+ * - by userId, through ProfileDirectory, for everything else
+ *
+ * Used by ProfileRepositoryCustomImpl, so callers of ProfileRepository don't
+ * deal with shards at all.
+ */
+@Component
+@RequiredArgsConstructor
+public class ShardRouter {
+
+    private final ShardTemplates shardTemplates;
+    private final ProfileDirectory profileDirectory;
+    private final ShardResolver shardResolver;
+
+    public boolean isEnabled() {
+        return shardTemplates.isEnabled();
+    }
+
+    /**
+     * Shard a profile from this country belongs on.
+     */
+    public String shardForCountry(String country) {
+        String shard = shardResolver.resolve(country);
+        return shardTemplates.exists(shard) ? shard : shardTemplates.defaultShard();
+    }
+
+    /**
+     * Shard currently holding the user's profile.
+     */
+    public String shardOfUser(String userId) {
+        return profileDirectory.shardOf(userId);
+    }
+
+    public MongoTemplate template(String shard) {
+        return shardTemplates.template(shard);
+    }
+
+    public MongoTemplate templateForUser(String userId) {
+        return shardTemplates.template(shardOfUser(userId));
+    }
+
+    /**
+     * Run an operation on the shard of the user's profile. A null result on a
+     * cached directory entry may mean the profile was just moved by another
+     * instance: the entry is then re-read, and if it names another shard the
+     * operation runs once more there.
+     *
+     * @param operation returns null when the profile was not found
+     */
+    public <T> T onUserShard(String userId, Function<MongoTemplate, T> operation) {
+        String shard = shardOfUser(userId);
+        T result = operation.apply(template(shard));
+        if (result != null || !isEnabled()) {
+            return result;
+        }
+        String current = profileDirectory.refresh(userId);
+        return current.equals(shard) ? null : operation.apply(template(current));
+    }
+
+    /**
+     * Group users by shard, re-reading their directory entries (see onUserShard).
+     */
+    public Map<String, List<String>> regroupByShard(Collection<String> userIds) {
+        return profileDirectory.refreshAll(userIds);
+    }
+
+    /**
+     * Group users by the shard holding their profiles.
+     */
+    public Map<String, List<String>> groupByShard(Collection<String> userIds) {
+        return profileDirectory.groupByShard(userIds);
+    }
+
+    /**
+     * All shards, the default shard first.
+     */
+    public Collection<String> shards() {
+        return shardTemplates.shards();
+    }
+
+    public String defaultShard() {
+        return shardTemplates.defaultShard();
+    }
+}
@@ -0,0 +1,210 @@
+package com.devision.jm.profile.sharding;
+
+import com.devision.jm.profile.config.ShardingProperties;
+import com.devision.jm.profile.repository.MongoConcurrencyLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Shard Scatter Gather
+ *
+ * Runs one query on every shard at once, for reads that can't be routed to a
+ * single shard (admin search, subscription queries):
+ * - one virtual thread per shard, each query within MongoConcurrencyLimiter
+ * - all shards share one deadline (app.sharding.scatter-timeout), so a query
+ *   takes as long as its slowest healthy shard instead of the sum of all shards
+ * - a shard that misses the deadline is cancelled and reported as TIMEOUT, one
+ *   that throws as FAILED; the results of the other shards are still returned
+ *   (Gathered.partial())
+ * - with sharding disabled the query runs on the default shard, on the caller's
+ *   thread, and exceptions propagate as before
+ *
+ * Per-shard results that are sorted can be combined with mergeSorted(), a lazy
+ * k-way merge that only holds the next element of each shard.
+ *
+ * Metrics: sharding.scatter.shard{shard,status} - per-shard query time
+ */
+@Slf4j
+@Component
+public class ShardScatterGather {
+
+    private final ShardRouter shardRouter;
+    private final MongoConcurrencyLimiter mongoConcurrencyLimiter;
+    private final MeterRegistry meterRegistry;
+    private final Duration timeout;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("shard-scatter-", 0).factory());
+
+    public ShardScatterGather(ShardRouter shardRouter, MongoConcurrencyLimiter mongoConcurrencyLimiter,
+                              ShardingProperties properties, MeterRegistry meterRegistry) {
+        this.shardRouter = shardRouter;
+        this.mongoConcurrencyLimiter = mongoConcurrencyLimiter;
+        this.meterRegistry = meterRegistry;
+        this.timeout = properties.getScatterTimeout();
+    }
+
+    public enum Status {
+        OK, TIMEOUT, FAILED
+    }
+
+    /**
+     * How one shard answered.
+     *
+     * @param tookMs query time; the timeout for TIMEOUT
+     * @param error  reason for TIMEOUT/FAILED, null for OK
+     */
+    public record ShardStatus(String shard, Status status, long tookMs, String error) {
+    }
+
+    /**
+     * Results of the shards that answered, and the status of every shard.
+     */
+    public record Gathered<T>(Map<String, T> results, List<ShardStatus> shards) {
+
+        /**
+         * True when at least one shard is missing from the results.
+         */
+        public boolean partial() {
+            return shards.stream().anyMatch(shard -> shard.status() != Status.OK);
+        }
+    }
+
+    /**
+     * Run the query on every shard concurrently.
+     */
+    public <T> Gathered<T> query(Function<MongoTemplate, T> query) {
+        if (!shardRouter.isEnabled()) {
+            String shard = shardRouter.defaultShard();
+            long start = System.nanoTime();
+            T result = query.apply(shardRouter.template(shard));
+            long took = System.nanoTime() - start;
+            record(shard, Status.OK, took);
+            Map<String, T> results = new LinkedHashMap<>();
+            results.put(shard, result);
+            return new Gathered<>(results, List.of(new ShardStatus(shard, Status.OK, toMillis(took), null)));
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Map<String, Future<Answer<T>>> futures = new LinkedHashMap<>();
+        for (String shard : shardRouter.shards()) {
+            MongoTemplate template = shardRouter.template(shard);
+            futures.put(shard, executor.submit(() -> mongoConcurrencyLimiter.call(() -> {
+                long start = System.nanoTime();
+                T result = query.apply(template);
+                return new Answer<>(result, System.nanoTime() - start);
+            })));
+        }
+
+        Map<String, T> results = new LinkedHashMap<>();
+        List<ShardStatus> statuses = new ArrayList<>(futures.size());
+        for (Map.Entry<String, Future<Answer<T>>> entry : futures.entrySet()) {
+            String shard = entry.getKey();
+            Future<Answer<T>> future = entry.getValue();
+            try {
+                Answer<T> answer = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                results.put(shard, answer.result());
+                record(shard, Status.OK, answer.tookNanos());
+                statuses.add(new ShardStatus(shard, Status.OK, toMillis(answer.tookNanos()), null));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                record(shard, Status.TIMEOUT, timeout.toNanos());
+                statuses.add(new ShardStatus(shard, Status.TIMEOUT, timeout.toMillis(),
+                        "No response within " + timeout.toMillis() + " ms"));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.warn("Query on shard {} failed: {}", shard, cause.getMessage());
+                record(shard, Status.FAILED, 0);
+                statuses.add(new ShardStatus(shard, Status.FAILED, 0, cause.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(pending -> pending.cancel(true));
+                throw new RuntimeException("Interrupted while querying shards", e);
+            }
+        }
+
+        Gathered<T> gathered = new Gathered<>(results, statuses);
+        if (gathered.partial()) {
+            log.warn("Partial scatter-gather result: {}", statuses);
+        }
+        return gathered;
+    }
+
+    /**
+     * Lazily merge per-shard sources that are each sorted by the comparator into
+     * one sorted iterator. Holds one element per source in a priority queue, so a
+     * caller stopping after k elements reads at most k + (sources - 1) of them.
+     */
+    public static <T> Iterator<T> mergeSorted(Collection<? extends Iterator<T>> sources, Comparator<? super T> order) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> order.compare(a.value(), b.value()));
+        for (Iterator<T> source : sources) {
+            if (source.hasNext()) {
+                heads.add(new Head<>(source.next(), source));
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                Head<T> head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                if (head.source().hasNext()) {
+                    heads.add(new Head<>(head.source().next(), head.source()));
+                }
+                return head.value();
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Answer<T>(T result, long tookNanos) {
+    }
+
+    private record Head<T>(T value, Iterator<T> source) {
+    }
+
+    private void record(String shard, Status status, long nanos) {
+        Timer.builder("sharding.scatter.shard")
+                .description("Time a shard took to answer a scatter-gather query")
+                .tag("shard", shard)
+                .tag("status", status.name())
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
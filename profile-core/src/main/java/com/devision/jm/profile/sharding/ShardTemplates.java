@@ -0,0 +1,169 @@
+package com.devision.jm.profile.sharding;
+
+import com.devision.jm.profile.config.ShardingProperties;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.client.model.IndexOptions;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shard Templates
+ *
+ * One MongoTemplate per region shard (app.sharding.shards). The default shard
+ * is the application's primary MongoTemplate; the others get their own
+ * MongoClient and database but share its converter, entity callbacks and
+ * auditing, so documents look the same on every shard.
+ *
+ * On startup the indexes of the sharded collections are copied from the default
+ * shard to the others (the index setup elsewhere only runs on the primary database).
+ */
+@Slf4j
+@Component
+public class ShardTemplates {
+
+    /**
+     * Collections partitioned across shards
+     */
+    static final List<String> SHARDED_COLLECTIONS = List.of("profiles", "events");
+
+    private final String defaultShard;
+    private final boolean enabled;
+    private final Map<String, MongoTemplate> templates = new LinkedHashMap<>();
+    private final List<MongoClient> clients = new ArrayList<>();
+
+    public ShardTemplates(MongoTemplate mongoTemplate, ShardingProperties properties,
+                          ApplicationContext applicationContext) {
+        this.defaultShard = properties.getDefaultShard();
+        this.enabled = properties.isEnabled();
+        templates.put(defaultShard, mongoTemplate);
+
+        if (!enabled) {
+            return;
+        }
+        properties.getShards().forEach((name, shard) -> {
+            if (name.equals(defaultShard)) {
+                log.warn("Ignoring configuration of the default shard {} - it is the primary database", name);
+                return;
+            }
+            MongoClient client = MongoClients.create(shard.getUri());
+            clients.add(client);
+            MongoTemplate template = new MongoTemplate(
+                    new SimpleMongoClientDatabaseFactory(client, shard.getDatabase()), mongoTemplate.getConverter());
+            template.setApplicationContext(applicationContext);
+            templates.put(name, template);
+            log.info("Configured shard {} (database {})", name, shard.getDatabase());
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String defaultShard() {
+        return defaultShard;
+    }
+
+    /**
+     * Configured shards, the default shard first.
+     */
+    public Set<String> shards() {
+        return Collections.unmodifiableSet(templates.keySet());
+    }
+
+    public boolean exists(String shard) {
+        return templates.containsKey(shard);
+    }
+
+    /**
+     * Template of a shard (the default shard's for unknown names).
+     */
+    public MongoTemplate template(String shard) {
+        return templates.getOrDefault(shard, templates.get(defaultShard));
+    }
+
+    public MongoTemplate defaultTemplate() {
+        return templates.get(defaultShard);
+    }
+
+    /**
+     * Copy the indexes of the sharded collections to every other shard.
+     * Runs after the other startup index setup, which targets the default shard.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void replicateIndexes() {
+        if (templates.size() < 2) {
+            return;
+        }
+        for (String collection : SHARDED_COLLECTIONS) {
+            List<Document> indexes = defaultTemplate().getCollection(collection).listIndexes().into(new ArrayList<>());
+            templates.forEach((shard, template) -> {
+                if (shard.equals(defaultShard)) {
+                    return;
+                }
+                MongoCollection<Document> target = template.getCollection(collection);
+                for (Document index : indexes) {
+                    if ("_id_".equals(index.getString("name"))) {
+                        continue;
+                    }
+                    try {
+                        target.createIndex(index.get("key", Document.class), indexOptions(index));
+                    } catch (Exception e) {
+                        log.warn("Failed to create index {} on shard {} (may already exist): {}",
+                                index.getString("name"), shard, e.getMessage());
+                    }
+                }
+                log.info("Replicated {} indexes of {} to shard {}", indexes.size() - 1, collection, shard);
+            });
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        clients.forEach(MongoClient::close);
+    }
+
+    private static IndexOptions indexOptions(Document index) {
+        IndexOptions options = new IndexOptions().name(index.getString("name"));
+        if (index.getBoolean("unique", false)) {
+            options.unique(true);
+        }
+        if (index.getBoolean("sparse", false)) {
+            options.sparse(true);
+        }
+        if (index.get("partialFilterExpression") instanceof Document filter) {
+            options.partialFilterExpression(filter);
+        }
+        if (index.get("expireAfterSeconds") instanceof Number seconds) {
+            options.expireAfter(seconds.longValue(), TimeUnit.SECONDS);
+        }
+        if (index.get("collation") instanceof Document collation) {
+            options.collation(Collation.builder()
+                    .locale(collation.getString("locale"))
+                    .collationStrength(CollationStrength.fromInt(collation.getInteger("strength", 3)))
+                    .build());
+        }
+        return options;
+    }
+}
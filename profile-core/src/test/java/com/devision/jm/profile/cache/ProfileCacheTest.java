@@ -0,0 +1,100 @@
+package com.devision.jm.profile.cache;
+
+import com.devision.jm.profile.api.external.dto.ProfileResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Version-gated eviction: a broadcast from another replica only drops an entry
+ * older than the written version, a delete (no version) always drops it, and
+ * local writes evict and broadcast their version.
+ */
+class ProfileCacheTest {
+
+    private final ProfileCacheInvalidationPublisher invalidationPublisher =
+            mock(ProfileCacheInvalidationPublisher.class);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private ProfileCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ProfileCache(new SimpleMeterRegistry(), invalidationPublisher,
+                64L * 1024 * 1024, 1000, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void broadcastOfAnOlderOrTheSameVersionKeepsTheEntry() {
+        load(5L);
+
+        cache.evictIfOlder("u1", 4L);
+        cache.evictIfOlder("u1", 5L);
+
+        assertEquals(5L, load(7L).getVersion());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void broadcastOfANewerVersionDropsTheEntry() {
+        load(5L);
+
+        cache.evictIfOlder("u1", 6L);
+
+        assertEquals(6L, load(6L).getVersion());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void broadcastWithoutAVersionAlwaysDropsTheEntry() {
+        load(5L);
+
+        cache.evictIfOlder("u1", null);
+
+        assertEquals(9L, load(9L).getVersion());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void entryWithoutAVersionIsDroppedByAnyBroadcast() {
+        load(null);
+
+        cache.evictIfOlder("u1", 1L);
+
+        load(1L);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void broadcastForAnUncachedProfileCachesNothing() {
+        cache.evictIfOlder("u1", 3L);
+
+        assertTrue(cache.getAllPresent(List.of("u1")).isEmpty());
+    }
+
+    @Test
+    void localWriteEvictsAndBroadcastsItsVersion() {
+        load(5L);
+
+        cache.evict("u1", 6L);
+
+        assertTrue(cache.getAllPresent(List.of("u1")).isEmpty());
+        verify(invalidationPublisher).publish("u1", 6L);
+    }
+
+    private ProfileResponse load(Long version) {
+        return cache.getByUserId("u1", () -> {
+            loads.incrementAndGet();
+            return ProfileResponse.builder().id("p1").userId("u1").email("jobs@acme.com").version(version).build();
+        });
+    }
+}
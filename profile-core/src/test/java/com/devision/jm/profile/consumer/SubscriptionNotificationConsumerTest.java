@@ -0,0 +1,90 @@
+package com.devision.jm.profile.consumer;
+
+import com.devision.jm.profile.cache.ProfileCache;
+import com.devision.jm.profile.entitlement.PremiumEntitlementIndex;
+import com.devision.jm.profile.idempotency.ProcessedMessageLedger;
+import com.devision.jm.profile.messaging.KeyOrderedDispatcher;
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.model.enums.SubscriptionType;
+import com.devision.jm.profile.outbox.ProfileOutbox;
+import com.devision.jm.profile.repository.ProfileRepository;
+import com.devision.jm.profile.sharding.InMemoryCollection;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A subscription notification only applies to the subscription period it was
+ * sent for: an ENDED that arrives late from a retry tier, after the profile was
+ * renewed, leaves the profile PREMIUM.
+ */
+class SubscriptionNotificationConsumerTest {
+
+    private final ProfileRepository profileRepository = mock(ProfileRepository.class);
+    private final PremiumEntitlementIndex premiumEntitlementIndex = mock(PremiumEntitlementIndex.class);
+    private final ProcessedMessageLedger processedMessageLedger = mock(ProcessedMessageLedger.class);
+
+    private SubscriptionNotificationConsumer consumer;
+    private Profile profile;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new SubscriptionNotificationConsumer(profileRepository, new ObjectMapper().findAndRegisterModules(),
+                mock(ProfileOutbox.class), mock(ProfileCache.class), premiumEntitlementIndex,
+                processedMessageLedger, mock(KeyOrderedDispatcher.class));
+
+        profile = new Profile();
+        profile.setUserId("u1");
+        profile.setSubscriptionType(SubscriptionType.PREMIUM);
+        when(processedMessageLedger.notAppliedTo(anyString()))
+                .thenAnswer(invocation -> Criteria.where("processedMessageIds").ne(invocation.getArgument(0)));
+        when(profileRepository.existsByUserId("u1")).thenReturn(true);
+        // The update applies when the stored profile matches the precondition
+        when(profileRepository.updateByUserId(eq("u1"), isNull(), any(Criteria.class), any(Update.class)))
+                .thenAnswer(invocation -> {
+                    Document precondition = invocation.<Criteria>getArgument(2).getCriteriaObject();
+                    Document stored = new Document("subscriptionEndDate", profile.getSubscriptionEndDate());
+                    return InMemoryCollection.matches(stored, precondition) ? Optional.of(profile) : Optional.empty();
+                });
+    }
+
+    @Test
+    void endedAppliesToTheSubscriptionItWasSentFor() {
+        profile.setSubscriptionEndDate(LocalDateTime.of(2026, 3, 31, 9, 30));
+
+        consumer.consumeSubscriptionNotificationEvent(ended("2026-03-31"));
+
+        verify(premiumEntitlementIndex).apply(profile);
+    }
+
+    @Test
+    void lateEndedDoesNotDowngradeARenewedSubscription() {
+        profile.setSubscriptionEndDate(LocalDateTime.of(2026, 4, 30, 9, 30));
+
+        consumer.consumeSubscriptionNotificationEvent(ended("2026-03-31"));
+
+        verify(premiumEntitlementIndex, never()).apply(any(Profile.class));
+        verify(processedMessageLedger).record("subscription-notifications.retry-0-0-7", "subscription-notifications");
+    }
+
+    private static ConsumerRecord<String, String> ended(String endDate) {
+        return new ConsumerRecord<>("subscription-notifications.retry-0", 0, 7L, "u1",
+                "{\"eventType\":\"ENDED\",\"userId\":\"u1\",\"endDate\":\"" + endDate + "\",\"daysLeft\":0}");
+    }
+}
@@ -0,0 +1,77 @@
+package com.devision.jm.profile.entitlement;
+
+import com.devision.jm.profile.sharding.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Subscription states arriving out of version order (broadcasts of different
+ * replicas, change stream) never overwrite a newer one.
+ */
+class PremiumEntitlementIndexTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PremiumEntitlementIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PremiumEntitlementIndex(mock(ShardRouter.class), meterRegistry);
+    }
+
+    @Test
+    void lateOlderPremiumDoesNotUndoACancellation() {
+        index.apply("u1", false, null, 6L);
+        index.apply("u1", true, LocalDateTime.now().plusDays(30), 5L);
+
+        assertFalse(index.isPremium("u1"));
+    }
+
+    @Test
+    void lateOlderCancellationDoesNotUndoAnUpgrade() {
+        index.apply("u1", true, LocalDateTime.now().plusDays(30), 6L);
+        index.apply("u1", false, null, 5L);
+
+        assertTrue(index.isPremium("u1"));
+    }
+
+    @Test
+    void newerStateReplacesTheEntry() {
+        index.apply("u1", true, null, 5L);
+        index.apply("u1", false, null, 6L);
+        assertFalse(index.isPremium("u1"));
+
+        index.apply("u1", true, LocalDateTime.now().plusDays(30), 7L);
+        assertTrue(index.isPremium("u1"));
+    }
+
+    @Test
+    void stateOfUnknownVersionIsAlwaysApplied() {
+        index.apply("u1", true, null, 6L);
+        index.apply("u1", false, null, null);
+
+        assertFalse(index.isPremium("u1"));
+    }
+
+    @Test
+    void expiredSubscriptionIsNotPremium() {
+        index.apply("u1", true, LocalDateTime.now().minusMinutes(1), 2L);
+
+        assertFalse(index.isPremium("u1"));
+    }
+
+    @Test
+    void sizeCountsOnlyPremiumEntries() {
+        index.apply("u1", true, null, 1L);
+        index.apply("u2", false, null, 4L);
+
+        assertEquals(1.0, meterRegistry.get("premium.entitlements.size").gauge().value());
+    }
+}
@@ -0,0 +1,49 @@
+package com.devision.jm.profile.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * No false negatives, and about the configured false-positive rate at the
+ * expected number of insertions.
+ */
+class BloomFilterTest {
+
+    private static final int EXPECTED = 100_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Test
+    void addedValuesAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(EXPECTED, FALSE_POSITIVE_RATE);
+        for (int i = 0; i < EXPECTED; i++) {
+            filter.put(messageId(i));
+        }
+
+        for (int i = 0; i < EXPECTED; i++) {
+            assertTrue(filter.mightContain(messageId(i)), "false negative for " + messageId(i));
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(EXPECTED, FALSE_POSITIVE_RATE);
+        for (int i = 0; i < EXPECTED; i++) {
+            filter.put(messageId(i));
+        }
+
+        int falsePositives = 0;
+        int probes = 200_000;
+        for (int i = EXPECTED; i < EXPECTED + probes; i++) {
+            if (filter.mightContain(messageId(i))) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / probes;
+        assertTrue(rate < FALSE_POSITIVE_RATE * 1.5, "false-positive rate " + rate);
+    }
+
+    private static String messageId(int i) {
+        return "profile.payment.completed-" + (i % 12) + "-" + i;
+    }
+}
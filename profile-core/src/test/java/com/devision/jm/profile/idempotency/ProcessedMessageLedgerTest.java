@@ -0,0 +1,59 @@
+package com.devision.jm.profile.idempotency;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * messageId(): a record keeps the identity of its first delivery on every
+ * retry tier and dead-letter hop.
+ */
+class ProcessedMessageLedgerTest {
+
+    @Test
+    void recordWithoutDltHeadersIsIdentifiedByItsOwnPosition() {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("payment.completed", 3, 42L, "u1", "{}");
+
+        assertEquals("payment.completed-3-42", ProcessedMessageLedger.messageId(record));
+    }
+
+    @Test
+    void retriedRecordIsIdentifiedByItsOriginalPosition() {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("payment.completed.retry-1", 0, 7L, "u1", "{}");
+        addOriginal(record.headers(), "payment.completed", 3, 42L);
+
+        assertEquals("payment.completed-3-42", ProcessedMessageLedger.messageId(record));
+    }
+
+    @Test
+    void firstOriginalHeadersWinWhenAHopAppendedItsOwn() {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("payment.completed.dlt", 0, 1L, "u1", "{}");
+        addOriginal(record.headers(), "payment.completed", 3, 42L);
+        addOriginal(record.headers(), "payment.completed.retry-0", 0, 5L);
+        addOriginal(record.headers(), "payment.completed.retry-1", 0, 7L);
+
+        assertEquals("payment.completed-3-42", ProcessedMessageLedger.messageId(record));
+    }
+
+    @Test
+    void malformedOriginalHeadersFallBackToTheRecordPosition() {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("payment.completed.retry-0", 1, 9L, "u1", "{}");
+        record.headers().add(KafkaHeaders.DLT_ORIGINAL_TOPIC, "payment.completed".getBytes(StandardCharsets.UTF_8));
+        record.headers().add(KafkaHeaders.DLT_ORIGINAL_PARTITION, "3".getBytes(StandardCharsets.UTF_8));
+        record.headers().add(KafkaHeaders.DLT_ORIGINAL_OFFSET, ByteBuffer.allocate(Long.BYTES).putLong(42L).array());
+
+        assertEquals("payment.completed.retry-0-1-9", ProcessedMessageLedger.messageId(record));
+    }
+
+    private static void addOriginal(Headers headers, String topic, int partition, long offset) {
+        headers.add(KafkaHeaders.DLT_ORIGINAL_TOPIC, topic.getBytes(StandardCharsets.UTF_8));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_PARTITION, ByteBuffer.allocate(Integer.BYTES).putInt(partition).array());
+        headers.add(KafkaHeaders.DLT_ORIGINAL_OFFSET, ByteBuffer.allocate(Long.BYTES).putLong(offset).array());
+    }
+}
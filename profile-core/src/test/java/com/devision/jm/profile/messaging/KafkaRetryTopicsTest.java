@@ -0,0 +1,145 @@
+package com.devision.jm.profile.messaging;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.KafkaBackoffException;
+import org.springframework.kafka.listener.ListenerContainerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Retry tier routing (topic names, tiers, destinations) and the non-blocking
+ * back off from retry records that are not due yet.
+ */
+class KafkaRetryTopicsTest {
+
+    private KafkaRetryTopics retryTopics;
+
+    @BeforeEach
+    void setUp() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        retryTopics = new KafkaRetryTopics(new SimpleMeterRegistry(),
+                beanFactory.getBeanProvider(ListenerContainerRegistry.class),
+                beanFactory.getBeanProvider(TaskScheduler.class),
+                3, Duration.ofSeconds(2), 5, Duration.ofMinutes(2));
+    }
+
+    @Test
+    void retryAndDeadLetterTopicsOfATopic() {
+        assertArrayEquals(new String[]{"user-created.retry-0", "user-created.retry-1", "user-created.retry-2"},
+                retryTopics.retryTopics("user-created"));
+        assertEquals("user-created.dlt", retryTopics.dltTopic("user-created"));
+        assertEquals("user-created.dlt", retryTopics.dltTopic("user-created.retry-2"));
+    }
+
+    @Test
+    void baseTopicStripsOnlyATrailingTierOrDltSuffix() {
+        assertEquals("user-created", retryTopics.baseTopic("user-created"));
+        assertEquals("user-created", retryTopics.baseTopic("user-created.retry-0"));
+        assertEquals("user-created", retryTopics.baseTopic("user-created.retry-12"));
+        assertEquals("user-created", retryTopics.baseTopic("user-created.dlt"));
+
+        // Topic names that merely contain ".retry-"
+        assertEquals("orders.retry-queue", retryTopics.baseTopic("orders.retry-queue"));
+        assertEquals("orders.retry-", retryTopics.baseTopic("orders.retry-"));
+        assertEquals("orders.retry-queue", retryTopics.baseTopic("orders.retry-queue.retry-1"));
+        assertEquals("orders.retry-queue", retryTopics.baseTopic("orders.retry-queue.dlt"));
+    }
+
+    @Test
+    void tierOfATopic() {
+        assertEquals(-1, KafkaRetryTopics.tierOf("user-created"));
+        assertEquals(0, KafkaRetryTopics.tierOf("user-created.retry-0"));
+        assertEquals(2, KafkaRetryTopics.tierOf("user-created.retry-2"));
+        assertEquals(-1, KafkaRetryTopics.tierOf("orders.retry-queue"));
+        assertEquals(1, KafkaRetryTopics.tierOf("orders.retry-queue.retry-1"));
+    }
+
+    @Test
+    void failedRecordMovesToTheNextTierThenTheDlt() {
+        RuntimeException failure = new RuntimeException("Profile not found");
+
+        assertEquals(new TopicPartition("user-created.retry-0", -1),
+                retryTopics.destination(record("user-created"), failure));
+        assertEquals(new TopicPartition("user-created.retry-1", -1),
+                retryTopics.destination(record("user-created.retry-0"), failure));
+        assertEquals(new TopicPartition("user-created.dlt", -1),
+                retryTopics.destination(record("user-created.retry-2"), failure));
+        assertEquals(new TopicPartition("orders.retry-queue.retry-0", -1),
+                retryTopics.destination(record("orders.retry-queue"), failure));
+    }
+
+    @Test
+    void unparseableRecordGoesStraightToTheDlt() {
+        Exception poison = new RuntimeException(new JsonParseException(null, "Unexpected character"));
+
+        assertEquals(new TopicPartition("user-created.dlt", -1),
+                retryTopics.destination(record("user-created"), poison));
+    }
+
+    @Test
+    void firstNotDueFindsTheFirstRecordWithAFutureDueTime() {
+        long now = System.currentTimeMillis();
+        List<ConsumerRecord<String, String>> records = List.of(
+                due(0, now - 1_000), due(1, now - 10), due(2, now + 60_000), due(3, now - 10));
+
+        assertEquals(2, retryTopics.firstNotDue(records));
+        assertEquals(2, retryTopics.firstNotDue(records.subList(0, 2)));
+    }
+
+    @Test
+    void backOffFailsTheBatchAtTheRecordWithABackoffCause() {
+        long dueAt = System.currentTimeMillis() + 60_000;
+        List<ConsumerRecord<String, String>> records = List.of(due(0, 0), due(1, dueAt));
+
+        BatchListenerFailedException e = retryTopics.backOff(records, 1);
+
+        assertEquals(1, e.getIndex());
+        KafkaBackoffException backoff = assertInstanceOf(KafkaBackoffException.class, e.getCause());
+        assertEquals(new TopicPartition("user-created.retry-1", 0), backoff.getTopicPartition());
+        assertEquals(dueAt, backoff.getDueTimestamp());
+    }
+
+    @Test
+    void recovererDoesNotMoveARecordThatIsNotDue() {
+        KafkaOperations<?, ?> template = mock(KafkaOperations.class);
+        List<ConsumerRecord<String, String>> records = List.of(due(0, System.currentTimeMillis() + 60_000));
+        BatchListenerFailedException notDue = retryTopics.backOff(records, 0);
+
+        assertThrows(KafkaException.class,
+                () -> retryTopics.recoverer(template).accept(records.get(0), null, notDue));
+        verify(template, never()).send(any(ProducerRecord.class));
+    }
+
+    private static ConsumerRecord<String, String> record(String topic) {
+        return new ConsumerRecord<>(topic, 0, 0L, "u1", "{}");
+    }
+
+    private static ConsumerRecord<String, String> due(long offset, long dueAt) {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("user-created.retry-1", 0, offset, "u1", "{}");
+        record.headers().add(KafkaRetryTopics.RETRY_DUE_AT_HEADER,
+                String.valueOf(dueAt).getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+}
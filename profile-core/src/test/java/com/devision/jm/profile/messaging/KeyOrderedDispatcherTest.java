@@ -0,0 +1,145 @@
+package com.devision.jm.profile.messaging;
+
+import com.devision.jm.profile.repository.MongoConcurrencyLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ListenerContainerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parallel dispatch of a poll: order within a key, and a failure stops only
+ * its own key and fails the batch at the lowest failed record.
+ */
+class KeyOrderedDispatcherTest {
+
+    private static final String TOPIC = "payment.completed";
+
+    private KeyOrderedDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        dispatcher = new KeyOrderedDispatcher(
+                new ObjectMapper(),
+                meterRegistry,
+                new MongoConcurrencyLimiter(meterRegistry, 10, Duration.ofSeconds(5)),
+                new KafkaRetryTopics(meterRegistry, beanFactory.getBeanProvider(ListenerContainerRegistry.class),
+                        beanFactory.getBeanProvider(TaskScheduler.class), 3, Duration.ofSeconds(2), 5,
+                        Duration.ofMinutes(2)),
+                4,
+                false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void recordsOfOneKeyRunInOffsetOrder() {
+        List<ConsumerRecord<String, String>> records = records("a", "b", "a", "b", "a", "b", "a", "b");
+        Map<String, Queue<Long>> offsetsByUser = new ConcurrentHashMap<>();
+
+        dispatcher.dispatch("test", records, record -> offsetsByUser
+                .computeIfAbsent(userId(record), k -> new ConcurrentLinkedQueue<>())
+                .add(record.offset()), "userId");
+
+        assertEquals(List.of(0L, 2L, 4L, 6L), new ArrayList<>(offsetsByUser.get("a")));
+        assertEquals(List.of(1L, 3L, 5L, 7L), new ArrayList<>(offsetsByUser.get("b")));
+    }
+
+    @Test
+    void failureStopsItsKeyAndFailsTheBatchAtThatRecord() {
+        // a: 0, 2 (fails), 4   b: 1, 3, 5
+        List<ConsumerRecord<String, String>> records = records("a", "b", "a", "b", "a", "b");
+        RuntimeException failure = new RuntimeException("Profile not found");
+        Set<Long> processed = ConcurrentHashMap.newKeySet();
+
+        BatchListenerFailedException e = assertThrows(BatchListenerFailedException.class,
+                () -> dispatcher.dispatch("test", records, failingAt(2, failure, processed), "userId"));
+
+        assertEquals(2, e.getIndex());
+        assertSame(failure, e.getCause());
+        assertFalse(processed.contains(4L), "record after the failed one of the same key ran");
+        assertTrue(processed.containsAll(Set.of(0L, 1L, 3L, 5L)), "other key was held back: " + processed);
+    }
+
+    @Test
+    void batchFailsAtTheLowestFailedRecord() {
+        List<ConsumerRecord<String, String>> records = records("a", "b", "a", "b");
+        Set<Long> processed = ConcurrentHashMap.newKeySet();
+        Consumer<ConsumerRecord<String, String>> handler = record -> {
+            if (record.offset() == 1 || record.offset() == 2) {
+                throw new RuntimeException("failed at " + record.offset());
+            }
+            processed.add(record.offset());
+        };
+
+        BatchListenerFailedException e = assertThrows(BatchListenerFailedException.class,
+                () -> dispatcher.dispatch("test", records, handler, "userId"));
+
+        assertEquals(1, e.getIndex());
+        assertFalse(processed.contains(3L));
+    }
+
+    @Test
+    void recordsWithoutKeyFieldUseTheRecordKey() {
+        List<ConsumerRecord<String, String>> records = List.of(
+                new ConsumerRecord<>(TOPIC, 0, 0, "a", "not json"),
+                new ConsumerRecord<>(TOPIC, 0, 1, "a", "{}"),
+                new ConsumerRecord<>(TOPIC, 0, 2, "b", "{}"));
+        Set<Long> processed = ConcurrentHashMap.newKeySet();
+
+        BatchListenerFailedException e = assertThrows(BatchListenerFailedException.class,
+                () -> dispatcher.dispatch("test", records,
+                        failingAt(0, new RuntimeException("not json"), processed), "userId"));
+
+        assertEquals(0, e.getIndex());
+        assertEquals(Set.of(2L), processed);
+    }
+
+    private static Consumer<ConsumerRecord<String, String>> failingAt(long offset, RuntimeException failure,
+                                                                     Set<Long> processed) {
+        return record -> {
+            if (record.offset() == offset) {
+                throw failure;
+            }
+            processed.add(record.offset());
+        };
+    }
+
+    private static List<ConsumerRecord<String, String>> records(String... userIds) {
+        List<ConsumerRecord<String, String>> records = new ArrayList<>(userIds.length);
+        for (int i = 0; i < userIds.length; i++) {
+            records.add(new ConsumerRecord<>(TOPIC, 0, i, null, "{\"userId\":\"" + userIds[i] + "\"}"));
+        }
+        return records;
+    }
+
+    private static String userId(ConsumerRecord<String, String> record) {
+        return record.value().replaceAll(".*\"userId\":\"([^\"]+)\".*", "$1");
+    }
+}
@@ -0,0 +1,137 @@
+package com.devision.jm.profile.repository;
+
+import com.devision.jm.profile.config.ShardingProperties;
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.model.enums.SubscriptionType;
+import com.devision.jm.profile.sharding.InMemoryCollection;
+import com.devision.jm.profile.sharding.ProfileDirectory;
+import com.devision.jm.profile.sharding.ShardRouter;
+import com.devision.jm.profile.sharding.ShardScatterGather;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Queries over many profiles read every shard: matches from all shards are
+ * returned, and a shard that fails makes the query fail instead of returning
+ * a shorter list.
+ */
+class ProfileRepositoryCustomImplTest {
+
+    private static final String SHARD_UK = "SHARD_UK";
+    private static final String SHARD_EU = "SHARD_EU";
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 1, 12, 0);
+
+    private final List<Profile> ukProfiles = new ArrayList<>();
+    private final List<Profile> euProfiles = new ArrayList<>();
+    private final MongoTemplate ukTemplate = template(ukProfiles);
+    private final MongoTemplate euTemplate = template(euProfiles);
+
+    private ShardScatterGather shardScatterGather;
+    private ProfileRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.isEnabled()).thenReturn(true);
+        when(shardRouter.shards()).thenReturn(List.of(SHARD_UK, SHARD_EU));
+        when(shardRouter.template(SHARD_UK)).thenReturn(ukTemplate);
+        when(shardRouter.template(SHARD_EU)).thenReturn(euTemplate);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        shardScatterGather = new ShardScatterGather(shardRouter,
+                new MongoConcurrencyLimiter(meterRegistry, 10, Duration.ofSeconds(1)),
+                new ShardingProperties(), meterRegistry);
+        repository = new ProfileRepositoryCustomImpl(shardRouter, mock(ProfileDirectory.class), shardScatterGather);
+
+        ukProfiles.add(profile("u1", "United Kingdom", SubscriptionType.PREMIUM, NOW.minusDays(1), false));
+        ukProfiles.add(profile("u2", "United Kingdom", SubscriptionType.PREMIUM, NOW.plusDays(5), false));
+        ukProfiles.add(profile("u3", "United Kingdom", SubscriptionType.PREMIUM, NOW.minusDays(3), true));
+        euProfiles.add(profile("u4", "Germany", SubscriptionType.PREMIUM, NOW.minusDays(2), false));
+        euProfiles.add(profile("u5", "Germany", SubscriptionType.PREMIUM, NOW.minusDays(2), true));
+        euProfiles.add(profile("u6", "United Kingdom", SubscriptionType.PREMIUM, NOW.plusDays(6), false));
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardScatterGather.shutdown();
+    }
+
+    @Test
+    void expiredProfilesAreFoundOnEveryShard() {
+        assertEquals(List.of("u1", "u4"), userIds(repository.findExpiredProfilesNotNotified(NOW)));
+    }
+
+    @Test
+    void expiringProfilesAreFoundOnEveryShard() {
+        assertEquals(List.of("u2", "u6"),
+                userIds(repository.findProfilesExpiringBetweenAndNotNotified(NOW, NOW.plusDays(7))));
+    }
+
+    @Test
+    void countryIsFoundOnEveryShard() {
+        // u6 still lives on the EU shard, e.g. while it is being rebalanced
+        assertEquals(List.of("u1", "u2", "u3", "u6"), userIds(repository.findByCountry("United Kingdom")));
+    }
+
+    @Test
+    void failedShardFailsTheQuery() {
+        when(euTemplate.find(any(Query.class), eq(Profile.class))).thenThrow(new RuntimeException("down"));
+
+        assertThrows(RuntimeException.class, () -> repository.findExpiredProfilesNotNotified(NOW));
+        assertThrows(RuntimeException.class, () -> repository.findByCountry("Germany"));
+    }
+
+    private static List<String> userIds(List<Profile> profiles) {
+        return profiles.stream().map(Profile::getUserId).toList();
+    }
+
+    /**
+     * A shard answering find() with its profiles matching the query.
+     */
+    private static MongoTemplate template(List<Profile> profiles) {
+        MongoTemplate template = mock(MongoTemplate.class);
+        when(template.find(any(Query.class), eq(Profile.class))).thenAnswer(invocation -> {
+            Document filter = invocation.<Query>getArgument(0).getQueryObject();
+            return profiles.stream()
+                    .filter(profile -> InMemoryCollection.matches(document(profile), filter))
+                    .toList();
+        });
+        return template;
+    }
+
+    /**
+     * The profile by property name, as the unmapped query refers to it.
+     */
+    private static Document document(Profile profile) {
+        return new Document("userId", profile.getUserId())
+                .append("country", profile.getCountry())
+                .append("subscriptionType", profile.getSubscriptionType().name())
+                .append("subscriptionEndDate", profile.getSubscriptionEndDate())
+                .append("expiryNotificationSent", profile.getExpiryNotificationSent())
+                .append("expiredNotificationSent", profile.getExpiredNotificationSent());
+    }
+
+    private static Profile profile(String userId, String country, SubscriptionType subscriptionType,
+                                   LocalDateTime subscriptionEndDate, boolean notified) {
+        return Profile.builder().id("p-" + userId).userId(userId).country(country)
+                .subscriptionType(subscriptionType).subscriptionEndDate(subscriptionEndDate)
+                .expiryNotificationSent(notified).expiredNotificationSent(notified).build();
+    }
+}
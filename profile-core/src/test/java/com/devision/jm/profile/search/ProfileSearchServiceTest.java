@@ -0,0 +1,218 @@
+package com.devision.jm.profile.search;
+
+import com.devision.jm.profile.config.ShardingProperties;
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.repository.MongoConcurrencyLimiter;
+import com.devision.jm.profile.sharding.InMemoryCollection;
+import com.devision.jm.profile.sharding.ShardRouter;
+import com.devision.jm.profile.sharding.ShardScatterGather;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Keyset pagination over two shards: pages follow each other in
+ * (company_name, _id) order without gaps or repeats, resuming from the opaque
+ * SearchCursor, and a failed shard makes a partial page. The list and the
+ * stream, which can't report a missing shard, fail instead.
+ */
+class ProfileSearchServiceTest {
+
+    private static final String SHARD_UK = "SHARD_UK";
+    private static final String SHARD_EU = "SHARD_EU";
+
+    private static final Comparator<Profile> KEYSET_ORDER = Comparator
+            .comparing(Profile::getCompanyName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(Profile::getId);
+
+    private final List<Profile> ukProfiles = new ArrayList<>();
+    private final List<Profile> euProfiles = new ArrayList<>();
+    private final MongoTemplate ukTemplate = template(ukProfiles);
+    private final MongoTemplate euTemplate = template(euProfiles);
+
+    private ShardScatterGather shardScatterGather;
+    private ProfileSearchService service;
+
+    @BeforeEach
+    void setUp() {
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.isEnabled()).thenReturn(true);
+        when(shardRouter.shards()).thenReturn(List.of(SHARD_UK, SHARD_EU));
+        when(shardRouter.template(SHARD_UK)).thenReturn(ukTemplate);
+        when(shardRouter.template(SHARD_EU)).thenReturn(euTemplate);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        shardScatterGather = new ShardScatterGather(shardRouter,
+                new MongoConcurrencyLimiter(meterRegistry, 10, Duration.ofSeconds(1)),
+                new ShardingProperties(), meterRegistry);
+        service = new ProfileSearchService(shardScatterGather);
+        ReflectionTestUtils.setField(service, "defaultPageSize", 3);
+        ReflectionTestUtils.setField(service, "maxPageSize", 4);
+
+        ukProfiles.add(profile("a1", "Acme", "jobs@acme.co.uk"));
+        ukProfiles.add(profile("a4", "Acme", "hr@acme.co.uk"));
+        ukProfiles.add(profile("b2", null, "someone@mail.com"));
+        ukProfiles.add(profile("c1", "Zenith Acme", "zenith@mail.com"));
+        euProfiles.add(profile("a2", "Acme", "jobs@acme.de"));
+        euProfiles.add(profile("b1", null, "nobody@mail.com"));
+        euProfiles.add(profile("c2", "Bolt", "hello@bolt.eu"));
+        euProfiles.add(profile("c3", "Acme Labs", "labs@acme.eu"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardScatterGather.shutdown();
+    }
+
+    @Test
+    void pagesFollowEachOtherInKeysetOrderAcrossShards() {
+        List<String> ids = readAllPages(null, 2);
+
+        assertEquals(List.of("b1", "b2", "a1", "a2", "a4", "c3", "c2", "c1"), ids);
+    }
+
+    @Test
+    void pagesOfASearchHoldOnlyMatches() {
+        List<String> ids = readAllPages("acme", 2);
+
+        assertEquals(List.of("a1", "a2", "a4", "c3", "c1"), ids);
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        ProfileSearchService.Page page = service.searchPage("bolt", null, 2);
+
+        assertEquals(List.of("c2"), ids(page));
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void missingLimitUsesTheDefaultAndLargeLimitsAreCapped() {
+        assertEquals(3, service.searchPage(null, null, null).profiles().size());
+        assertEquals(4, service.searchPage(null, null, 1000).profiles().size());
+    }
+
+    @Test
+    void failedShardMakesAPartialPage() {
+        when(euTemplate.stream(any(Query.class), eq(Profile.class))).thenThrow(new RuntimeException("down"));
+
+        ProfileSearchService.Page page = service.searchPage(null, null, 10);
+
+        assertEquals(List.of("b2", "a1", "a4", "c1"), ids(page));
+        assertTrue(page.partial());
+    }
+
+    @Test
+    void malformedCursorFailsThePagedSearch() {
+        assertThrows(InvalidCursorException.class, () -> service.searchPage("acme", "not-a-cursor!", 2));
+    }
+
+    @Test
+    void failedShardFailsTheListSearch() {
+        when(euTemplate.find(any(Query.class), eq(Profile.class))).thenThrow(new RuntimeException("down"));
+
+        IncompleteSearchException e = assertThrows(IncompleteSearchException.class, () -> service.search("acme"));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertTrue(e.getReason().contains(SHARD_EU));
+    }
+
+    @Test
+    void streamMergesTheShardsInKeysetOrder() {
+        try (Stream<Profile> profiles = service.stream("acme")) {
+            assertEquals(List.of("a1", "a2", "a4", "c3", "c1"), profiles.map(Profile::getId).toList());
+        }
+    }
+
+    @Test
+    void shardThatCantBeOpenedFailsTheStreamAndClosesTheOthers() {
+        AtomicBoolean ukClosed = new AtomicBoolean();
+        when(ukTemplate.stream(any(Query.class), eq(Profile.class)))
+                .thenAnswer(invocation -> ukProfiles.stream().onClose(() -> ukClosed.set(true)));
+        when(euTemplate.stream(any(Query.class), eq(Profile.class))).thenThrow(new RuntimeException("down"));
+
+        assertThrows(IncompleteSearchException.class, () -> service.stream(null));
+        assertTrue(ukClosed.get());
+    }
+
+    @Test
+    void shardFailingMidStreamFailsTheStream() {
+        when(euTemplate.stream(any(Query.class), eq(Profile.class))).thenAnswer(invocation -> Stream.concat(
+                euProfiles.stream().limit(1),
+                Stream.<Profile>generate(() -> {
+                    throw new RuntimeException("connection reset");
+                })));
+
+        try (Stream<Profile> profiles = service.stream(null)) {
+            assertThrows(IncompleteSearchException.class, () -> profiles.forEach(profile -> { }));
+        }
+    }
+
+    private List<String> readAllPages(String term, int limit) {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            ProfileSearchService.Page page = service.searchPage(term, cursor, limit);
+            assertFalse(page.partial());
+            assertTrue(page.profiles().size() <= limit);
+            ids.addAll(ids(page));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static List<String> ids(ProfileSearchService.Page page) {
+        return page.profiles().stream().map(Profile::getId).toList();
+    }
+
+    /**
+     * A shard answering stream() with its profiles matching the query, in keyset order.
+     */
+    private static MongoTemplate template(List<Profile> profiles) {
+        MongoTemplate template = mock(MongoTemplate.class);
+        when(template.stream(any(Query.class), eq(Profile.class))).thenAnswer(invocation -> {
+            Document filter = invocation.<Query>getArgument(0).getQueryObject();
+            return profiles.stream()
+                    .filter(profile -> InMemoryCollection.matches(document(profile), filter))
+                    .sorted(KEYSET_ORDER)
+                    .toList()
+                    .stream();
+        });
+        return template;
+    }
+
+    private static Document document(Profile profile) {
+        return new Document("_id", profile.getId())
+                .append("company_name", profile.getCompanyName())
+                .append("email", profile.getEmail())
+                .append("company_name_grams", ProfileSearchIndexer.grams(profile.getCompanyName()))
+                .append("email_grams", ProfileSearchIndexer.grams(profile.getEmail()));
+    }
+
+    private static Profile profile(String id, String companyName, String email) {
+        return Profile.builder().id(id).companyName(companyName).email(email).build();
+    }
+}
@@ -0,0 +1,62 @@
+package com.devision.jm.profile.search;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Cursor tokens round-trip, and anything decode() did not get from encode()
+ * is an InvalidCursorException (400 Bad Request) rather than a server error.
+ */
+class SearchCursorTest {
+
+    @Test
+    void cursorsRoundTrip() {
+        for (SearchCursor cursor : new SearchCursor[]{
+                new SearchCursor("Acme: The Company", "a1"),
+                new SearchCursor("", "a2"),
+                new SearchCursor("Ünïcødé Ltd", "a3"),
+                new SearchCursor(null, "b1")}) {
+            assertEquals(cursor, SearchCursor.decode(cursor.encode()));
+        }
+    }
+
+    @Test
+    void badBase64IsRejected() {
+        assertInvalid("not-a-cursor!");
+        assertInvalid("YTE6K0Fj bWU");
+        assertInvalid("Y");
+    }
+
+    @Test
+    void truncatedPayloadIsRejected() {
+        String token = new SearchCursor("Acme", "65f1c0ffee").encode();
+
+        assertInvalid("");
+        assertInvalid(token.substring(0, 1));
+        assertInvalid(raw("65f1c0ffee"));
+        assertInvalid(raw("65f1c0ffee:"));
+    }
+
+    @Test
+    void wrongFieldCountIsRejected() {
+        assertInvalid(raw(":+Acme"));            // no id
+        assertInvalid(raw("65f1c0ffee:-:Acme")); // null company name, then another field
+        assertInvalid(raw("65f1c0ffee:Acme"));   // company name without its marker
+    }
+
+    private static void assertInvalid(String token) {
+        InvalidCursorException e = assertThrows(InvalidCursorException.class, () -> SearchCursor.decode(token),
+                token);
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+
+    private static String raw(String payload) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,298 @@
+package com.devision.jm.profile.service;
+
+import com.devision.jm.profile.cache.ProfileCache;
+import com.devision.jm.profile.messaging.KafkaSendTracker;
+import com.devision.jm.profile.model.embedded.OutboxMessage;
+import com.devision.jm.profile.model.entity.Profile;
+import com.devision.jm.profile.outbox.OutboxRelay;
+import com.devision.jm.profile.outbox.ProfileOutbox;
+import com.devision.jm.profile.sharding.CompanyEventMover;
+import com.devision.jm.profile.sharding.ProfileDirectory;
+import com.devision.jm.profile.sharding.ShardResolver;
+import com.devision.jm.profile.sharding.ShardRouter;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Moving a profile between shards: copy-verify-delete, the rollback when the
+ * source was written after the lock expired, and failures once the move is
+ * committed (never rolled back or reported as FAILED). Either path writes the
+ * outbox as stored, so messages OutboxRelay published after the profile was
+ * loaded are not written back.
+ */
+class ShardMigrationServiceTest {
+
+    private static final String SOURCE = "SHARD_UK";
+    private static final String TARGET = "SHARD_EU";
+
+    private final MongoTemplate source = mock(MongoTemplate.class);
+    private final MongoTemplate target = mock(MongoTemplate.class);
+    private final ProfileDirectory profileDirectory = mock(ProfileDirectory.class);
+    private final CompanyEventMover companyEventMover = mock(CompanyEventMover.class);
+    private final ProfileOutbox profileOutbox = mock(ProfileOutbox.class);
+    private final CompanyEventMover.Copy events =
+            new CompanyEventMover.Copy(SOURCE, TARGET, Set.of("u1"), List.of(), 2, 100);
+
+    private final ShardRouter shardRouter = mock(ShardRouter.class);
+    private final List<OutboxMessage> storedOutbox = new ArrayList<>();
+
+    private ShardMigrationService service;
+    private Profile profile;
+
+    @BeforeEach
+    void setUp() {
+        when(shardRouter.shardOfUser("u1")).thenReturn(SOURCE);
+        when(shardRouter.shardForCountry("Germany")).thenReturn(TARGET);
+        when(shardRouter.template(SOURCE)).thenReturn(source);
+        when(shardRouter.template(TARGET)).thenReturn(target);
+
+        service = new ShardMigrationService(profileOutbox, mock(ProfileCache.class),
+                shardRouter, profileDirectory, mock(ShardResolver.class), companyEventMover);
+        ReflectionTestUtils.setField(service, "kafkaEnabled", true);
+        ReflectionTestUtils.setField(service, "shardMigrationTopic", "profile.shard.migration");
+
+        profile = Profile.builder().id("p1").userId("u1").companyName("Acme").country("United Kingdom").version(3L)
+                .build();
+
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        when(target.getConverter()).thenReturn(converter);
+        // The stored copy is whatever was inserted, as verifyCopy expects
+        when(target.findById(eq("p1"), eq(Document.class), eq("profiles"))).thenAnswer(invocation -> {
+            Document stored = new Document();
+            converter.write(profile, stored);
+            return stored;
+        });
+
+        // Happy path: every guarded write matches
+        when(source.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Profile.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(target.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Profile.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(source.remove(any(Query.class), eq(Profile.class))).thenReturn(DeleteResult.acknowledged(1));
+        when(target.remove(any(Query.class), eq(Profile.class))).thenReturn(DeleteResult.acknowledged(1));
+        when(target.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(Profile.class))).thenAnswer(invocation -> profile);
+        when(profileOutbox.message(any(), any(), any())).thenAnswer(invocation -> new OutboxMessage());
+        when(companyEventMover.copy(anyCollection(), eq(SOURCE), eq(TARGET))).thenReturn(events);
+        when(source.findOne(any(Query.class), eq(Profile.class)))
+                .thenAnswer(invocation -> Profile.builder().id("p1").outbox(new ArrayList<>(storedOutbox)).build());
+    }
+
+    @Test
+    void movesTheProfileAndSwitchesTheDirectoryBeforeDeletingTheSource() {
+        Profile moved = service.migrateProfileToNewShard(profile, "United Kingdom", "Germany");
+
+        assertSame(profile, moved);
+        InOrder order = inOrder(companyEventMover, target, profileDirectory, source);
+        order.verify(companyEventMover).copy(List.of("u1"), SOURCE, TARGET);
+        order.verify(target).insert(profile);
+        order.verify(profileDirectory).assign("u1", TARGET);
+        order.verify(source).remove(any(Query.class), eq(Profile.class));
+        order.verify(target).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Profile.class));
+        order.verify(companyEventMover).deleteSource(events);
+        verify(companyEventMover, never()).discard(any());
+        verify(profileOutbox, never()).push(any(), anyList());
+    }
+
+    @Test
+    void profileWrittenSinceItWasLoadedIsNotMoved() {
+        when(source.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Profile.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertThrows(RuntimeException.class,
+                () -> service.migrateProfileToNewShard(profile, "United Kingdom", "Germany"));
+
+        verify(companyEventMover, never()).copy(anyCollection(), any(), any());
+        verify(target, never()).insert(any(Profile.class));
+        verify(profileDirectory, never()).assign(any(), any());
+        verify(profileOutbox).push(eq(profile), anyList()); // INITIATED + FAILED
+    }
+
+    @Test
+    void sourceWrittenAfterTheLockExpiredRollsTheMoveBack() {
+        // The guarded source delete misses: the lock expired and the source took a write
+        when(source.remove(any(Query.class), eq(Profile.class))).thenReturn(DeleteResult.acknowledged(0));
+
+        assertThrows(RuntimeException.class,
+                () -> service.migrateProfileToNewShard(profile, "United Kingdom", "Germany"));
+
+        InOrder order = inOrder(profileDirectory);
+        order.verify(profileDirectory).assign("u1", TARGET);
+        order.verify(profileDirectory).assign("u1", SOURCE);
+        verify(target).remove(any(Query.class), eq(Profile.class));
+        // Lock, then unlock of the source
+        verify(source, times(2)).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Profile.class));
+        verify(companyEventMover).discard(events);
+        verify(companyEventMover, never()).deleteSource(any());
+        verify(target, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Profile.class));
+        verify(profileOutbox).push(eq(profile), anyList());
+        assertNull(profile.getMigratingSince());
+    }
+
+    @Test
+    void rollbackKeepsATargetCopyWrittenAfterTheLockExpired() {
+        when(source.remove(any(Query.class), eq(Profile.class))).thenReturn(DeleteResult.acknowledged(0));
+        when(target.remove(any(Query.class), eq(Profile.class))).thenReturn(DeleteResult.acknowledged(0));
+        when(target.exists(any(Query.class), eq(Profile.class))).thenReturn(true);
+
+        assertThrows(RuntimeException.class,
+                () -> service.migrateProfileToNewShard(profile, "United Kingdom", "Germany"));
+
+        // Only the guarded delete - the written copy is left for repair
+        verify(target, times(1)).remove(any(Query.class), eq(Profile.class));
+        verify(profileDirectory).assign("u1", SOURCE);
+        verify(companyEventMover).discard(events);
+    }
+
+    @Test
+    void unlockFailureAfterTheSourceDeleteIsNotAFailedMigration() {
+        when(target.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(Profile.class))).thenThrow(new RuntimeException("connection reset"));
+
+        Profile moved = service.migrateProfileToNewShard(profile, "United Kingdom", "Germany");
+
+        assertSame(profile, moved);
+        assertEquals(5L, moved.getVersion()); // locked copy, left to the lock timeout
+        verify(target, times(3)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Profile.class));
+        verify(companyEventMover).deleteSource(events);
+        verify(profileDirectory, never()).assign("u1", SOURCE);
+        verify(companyEventMover, never()).discard(any());
+        verify(profileOutbox, never()).push(any(), anyList());
+    }
+
+    @Test
+    void eventDeleteFailureAfterTheSourceDeleteIsNotAFailedMigration() {
+        doThrow(new RuntimeException("timeout")).when(companyEventMover).deleteSource(events);
+
+        Profile moved = service.migrateProfileToNewShard(profile, "United Kingdom", "Germany");
+
+        assertSame(profile, moved);
+        verify(profileDirectory, never()).assign("u1", SOURCE);
+        verify(companyEventMover, never()).discard(any());
+        verify(profileOutbox, never()).push(any(), anyList());
+    }
+
+    @Test
+    void messagesPublishedAfterTheLoadAreNotWrittenBackByAMove() {
+        List<String> inserted = new ArrayList<>();
+        doAnswer(invocation -> {
+            inserted.addAll(ids(invocation.<Profile>getArgument(0).getOutbox()));
+            return null;
+        }).when(target).insert(any(Profile.class));
+        loadWithOutbox("m1", "m2");
+
+        relayPublishesTheSourceOutbox();
+        service.migrateProfileToNewShard(profile, "United Kingdom", "Germany");
+
+        assertEquals(List.of(), inserted);
+    }
+
+    @Test
+    void messagesPublishedAfterTheLoadAreNotWrittenBackInPlace() {
+        when(shardRouter.shardForCountry("Ireland")).thenReturn(SOURCE);
+        when(source.save(any(Profile.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        loadWithOutbox("m1", "m2");
+        storedOutbox.add(message("m3")); // appended by a consumer, not yet relayed
+
+        relayPublishesTheSourceOutbox();
+        storedOutbox.add(message("m4"));
+        Profile saved = service.migrateProfileToNewShard(profile, "United Kingdom", "Ireland");
+
+        assertEquals(List.of("m4"), ids(saved.getOutbox()));
+        assertEquals(4L, saved.getVersion()); // the locked version, checked by the save
+        assertNull(saved.getMigratingSince());
+        verify(target, never()).insert(any(Profile.class));
+    }
+
+    /**
+     * The profile as loaded by the request, with the same outbox stored.
+     */
+    private void loadWithOutbox(String... messageIds) {
+        for (String id : messageIds) {
+            storedOutbox.add(message(id));
+        }
+        profile.setOutbox(new ArrayList<>(storedOutbox));
+    }
+
+    /**
+     * One OutboxRelay round over the source shard: every stored message is sent
+     * and then removed with the relay's $pull.
+     */
+    @SuppressWarnings("unchecked")
+    private void relayPublishesTheSourceOutbox() {
+        when(shardRouter.shards()).thenReturn(List.of(SOURCE));
+        when(shardRouter.defaultShard()).thenReturn(SOURCE);
+        when(source.find(any(Query.class), eq(Profile.class))).thenAnswer(invocation -> List.of(
+                Profile.builder().id("p1").userId("u1").outbox(new ArrayList<>(storedOutbox)).build()));
+        BulkOperations removals = mock(BulkOperations.class);
+        when(source.bulkOps(any(BulkOperations.BulkMode.class), eq(Profile.class))).thenReturn(removals);
+        when(removals.updateOne(any(Query.class), any(Update.class))).thenAnswer(invocation -> {
+            Document pull = (Document) invocation.<Update>getArgument(1).getUpdateObject().get("$pull");
+            List<String> pulled = (List<String>) ((Document) ((Document) pull.get("outbox")).get("id")).get("$in");
+            storedOutbox.removeIf(message -> pulled.contains(message.getId()));
+            return removals;
+        });
+        KafkaSendTracker sendTracker = mock(KafkaSendTracker.class);
+        when(sendTracker.send(any(), any(), any(), any())).thenAnswer(invocation -> CompletableFuture.completedFuture(null));
+
+        new OutboxRelay(shardRouter, mock(KafkaTemplate.class), sendTracker, new SimpleMeterRegistry(), 10,
+                Duration.ofSeconds(1), Duration.ofSeconds(30)).relay();
+    }
+
+    private static OutboxMessage message(String id) {
+        return OutboxMessage.builder().id(id).topic("profile.updated").key("u1").payload("{}").build();
+    }
+
+    private static List<String> ids(List<OutboxMessage> outbox) {
+        return outbox == null ? List.of() : outbox.stream().map(OutboxMessage::getId).toList();
+    }
+}
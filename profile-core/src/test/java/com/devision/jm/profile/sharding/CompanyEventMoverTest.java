@@ -0,0 +1,169 @@
+package com.devision.jm.profile.sharding;
+
+import com.devision.jm.profile.config.ShardingProperties;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Moving a company's events from SHARD_UK to SHARD_EU: source copies are only
+ * deleted while unchanged since they were copied, events written during the
+ * move are carried over in their latest version, and one that keeps changing
+ * stays on the source rather than being lost.
+ */
+class CompanyEventMoverTest {
+
+    private static final String SOURCE = "SHARD_UK";
+    private static final String TARGET = "SHARD_EU";
+
+    private final InMemoryCollection sourceEvents = new InMemoryCollection();
+    private final InMemoryCollection targetEvents = new InMemoryCollection();
+    private final MongoTemplate source = mock(MongoTemplate.class);
+
+    private CompanyEventMover mover;
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate target = mock(MongoTemplate.class);
+        when(source.getCollection("events")).thenReturn(sourceEvents.collection(Document.class));
+        when(target.getCollection("events")).thenReturn(targetEvents.collection(Document.class));
+
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.template(SOURCE)).thenReturn(source);
+        when(shardRouter.template(TARGET)).thenReturn(target);
+
+        ShardingProperties properties = new ShardingProperties();
+        properties.getRebalance().setBatchSize(2);
+        mover = new CompanyEventMover(shardRouter, properties);
+
+        sourceEvents.put(event("e1", "u1", 0L));
+        sourceEvents.put(event("e2", "u1", 3L));
+        sourceEvents.put(event("e3", "u1", null));
+        sourceEvents.put(event("e4", "u2", 1L));
+    }
+
+    @Test
+    void copiesThenDeletesOnlyTheCompaniesEvents() {
+        CompanyEventMover.Copy copy = mover.copy(List.of("u1"), SOURCE, TARGET);
+
+        assertEquals(3, copy.docs());
+        assertEquals(3, targetEvents.size());
+        assertEquals(4, sourceEvents.size()); // reads stay on the source until the directory switch
+
+        mover.deleteSource(copy);
+
+        assertEquals(1, sourceEvents.size());
+        assertNotNull(sourceEvents.get("e4"));
+        assertEquals(3, targetEvents.size());
+    }
+
+    @Test
+    void eventsWrittenAfterTheCopyAreMovedInTheirLatestVersion() {
+        CompanyEventMover.Copy copy = mover.copy(List.of("u1"), SOURCE, TARGET);
+        sourceEvents.update("e1", event -> event.append("version", 1L).append("title", "Renamed"));
+        sourceEvents.put(event("e5", "u1", 0L));
+
+        mover.deleteSource(copy);
+
+        assertEquals(1, sourceEvents.size());
+        assertEquals("Renamed", targetEvents.get("e1").getString("title"));
+        assertEquals(1L, targetEvents.get("e1").getLong("version"));
+        assertNotNull(targetEvents.get("e5"));
+    }
+
+    @Test
+    void eventWrittenDuringTheGuardedDeleteIsMovedInTheNextRound() {
+        AtomicInteger writes = new AtomicInteger();
+        beforeEachSourceBulkWrite(() -> {
+            if (writes.getAndIncrement() == 0) {
+                sourceEvents.update("e2", event -> event.append("version", 4L));
+            }
+        });
+        CompanyEventMover.Copy copy = mover.copy(List.of("u1"), SOURCE, TARGET);
+
+        mover.deleteSource(copy);
+
+        assertNull(sourceEvents.get("e2"));
+        assertEquals(4L, targetEvents.get("e2").getLong("version"));
+    }
+
+    @Test
+    void eventThatKeepsChangingIsLeftOnTheSource() {
+        // Every delete of e2 races with a write, in the first pass and all leftover rounds
+        beforeEachSourceBulkWrite(() -> sourceEvents.update("e2",
+                event -> event.append("version", event.getLong("version") + 1)));
+        CompanyEventMover.Copy copy = mover.copy(List.of("u1"), SOURCE, TARGET);
+
+        mover.deleteSource(copy);
+
+        Document kept = sourceEvents.get("e2");
+        assertNotNull(kept);
+        assertEquals(kept.getLong("version") - 1, targetEvents.get("e2").getLong("version"));
+        assertNull(sourceEvents.get("e1"));
+        assertNull(sourceEvents.get("e3"));
+    }
+
+    @Test
+    void discardForRemovesOnlyTheGivenCompaniesCopies() {
+        CompanyEventMover.Copy copy = mover.copy(List.of("u1", "u2"), SOURCE, TARGET);
+
+        CompanyEventMover.Copy rest = mover.discardFor(copy, Set.of("u2"));
+
+        assertNull(targetEvents.get("e4"));
+        assertEquals(3, targetEvents.size());
+        assertEquals(Set.of("u1"), rest.companyIds());
+        assertEquals(3, rest.docs());
+        assertEquals(copy.bytes(), rest.bytes());
+
+        mover.deleteSource(rest);
+
+        assertEquals(1, sourceEvents.size());
+        assertNotNull(sourceEvents.get("e4"));
+    }
+
+    /**
+     * Run a concurrent write on the source right before each of the mover's bulk
+     * writes there (its guarded deletes).
+     */
+    private void beforeEachSourceBulkWrite(Runnable write) {
+        when(source.getCollection("events"))
+                .thenReturn(interceptBulkWrites(sourceEvents.collection(Document.class), write));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> MongoCollection<T> interceptBulkWrites(MongoCollection<?> collection, Runnable write) {
+        return (MongoCollection<T>) Proxy.newProxyInstance(CompanyEventMoverTest.class.getClassLoader(),
+                new Class<?>[]{MongoCollection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("bulkWrite")) {
+                        write.run();
+                    }
+                    try {
+                        Object result = method.invoke(collection, args);
+                        return method.getName().equals("withDocumentClass")
+                                ? interceptBulkWrites((MongoCollection<?>) result, write)
+                                : result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static Document event(String id, String companyId, Long version) {
+        Document event = new Document("_id", id).append("company_id", companyId).append("title", "Event " + id);
+        return version != null ? event.append("version", version) : event;
+    }
+}
@@ -0,0 +1,143 @@
+package com.devision.jm.profile.sharding;
+
+import com.devision.jm.profile.config.ShardingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Country to shard resolution: exact keys instead of substring matches,
+ * normalization, aliases, hot reload of the resolver file, and exact-key
+ * lookups however large the mapping is.
+ */
+class ConfigShardResolverTest {
+
+    private static final String DEFAULT_SHARD = "SHARD_DEFAULT";
+    private static final int LARGE_MAPPING = 50_000;
+
+    @TempDir
+    Path tempDir;
+
+    private ShardingProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, List<String>> regions = new LinkedHashMap<>();
+        regions.put("SHARD_UK", List.of("GB"));
+        regions.put("SHARD_EU", List.of("UA", "VN"));
+        regions.put("SHARD_ASIA", List.of("IN"));
+
+        Map<String, String> aliases = new LinkedHashMap<>();
+        aliases.put("UK", "GB");
+        aliases.put("VIET NAM", "vn");
+
+        properties = new ShardingProperties();
+        properties.setDefaultShard(DEFAULT_SHARD);
+        properties.setRegions(regions);
+        properties.setCountryAliases(aliases);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void countryContainingAnotherCountryIsNotMisrouted() {
+        ConfigShardResolver resolver = new ConfigShardResolver(properties, meterRegistry);
+
+        assertEquals("SHARD_UK", resolver.resolve("UK"));
+        assertEquals("SHARD_EU", resolver.resolve("UKRAINE"));
+        assertEquals("SHARD_ASIA", resolver.resolve("INDIA"));
+        // IO is not in any region - must not fall into INDIA's shard
+        assertEquals(DEFAULT_SHARD, resolver.resolve("BRITISH INDIAN OCEAN TERRITORY"));
+    }
+
+    @Test
+    void namesCodesAndAliasesAreNormalized() {
+        ConfigShardResolver resolver = new ConfigShardResolver(properties, meterRegistry);
+
+        assertEquals("SHARD_UK", resolver.resolve("gb"));
+        assertEquals("SHARD_UK", resolver.resolve("GBR"));
+        assertEquals("SHARD_UK", resolver.resolve("United Kingdom"));
+        assertEquals("SHARD_UK", resolver.resolve("  united_kingdom. "));
+        assertEquals("SHARD_EU", resolver.resolve("Viet-Nam"));
+        assertEquals("SHARD_EU", resolver.resolve("Việt Nam"));
+        assertEquals("SHARD_ASIA", resolver.resolve("ind"));
+
+        assertEquals("GB", resolver.countryKey("united kingdom"));
+        assertEquals("VN", resolver.countryKey("viet nam"));
+        assertEquals("ATLANTIS", resolver.countryKey(" atlantis "));
+    }
+
+    @Test
+    void unmappedCountriesGoToTheDefaultShardAndAreCounted() {
+        ConfigShardResolver resolver = new ConfigShardResolver(properties, meterRegistry);
+
+        assertEquals(DEFAULT_SHARD, resolver.resolve("ATLANTIS"));
+        assertEquals(DEFAULT_SHARD, resolver.resolve(null));
+        assertEquals(2, meterRegistry.counter("sharding.resolver.unmapped").count());
+    }
+
+    @Test
+    void resolverFileIsReloadedWhenItChanges() throws IOException {
+        Path file = tempDir.resolve("shard-resolver.properties");
+        Files.writeString(file, """
+                # moved to its own shard
+                region.SHARD_SEA=VN
+                alias.UNITED STATES OF AMERICA=US
+                """);
+        properties.setResolverFile(file.toString());
+        ConfigShardResolver resolver = new ConfigShardResolver(properties, meterRegistry);
+
+        assertEquals("SHARD_SEA", resolver.resolve("VIET NAM"));
+        assertEquals("US", resolver.countryKey("United States of America"));
+
+        Files.writeString(file, """
+                region.SHARD_SEA=VN
+                region.SHARD_ASIA=IN, IO
+                """);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(60)));
+        resolver.reloadIfChanged();
+
+        assertEquals("SHARD_ASIA", resolver.resolve("BRITISH INDIAN OCEAN TERRITORY"));
+        assertEquals("SHARD_ASIA", resolver.resolve("INDIA"));
+
+        Files.delete(file);
+        resolver.reloadIfChanged();
+
+        assertEquals("SHARD_EU", resolver.resolve("VIET NAM"));
+        assertEquals(DEFAULT_SHARD, resolver.resolve("BRITISH INDIAN OCEAN TERRITORY"));
+    }
+
+    @Test
+    void largeMappingResolvesEveryKeyExactlyAndNothingElse() {
+        String[] codes = {"GB", "VN", "IN"};
+        String[] shards = {"SHARD_UK", "SHARD_EU", "SHARD_ASIA"};
+        Map<String, String> aliases = new LinkedHashMap<>(properties.getCountryAliases());
+        for (int i = 0; i < LARGE_MAPPING; i++) {
+            aliases.put("COUNTRY " + i, codes[i % codes.length]);
+        }
+        properties.setCountryAliases(aliases);
+        ConfigShardResolver resolver = new ConfigShardResolver(properties, meterRegistry);
+
+        for (int i = 0; i < LARGE_MAPPING; i++) {
+            assertEquals(shards[i % shards.length], resolver.resolve("country-" + i));
+        }
+        assertEquals("SHARD_UK", resolver.resolve("United Kingdom"));
+        // Names containing a key, or contained in one, are unknown rather than the first key a scan would hit
+        assertEquals(DEFAULT_SHARD, resolver.resolve("COUNTRY 12 NORTH"));
+        assertEquals(DEFAULT_SHARD, resolver.resolve("NEW COUNTRY 7"));
+        assertEquals(DEFAULT_SHARD, resolver.resolve("COUNTRY"));
+        assertEquals(3, meterRegistry.counter("sharding.resolver.unmapped").count());
+    }
+}
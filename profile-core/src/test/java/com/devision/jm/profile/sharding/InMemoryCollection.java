@@ -0,0 +1,349 @@
+package com.devision.jm.profile.sharding;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.DistinctIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWrapper;
+import org.bson.BsonInt64;
+import org.bson.BsonNumber;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A collection kept in memory, behind the MongoCollection calls the sharding
+ * code makes: find (with hint, batch size, projection ignored), distinct,
+ * countDocuments, deleteMany and unordered bulk writes of replace, update and
+ * delete models. Filters support equality, $in, $all, $exists, $ne, $not,
+ * $lt/$lte/$gt/$gte, $and and $or; updates $set, $unset and $inc. The filter
+ * matching is also usable on its own, for fakes of other Mongo calls.
+ *
+ * Anything else throws UnsupportedOperationException, so a test never passes on
+ * a call the fake silently ignored.
+ */
+public final class InMemoryCollection {
+
+    private static final CodecRegistry CODECS = MongoClientSettings.getDefaultCodecRegistry();
+
+    private final Map<BsonValue, BsonDocument> documents = new LinkedHashMap<>();
+
+    // ==================== Test access ====================
+
+    synchronized void put(Document document) {
+        BsonDocument bson = toBson(document);
+        documents.put(bson.get("_id"), bson);
+    }
+
+    synchronized Document get(Object id) {
+        BsonDocument bson = documents.get(toBson(new Document("_id", id)).get("_id"));
+        return bson == null ? null : toDocument(bson);
+    }
+
+    synchronized int size() {
+        return documents.size();
+    }
+
+    /**
+     * Change a stored document in place, as a concurrent writer would.
+     */
+    synchronized void update(Object id, Consumer<Document> change) {
+        Document document = get(id);
+        change.accept(document);
+        put(document);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> MongoCollection<T> collection(Class<T> documentClass) {
+        return (MongoCollection<T>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MongoCollection.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "withDocumentClass" -> collection((Class<?>) args[0]);
+                    case "find" -> iterable(FindIterable.class, find(args == null ? new BsonDocument() : toBson(args[0]))
+                            .stream().map(document -> convert(document, documentClass)).toList());
+                    case "distinct" -> iterable(DistinctIterable.class, distinct((String) args[0]));
+                    case "countDocuments" -> (long) find(args == null ? new BsonDocument() : toBson(args[0])).size();
+                    case "deleteMany" -> DeleteResult.acknowledged(deleteMany(toBson(args[0])));
+                    case "bulkWrite" -> bulkWrite((List<?>) args[0]);
+                    case "getDocumentClass" -> documentClass;
+                    case "toString" -> "InMemoryCollection";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.toString());
+                });
+    }
+
+    // ==================== Operations ====================
+
+    private synchronized List<BsonDocument> find(BsonDocument filter) {
+        return documents.values().stream().filter(document -> matches(document, filter)).map(BsonDocument::clone).toList();
+    }
+
+    private synchronized List<String> distinct(String field) {
+        return documents.values().stream()
+                .map(document -> document.get(field))
+                .filter(value -> value != null && value.isString())
+                .map(value -> value.asString().getValue())
+                .distinct()
+                .toList();
+    }
+
+    private synchronized int deleteMany(BsonDocument filter) {
+        List<BsonValue> ids = find(filter).stream().map(document -> document.get("_id")).toList();
+        ids.forEach(documents::remove);
+        return ids.size();
+    }
+
+    private synchronized BulkWriteResult bulkWrite(List<?> models) {
+        int matched = 0;
+        int modified = 0;
+        int deleted = 0;
+        List<BulkWriteUpsert> upserts = new ArrayList<>();
+        for (int i = 0; i < models.size(); i++) {
+            WriteModel<?> model = (WriteModel<?>) models.get(i);
+            if (model instanceof ReplaceOneModel<?> replace) {
+                BsonDocument replacement = toBson(replace.getReplacement());
+                BsonDocument existing = first(toBson(replace.getFilter()));
+                if (existing != null) {
+                    matched++;
+                    modified++;
+                    replacement.put("_id", existing.get("_id"));
+                    documents.put(existing.get("_id"), replacement);
+                } else if (replace.getReplaceOptions().isUpsert()) {
+                    upserts.add(new BulkWriteUpsert(i, replacement.get("_id")));
+                    documents.put(replacement.get("_id"), replacement);
+                }
+            } else if (model instanceof UpdateOneModel<?> update) {
+                BsonDocument existing = first(toBson(update.getFilter()));
+                if (existing != null) {
+                    matched++;
+                    modified++;
+                    apply(existing, toBson(update.getUpdate()));
+                }
+            } else if (model instanceof DeleteOneModel<?> delete) {
+                BsonDocument existing = first(toBson(delete.getFilter()));
+                if (existing != null) {
+                    deleted++;
+                    documents.remove(existing.get("_id"));
+                }
+            } else {
+                throw new UnsupportedOperationException(model.toString());
+            }
+        }
+        return BulkWriteResult.acknowledged(0, matched, deleted, modified, upserts, List.of());
+    }
+
+    private BsonDocument first(BsonDocument filter) {
+        return documents.values().stream().filter(document -> matches(document, filter)).findFirst().orElse(null);
+    }
+
+    private static void apply(BsonDocument document, BsonDocument update) {
+        for (Map.Entry<String, BsonValue> operator : update.entrySet()) {
+            for (Map.Entry<String, BsonValue> field : operator.getValue().asDocument().entrySet()) {
+                switch (operator.getKey()) {
+                    case "$set" -> document.put(field.getKey(), field.getValue());
+                    case "$unset" -> document.remove(field.getKey());
+                    case "$inc" -> {
+                        BsonValue current = document.get(field.getKey());
+                        long value = current == null ? 0 : current.asNumber().longValue();
+                        document.put(field.getKey(), new BsonInt64(value + field.getValue().asNumber().longValue()));
+                    }
+                    default -> throw new UnsupportedOperationException(operator.getKey());
+                }
+            }
+        }
+    }
+
+    // ==================== Filters ====================
+
+    /**
+     * Whether the document matches the filter (e.g. a Query's query object).
+     */
+    public static boolean matches(Document document, Document filter) {
+        return matches(toBson(document), toBson(filter));
+    }
+
+    static boolean matches(BsonDocument document, BsonDocument filter) {
+        for (Map.Entry<String, BsonValue> entry : filter.entrySet()) {
+            boolean matches = switch (entry.getKey()) {
+                case "$and" -> entry.getValue().asArray().stream()
+                        .allMatch(clause -> matches(document, clause.asDocument()));
+                case "$or" -> entry.getValue().asArray().stream()
+                        .anyMatch(clause -> matches(document, clause.asDocument()));
+                default -> matchesField(document.get(entry.getKey()), entry.getValue());
+            };
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesField(BsonValue actual, BsonValue expected) {
+        if (!expected.isDocument() || expected.asDocument().isEmpty()
+                || !expected.asDocument().getFirstKey().startsWith("$")) {
+            return equal(actual, expected);
+        }
+        for (Map.Entry<String, BsonValue> operator : expected.asDocument().entrySet()) {
+            BsonValue operand = operator.getValue();
+            boolean matches = switch (operator.getKey()) {
+                case "$eq" -> equal(actual, operand);
+                case "$ne" -> !equal(actual, operand);
+                case "$in" -> operand.asArray().stream().anyMatch(value -> equal(actual, value));
+                case "$all" -> actual != null && actual.isArray() && operand.asArray().stream()
+                        .allMatch(value -> actual.asArray().stream().anyMatch(element -> equal(element, value)));
+                case "$exists" -> (actual != null) == operand.asBoolean().getValue();
+                case "$lt" -> actual != null && compare(actual, operand) < 0;
+                case "$lte" -> actual != null && compare(actual, operand) <= 0;
+                case "$gt" -> actual != null && compare(actual, operand) > 0;
+                case "$gte" -> actual != null && compare(actual, operand) >= 0;
+                case "$not" -> !matchesField(actual, operand);
+                default -> throw new UnsupportedOperationException(operator.getKey());
+            };
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equal(BsonValue actual, BsonValue expected) {
+        if (expected.isNull()) {
+            return actual == null || actual.isNull();
+        }
+        if (actual == null) {
+            return false;
+        }
+        if (actual.isNumber() && expected.isNumber()) {
+            return compare(actual, expected) == 0;
+        }
+        if (actual.isArray() && expected.isArray()) {
+            BsonArray left = actual.asArray();
+            BsonArray right = expected.asArray();
+            if (left.size() != right.size()) {
+                return false;
+            }
+            for (int i = 0; i < left.size(); i++) {
+                if (!equal(left.get(i), right.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return actual.equals(expected);
+    }
+
+    private static int compare(BsonValue actual, BsonValue operand) {
+        if (actual.isNumber() && operand.isNumber()) {
+            return Double.compare(((BsonNumber) actual).doubleValue(), ((BsonNumber) operand).doubleValue());
+        }
+        if (actual.isDateTime() && operand.isDateTime()) {
+            return Long.compare(actual.asDateTime().getValue(), operand.asDateTime().getValue());
+        }
+        if (actual.isString() && operand.isString()) {
+            return actual.asString().getValue().compareTo(operand.asString().getValue());
+        }
+        if (actual.isNull() || operand.isNull()) {
+            return actual.isNull() == operand.isNull() ? 0 : actual.isNull() ? -1 : 1;
+        }
+        throw new UnsupportedOperationException("Comparing " + actual + " with " + operand);
+    }
+
+    // ==================== Conversion ====================
+
+    /**
+     * Mutable copy (RawBsonDocument and its clones are read-only)
+     */
+    private static BsonDocument toBson(Object value) {
+        BsonDocument bson = value instanceof Bson filter
+                ? filter.toBsonDocument(BsonDocument.class, CODECS)
+                : BsonDocumentWrapper.asBsonDocument(value, CODECS);
+        BsonDocument copy = new BsonDocument();
+        bson.forEach((key, field) -> copy.put(key, field.isDocument() ? toBson(field.asDocument()) : field));
+        return copy;
+    }
+
+    private static Document toDocument(BsonDocument bson) {
+        return CODECS.get(Document.class).decode(new BsonDocumentReader(bson), DecoderContext.builder().build());
+    }
+
+    private static Object convert(BsonDocument bson, Class<?> documentClass) {
+        if (documentClass == RawBsonDocument.class) {
+            return new RawBsonDocument(bson, new BsonDocumentCodec());
+        }
+        if (documentClass == BsonDocument.class) {
+            return bson;
+        }
+        return toDocument(bson);
+    }
+
+    // ==================== Cursors ====================
+
+    /**
+     * FindIterable, DistinctIterable or MongoIterable over a snapshot of the results.
+     */
+    private static Object iterable(Class<?> type, List<?> results) {
+        return Proxy.newProxyInstance(InMemoryCollection.class.getClassLoader(),
+                new Class<?>[]{type}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "cursor", "iterator":
+                            return cursor(results.iterator());
+                        case "into":
+                            @SuppressWarnings("unchecked")
+                            Collection<Object> target = (Collection<Object>) args[0];
+                            target.addAll(results);
+                            return target;
+                        case "map":
+                            @SuppressWarnings("unchecked")
+                            com.mongodb.Function<Object, Object> mapper = (com.mongodb.Function<Object, Object>) args[0];
+                            return iterable(MongoIterable.class, results.stream().map(mapper::apply).toList());
+                        case "first":
+                            return results.isEmpty() ? null : results.get(0);
+                        case "forEach":
+                            @SuppressWarnings("unchecked")
+                            Consumer<Object> action = (Consumer<Object>) args[0];
+                            results.forEach(action);
+                            return null;
+                        case "hintString", "hint", "batchSize", "projection", "filter", "sort", "limit":
+                            return proxy;
+                        default:
+                            throw new UnsupportedOperationException(method.toString());
+                    }
+                });
+    }
+
+    private static MongoCursor<?> cursor(Iterator<?> iterator) {
+        return (MongoCursor<?>) Proxy.newProxyInstance(InMemoryCollection.class.getClassLoader(),
+                new Class<?>[]{MongoCursor.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "hasNext" -> iterator.hasNext();
+                    case "next" -> iterator.next();
+                    case "tryNext" -> iterator.hasNext() ? iterator.next() : null;
+                    case "close" -> null;
+                    default -> throw new UnsupportedOperationException(method.toString());
+                });
+    }
+}
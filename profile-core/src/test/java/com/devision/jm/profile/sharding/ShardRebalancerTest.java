@@ -0,0 +1,217 @@
+package com.devision.jm.profile.sharding;
+
+import com.devision.jm.profile.config.ShardingProperties;
+import com.devision.jm.profile.model.entity.ShardRebalanceJob;
+import com.devision.jm.profile.model.enums.ShardRebalanceStatus;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Rebalancing a country's profiles from SHARD_UK to SHARD_EU: batches are locked
+ * like a shard migration, locked profiles are skipped, and a profile written
+ * during its move is never deleted from the shard that took the write.
+ */
+class ShardRebalancerTest {
+
+    private static final String SOURCE = "SHARD_UK";
+    private static final String TARGET = "SHARD_EU";
+
+    private final InMemoryCollection sourceProfiles = new InMemoryCollection();
+    private final InMemoryCollection targetProfiles = new InMemoryCollection();
+    private final InMemoryCollection sourceEvents = new InMemoryCollection();
+    private final InMemoryCollection targetEvents = new InMemoryCollection();
+    private final AtomicReference<ShardRebalanceJob> job = new AtomicReference<>();
+    private final CompletableFuture<Object> finished = new CompletableFuture<>();
+
+    private ProfileDirectory profileDirectory;
+    private ShardRebalancer rebalancer;
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate source = template(sourceProfiles, sourceEvents);
+        MongoTemplate target = template(targetProfiles, targetEvents);
+
+        // Jobs live on the default shard
+        when(source.insert(any(ShardRebalanceJob.class))).thenAnswer(invocation -> {
+            job.set(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(source.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(ShardRebalanceJob.class))).thenAnswer(invocation -> job.get());
+        when(source.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(ShardRebalanceJob.class)))
+                .thenAnswer(invocation -> {
+                    Document set = ((UpdateDefinition) invocation.getArgument(1)).getUpdateObject()
+                            .get("$set", Document.class);
+                    if (set != null && set.get("status") != null) {
+                        finished.complete(set.get("status"));
+                    }
+                    return UpdateResult.acknowledged(1, 1L, null);
+                });
+
+        ShardRouter shardRouter = mock(ShardRouter.class);
+        when(shardRouter.isEnabled()).thenReturn(true);
+        when(shardRouter.shards()).thenReturn(List.of(SOURCE, TARGET));
+        when(shardRouter.defaultShard()).thenReturn(SOURCE);
+        when(shardRouter.template(SOURCE)).thenReturn(source);
+        when(shardRouter.template(TARGET)).thenReturn(target);
+        when(shardRouter.shardForCountry("Germany")).thenReturn(TARGET);
+
+        ShardResolver shardResolver = mock(ShardResolver.class);
+        when(shardResolver.countryKey(anyString()))
+                .thenAnswer(invocation -> invocation.<String>getArgument(0).toUpperCase(Locale.ROOT));
+
+        ShardingProperties properties = new ShardingProperties();
+        properties.getRebalance().setBatchSize(10);
+        profileDirectory = mock(ProfileDirectory.class);
+        rebalancer = new ShardRebalancer(shardRouter, shardResolver, profileDirectory,
+                new CompanyEventMover(shardRouter, properties), properties, new SimpleMeterRegistry());
+
+        sourceProfiles.put(profile("p1", "u1"));
+        sourceProfiles.put(profile("p2", "u2"));
+        sourceEvents.put(new Document("_id", "e1").append("company_id", "u1").append("version", 0L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        rebalancer.shutdown();
+    }
+
+    @Test
+    void movesProfilesAndUnlocksTheirCopies() throws Exception {
+        assertEquals(ShardRebalanceStatus.COMPLETED, rebalance());
+
+        assertEquals(0, sourceProfiles.size());
+        for (String id : List.of("p1", "p2")) {
+            Document moved = targetProfiles.get(id);
+            assertNull(moved.get("migrating_since"));
+            assertEquals(5L, moved.getLong("version")); // locked, then unlocked
+        }
+        assertEquals(0, sourceEvents.size());
+        assertNotNull(targetEvents.get("e1"));
+        verify(profileDirectory).assignAll(List.of("u1", "u2"), TARGET);
+        assertEquals(2, job.get().getMoved());
+        assertEquals(0, job.get().getConflicts());
+    }
+
+    @Test
+    void profileLockedByAShardMigrationIsLeftToIt() throws Exception {
+        Date lockedAt = new Date();
+        sourceProfiles.update("p1", profile -> profile.append("migrating_since", lockedAt).append("version", 4L));
+
+        assertEquals(ShardRebalanceStatus.COMPLETED, rebalance());
+
+        Document untouched = sourceProfiles.get("p1");
+        assertEquals(4L, untouched.getLong("version"));
+        assertEquals(lockedAt, untouched.getDate("migrating_since"));
+        assertNull(targetProfiles.get("p1"));
+        assertNotNull(sourceEvents.get("e1"));
+        assertNotNull(targetProfiles.get("p2"));
+        verify(profileDirectory, never()).assignAll(argThat(userIds -> userIds.contains("u1")), eq(TARGET));
+    }
+
+    @Test
+    void profileWrittenOnTheSourceDuringItsMoveIsRevertedAndUnlocked() throws Exception {
+        // A writer that ignores the lock changes the source copy after the directory switch
+        onDirectorySwitch(() -> sourceProfiles.update("p1",
+                profile -> profile.append("outbox", List.of(new Document("topic", "subscription.changed")))));
+
+        assertEquals(ShardRebalanceStatus.COMPLETED, rebalance());
+
+        Document reverted = sourceProfiles.get("p1");
+        assertNull(reverted.get("migrating_since"));
+        assertEquals(4L, reverted.getLong("version"));
+        assertEquals(1, reverted.getList("outbox", Document.class).size());
+        assertNull(targetProfiles.get("p1"));
+        verify(profileDirectory).assignAll(List.of("u1"), SOURCE);
+        assertNotNull(sourceEvents.get("e1"));
+        assertNull(targetEvents.get("e1"));
+
+        assertNotNull(targetProfiles.get("p2"));
+        assertEquals(1, job.get().getMoved());
+        assertEquals(1, job.get().getConflicts());
+    }
+
+    @Test
+    void copyWrittenOnTheTargetIsKeptAndTheLockedSourceDeleted() throws Exception {
+        onDirectorySwitch(() -> {
+            sourceProfiles.update("p1", profile -> profile.append("outbox", List.of(new Document("topic", "t"))));
+            targetProfiles.update("p1", profile -> profile.append("version", 11L));
+        });
+
+        assertEquals(ShardRebalanceStatus.COMPLETED, rebalance());
+
+        assertNull(sourceProfiles.get("p1"));
+        assertEquals(11L, targetProfiles.get("p1").getLong("version"));
+        verify(profileDirectory, never()).assignAll(argThat(userIds -> userIds.contains("u1")), eq(SOURCE));
+    }
+
+    @Test
+    void profileWrittenOnBothShardsIsKeptOnBoth() throws Exception {
+        // Both copies written after the lock expired - neither delete may run
+        onDirectorySwitch(() -> {
+            sourceProfiles.update("p1", profile -> profile.append("version", 10L));
+            targetProfiles.update("p1", profile -> profile.append("version", 11L));
+        });
+
+        assertEquals(ShardRebalanceStatus.COMPLETED, rebalance());
+
+        assertEquals(10L, sourceProfiles.get("p1").getLong("version"));
+        assertEquals(11L, targetProfiles.get("p1").getLong("version"));
+        assertNull(sourceProfiles.get("p2"));
+    }
+
+    private Object rebalance() throws Exception {
+        rebalancer.start("Germany");
+        return finished.get(10, TimeUnit.SECONDS);
+    }
+
+    private void onDirectorySwitch(Runnable write) {
+        doAnswer(invocation -> {
+            write.run();
+            return null;
+        }).when(profileDirectory).assignAll(anyCollection(), eq(TARGET));
+    }
+
+    private static MongoTemplate template(InMemoryCollection profiles, InMemoryCollection events) {
+        MongoTemplate template = mock(MongoTemplate.class);
+        when(template.getCollection("profiles")).thenReturn(profiles.collection(Document.class));
+        when(template.getCollection("events")).thenReturn(events.collection(Document.class));
+        return template;
+    }
+
+    private static Document profile(String id, String userId) {
+        return new Document("_id", id)
+                .append("user_id", userId)
+                .append("country", "Germany")
+                .append("version", 3L);
+    }
+}